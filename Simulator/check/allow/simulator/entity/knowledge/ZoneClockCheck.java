@@ -0,0 +1,78 @@
+package allow.simulator.entity.knowledge;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.Random;
+
+import allow.simulator.util.Checks;
+
+/**
+ * Runnable check comparing hour of day and weekday derived by ZoneClock
+ * with java.time. Timestamps are checked around every change of daylight
+ * saving time from 1970 to 2040 (each millisecond next to the transition and
+ * each minute within two hours of it), as well as at random points in time
+ * in random order, such that the cached offset is checked when jumping
+ * between intervals.
+ *
+ * Usage: ZoneClockCheck [seed [samples]]
+ *
+ * @author Andreas Poxrucker (DFKI)
+ *
+ */
+public final class ZoneClockCheck {
+	// Time zone ZoneClock derives local time in.
+	private static final ZoneId ZONE = ZoneId.of("Europe/Rome");
+
+	// Checked range of timestamps in ms.
+	private static final long FROM = 0L;
+	private static final long TO = 2208988800000L;
+
+	// Milliseconds per minute and hour.
+	private static final long MILLIS_PER_MINUTE = 60000L;
+	private static final long MILLIS_PER_HOUR = 3600000L;
+
+	public static void main(String[] args) {
+		long seed = Checks.getSeed(args);
+		int samples = Checks.getSamples(args, 1000000);
+		Random rnd = new Random(seed);
+		ZoneRules rules = ZONE.getRules();
+		int checked = 0;
+		int transitions = 0;
+		ZoneOffsetTransition transition = rules.nextTransition(Instant.ofEpochMilli(FROM));
+
+		while (transition != null && transition.toEpochSecond() * 1000 < TO) {
+			long t = transition.toEpochSecond() * 1000;
+
+			for (long d = -1; d <= 1; d++) {
+				check(t + d);
+				checked++;
+			}
+
+			for (long d = -2 * MILLIS_PER_HOUR; d <= 2 * MILLIS_PER_HOUR; d += MILLIS_PER_MINUTE) {
+				check(t + d);
+				checked++;
+			}
+			transitions++;
+			transition = rules.nextTransition(transition.getInstant());
+		}
+
+		for (int i = 0; i < samples; i++) {
+			check(-TO + (long) (rnd.nextDouble() * 2 * TO));
+			checked++;
+		}
+		System.out.println("Checked " + checked + " timestamps around " + transitions + " transitions.");
+	}
+
+	private static void check(long timestamp) {
+		LocalDateTime local = LocalDateTime.ofInstant(Instant.ofEpochMilli(timestamp), ZONE);
+
+		if (ZoneClock.getHourOfDay(timestamp) != local.getHour())
+			throw new IllegalStateException("Error: Hour of day of " + timestamp + " is " + ZoneClock.getHourOfDay(timestamp) + " instead of " + local.getHour() + ".");
+
+		if (ZoneClock.getWeekday(timestamp) != local.getDayOfWeek().getValue())
+			throw new IllegalStateException("Error: Weekday of " + timestamp + " is " + ZoneClock.getWeekday(timestamp) + " instead of " + local.getDayOfWeek().getValue() + ".");
+	}
+}
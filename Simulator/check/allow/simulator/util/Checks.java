@@ -0,0 +1,55 @@
+package allow.simulator.util;
+
+import java.io.IOException;
+
+import allow.simulator.entity.knowledge.ZoneClockCheck;
+import allow.simulator.world.LinkQueueModelCheck;
+import allow.simulator.world.SegmentGeometryCheck;
+import allow.simulator.world.StreetRouterCheck;
+
+/**
+ * Runs the runnable checks of this source tree, which is compiled against
+ * the simulator but not part of it. Every check takes an optional seed
+ * followed by an optional number of samples, throws an
+ * IllegalStateException on the first violation, and prints a summary
+ * otherwise.
+ *
+ * Usage: Checks [seed]
+ *
+ * @author Andreas Poxrucker (DFKI)
+ *
+ */
+public final class Checks {
+
+	private Checks() {
+	}
+
+	/**
+	 * Returns the seed given as first argument of a check.
+	 *
+	 * @param args Arguments of the check.
+	 * @return Seed or 1, if no seed is given.
+	 */
+	public static long getSeed(String args[]) {
+		return (args.length > 0) ? Long.parseLong(args[0]) : 1;
+	}
+
+	/**
+	 * Returns the number of samples given as second argument of a check.
+	 *
+	 * @param args Arguments of the check.
+	 * @param defaultSamples Number of samples if none is given.
+	 * @return Number of samples.
+	 */
+	public static int getSamples(String args[], int defaultSamples) {
+		return (args.length > 1) ? Integer.parseInt(args[1]) : defaultSamples;
+	}
+
+	public static void main(String[] args) throws IOException {
+		String seed[] = { String.valueOf(getSeed(args)) };
+		StreetRouterCheck.main(seed);
+		SegmentGeometryCheck.main(seed);
+		LinkQueueModelCheck.main(seed);
+		ZoneClockCheck.main(seed);
+	}
+}
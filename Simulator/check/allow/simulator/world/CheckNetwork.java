@@ -0,0 +1,96 @@
+package allow.simulator.world;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import allow.simulator.util.Coordinate;
+
+/**
+ * Creates synthetic street maps for the runnable checks of this package
+ * (e.g. StreetRouterCheck). Nodes are placed on a jittered grid and
+ * neighbouring nodes are connected by streets with random speed limits.
+ * Some neighbours are left unconnected and some streets are composed of
+ * several segments, such that the maps resemble real street networks.
+ *
+ * @author Andreas Poxrucker (DFKI)
+ *
+ */
+final class CheckNetwork {
+	// Position of the first node and spacing of the grid in degrees.
+	private static final double ORIGIN_X = 11.05;
+	private static final double ORIGIN_Y = 46.05;
+	private static final double SPACING = 0.002;
+
+	// Speed limits of streets in m/s.
+	private static final double[] SPEEDS = { 8.33, 13.89, 22.22 };
+
+	private CheckNetwork() {
+	}
+
+	/**
+	 * Creates a street map of rows x cols grid nodes.
+	 *
+	 * @param rnd Random number generator.
+	 * @param rows Number of rows of the grid.
+	 * @param cols Number of columns of the grid.
+	 * @return Street map.
+	 * @throws IOException
+	 */
+	static StreetMap create(Random rnd, int rows, int cols) throws IOException {
+		StreetNetwork network = new StreetNetwork();
+
+		for (int i = 0; i < rows; i++) {
+
+			for (int j = 0; j < cols; j++) {
+				double x = ORIGIN_X + (j + 0.3 * (rnd.nextDouble() - 0.5)) * SPACING;
+				double y = ORIGIN_Y + (i + 0.3 * (rnd.nextDouble() - 0.5)) * SPACING;
+				network.addNode("n" + (i * cols + j), new Coordinate(x, y));
+			}
+		}
+		int streets = 0;
+
+		for (int i = 0; i < rows; i++) {
+
+			for (int j = 0; j < cols; j++) {
+				int node = i * cols + j;
+
+				if (j + 1 < cols && rnd.nextDouble() < 0.85) {
+					addStreet(network, rnd, node, node + 1, "s" + streets++);
+				}
+
+				if (i + 1 < rows && rnd.nextDouble() < 0.85) {
+					addStreet(network, rnd, node, node + cols, "s" + streets++);
+				}
+			}
+		}
+		Path file = Files.createTempFile("check", ".world");
+
+		try {
+			network.write(file);
+			return new StreetMap(file);
+
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	// Adds a street between two nodes with up to two intermediate points.
+	private static void addStreet(StreetNetwork network, Random rnd, int from, int to, String name) {
+		int points = (rnd.nextDouble() < 0.3) ? 1 + rnd.nextInt(2) : 0;
+		int geometry[] = new int[points + 2];
+		geometry[0] = from;
+		geometry[points + 1] = to;
+		Coordinate p = network.getPosition(from);
+		Coordinate q = network.getPosition(to);
+
+		for (int k = 1; k <= points; k++) {
+			double r = (double) k / (points + 1);
+			double x = p.x + r * (q.x - p.x) + 0.2 * (rnd.nextDouble() - 0.5) * SPACING;
+			double y = p.y + r * (q.y - p.y) + 0.2 * (rnd.nextDouble() - 0.5) * SPACING;
+			geometry[k] = network.addNode(name + "p" + k, new Coordinate(x, y));
+		}
+		network.addStreet(from, to, name, SPEEDS[rnd.nextInt(SPEEDS.length)], geometry);
+	}
+}
@@ -0,0 +1,234 @@
+package allow.simulator.world;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import allow.simulator.util.Checks;
+
+/**
+ * Runnable check of the invariants of LinkQueueModel on a synthetic street
+ * map (see CheckNetwork). Vehicles departing on random fastest paths are
+ * moved until all of them arrived, checking that
+ *
+ * - vehicles traverse their paths in order without gaps and not faster than
+ *   free-flow speed,
+ * - vehicles leave each segment in the order they entered it from other
+ *   segments (FIFO),
+ * - consecutive vehicles leave a segment no faster than its flow capacity,
+ * - vehicles only enter full segments after being blocked for STUCK_TIME,
+ * - the number of vehicles on segments matches the number of vehicles in
+ *   the model after every step, and
+ * - every vehicle is reported as arrival exactly once, after which the
+ *   model and all segments are empty.
+ *
+ * Usage: LinkQueueModelCheck [seed [vehicles]]
+ *
+ * @author Andreas Poxrucker (DFKI)
+ *
+ */
+public final class LinkQueueModelCheck {
+	// Step length in ms.
+	private static final long STEP = 5000;
+
+	// Interval vehicles depart in in ms.
+	private static final long DEPARTURE_INTERVAL = 1800000;
+
+	// Maximal number of steps until all vehicles must have arrived.
+	private static final int MAX_STEPS = 20000;
+
+	// Tolerance of points in time in seconds.
+	private static final double TOLERANCE = 1e-6;
+
+	/**
+	 * Vehicle recording the segments it left and the respective points in
+	 * time it entered and left them.
+	 */
+	private static final class CheckVehicle extends LinkQueueModel.Vehicle {
+		private final List<StreetSegment> path;
+		private final List<StreetSegment> segments;
+		private final List<double[]> times;
+		private final double departure;
+		private int arrivals;
+
+		CheckVehicle(long id, List<StreetSegment> path, double departure) {
+			super(id, path, departure);
+			this.path = path;
+			this.departure = departure;
+			segments = new ArrayList<StreetSegment>(path.size());
+			times = new ArrayList<double[]>(path.size());
+		}
+
+		@Override
+		protected void segmentLeft(StreetSegment segment, double entered, double left) {
+			segments.add(segment);
+			times.add(new double[] { entered, left });
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		long seed = Checks.getSeed(args);
+		int n = Checks.getSamples(args, 3000);
+		Random rnd = new Random(seed);
+		StreetMap map = CheckNetwork.create(rnd, 20, 20);
+		StreetGraph graph = map.getStreetGraph();
+		map.setTrafficModel(TrafficModel.QUEUE);
+		LinkQueueModel model = map.getLinkQueueModel();
+		StreetRouter router = new StreetRouter(map);
+
+		// Create vehicles departing at random steps.
+		long start = 1000000000000L;
+		int departureSteps = (int) (DEPARTURE_INTERVAL / STEP);
+		List<List<CheckVehicle>> departures = new ArrayList<List<CheckVehicle>>(departureSteps);
+		List<CheckVehicle> vehicles = new ArrayList<CheckVehicle>(n);
+
+		for (int i = 0; i < departureSteps; i++) {
+			departures.add(new ArrayList<CheckVehicle>());
+		}
+
+		for (int i = 0; i < n; i++) {
+			int s = rnd.nextInt(graph.getNumberOfNodes());
+			int t = rnd.nextInt(graph.getNumberOfNodes());
+			List<StreetSegment> path = new ArrayList<StreetSegment>();
+
+			if (router.route(graph.getNode(s), graph.getNode(t), StreetRouter.Mode.CAR, path) <= 0.0) continue;
+			int step = rnd.nextInt(departureSteps);
+			CheckVehicle v = new CheckVehicle(i, path, (start + step * STEP + rnd.nextInt((int) STEP)) / 1000.0);
+			departures.get(step).add(v);
+			vehicles.add(v);
+		}
+
+		// Move vehicles until all arrived.
+		int arrived = 0;
+		int steps = 0;
+
+		while (arrived < vehicles.size()) {
+
+			if (steps == MAX_STEPS)
+				throw new IllegalStateException("Error: " + (vehicles.size() - arrived) + " vehicles did not arrive after " + steps + " steps.");
+
+			if (steps < departureSteps) {
+
+				for (CheckVehicle v : departures.get(steps)) {
+					model.depart(v);
+				}
+			}
+			steps++;
+			model.advance(start + steps * STEP);
+
+			for (LinkQueueModel.Vehicle v : model.getArrivals()) {
+				((CheckVehicle) v).arrivals++;
+				arrived++;
+			}
+			map.commitVehicleChanges();
+			map.updateStreetSegments();
+			int onSegments = 0;
+
+			for (StreetSegment seg : map.getStreetSegments()) {
+				onSegments += seg.getNumberOfVehicles();
+			}
+
+			if (onSegments != model.getNumberOfVehicles())
+				throw new IllegalStateException("Error: " + onSegments + " vehicles on segments but " + model.getNumberOfVehicles() + " in model after step " + steps + ".");
+		}
+
+		if (model.getNumberOfVehicles() != 0)
+			throw new IllegalStateException("Error: Model contains " + model.getNumberOfVehicles() + " vehicles after all arrived.");
+
+		// Check paths and collect passages per segment.
+		Map<StreetSegment, List<double[]>> passages = new IdentityHashMap<StreetSegment, List<double[]>>();
+
+		for (CheckVehicle v : vehicles) {
+			checkVehicle(v);
+
+			for (int i = 0; i < v.segments.size(); i++) {
+				List<double[]> l = passages.get(v.segments.get(i));
+
+				if (l == null) {
+					l = new ArrayList<double[]>();
+					passages.put(v.segments.get(i), l);
+				}
+				double[] times = v.times.get(i);
+				double delay = (i > 0) ? v.times.get(i - 1)[1] - v.times.get(i - 1)[0] - getFreeFlowTime(v.segments.get(i - 1)) : -1.0;
+				l.add(new double[] { times[0], times[1], delay });
+			}
+		}
+		int passed = 0;
+
+		for (Map.Entry<StreetSegment, List<double[]>> e : passages.entrySet()) {
+			checkSegment(e.getKey(), e.getValue());
+			passed += e.getValue().size();
+		}
+		System.out.println("Checked " + vehicles.size() + " vehicles passing " + passed + " segments in " + steps + " steps.");
+	}
+
+	private static void checkVehicle(CheckVehicle v) {
+
+		if (v.arrivals != 1 || !v.hasArrived())
+			throw new IllegalStateException("Error: Vehicle " + v.getId() + " reported " + v.arrivals + " times as arrival.");
+
+		if (!v.segments.equals(v.path))
+			throw new IllegalStateException("Error: Vehicle " + v.getId() + " did not traverse its path in order.");
+		double previous = v.departure;
+
+		for (int i = 0; i < v.segments.size(); i++) {
+			double[] times = v.times.get(i);
+
+			if (Math.abs(times[0] - previous) > TOLERANCE)
+				throw new IllegalStateException("Error: Vehicle " + v.getId() + " entered segment " + i + " at " + times[0] + " instead of " + previous + ".");
+
+			if (times[1] - times[0] < getFreeFlowTime(v.segments.get(i)) - TOLERANCE)
+				throw new IllegalStateException("Error: Vehicle " + v.getId() + " passed segment " + i + " faster than free-flow speed.");
+			previous = times[1];
+		}
+
+		if (Math.abs(v.getArrivalTime() - previous) > TOLERANCE)
+			throw new IllegalStateException("Error: Arrival time of vehicle " + v.getId() + " does not match leaving its last segment.");
+	}
+
+	// Checks FIFO order, flow capacity, and storage capacity of a segment
+	// given entering time, leaving time, and delay on the previous segment
+	// of the vehicles passing it.
+	private static void checkSegment(StreetSegment seg, List<double[]> passages) {
+		double minHeadway = 1.0 / (CongestionKernel.LANES * LinkQueueModel.FLOW_CAPACITY);
+		int capacity = LinkQueueModel.getStorageCapacity(seg);
+
+		for (int i = 0; i < passages.size(); i++) {
+			double[] p = passages.get(i);
+
+			for (int j = 0; j < passages.size(); j++) {
+				double[] q = passages.get(j);
+
+				if (i == j) continue;
+
+				// Departing vehicles are queued before vehicles entering
+				// from other segments during the same step.
+				if (p[2] >= 0.0 && q[2] >= 0.0 && q[0] < p[0] - TOLERANCE && q[1] > p[1] + TOLERANCE)
+					throw new IllegalStateException("Error: Vehicles overtook each other on " + seg + ".");
+
+				if (q[1] >= p[1] && q[1] - p[1] < minHeadway - TOLERANCE)
+					throw new IllegalStateException("Error: Vehicles left " + seg + " faster than its flow capacity.");
+			}
+
+			// Vehicles departing on the segment may exceed its capacity.
+			if (p[2] < 0.0) continue;
+			int occupancy = 0;
+
+			for (int j = 0; j < passages.size(); j++) {
+				double[] q = passages.get(j);
+
+				if (q[0] <= p[0] && q[1] > p[0]) occupancy++;
+			}
+
+			if (occupancy > capacity && p[2] < LinkQueueModel.STUCK_TIME - TOLERANCE)
+				throw new IllegalStateException("Error: Vehicle entered full segment " + seg + " after waiting " + p[2] + " s.");
+		}
+	}
+
+	private static double getFreeFlowTime(StreetSegment seg) {
+		return seg.getLength() / Math.max(seg.getMaxSpeed(), StreetSegment.MIN_DRIVING_SPEED);
+	}
+}
@@ -0,0 +1,57 @@
+package allow.simulator.world;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+
+import allow.simulator.util.Checks;
+import allow.simulator.util.Coordinate;
+import allow.simulator.util.Geometry;
+
+/**
+ * Runnable check of the precomputed geometry of street segments on a
+ * synthetic street map (see CheckNetwork). For a random distance on each
+ * segment, the position returned by StreetSegment.getPosition(...) must
+ * equal the interpolation between the end points of the segment, and the
+ * remaining distance computed as length minus distance travelled must agree
+ * with the great-circle distance to the end point within MAX_DEVIATION.
+ *
+ * Usage: SegmentGeometryCheck [seed]
+ *
+ * @author Andreas Poxrucker (DFKI)
+ *
+ */
+public final class SegmentGeometryCheck {
+	// Maximal deviation of the remaining distance in m.
+	private static final double MAX_DEVIATION = 0.001;
+
+	// Maximal deviation of interpolated positions in degrees.
+	private static final double TOLERANCE = 1e-9;
+
+	public static void main(String[] args) throws IOException {
+		long seed = Checks.getSeed(args);
+		Random rnd = new Random(seed);
+		StreetMap map = CheckNetwork.create(rnd, 40, 40);
+		List<StreetSegment> segments = map.getStreetSegments();
+		Coordinate pos = new Coordinate();
+		double maxDeviation = 0.0;
+
+		for (StreetSegment seg : segments) {
+			double d = rnd.nextDouble() * seg.getLength();
+			double r = d / seg.getLength();
+			Coordinate start = seg.getStartingPoint();
+			Coordinate end = seg.getEndPoint();
+			seg.getPosition(d, pos);
+
+			if (Math.abs(pos.x - (start.x + r * (end.x - start.x))) > TOLERANCE
+					|| Math.abs(pos.y - (start.y + r * (end.y - start.y))) > TOLERANCE)
+				throw new IllegalStateException("Error: Position on " + seg + " at " + d + " m is " + pos + ".");
+			double deviation = Math.abs(Geometry.haversine(pos, end) - (seg.getLength() - d));
+			maxDeviation = Math.max(maxDeviation, deviation);
+
+			if (deviation > MAX_DEVIATION)
+				throw new IllegalStateException("Error: Remaining distance on " + seg + " deviates by " + deviation + " m.");
+		}
+		System.out.println("Checked " + segments.size() + " segments (maximal deviation " + maxDeviation + " m).");
+	}
+}
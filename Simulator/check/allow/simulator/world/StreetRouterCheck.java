@@ -0,0 +1,137 @@
+package allow.simulator.world;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import allow.simulator.util.Checks;
+
+/**
+ * Runnable check comparing the travel times of paths found by StreetRouter
+ * with plain Dijkstra searches on synthetic street maps (see CheckNetwork)
+ * for all modes. Driving speeds of a part of the segments are reduced by
+ * vehicles, such that car routing is checked under congestion as well.
+ * Paths returned by the router must be connected, lead from source to
+ * target, and their travel time must equal the returned travel time.
+ *
+ * Usage: StreetRouterCheck [seed [queries]]
+ *
+ * @author Andreas Poxrucker (DFKI)
+ *
+ */
+public final class StreetRouterCheck {
+	// Relative tolerance of travel times.
+	private static final double TOLERANCE = 1e-9;
+
+	// Orders entries of the Dijkstra queue by distance.
+	private static final Comparator<double[]> DISTANCE_ORDER = new Comparator<double[]>() {
+
+		@Override
+		public int compare(double[] e1, double[] e2) {
+			return Double.compare(e1[0], e2[0]);
+		}
+	};
+
+	public static void main(String[] args) throws IOException {
+		long seed = Checks.getSeed(args);
+		int queries = Checks.getSamples(args, 500);
+		Random rnd = new Random(seed);
+		StreetMap map = CheckNetwork.create(rnd, 40, 40);
+		StreetGraph graph = map.getStreetGraph();
+
+		// Congest some segments.
+		for (int i = 0; i < graph.getNumberOfSegments() / 5; i++) {
+			StreetSegment seg = map.getStreetSegment(rnd.nextInt(graph.getNumberOfSegments()));
+			int n = 1 + rnd.nextInt(20);
+
+			for (int j = 0; j < n; j++) {
+				seg.addVehicle();
+			}
+		}
+		map.commitVehicleChanges();
+		map.updateStreetSegments();
+
+		StreetRouter router = new StreetRouter(map);
+		List<StreetSegment> path = new ArrayList<StreetSegment>();
+		int unreachable = 0;
+
+		for (StreetRouter.Mode mode : StreetRouter.Mode.values()) {
+
+			for (int q = 0; q < queries; q++) {
+				int s = rnd.nextInt(graph.getNumberOfNodes());
+				int t = rnd.nextInt(graph.getNumberOfNodes());
+				path.clear();
+				double time = router.route(graph.getNode(s), graph.getNode(t), mode, path);
+				double expected = dijkstra(router, graph, s, t, mode);
+
+				if (expected == Double.MAX_VALUE) {
+
+					if (time != -1.0)
+						throw new IllegalStateException("Error: Router found a path from " + s + " to " + t + " which does not exist.");
+					unreachable++;
+					continue;
+				}
+
+				if (Math.abs(time - expected) > TOLERANCE * Math.max(1.0, expected))
+					throw new IllegalStateException("Error: Travel time from " + s + " to " + t + " by " + mode + " is " + time + " instead of " + expected + ".");
+				checkPath(router, graph, s, t, mode, path, time);
+			}
+		}
+		System.out.println("Checked " + (StreetRouter.Mode.values().length * queries) + " queries on "
+				+ graph.getNumberOfNodes() + " nodes (" + unreachable + " unreachable).");
+	}
+
+	// Returns the travel time of the fastest path or Double.MAX_VALUE, if
+	// there is no path.
+	private static double dijkstra(StreetRouter router, StreetGraph graph, int s, int t, StreetRouter.Mode mode) {
+		double dist[] = new double[graph.getNumberOfNodes()];
+		Arrays.fill(dist, Double.MAX_VALUE);
+		dist[s] = 0.0;
+		PriorityQueue<double[]> queue = new PriorityQueue<double[]>(64, DISTANCE_ORDER);
+		queue.add(new double[] { 0.0, s });
+
+		while (!queue.isEmpty()) {
+			double entry[] = queue.poll();
+			int u = (int) entry[1];
+
+			if (entry[0] > dist[u]) continue;
+
+			if (u == t) break;
+
+			for (int seg = graph.getFirstOutSegment(u); seg < graph.getFirstOutSegment(u + 1); seg++) {
+				int v = graph.getTarget(seg);
+				double d = dist[u] + router.getTravelTime(seg, mode);
+
+				if (d < dist[v]) {
+					dist[v] = d;
+					queue.add(new double[] { d, v });
+				}
+			}
+		}
+		return dist[t];
+	}
+
+	private static void checkPath(StreetRouter router, StreetGraph graph, int s, int t, StreetRouter.Mode mode, List<StreetSegment> path, double time) {
+		int node = s;
+		double sum = 0.0;
+
+		for (StreetSegment seg : path) {
+
+			if (graph.indexOf(seg.getStartingNode()) != node)
+				throw new IllegalStateException("Error: Path from " + s + " to " + t + " is not connected at " + seg + ".");
+			int next = graph.indexOf(seg.getEndingNode());
+			sum += router.getTravelTime(graph.findSegment(node, next), mode);
+			node = next;
+		}
+
+		if (node != t)
+			throw new IllegalStateException("Error: Path from " + s + " to " + t + " ends at " + node + ".");
+
+		if (Math.abs(sum - time) > TOLERANCE * Math.max(1.0, time))
+			throw new IllegalStateException("Error: Travel time of path from " + s + " to " + t + " is " + sum + " instead of " + time + ".");
+	}
+}
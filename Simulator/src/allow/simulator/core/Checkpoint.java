@@ -0,0 +1,172 @@
+package allow.simulator.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import allow.simulator.entity.Entity;
+import allow.simulator.util.RandomStream;
+import allow.simulator.world.IWorld;
+
+/**
+ * Writes and restores the state of a simulation to and from a compressed
+ * binary file. A checkpoint contains time, statistics, the number of vehicles
+ * on street segments, and the state of all entities including their random
+ * number streams. Static data (street network, transit data, population) is
+ * not included, such that a checkpoint must be restored into a simulation set
+ * up from the same configuration.
+ *
+ * Checkpoints only cover quiescent simulations, i.e. no person or vehicle
+ * is executing a journey or trip. In-flight state (flows of activities,
+ * trips of buses and their passengers, queued vehicles, and pending journey
+ * requests) is not written. Simulator.writeCheckpoint(...) defers writing
+ * until the simulation is quiescent, but at most by MAX_DELAY, which covers
+ * schedules where service pauses at night. Knowledge
+ * stored in the EvoKnowledge database is copied to tables prefixed by the
+ * name of the checkpoint file, which replace the tables of the simulation
+ * the checkpoint is restored into.
+ *
+ * @author Andreas Poxrucker (DFKI)
+ *
+ */
+public final class Checkpoint {
+	// Identifies checkpoint files.
+	private static final int MAGIC = 0x414c4f57;
+
+	// Version of the format.
+	private static final int VERSION = 2;
+
+	// Maximal delay in ms of writing a checkpoint until the simulation is quiescent.
+	public static final long MAX_DELAY = 24 * 3600 * 1000L;
+
+	// Prefix of the database tables holding the knowledge of checkpoints.
+	private static final String KNOWLEDGE_PREFIX = "ckpt_";
+
+	// Types of entities whose state is written, in order.
+	private static final Entity.Type TYPES[] = Entity.Type.values();
+
+	// Orders entities by Id.
+	private static final Comparator<Entity> ID_ORDER = new Comparator<Entity>() {
+
+		@Override
+		public int compare(Entity e1, Entity e2) {
+			return Long.compare(e1.getId(), e2.getId());
+		}
+	};
+
+	private Checkpoint() { }
+
+	/**
+	 * Checks, if a checkpoint of the simulation can be written, i.e. all
+	 * persons and vehicles are idle and there are no pending journey requests.
+	 *
+	 * @param context Context of the simulation.
+	 * @return True, if the simulation is quiescent, false otherwise.
+	 */
+	public static boolean isQuiescent(Context context) {
+		IWorld world = context.getWorld();
+		Entity.Type moving[] = { Entity.Type.PERSON, Entity.Type.BUS, Entity.Type.FLEXIBUS, Entity.Type.TRAIN };
+
+		for (Entity.Type type : moving) {
+
+			for (Entity e : world.getEntitiesOfType(type)) {
+
+				if (!e.getFlow().isIdle()) return false;
+			}
+		}
+		return world.getUrbanMobilitySystem().getRequestQueue().isEmpty();
+	}
+
+	/**
+	 * Writes a checkpoint of the simulation.
+	 *
+	 * @param context Context of the simulation.
+	 * @param simulatorRandom Random stream of the simulator.
+	 * @param path Path of the file to write.
+	 * @throws IOException
+	 */
+	public static void write(Context context, RandomStream simulatorRandom, Path path) throws IOException {
+
+		if (!isQuiescent(context))
+			throw new IllegalStateException("Error: Checkpoints can only be written while all persons and vehicles are idle.");
+
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(path))))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			context.getTime().writeState(out);
+			out.writeLong(simulatorRandom.getState());
+			String knowledgePrefix = getKnowledgePrefix(path);
+			context.getEvoKnowledgeService().getConnector().saveTables(knowledgePrefix);
+			out.writeUTF(knowledgePrefix);
+			context.getStatistics().writeState(out);
+			context.getWorld().getStreetMap().writeState(out);
+
+			for (Entity.Type type : TYPES) {
+				List<Entity> entities = new ArrayList<Entity>(context.getWorld().getEntitiesOfType(type));
+				Collections.sort(entities, ID_ORDER);
+				out.writeInt(entities.size());
+
+				for (Entity e : entities) {
+					out.writeLong(e.getId());
+					e.writeState(out);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Restores a checkpoint written by write(...).
+	 *
+	 * @param context Context of the simulation.
+	 * @param simulatorRandom Random stream of the simulator.
+	 * @param path Path of the file to read.
+	 * @throws IOException
+	 */
+	public static void read(Context context, RandomStream simulatorRandom, Path path) throws IOException {
+
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(Files.newInputStream(path))))) {
+
+			if (in.readInt() != MAGIC)
+				throw new IllegalArgumentException("Error: " + path + " is not a checkpoint.");
+			int version = in.readInt();
+
+			if (version != VERSION)
+				throw new IllegalArgumentException("Error: Unsupported checkpoint version " + version + ".");
+			context.getTime().readState(in);
+			simulatorRandom.setState(in.readLong());
+			context.getEvoKnowledgeService().getConnector().restoreTables(in.readUTF());
+			context.getStatistics().readState(in);
+			context.getWorld().getStreetMap().readState(in);
+
+			for (Entity.Type type : TYPES) {
+				int n = in.readInt();
+
+				for (int i = 0; i < n; i++) {
+					long id = in.readLong();
+					Entity e = context.getWorld().getEntityById(id);
+
+					if ((e == null) || (e.getType() != type))
+						throw new IllegalStateException("Error: Entity " + id + " of type " + type + " does not exist in simulation.");
+					e.readState(in);
+				}
+			}
+		}
+	}
+
+	// Derives the prefix of the knowledge tables of a checkpoint from the
+	// name of its file.
+	private static String getKnowledgePrefix(Path path) {
+		String name = path.getFileName().toString().toLowerCase().replaceAll("[^a-z0-9]", "_");
+		return KNOWLEDGE_PREFIX + ((name.length() > 32) ? name.substring(0, 32) : name);
+	}
+}
@@ -3,6 +3,7 @@ package allow.simulator.core;
 import java.util.List;
 
 import allow.simulator.ensemble.EnsembleManager;
+import allow.simulator.entity.knowledge.EvoKnowledgeService;
 import allow.simulator.mobility.data.IDataService;
 import allow.simulator.mobility.planner.IPlannerService;
 import allow.simulator.statistics.Statistics;
@@ -44,6 +45,12 @@ public class Context {
 	// (Externally) provided simulation parameters.
 	private SimulationParameter params;
 	
+	// Random number streams.
+	private RandomService random;
+	
+	// EvoKnowledge database and predictions.
+	private EvoKnowledgeService knowledge;
+	
 	/**
 	 * Constructor.
 	 * Creates new context.
@@ -53,6 +60,8 @@ public class Context {
 	 * @param dataServices Data services to be used.
 	 * @param plannerService Planner services to be used.
 	 * @param weather Current weather.
+	 * @param random Random service providing random number streams.
+	 * @param knowledge EvoKnowledge service of the simulation.
 	 */
 	public Context(IWorld world,
 			Time time,
@@ -62,7 +71,9 @@ public class Context {
 			Weather weather,
 			Statistics stats,
 			EnsembleManager ensembleManager,
-			SimulationParameter params) {
+			SimulationParameter params,
+			RandomService random,
+			EvoKnowledgeService knowledge) {
 		this.world = world;
 		this.time = time;
 		this.dataServices = dataServices;
@@ -72,6 +83,8 @@ public class Context {
 		this.stats = stats;
 		this.ensembleManager = ensembleManager;
 		this.params = params;
+		this.random = random;
+		this.knowledge = knowledge;
 	}
 	
 	/**
@@ -155,4 +168,23 @@ public class Context {
 	public SimulationParameter getSimulationParameters() {
 		return params;
 	}
+	
+	/**
+	 * Returns the random service providing the random number streams of the
+	 * simulation.
+	 * 
+	 * @return Random service of the simulation.
+	 */
+	public RandomService getRandomService() {
+		return random;
+	}
+	
+	/**
+	 * Returns the EvoKnowledge service of the simulation.
+	 * 
+	 * @return EvoKnowledge service of the simulation.
+	 */
+	public EvoKnowledgeService getEvoKnowledgeService() {
+		return knowledge;
+	}
 }
@@ -0,0 +1,310 @@
+package allow.simulator.core;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import allow.simulator.entity.Entity;
+import allow.simulator.statistics.Statistics;
+import allow.simulator.world.IWorld;
+
+/**
+ * Drives the simulation without NetLogo. Each step executes the Urban
+ * Mobility System, transport agencies, buses, and persons directly in the
+ * same way the NetLogo primitives do and advances the simulator afterwards.
+ * Buses and persons are executed in parallel in two separate phases. Only
+ * persons which are active or whose next scheduled activity is due are
+ * executed (see PersonScheduler). Results of the parallel phases are
+ * applied ordered by entity Id, so runs using the same seed produce the same
+ * results independent of the number of threads, provided the journey
+ * planners and the EvoKnowledge database answer the same requests the same
+ * way.
+ *
+ * Usage: HeadlessSimulation config runNumber[-lastRunNumber] knowledgeModel days output [gridExtent [threads [seed]]] [Name=value ...]
+ *
+ * Arguments of the form Name=value set further simulation parameters, e.g.
+ * TrafficModel=queue (see SimulationParameter.setOption(...)).
+ *
+ * If a range of run numbers is given, the runs are executed concurrently
+ * sharing the street map, transit data, and weather model. Statistics of
+ * each run are written to the output path suffixed with the run number. The
+ * seed of a run is the given seed plus its run number.
+ *
+ * A checkpoint is restored after setup if system property
+ * allow.checkpoint.load is set. If system property allow.checkpoint.save is
+ * set, the simulation continues after the given number of days until all
+ * persons and vehicles are idle and writes a checkpoint. The simulation
+ * fails if they do not become idle within one more simulated day.
+ *
+ * @author Andreas Poxrucker (DFKI)
+ *
+ */
+public class HeadlessSimulation {
+	// Default extent of the neighbourhood grid (corresponds to NetLogo's default world).
+	public static final int DEFAULT_GRID_EXTENT = 16;
+
+	// Time interval of a step in seconds.
+	public static final int DELTA_T = 5;
+	
+	// System properties specifying checkpoints to restore and write.
+	public static final String CHECKPOINT_LOAD = "allow.checkpoint.load";
+	public static final String CHECKPOINT_SAVE = "allow.checkpoint.save";
+
+	// Simulator to drive.
+	private Simulator simulator;
+	
+	// Executor for buses and persons.
+	private ParallelExecutor executor;
+
+	/**
+	 * Constructor.
+	 * Creates a new driver for the given simulator which must have been set up
+	 * using setupHeadless(...) before.
+	 *
+	 * @param simulator Simulator to drive.
+	 * @param parallelism Number of threads to execute entities.
+	 */
+	public HeadlessSimulation(Simulator simulator, int parallelism) {
+		this.simulator = simulator;
+		executor = new ParallelExecutor(parallelism);
+	}
+
+	/**
+	 * Executes one step of the simulation. Transport agencies are executed
+	 * with their own update period.
+	 *
+	 * @param deltaT Time interval for this step.
+	 */
+	public void step(int deltaT) {
+		Context ctx = simulator.getContext();
+		IWorld world = ctx.getWorld();
+		double dt = ctx.getTime().getDeltaT();
+
+		// Execute transport agencies.
+		int agencyPeriod = ctx.getSimulationParameters().AgencyUpdatePeriod;
+		
+		if (ctx.getTime().isDue(agencyPeriod)) {
+
+			List<Entity> agencies = world.getEntitiesOfType(Entity.Type.PUBLICTRANSPORTAGENCY);
+
+			for (int i = 0; i < agencies.size(); i++) {
+				executeAgency(agencies.get(i), agencyPeriod);
+			}
+			agencies = world.getEntitiesOfType(Entity.Type.FLEXIBUSAGENCY);
+
+			for (int i = 0; i < agencies.size(); i++) {
+				executeAgency(agencies.get(i), agencyPeriod);
+			}
+		}
+
+		// Execute buses and persons.
+		executor.executeVehicles(world.getEntitiesOfType(Entity.Type.BUS), dt);
+		List<Entity> persons = simulator.getPersonScheduler().getPersonsToExecute();
+		executor.executePersons(persons, dt);
+
+		// Exchange knowledge.
+		for (int i = 0; i < persons.size(); i++) {
+			Entity p = persons.get(i);
+
+			if (!p.getFlow().isIdle()) {
+				p.exchangeKnowledge();
+			}
+		}
+
+		// Smart Planner execution.
+		TickProfiler profiler = simulator.getProfiler();
+		long t = profiler.start();
+		world.getUrbanMobilitySystem().getFlow().executeActivity(dt);
+		profiler.stop(TickProfiler.Phase.JOURNEY_PLANNER, t);
+
+		// Update simulator.
+		simulator.tick(deltaT);
+	}
+
+	/**
+	 * Shuts down the threads used to execute entities.
+	 */
+	public void finish() {
+		executor.shutdown();
+	}
+
+	private static void executeAgency(Entity agency, double deltaT) {
+
+		if (agency.getFlow().getCurrentActivity() != null) {
+			agency.getFlow().executeActivity(deltaT);
+		}
+	}
+
+	/**
+	 * Writes current time, weather, and statistics in the order reported by
+	 * the NetLogo tick reporter as one line.
+	 *
+	 * @param wr Writer to write line to.
+	 * @throws IOException
+	 */
+	public void writeStatistics(BufferedWriter wr) throws IOException {
+		Context ctx = simulator.getContext();
+		Statistics s = ctx.getStatistics();
+		StringBuilder line = new StringBuilder();
+		line.append(ctx.getTime().toString()).append(';');
+		line.append(ctx.getWeather().getCurrentState().getDescription()).append(';');
+		line.append(s.getMeanPriorCarTravelTime()).append(';');
+		line.append(s.getMeanPosteriorCarTravelTime()).append(';');
+		line.append(s.getMeanPriorBusTravelTime()).append(';');
+		line.append(s.getMeanPosteriorBusTravelTime()).append(';');
+		line.append(s.getMeanBusPreference()).append(';');
+		line.append(s.getMeanCarPreference()).append(';');
+		line.append(s.getCarJourneyRatio()).append(';');
+		line.append(s.getTransitJourneyRatio()).append(';');
+		line.append(s.getBikeJourneyRatio()).append(';');
+		line.append(s.getWalkJourneyRatio()).append(';');
+		line.append(s.getMeanBusFillingLevel()).append(';');
+		line.append(s.getMeanPriorUtilityCar()).append(';');
+		line.append(s.getMeanPosteriorUtilityCar()).append(';');
+		line.append(s.getMeanPriorUtilityBus()).append(';');
+		line.append(s.getMeanPosteriorUtilityBus()).append(';');
+		line.append(s.getTaxiJourneyRatio()).append(';');
+		line.append(s.getMeanReplaningWaitingTime());
+		wr.write(line.toString());
+		wr.newLine();
+	}
+
+	/**
+	 * Sets up a simulator and executes it for the given number of days
+	 * writing statistics after each step.
+	 * 
+	 * @param config Configuration of the simulation.
+	 * @param params Parameters of the simulation run.
+	 * @param sharedData Data shared with other simulations.
+	 * @param days Number of days to simulate.
+	 * @param output Path to write statistics to.
+	 * @param extent Extent of the neighbourhood grid.
+	 * @param threads Number of threads to execute entities.
+	 * @param load Path of checkpoint to restore or null.
+	 * @param save Path of checkpoint to write or null.
+	 * @throws IOException
+	 */
+	public static void run(Configuration config, SimulationParameter params, SharedData sharedData,
+			int days, Path output, int extent, int threads, Path load, Path save) throws IOException {
+		Simulator simulator = new Simulator(sharedData);
+		simulator.setupHeadless(config, params, -extent, extent, -extent, extent);
+		
+		if (load != null) {
+			simulator.readCheckpoint(load);
+		}
+		HeadlessSimulation driver = new HeadlessSimulation(simulator, threads);
+		simulator.getContext().getStatistics().updateGlobalStatistics(simulator.getContext());
+		long stepsPerDay = 24 * 3600 / DELTA_T;
+		long steps = days * stepsPerDay;
+
+		try (BufferedWriter wr = Files.newBufferedWriter(output, Charset.defaultCharset())) {
+			driver.writeStatistics(wr);
+
+			for (long i = 0; i < steps; i++) {
+				driver.step(DELTA_T);
+				driver.writeStatistics(wr);
+			}
+
+			if (save != null && !simulator.writeCheckpoint(save)) {
+				// Continue until checkpoint can be written (at most one simulated
+				// day, see Checkpoint.MAX_DELAY).
+				do {
+					driver.step(DELTA_T);
+					driver.writeStatistics(wr);
+					
+				} while (!simulator.writePendingCheckpoint());
+			}
+			
+		} finally {
+			driver.finish();
+			simulator.finish();
+		}
+	}
+	
+	public static void main(String[] args) throws IOException {
+		final SimulationParameter options = new SimulationParameter();
+		args = options.setOptions(args);
+
+		if (args.length < 5) {
+			System.out.println("Usage: HeadlessSimulation config runNumber[-lastRunNumber] knowledgeModel days output [gridExtent [threads [seed]]] [Name=value ...]");
+			System.out.println("Options: " + SimulationParameter.OPTIONS);
+			return;
+		}
+		final Configuration config = Configuration.fromJSON(Paths.get(args[0]));
+		String runs[] = args[1].split("-");
+		final int firstRun = Integer.parseInt(runs[0]);
+		final int lastRun = (runs.length > 1) ? Integer.parseInt(runs[1]) : firstRun;
+		final String knowledgeModel = args[2];
+		final int days = Integer.parseInt(args[3]);
+		final Path output = Paths.get(args[4]);
+		final int extent = (args.length > 5) ? Integer.parseInt(args[5]) : DEFAULT_GRID_EXTENT;
+		final Long seed = (args.length > 7) ? Long.parseLong(args[7]) : null;
+		String load = System.getProperty(CHECKPOINT_LOAD);
+		String save = System.getProperty(CHECKPOINT_SAVE);
+		final SharedData sharedData = new SharedData();
+		
+		if (firstRun == lastRun) {
+			int threads = (args.length > 6) ? Integer.parseInt(args[6]) : Runtime.getRuntime().availableProcessors();
+			run(config, createParameters(options, firstRun, knowledgeModel, (seed != null) ? seed : firstRun), sharedData, days, output, extent, threads,
+					(load != null) ? Paths.get(load) : null, (save != null) ? Paths.get(save) : null);
+			return;
+		}
+		
+		if (lastRun < firstRun)
+			throw new IllegalArgumentException("Error: Last run number must not be less than first run number.");
+		
+		if ((load != null) || (save != null))
+			throw new IllegalArgumentException("Error: Checkpoints are not supported when executing several runs.");
+		
+		// Execute runs concurrently sharing data loaded during setup.
+		int nRuns = lastRun - firstRun + 1;
+		int cores = Runtime.getRuntime().availableProcessors();
+		ExecutorService pool = Executors.newFixedThreadPool(Math.min(nRuns, cores));
+		final int threads = (args.length > 6) ? Integer.parseInt(args[6]) : Math.max(1, cores / nRuns);
+		List<Future<Void>> results = new ArrayList<Future<Void>>(nRuns);
+		
+		for (int run = firstRun; run <= lastRun; run++) {
+			final int runNumber = run;
+			results.add(pool.submit(new Callable<Void>() {
+
+				@Override
+				public Void call() throws Exception {
+					Path runOutput = output.resolveSibling(output.getFileName() + "." + runNumber);
+					run(config, createParameters(options, runNumber, knowledgeModel, (seed != null) ? seed + runNumber : runNumber), sharedData, days, runOutput, extent, threads, null, null);
+					return null;
+				}
+			}));
+		}
+		pool.shutdown();
+		
+		try {
+			for (Future<Void> result : results) {
+				result.get();
+			}
+			
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			
+		} catch (ExecutionException e) {
+			throw new IOException(e.getCause());
+		}
+	}
+	
+	private static SimulationParameter createParameters(SimulationParameter options, int runNumber, String knowledgeModel, long seed) {
+		SimulationParameter params = new SimulationParameter(options);
+		params.BehaviourSpaceRunNumber = runNumber;
+		params.KnowledgeModel = knowledgeModel;
+		params.Seed = seed;
+		return params;
+	}
+}
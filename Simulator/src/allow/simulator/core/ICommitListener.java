@@ -0,0 +1,22 @@
+package allow.simulator.core;
+
+/**
+ * Listener which is notified by the simulator after changes of shared state
+ * made by entities during a step have been committed and before the street
+ * network is updated, e.g. to synchronize a shard of a sharded simulation
+ * with other shards.
+ * 
+ * @author Andreas Poxrucker (DFKI)
+ *
+ */
+public interface ICommitListener {
+
+	/**
+	 * Called after changes of the last step have been committed. Entities are
+	 * not executed concurrently to this call.
+	 * 
+	 * @param context Context of the simulation.
+	 */
+	void changesCommitted(Context context);
+	
+}
@@ -0,0 +1,26 @@
+package allow.simulator.core;
+
+import allow.simulator.entity.Person;
+
+/**
+ * Filter deciding which persons of the population loaded during setup are
+ * added to a simulation, e.g. to load only the persons owned by a shard of a
+ * sharded simulation. Persons which are not accepted are discarded.
+ *
+ * @author Andreas Poxrucker (DFKI)
+ *
+ */
+public interface IPersonFilter {
+
+	/**
+	 * Called for each person of the population before it is added to the
+	 * simulation. The context of the person is not set yet.
+	 *
+	 * @param p Person to add.
+	 * @param definition Definition the person was created from (see
+	 * Simulator.createPerson(...)).
+	 * @return True, if the person is added, false otherwise.
+	 */
+	boolean accept(Person p, String definition);
+
+}
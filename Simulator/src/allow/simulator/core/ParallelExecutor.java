@@ -0,0 +1,148 @@
+package allow.simulator.core;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import allow.simulator.entity.Entity;
+import allow.simulator.entity.Person;
+
+/**
+ * Executes the flows of entities in parallel using a ForkJoinPool.
+ *
+ * Entities executed in the same phase must only read shared state (e.g.
+ * street segments, stops, passenger lists) as of the last step. Changes to
+ * shared state are buffered by the respective classes and committed by
+ * Simulator.tick(...) after all entities have been executed.
+ *
+ * @author Andreas Poxrucker (DFKI)
+ *
+ */
+public class ParallelExecutor {
+	// Minimal number of entities a task executes without splitting further.
+	private static final int THRESHOLD = 256;
+
+	/**
+	 * Step executed for each entity.
+	 */
+	private interface Step {
+		void execute(Entity e, double deltaT);
+	}
+
+	// Executes a step of a means of transportation.
+	private static final Step VEHICLE_STEP = new Step() {
+
+		@Override
+		public void execute(Entity e, double deltaT) {
+
+			if (!e.getFlow().isIdle()) {
+				e.getFlow().executeActivity(deltaT);
+			}
+		}
+	};
+
+	// Starts scheduled activities of a person and executes a step.
+	private static final Step PERSON_STEP = new Step() {
+
+		@Override
+		public void execute(Entity e, double deltaT) {
+			((Person) e).startScheduledActivity();
+
+			if (!e.getFlow().isIdle()) {
+				e.getFlow().executeActivity(deltaT);
+			}
+		}
+	};
+
+	private static final class StepTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final List<Entity> entities;
+		private final int from;
+		private final int to;
+		private final double deltaT;
+		private final Step step;
+
+		StepTask(List<Entity> entities, int from, int to, double deltaT, Step step) {
+			this.entities = entities;
+			this.from = from;
+			this.to = to;
+			this.deltaT = deltaT;
+			this.step = step;
+		}
+
+		@Override
+		protected void compute() {
+
+			if (to - from <= THRESHOLD) {
+
+				for (int i = from; i < to; i++) {
+					step.execute(entities.get(i), deltaT);
+				}
+				return;
+			}
+			int mid = (from + to) >>> 1;
+			invokeAll(new StepTask(entities, from, mid, deltaT, step),
+					new StepTask(entities, mid, to, deltaT, step));
+		}
+	}
+
+	// Pool executing the tasks or null if entities are executed sequentially.
+	private ForkJoinPool pool;
+
+	/**
+	 * Constructor.
+	 * Creates a new executor using the given number of threads. A parallelism
+	 * of 1 executes entities sequentially in the calling thread.
+	 *
+	 * @param parallelism Number of threads to use.
+	 */
+	public ParallelExecutor(int parallelism) {
+
+		if (parallelism < 1)
+			throw new IllegalArgumentException("Error: Parallelism must be at least 1.");
+		pool = (parallelism > 1) ? new ForkJoinPool(parallelism) : null;
+	}
+
+	/**
+	 * Executes one step of the given means of transportation.
+	 *
+	 * @param vehicles Means of transportation to execute.
+	 * @param deltaT Time interval for this step.
+	 */
+	public void executeVehicles(List<Entity> vehicles, double deltaT) {
+		execute(vehicles, deltaT, VEHICLE_STEP);
+	}
+
+	/**
+	 * Starts due scheduled activities of the given persons and executes one
+	 * step.
+	 *
+	 * @param persons Persons to execute.
+	 * @param deltaT Time interval for this step.
+	 */
+	public void executePersons(List<Entity> persons, double deltaT) {
+		execute(persons, deltaT, PERSON_STEP);
+	}
+
+	private void execute(List<Entity> entities, double deltaT, Step step) {
+
+		if (pool == null) {
+
+			for (int i = 0; i < entities.size(); i++) {
+				step.execute(entities.get(i), deltaT);
+			}
+			return;
+		}
+		pool.invoke(new StepTask(entities, 0, entities.size(), deltaT, step));
+	}
+
+	/**
+	 * Shuts down the underlying thread pool.
+	 */
+	public void shutdown() {
+
+		if (pool != null) {
+			pool.shutdown();
+		}
+	}
+}
@@ -0,0 +1,318 @@
+package allow.simulator.core;
+
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import allow.simulator.entity.Entity;
+import allow.simulator.entity.Person;
+import allow.simulator.flow.activity.Activity;
+import allow.simulator.flow.activity.IDeferredActivity;
+import allow.simulator.util.Pair;
+
+/**
+ * Keeps track of the persons which need to be executed in a step. Persons
+ * with a non-idle flow are kept in a list of active persons. Idle persons
+ * are kept in a priority queue ordered by the point in time the next
+ * activity of their scheduling queue is due, such that persons staying at
+ * home are not visited until their next activity starts. Likewise, persons
+ * executing a deferred activity (e.g. walking along a scheduled path, see
+ * IDeferredActivity) are only executed again in the step the activity needs
+ * to be resumed in or after they have been resumed by resume(...). Until
+ * then, they are not visited at all and their position is derived from the
+ * activity on request (see Entity.setDeferredActivity(...)).
+ *
+ * The schedule of an idle person must be passed to schedule(...) whenever
+ * its scheduling queue changes (e.g. after generating a new day plan).
+ *
+ * @author Andreas Poxrucker (DFKI)
+ *
+ */
+public class PersonScheduler {
+
+	/**
+	 * Point in time an idle person needs to be woken up.
+	 */
+	private static final class WakeUp {
+		private final LocalDateTime due;
+		private final Person person;
+
+		WakeUp(LocalDateTime due, Person person) {
+			this.due = due;
+			this.person = person;
+		}
+	}
+
+	/**
+	 * Point in time a moving person needs to be executed again.
+	 */
+	private static final class Arrival {
+		private final long due;
+		private final Person person;
+
+		Arrival(long due, Person person) {
+			this.due = due;
+			this.person = person;
+		}
+	}
+
+	// Orders wake ups by point in time and Id of the person.
+	private static final Comparator<WakeUp> WAKE_UP_ORDER = new Comparator<WakeUp>() {
+
+		@Override
+		public int compare(WakeUp w1, WakeUp w2) {
+			int c = w1.due.compareTo(w2.due);
+			return (c != 0) ? c : Long.compare(w1.person.getId(), w2.person.getId());
+		}
+	};
+
+	// Orders arrivals by point in time and Id of the person.
+	private static final Comparator<Arrival> ARRIVAL_ORDER = new Comparator<Arrival>() {
+
+		@Override
+		public int compare(Arrival a1, Arrival a2) {
+			int c = Long.compare(a1.due, a2.due);
+			return (c != 0) ? c : Long.compare(a1.person.getId(), a2.person.getId());
+		}
+	};
+
+	// Orders entities by Id.
+	private static final Comparator<Entity> ID_ORDER = new Comparator<Entity>() {
+
+		@Override
+		public int compare(Entity e1, Entity e2) {
+			return Long.compare(e1.getId(), e2.getId());
+		}
+	};
+
+	// Simulated time.
+	private Time time;
+
+	// Wake ups of idle persons. May contain outdated entries.
+	private PriorityQueue<WakeUp> wakeUps;
+
+	// Currently valid wake up time per person Id.
+	private Map<Long, LocalDateTime> validWakeUps;
+
+	// Arrivals of moving persons which are due at a known point in time. May
+	// contain outdated entries.
+	private PriorityQueue<Arrival> arrivals;
+
+	// Currently valid arrival per person Id.
+	private Map<Long, Arrival> validArrivals;
+
+	// Persons with non-idle flow sorted by Id.
+	private List<Entity> active;
+	private Set<Entity> activeSet;
+
+	/**
+	 * Constructor.
+	 * Creates a new scheduler without any scheduled persons.
+	 *
+	 * @param time Simulated time.
+	 */
+	public PersonScheduler(Time time) {
+		this.time = time;
+		wakeUps = new PriorityQueue<WakeUp>(1024, WAKE_UP_ORDER);
+		validWakeUps = new HashMap<Long, LocalDateTime>();
+		arrivals = new PriorityQueue<Arrival>(1024, ARRIVAL_ORDER);
+		validArrivals = new HashMap<Long, Arrival>();
+		active = new ArrayList<Entity>();
+		activeSet = new HashSet<Entity>();
+	}
+
+	/**
+	 * Schedules a person according to the current state of its flow and
+	 * scheduling queue. Active persons are executed in the next step, idle
+	 * persons are woken up as soon as the next scheduled activity is due.
+	 *
+	 * @param p Person to schedule.
+	 */
+	public void schedule(Person p) {
+
+		if (!p.getFlow().isIdle()) {
+			validWakeUps.remove(p.getId());
+
+			if (!validArrivals.containsKey(p.getId()) && activeSet.add(p)) {
+				active.add(p);
+				Collections.sort(active, ID_ORDER);
+			}
+			return;
+		}
+		Pair<LocalTime, Activity> next = p.getScheduleQueue().peek();
+
+		if (next == null) {
+			validWakeUps.remove(p.getId());
+			return;
+		}
+		LocalDateTime due = time.getCurrentDateTime();
+
+		if (next.first.compareTo(time.getCurrentTime()) > 0) {
+			due = due.with(next.first);
+		}
+		validWakeUps.put(p.getId(), due);
+		wakeUps.add(new WakeUp(due, p));
+	}
+
+	/**
+	 * Removes a person from the scheduler, e.g. when it is handed off to
+	 * another shard of a sharded simulation. The person must be idle.
+	 *
+	 * @param p Person to remove.
+	 */
+	public void unschedule(Person p) {
+		validWakeUps.remove(p.getId());
+
+		if (validArrivals.remove(p.getId()) != null) {
+			p.setDeferredActivity(null);
+		}
+
+		if (activeSet.remove(p)) {
+			active.remove(p);
+		}
+	}
+
+	/**
+	 * Resumes a person which was put aside until it is notified, e.g. when
+	 * its car arrived (see IDeferredActivity.ON_NOTIFICATION). The person is
+	 * executed in the next step. Persons which have not been put aside are
+	 * not affected.
+	 *
+	 * @param p Person to resume.
+	 */
+	public void resume(Person p) {
+
+		if (validArrivals.remove(p.getId()) == null) {
+			return;
+		}
+		p.setDeferredActivity(null);
+
+		if (activeSet.add(p)) {
+			active.add(p);
+			Collections.sort(active, ID_ORDER);
+		}
+	}
+
+	/**
+	 * Returns the persons to execute in the current step sorted by Id. Persons
+	 * which became idle during the last step are rescheduled, persons whose
+	 * deferred activity does not need to be resumed in the current step are
+	 * put aside, and activities of idle persons which are due at the current
+	 * time are started.
+	 *
+	 * @return Persons with non-idle flow.
+	 */
+	public List<Entity> getPersonsToExecute() {
+		// Move persons which became idle to the queue of wake ups and moving
+		// persons which do not arrive in this step to the queue of arrivals.
+		long step = time.getTimestamp();
+		long deltaT = time.getDeltaT() * 1000L;
+		int n = 0;
+
+		for (int i = 0; i < active.size(); i++) {
+			Person p = (Person) active.get(i);
+
+			if (p.getFlow().isIdle()) {
+				activeSet.remove(p);
+				schedule(p);
+				continue;
+			}
+			Activity current = p.getFlow().getCurrentActivity();
+			long arrival = (current instanceof IDeferredActivity)
+					? ((IDeferredActivity) current).getResumeTime() : -1;
+
+			if (arrival - deltaT > step) {
+				// Execute person in the first step ending at or after arrival.
+				Arrival a = new Arrival(arrival - deltaT, p);
+				activeSet.remove(p);
+				validArrivals.put(p.getId(), a);
+				p.setDeferredActivity((IDeferredActivity) current);
+
+				if (arrival != IDeferredActivity.ON_NOTIFICATION) arrivals.add(a);
+
+			} else {
+				active.set(n++, p);
+			}
+		}
+		active.subList(n, active.size()).clear();
+		boolean added = false;
+
+		// Resume moving persons which arrive in this step.
+		while (!arrivals.isEmpty() && arrivals.peek().due <= step) {
+			Arrival a = arrivals.poll();
+
+			if (validArrivals.get(a.person.getId()) != a) {
+				continue;
+			}
+			validArrivals.remove(a.person.getId());
+			a.person.setDeferredActivity(null);
+
+			if (activeSet.add(a.person)) {
+				active.add(a.person);
+				added = true;
+			}
+		}
+		// Start due activities.
+		LocalDateTime now = time.getCurrentDateTime();
+
+		while (!wakeUps.isEmpty() && !wakeUps.peek().due.isAfter(now)) {
+			WakeUp w = wakeUps.poll();
+
+			if (!w.due.equals(validWakeUps.get(w.person.getId()))) {
+				continue;
+			}
+			validWakeUps.remove(w.person.getId());
+			w.person.startScheduledActivity();
+
+			if (w.person.getFlow().isIdle()) {
+				schedule(w.person);
+
+			} else if (activeSet.add(w.person)) {
+				active.add(w.person);
+				added = true;
+			}
+		}
+
+		if (added) {
+			Collections.sort(active, ID_ORDER);
+		}
+		return active;
+	}
+
+	/**
+	 * Returns the persons whose flow became idle during the current step,
+	 * e.g. because they finished a journey, sorted by Id. Only persons
+	 * executed in the current step are visited, as the flow of other persons
+	 * does not change.
+	 *
+	 * @return Persons which became idle since the last call of
+	 * getPersonsToExecute().
+	 */
+	public List<Person> getNewlyIdlePersons() {
+		List<Person> idle = new ArrayList<Person>();
+
+		for (Entity e : active) {
+
+			if (e.getFlow().isIdle()) idle.add((Person) e);
+		}
+		return idle;
+	}
+
+	/**
+	 * Returns the number of persons currently having a non-idle flow which
+	 * are executed in the current step.
+	 *
+	 * @return Number of active persons.
+	 */
+	public int getNumberOfActivePersons() {
+		return active.size();
+	}
+}
@@ -0,0 +1,74 @@
+package allow.simulator.core;
+
+import allow.simulator.util.RandomStream;
+
+/**
+ * Provides the random number streams of a simulation run. All streams are
+ * derived from a single master seed and the id of the entity or the name of
+ * the subsystem using it. Hence, the numbers drawn by an entity neither
+ * depend on the order in which streams are created nor on the order in which
+ * entities are executed, such that runs with the same seed are reproducible
+ * independent of the number of threads.
+ *
+ * @author Andreas Poxrucker (DFKI)
+ *
+ */
+public class RandomService {
+	// Salts separating entity streams from subsystem streams.
+	private static final long ENTITY_SALT = 0x632be59bd9b4e019L;
+	private static final long SUBSYSTEM_SALT = 0x8cb92ba72f3d8dd7L;
+
+	// Seed all streams are derived from.
+	private final long masterSeed;
+
+	/**
+	 * Constructor.
+	 * Creates a new random service using the given master seed.
+	 *
+	 * @param masterSeed Seed all streams are derived from.
+	 */
+	public RandomService(long masterSeed) {
+		this.masterSeed = masterSeed;
+	}
+
+	/**
+	 * Returns the master seed of this service.
+	 *
+	 * @return Master seed.
+	 */
+	public long getMasterSeed() {
+		return masterSeed;
+	}
+
+	/**
+	 * Creates the random stream of the entity with the given id. Calling this
+	 * method twice with the same id returns two streams starting at the same
+	 * position.
+	 *
+	 * @param entityId Id of the entity.
+	 * @return Random stream of the entity.
+	 */
+	public RandomStream getEntityStream(long entityId) {
+		return new RandomStream(deriveSeed(ENTITY_SALT, entityId));
+	}
+
+	/**
+	 * Creates the random stream of the subsystem with the given name (e.g.
+	 * "setup" for decisions taken while loading entities).
+	 *
+	 * @param name Name of the subsystem.
+	 * @return Random stream of the subsystem.
+	 */
+	public RandomStream getSubsystemStream(String name) {
+		long h = 1125899906842597L;
+
+		for (int i = 0; i < name.length(); i++) {
+			h = 31 * h + name.charAt(i);
+		}
+		return new RandomStream(deriveSeed(SUBSYSTEM_SALT, h));
+	}
+
+	private long deriveSeed(long salt, long key) {
+		return RandomStream.mix64(RandomStream.mix64(masterSeed ^ salt) + RandomStream.mix64(key));
+	}
+}
@@ -0,0 +1,150 @@
+package allow.simulator.core;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import allow.simulator.mobility.data.MobilityRepository;
+import allow.simulator.world.StreetMap;
+import allow.simulator.world.Weather;
+import allow.simulator.world.layer.Layer;
+
+/**
+ * Caches data which is loaded from files during setup and does not change
+ * during a simulation, such that several simulations running in the same JVM
+ * load it only once. Each simulation obtains its own instances, which share
+ * the immutable parts (street nodes, layers, GTFS data, weather states) with
+ * the cached instances:
+ *
+ * - Street maps share nodes and layers, but own their streets and segments
+ *   as these keep track of the number of vehicles.
+ * - Mobility repositories share the GTFS data, but own the traces between
+ *   stops as these refer to segments of a street map.
+ * - Weather models share the weather states, but own the simulated time.
+ *
+ * All methods are thread-safe.
+ *
+ * @author Andreas Poxrucker (DFKI)
+ *
+ */
+public class SharedData {
+	// Street maps including layers per map and layer files.
+	private Map<String, StreetMap> streetMaps;
+
+	// Mobility repositories per GTFS data set and street map.
+	private Map<String, MobilityRepository> mobilityRepositories;
+
+	// Weather models per file and year.
+	private Map<String, Weather> weatherModels;
+
+	/**
+	 * Constructor.
+	 * Creates a new empty cache.
+	 */
+	public SharedData() {
+		streetMaps = new HashMap<String, StreetMap>();
+		mobilityRepositories = new HashMap<String, MobilityRepository>();
+		weatherModels = new HashMap<String, Weather>();
+	}
+
+	/**
+	 * Returns a new street map including districts and safety layers as
+	 * specified by the given configuration.
+	 *
+	 * @param config Configuration of the simulation.
+	 * @return Street map of the simulation.
+	 * @throws IOException
+	 */
+	public synchronized StreetMap getStreetMap(Configuration config) throws IOException {
+		String key = getStreetMapKey(config);
+		StreetMap topology = streetMaps.get(key);
+
+		if (topology == null) {
+			topology = loadStreetMap(config);
+			streetMaps.put(key, topology);
+		}
+		return new StreetMap(topology);
+	}
+
+	/**
+	 * Returns a new mobility repository from the GTFS data set at the given
+	 * path resolving traces to the segments of the given street map. The
+	 * street map must have been created by getStreetMap(...) from the same
+	 * configuration.
+	 *
+	 * @param config Configuration of the simulation.
+	 * @param path Path to folder containing GTFS data set.
+	 * @param map Street map of the simulation.
+	 * @return Mobility repository of the simulation.
+	 * @throws IOException
+	 */
+	public synchronized MobilityRepository getMobilityRepository(Configuration config, Path path, StreetMap map) throws IOException {
+		String mapKey = getStreetMapKey(config);
+		String key = path.toAbsolutePath().normalize() + ";;" + mapKey;
+		MobilityRepository repository = mobilityRepositories.get(key);
+
+		if (repository == null) {
+			StreetMap topology = streetMaps.get(mapKey);
+
+			if (topology == null)
+				throw new IllegalStateException("Error: Street map must be obtained from shared data before.");
+			repository = new MobilityRepository(path, topology);
+			mobilityRepositories.put(key, repository);
+		}
+		return new MobilityRepository(repository, map);
+	}
+
+	/**
+	 * Returns a new weather model loaded from the given file.
+	 *
+	 * @param path Path to file containing weather model.
+	 * @param time Time of the simulation.
+	 * @return Weather model of the simulation.
+	 * @throws IOException
+	 */
+	public synchronized Weather getWeather(Path path, Time time) throws IOException {
+		String key = path.toAbsolutePath().normalize() + ";;" + time.getCurrentDateTime().getYear();
+		Weather model = weatherModels.get(key);
+
+		if (model == null) {
+			model = new Weather(path, time);
+			weatherModels.put(key, model);
+		}
+		return new Weather(model, time);
+	}
+
+	/**
+	 * Removes all cached data.
+	 */
+	public synchronized void clear() {
+		streetMaps.clear();
+		mobilityRepositories.clear();
+		weatherModels.clear();
+	}
+
+	private static StreetMap loadStreetMap(Configuration config) throws IOException {
+		StreetMap map = new StreetMap(config.getMapPath());
+
+		System.out.println("  Adding layer \"" + Simulator.LAYER_DISTRICTS + "\"...");
+		Path l = config.getLayerPath(Simulator.LAYER_DISTRICTS);
+		if (l == null) throw new IllegalStateException("Error: Missing layer with key \"" + Simulator.LAYER_DISTRICTS + "\".");
+		map.addLayer(Layer.Type.DISTRICTS, l);
+
+		System.out.println("  Adding layer \"" + Simulator.LAYER_SAFTEY + "\"...");
+		l = config.getLayerPath(Simulator.LAYER_SAFTEY);
+		if (l == null) throw new IllegalStateException("Error: Missing layer with key \"" + Simulator.LAYER_SAFTEY + "\".");
+		map.addLayer(Layer.Type.SAFETY, l);
+		return map;
+	}
+
+	private static String getStreetMapKey(Configuration config) {
+		return normalize(config.getMapPath()) + ";;"
+				+ normalize(config.getLayerPath(Simulator.LAYER_DISTRICTS)) + ";;"
+				+ normalize(config.getLayerPath(Simulator.LAYER_SAFTEY));
+	}
+
+	private static String normalize(Path path) {
+		return (path != null) ? path.toAbsolutePath().normalize().toString() : "";
+	}
+}
@@ -1,9 +1,166 @@
 package allow.simulator.core;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class SimulationParameter {
+	// Options which can be set by setOption(...).
+	public static final String OPTIONS = "TrafficModel=step|queue StreetRouting=true|false LinkPerformance=sigmoid|bpr "
+			+ "HotspotWindow=s Hotspots=n AgencyUpdatePeriod=s StatisticsUpdatePeriod=s KnowledgeCleanupPeriod=s";
 
 	public int BehaviourSpaceRunNumber;
 	
 	public String KnowledgeModel;
 	
+	public long Seed;
+	
+	// Update periods in seconds of subsystems which do not need to be updated every tick.
+	public int AgencyUpdatePeriod = 60;
+	
+	public int StatisticsUpdatePeriod = 60;
+	
+	public int KnowledgeCleanupPeriod = 300;
+	
+	// Index of the shard in a sharded simulation. Means of public transportation
+	// are simulated by all shards, but only occupy street segments on shard 0.
+	public int Shard = 0;
+	
+	// Link performance function relating the load of street segments to the
+	// possible driving speed ("sigmoid" or "bpr", see LinkPerformance).
+	public String LinkPerformance = "sigmoid";
+	
+	// Time window in seconds and number of streets per district area of the
+	// tracker of the busiest streets (see HotspotTracker).
+	public int HotspotWindow = 900;
+	
+	public int Hotspots = 10;
+	
+	// Plan car, bicycle, and walking journeys in-process on the street map
+	// instead of querying the planner services (see StreetJourneyPlanner).
+	public boolean StreetRouting = false;
+	
+	// Model of moving cars ("step" advances cars in every step, "queue" moves
+	// them through queues of street segments, see TrafficModel).
+	public String TrafficModel = "step";
+	
+	/**
+	 * Constructor.
+	 * Creates a new set of parameters with default values.
+	 */
+	public SimulationParameter() {
+		
+	}
+	
+	/**
+	 * Constructor.
+	 * Creates a copy of the given parameters.
+	 * 
+	 * @param other Parameters to copy.
+	 */
+	public SimulationParameter(SimulationParameter other) {
+		BehaviourSpaceRunNumber = other.BehaviourSpaceRunNumber;
+		KnowledgeModel = other.KnowledgeModel;
+		Seed = other.Seed;
+		AgencyUpdatePeriod = other.AgencyUpdatePeriod;
+		StatisticsUpdatePeriod = other.StatisticsUpdatePeriod;
+		KnowledgeCleanupPeriod = other.KnowledgeCleanupPeriod;
+		Shard = other.Shard;
+		LinkPerformance = other.LinkPerformance;
+		HotspotWindow = other.HotspotWindow;
+		Hotspots = other.Hotspots;
+		StreetRouting = other.StreetRouting;
+		TrafficModel = other.TrafficModel;
+	}
+	
+	/**
+	 * Sets a parameter given an option of the form Name=value, e.g.
+	 * TrafficModel=queue (see OPTIONS). Run number, knowledge model, seed,
+	 * and shard are set by the launchers and cannot be set as options.
+	 * 
+	 * @param option Option of the form Name=value.
+	 */
+	public void setOption(String option) {
+		int i = option.indexOf('=');
+		
+		if (i <= 0)
+			throw new IllegalArgumentException("Error: Option " + option + " is not of the form Name=value.");
+		String name = option.substring(0, i);
+		String value = option.substring(i + 1);
+		
+		try {
+			switch (name) {
+			case "TrafficModel":
+				allow.simulator.world.TrafficModel.fromString(value);
+				TrafficModel = value;
+				break;
+				
+			case "StreetRouting":
+				if (!value.equals("true") && !value.equals("false"))
+					throw new IllegalArgumentException("Error: Value of option StreetRouting must be true or false.");
+				StreetRouting = Boolean.parseBoolean(value);
+				break;
+				
+			case "LinkPerformance":
+				allow.simulator.world.LinkPerformance.fromString(value);
+				LinkPerformance = value;
+				break;
+				
+			case "HotspotWindow":
+				HotspotWindow = parsePositive(name, value);
+				break;
+				
+			case "Hotspots":
+				Hotspots = parsePositive(name, value);
+				break;
+				
+			case "AgencyUpdatePeriod":
+				AgencyUpdatePeriod = parsePositive(name, value);
+				break;
+				
+			case "StatisticsUpdatePeriod":
+				StatisticsUpdatePeriod = parsePositive(name, value);
+				break;
+				
+			case "KnowledgeCleanupPeriod":
+				KnowledgeCleanupPeriod = parsePositive(name, value);
+				break;
+				
+			default:
+				throw new IllegalArgumentException("Error: Unknown option " + name + " (options are " + OPTIONS + ").");
+			}
+			
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Error: Value of option " + name + " must be a number.");
+		}
+	}
+	
+	/**
+	 * Sets the parameters given by arguments of the form Name=value (see
+	 * setOption(...)) and returns the remaining arguments in order.
+	 * 
+	 * @param args Command line arguments.
+	 * @return Arguments which are not options.
+	 */
+	public String[] setOptions(String args[]) {
+		List<String> remaining = new ArrayList<String>(args.length);
+		
+		for (String arg : args) {
+			
+			if (arg.indexOf('=') > 0) {
+				setOption(arg);
+				
+			} else {
+				remaining.add(arg);
+			}
+		}
+		return remaining.toArray(new String[remaining.size()]);
+	}
+	
+	private static int parsePositive(String name, String value) {
+		int n = Integer.parseInt(value);
+		
+		if (n <= 0)
+			throw new IllegalArgumentException("Error: Value of option " + name + " must be positive.");
+		return n;
+	}
 }
@@ -1,12 +1,13 @@
 package allow.simulator.core;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutorService;
@@ -24,9 +25,10 @@ import allow.simulator.entity.FlexiBusAgency;
 import allow.simulator.entity.Person;
 import allow.simulator.entity.PlanGenerator;
 import allow.simulator.entity.PublicTransportAgency;
+import allow.simulator.entity.PublicTransportation;
 import allow.simulator.entity.TransportAgency;
 import allow.simulator.entity.UrbanMobilitySystem;
-import allow.simulator.entity.knowledge.EvoKnowledge;
+import allow.simulator.entity.knowledge.EvoKnowledgeService;
 import allow.simulator.entity.utility.Preferences;
 import allow.simulator.entity.utility.Utility;
 import allow.simulator.entity.utility.UtilityWithoutPreferences;
@@ -41,11 +43,17 @@ import allow.simulator.mobility.planner.IPlannerService;
 import allow.simulator.mobility.planner.JourneyRepository;
 import allow.simulator.mobility.planner.OfflineJourneyPlanner;
 import allow.simulator.mobility.planner.OnlineJourneyPlanner;
+import allow.simulator.mobility.planner.StreetJourneyPlanner;
 import allow.simulator.statistics.Statistics;
+import allow.simulator.util.RandomStream;
+import allow.simulator.world.HeadlessWorld;
 import allow.simulator.world.IWorld;
+import allow.simulator.world.LinkPerformance;
+import allow.simulator.world.LinkQueueModel;
 import allow.simulator.world.NetLogoWorld;
+import allow.simulator.world.StreetRouter;
+import allow.simulator.world.TrafficModel;
 import allow.simulator.world.Weather;
-import allow.simulator.world.layer.Layer;
 
 import com.fasterxml.jackson.annotation.JsonAutoDetect.Visibility;
 import com.fasterxml.jackson.annotation.PropertyAccessor;
@@ -53,51 +61,135 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 
 /**
- * Main class of Allow Ensembles urban traffic simulation.
+ * Main class of Allow Ensembles urban traffic simulation. Several instances
+ * can be set up and executed independently in the same JVM. Data loaded from
+ * files which does not change during a simulation is shared between instances
+ * created with the same SharedData instance.
  * 
  * @author Andreas Poxrucker (DFKI)
  *
  */
 public class Simulator {
-	// Instance of the simulator which can be accessed using getInstance() method.
-	private static Simulator instance;
-		
+	// Instances of the simulator bound to NetLogo worlds.
+	private static final Map<World, Simulator> netLogoInstances = new HashMap<World, Simulator>();
+	
+	// Data shared by simulators bound to NetLogo worlds.
+	private static final SharedData netLogoSharedData = new SharedData();
+	
+	// Data shared with other simulators.
+	private SharedData sharedData;
+	
 	// Simulation context.
 	private Context context;
 	
 	// Id counter for entities.
 	private long ids;
 	
+	// Scheduler keeping track of persons to execute.
+	private PersonScheduler personScheduler;
+	
+	// Random stream for preferences of entities created during simulation.
+	private RandomStream preferencesRandom;
+	
 	private ExecutorService plannerThreadPool;
 	private ExecutorService knowlegdeThreadPool;
 	
+	// Writer to log request/response pairs of online planners.
+	private BufferedWriter tracesWriter;
+	
+	// Listener notified after changes of a step have been committed.
+	private ICommitListener commitListener;
+	
+	// Profiler measuring the phases of a step.
+	private TickProfiler profiler;
+	
+	// Path of a checkpoint to write once the simulation is quiescent or null.
+	private Path pendingCheckpoint;
+	
+	// Point in time in ms until which the pending checkpoint must be written.
+	private long checkpointDeadline;
+	
+	// Filter of persons to load or null, and mapper creating persons.
+	private IPersonFilter personFilter;
+	private ObjectMapper personMapper;
+	
 	public static final String LAYER_DISTRICTS = "partitioning";
 	public static final String LAYER_SAFTEY = "safety";
 	
 	/**
-	 * Creates a new instance of the simulator.
+	 * Constructor.
+	 * Creates a new simulator which does not share data with other simulators.
+	 */
+	public Simulator() {
+		this(new SharedData());
+	}
+	
+	/**
+	 * Constructor.
+	 * Creates a new simulator sharing data loaded during setup with other
+	 * simulators using the same SharedData instance.
+	 * 
+	 * @param sharedData Data shared with other simulators.
+	 */
+	public Simulator(SharedData sharedData) {
+		this.sharedData = sharedData;
+		profiler = new TickProfiler();
+	}
+	
+	/**
+	 * Creates a new instance of the simulator bound to a NetLogo world.
 	 * @throws IOException 
 	 */
 	public void setup(Configuration config, 
 			SimulationParameter params,
 			World netLogoWorld) throws IOException {
-		// Reset Id counter.
-		ids = 0;
+		// Setup world.
+		System.out.println("Loading world...");
+		setup(config, params, new NetLogoWorld(netLogoWorld, sharedData.getStreetMap(config)));
+	}
 	
+	/**
+	 * Creates a new instance of the simulator without binding to NetLogo.
+	 * The bounds of the grid used for neighbourhood queries correspond to the
+	 * patch coordinates of a NetLogo world.
+	 * 
+	 * @param config Configuration of the simulation.
+	 * @param params Parameters of the simulation run.
+	 * @param minX Minimal x coordinate of grid.
+	 * @param maxX Maximal x coordinate of grid.
+	 * @param minY Minimal y coordinate of grid.
+	 * @param maxY Maximal y coordinate of grid.
+	 * @throws IOException
+	 */
+	public void setupHeadless(Configuration config,
+			SimulationParameter params,
+			int minX, int maxX, int minY, int maxY) throws IOException {
 		// Setup world.
 		System.out.println("Loading world...");
-		NetLogoWorld world = new NetLogoWorld(netLogoWorld, config.getMapPath());
+		setup(config, params, new HeadlessWorld(sharedData.getStreetMap(config), minX, maxX, minY, maxY));
+	}
+	
+	private void setup(Configuration config, 
+			SimulationParameter params,
+			IWorld world) throws IOException {
+		// Reset Id counter.
+		ids = 0;
 		
-		System.out.println("  Adding layer \"" + LAYER_DISTRICTS + "\"...");
-		Path l = config.getLayerPath(LAYER_DISTRICTS);
-		if (l == null) throw new IllegalStateException("Error: Missing layer with key \"" + LAYER_DISTRICTS + "\".");
-		world.getStreetMap().addLayer(Layer.Type.DISTRICTS, l);
+		// Create random streams from the seed of the run.
+		RandomService random = new RandomService(params.Seed);
+		preferencesRandom = random.getSubsystemStream("preferences");
+		
+		// Set link performance function of the street network.
+		world.getStreetMap().setLinkPerformanceFunction(LinkPerformance.fromString(params.LinkPerformance));
+		
+		// Set model of moving cars.
+		world.getStreetMap().setTrafficModel(TrafficModel.fromString(params.TrafficModel));
+		
+		// Track busiest streets of the street network.
+		if (world.getStreetMap().getHotspotTracker(params.HotspotWindow) == null) {
+			world.getStreetMap().addHotspotTracker(params.HotspotWindow, params.Hotspots);
+		}
 		
-		System.out.println("  Adding layer \"" + LAYER_SAFTEY + "\"...");
-		l = config.getLayerPath(LAYER_SAFTEY);
-		if (l == null) throw new IllegalStateException("Error: Missing layer with key \"" + LAYER_SAFTEY + "\".");
-		world.getStreetMap().addLayer(Layer.Type.SAFETY, config.getLayerPath(LAYER_SAFTEY));
-
 		// Create data services.
 		System.out.println("Creating data services...");
 		List<IDataService> dataServices = new ArrayList<IDataService>();
@@ -111,7 +203,7 @@ public class Simulator {
 		
 			} else {
 				// For offline queries create mobility repository and offline service.
-				MobilityRepository repos = new MobilityRepository(Paths.get(dataConfig.getURL()), world.getStreetMap());
+				MobilityRepository repos = sharedData.getMobilityRepository(config, Paths.get(dataConfig.getURL()), world.getStreetMap());
 				dataServices.add(new OfflineDataService(repos));
 			}
 		}
@@ -127,23 +219,41 @@ public class Simulator {
 
 			if (plannerConfig.isOnline()) {
 				// For online queries create online planner service. 
-				plannerServices.add(new OnlineJourneyPlanner(plannerConfig.getURL(), plannerConfig.getPort(), config.getTracesOutputPath()));
+				if (tracesWriter == null) {
+					tracesWriter = Files.newBufferedWriter(config.getTracesOutputPath(), Charset.defaultCharset());
+				}
+				plannerServices.add(new OnlineJourneyPlanner(plannerConfig.getURL(), plannerConfig.getPort(), tracesWriter));
 			
 			} else {
 				// For offline queries create journey repository and offline services.
-				JourneyRepository journeyRepository = new JourneyRepository(plannerConfig.getURL());
+				JourneyRepository journeyRepository = new JourneyRepository(plannerConfig.getURL(), random.getSubsystemStream("journeys" + i));
 				plannerServices.add(new OfflineJourneyPlanner(journeyRepository, config.getTracesOutputPath()));
 			}
+		}
+		
+		if (params.StreetRouting) {
+			// Plan journeys on streets in-process and forward remaining requests.
+			StreetRouter.Pool routers = new StreetRouter.Pool(world.getStreetMap(), Runtime.getRuntime().availableProcessors());
+			
+			for (int i = 0; i < plannerServices.size(); i++) {
+				plannerServices.set(i, new StreetJourneyPlanner(world.getStreetMap(), routers, plannerServices.get(i)));
+			}
 		}		
 		// Create time and weather.
 		Time time = new Time(config.getStartingDate(), 5);
 		
 		System.out.println("Loading weather model...");
-		Weather weather = new Weather(config.getWeatherPath(), time);
+		Weather weather = sharedData.getWeather(config.getWeatherPath(), time);
+		
+		// Create EvoKnowledge service.
+		knowlegdeThreadPool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors() * 4);
+		EvoKnowledgeService knowledge = new EvoKnowledgeService(config.getEvoKnowledgeConfiguration(), params.KnowledgeModel,
+				"ek_" + params.BehaviourSpaceRunNumber + ((params.Shard > 0) ? "_" + params.Shard : ""), knowlegdeThreadPool, world, time);
 				
 		// Create global context from world, time, planner and data services, and weather.
 		context = new Context(world, time, dataServices, plannerServices, new FlexiBusPlanner(),
-				weather, new Statistics(800), new EnsembleManager(), params);
+				weather, new Statistics(800), new EnsembleManager(), params, random, knowledge);
+		personScheduler = new PersonScheduler(time);
 		
 		// Setup entities.
 		System.out.println("Loading entities from file...");
@@ -151,7 +261,7 @@ public class Simulator {
 		
 		// Create public transportation.
 		System.out.println("Creating public transportation system...");
-		TransportationRepository repos = TransportationRepository.loadPublicTransportation(this);
+		TransportationRepository repos = new TransportationRepository(this);
 		
 		// Create urban mobility system entity.
 		UrbanMobilitySystem ums = (UrbanMobilitySystem) addEntity(Entity.Type.URBANMOBILITYSYSTEM);
@@ -161,28 +271,27 @@ public class Simulator {
 		ums.getFlow().addActivity(new QueryJourneyPlanner(ums, config.allowParallelClientRequests(), plannerThreadPool));
 		
 		// Create basic ensemble structure.
-		setupEnsembles();
+		setupEnsembles(repos);
 		
 		// Initialize EvoKnowlegde and setup logger.
-		knowlegdeThreadPool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors() * 4);
-		EvoKnowledge.initialize(config.getEvoKnowledgeConfiguration(), params.KnowledgeModel, "ek_" + params.BehaviourSpaceRunNumber, knowlegdeThreadPool);
-		EvoKnowledge.setLoggerDirectory(config.getLoggingOutputPath());
+		knowledge.initialize();
+		knowledge.setLoggerDirectory(config.getLoggingOutputPath());
 		
 		// Update world grid.
 		world.updateGrid();
 	}
 	
-	private void setupEnsembles() {
+	private void setupEnsembles(TransportationRepository repos) {
 		EnsembleManager ensembles = context.getEnsembleManager();
 		// Prepare basic ensemble structure.
-		Entity flexiBusAgency = TransportationRepository.Instance().getFlexiBusAgency();
-		Entity carPoolingAgency = TransportationRepository.Instance().getCarPoolingAgency();
+		Entity flexiBusAgency = repos.getFlexiBusAgency();
+		Entity carPoolingAgency = repos.getCarPoolingAgency();
 		Ensemble flexiBusEnsemble = ensembles.createEnsemble(EnsembleManager.FLEXIBUS_AGENCY_ENSEMBLE, flexiBusAgency);
 		Ensemble carPoolEnsemble = ensembles.createEnsemble(EnsembleManager.CARPOOLING_AGENCY_ENSEMBLE, flexiBusAgency);
 		flexiBusEnsemble.join(carPoolingAgency);
 		carPoolEnsemble.join(flexiBusAgency);
 		
-		Map<String, TransportAgency> gtfsAgencies = TransportationRepository.Instance().getGTFSTransportAgencies();
+		Map<String, TransportAgency> gtfsAgencies = repos.getGTFSTransportAgencies();
 		
 		for (TransportAgency agency : gtfsAgencies.values()) {
 			ensembles.createEnsemble("TransportAgency" + agency.getAgencyId() + "Ensemble", agency);
@@ -190,40 +299,97 @@ public class Simulator {
 	}
 	
 	private void loadEntitiesFromFile(Path config, String knowledgeModel) throws IOException {
-		ObjectMapper mapper = new ObjectMapper();
-		mapper.setVisibility(PropertyAccessor.FIELD, Visibility.ANY);
-		mapper.configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false);
+		personMapper = new ObjectMapper();
+		personMapper.setVisibility(PropertyAccessor.FIELD, Visibility.ANY);
+		personMapper.configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false);
 		
 		List<String> lines = Files.readAllLines(config, Charset.defaultCharset());
 		
 		for (String line : lines) {
-			Person p = mapper.readValue(line, Person.class);
-			p.setContext(context);
+			Person p = personMapper.readValue(line, Person.class);
+			// Ids of new entities must not depend on the filter.
+			ids = Math.max(ids, p.getId() + 1);
 			
-			if (knowledgeModel.equals("local") || knowledgeModel.equals("global (temporally restricted)")) {
-				p.setUtility(new UtilityWithoutPreferences());
-				
-			} else if (knowledgeModel.equals("without")) {
-
-			} else {
-				throw new IllegalArgumentException("Error: Unknown knowledge model");
-			}
+			if ((personFilter != null) && !personFilter.accept(p, line)) continue;
+			initPerson(p, knowledgeModel);
 			PlanGenerator.generateDayPlan(p);
+			personScheduler.schedule(p);
 			context.getWorld().addEntity(p);
-			ids = Math.max(ids, p.getId() + 1);
+		}
+	}
+	
+	private void initPerson(Person p, String knowledgeModel) {
+		p.setContext(context);
+		
+		if (knowledgeModel.equals("local") || knowledgeModel.equals("global (temporally restricted)")) {
+			p.setUtility(new UtilityWithoutPreferences());
+			
+		} else if (knowledgeModel.equals("without")) {
+
+		} else {
+			throw new IllegalArgumentException("Error: Unknown knowledge model");
+		}
+	}
+	
+	/**
+	 * Creates a person of the population from its definition, e.g. to
+	 * restore a person which was not loaded during setup (see
+	 * setPersonFilter(...)). The person is neither added to the world nor
+	 * scheduled.
+	 * 
+	 * @param definition Definition of the person as in the population file.
+	 * @return Person created from the definition.
+	 * @throws IOException
+	 */
+	public Person createPerson(String definition) throws IOException {
+		Person p = personMapper.readValue(definition, Person.class);
+		initPerson(p, context.getSimulationParameters().KnowledgeModel);
+		return p;
+	}
+	
+	/**
+	 * Sets the filter deciding which persons of the population are loaded.
+	 * Must be called before the simulation is set up.
+	 * 
+	 * @param filter Filter of persons or null to load all persons.
+	 */
+	public void setPersonFilter(IPersonFilter filter) {
+		personFilter = filter;
+	}
+	
+	/**
+	 * Returns the simulator bound to the given NetLogo world. A new simulator
+	 * is created if no simulator is bound to the world yet. Simulators bound
+	 * to different NetLogo worlds (e.g. parallel BehaviorSpace runs) are
+	 * independent of each other but share data loaded during setup.
+	 * 
+	 * @param netLogoWorld NetLogo world.
+	 * @return Simulator bound to the NetLogo world.
+	 */
+	public static Simulator Instance(World netLogoWorld) {
+		
+		synchronized (netLogoInstances) {
+			Simulator simulator = netLogoInstances.get(netLogoWorld);
+			
+			if (simulator == null) {
+				simulator = new Simulator(netLogoSharedData);
+				netLogoInstances.put(netLogoWorld, simulator);
+			}
+			return simulator;
 		}
 	}
 	
 	/**
-	 * Get current instance of simulator parameters. 
-	 * Instance must be created with createInstance(...) before calling the function.
-	 * Otherwise an exception is thrown.
+	 * Releases the simulator bound to the given NetLogo world.
 	 * 
-	 * @return The current simulator parameters.
+	 * @param netLogoWorld NetLogo world.
+	 * @return Simulator which was bound to the NetLogo world or null.
 	 */
-	public static Simulator Instance() {
-		if (instance == null) instance = new Simulator();
-		return instance;
+	public static Simulator removeInstance(World netLogoWorld) {
+		
+		synchronized (netLogoInstances) {
+			return netLogoInstances.remove(netLogoWorld);
+		}
 	}
 
 	/**
@@ -238,23 +404,23 @@ public class Simulator {
 		
 		switch (e) {
 			case BUS:
-				newEntity = new Bus(ids++, new Utility(), new Preferences(), context, 100);
+				newEntity = new Bus(ids++, new Utility(), new Preferences(preferencesRandom), context, 100);
 				break;
 			
 			case PUBLICTRANSPORTAGENCY:
-				newEntity = new PublicTransportAgency(ids++, new Utility(), new Preferences(), context);
+				newEntity = new PublicTransportAgency(ids++, new Utility(), new Preferences(preferencesRandom), context);
 				break;
 			
 			case FLEXIBUSAGENCY:
-				newEntity = new FlexiBusAgency(ids++, new Utility(), new Preferences(), context);
+				newEntity = new FlexiBusAgency(ids++, new Utility(), new Preferences(preferencesRandom), context);
 				break;
 				
 			case CARPOOLINGAGENCY:
-				newEntity = new CarPoolingAgency(ids++, new Utility(), new Preferences(), context);
+				newEntity = new CarPoolingAgency(ids++, new Utility(), new Preferences(preferencesRandom), context);
 				break;
 				
 			case URBANMOBILITYSYSTEM:
-				newEntity = new UrbanMobilitySystem(ids++, new Utility(), new Preferences(), context);
+				newEntity = new UrbanMobilitySystem(ids++, new Utility(), new Preferences(preferencesRandom), context);
 				break;
 				
 			default:
@@ -276,15 +442,33 @@ public class Simulator {
 		// Update time.
 		context.getTime().tick(deltaT);
 		
+		// Move cars through link queues up to the current time.
+		long t = profiler.start();
+		context.getWorld().getStreetMap().advanceLinkQueues(context.getTime().getTimestamp());
+		resumeArrivedCars();
+		profiler.stop(TickProfiler.Phase.LINK_QUEUES, t);
+		
+		// Commit changes of shared state made by entities during the last step.
+		commitChanges();
+		
+		if (commitListener != null) {
+			commitListener.changesCommitted(context);
+		}
+		
 		// Update street network.
+		t = profiler.start();
 		context.getWorld().getStreetMap().updateStreetSegments();
+		context.getWorld().getStreetMap().updateHotspots(context.getTime().getTimestamp());
+		profiler.stop(TickProfiler.Phase.STREET_SEGMENTS, t);
 		
 		// Trigger routine scheduling.
 		if (days != context.getTime().getDays()) {
-			Collection<Entity> persons = context.getWorld().getEntitiesOfType(Type.PERSON);
+			List<Entity> persons = context.getWorld().getEntitiesOfType(Type.PERSON);
 
-			for (Entity p : persons) {
-				PlanGenerator.generateDayPlan((Person) p);
+			for (int i = 0; i < persons.size(); i++) {
+				Person p = (Person) persons.get(i);
+				PlanGenerator.generateDayPlan(p);
+				personScheduler.schedule(p);
 			}
 		}
 		
@@ -295,10 +479,78 @@ public class Simulator {
 		}
 		
 		// Update world grid.
-		NetLogoWorld world = (NetLogoWorld) context.getWorld();
-		world.updateGrid();
-		EvoKnowledge.invokeRequest();
-		EvoKnowledge.cleanModel();
+		t = profiler.start();
+		context.getWorld().updateGrid();
+		profiler.stop(TickProfiler.Phase.WORLD_GRID, t);
+		
+		t = profiler.start();
+		context.getEvoKnowledgeService().invokeRequest();
+		profiler.stop(TickProfiler.Phase.KNOWLEDGE_REQUESTS, t);
+		
+		// Update subsystems running at a lower rate.
+		SimulationParameter params = context.getSimulationParameters();
+		
+		if (context.getTime().isDue(params.StatisticsUpdatePeriod)) {
+			t = profiler.start();
+			context.getStatistics().updateGlobalStatistics(context);
+			profiler.stop(TickProfiler.Phase.STATISTICS, t);
+		}
+		
+		if (context.getTime().isDue(params.KnowledgeCleanupPeriod)) {
+			t = profiler.start();
+			context.getEvoKnowledgeService().cleanModel();
+			profiler.stop(TickProfiler.Phase.KNOWLEDGE_CLEANUP, t);
+		}
+	}
+	
+	private void resumeArrivedCars() {
+		LinkQueueModel linkQueues = context.getWorld().getStreetMap().getLinkQueueModel();
+		
+		if (linkQueues == null) return;
+		List<LinkQueueModel.Vehicle> arrived = linkQueues.getArrivals();
+		
+		for (int i = 0; i < arrived.size(); i++) {
+			// Cars are identified by the Id of the person driving them.
+			Entity driver = context.getWorld().getEntityById(arrived.get(i).getId());
+			
+			if (driver instanceof Person) personScheduler.resume((Person) driver);
+		}
+	}
+	
+	private void commitChanges() {
+		IWorld world = context.getWorld();
+		world.getStreetMap().commitVehicleChanges();
+		
+		List<Entity> buses = world.getEntitiesOfType(Type.BUS);
+		
+		for (int i = 0; i < buses.size(); i++) {
+			((PublicTransportation) buses.get(i)).commitPassengers();
+		}
+		
+		List<Entity> flexiBuses = world.getEntitiesOfType(Type.FLEXIBUS);
+		
+		for (int i = 0; i < flexiBuses.size(); i++) {
+			((PublicTransportation) flexiBuses.get(i)).commitPassengers();
+		}
+		
+		List<Entity> agencies = world.getEntitiesOfType(Type.PUBLICTRANSPORTAGENCY);
+		
+		for (int i = 0; i < agencies.size(); i++) {
+			((TransportAgency) agencies.get(i)).commitReturnedVehicles();
+		}
+		
+		List<Entity> flexiBusAgencies = world.getEntitiesOfType(Type.FLEXIBUSAGENCY);
+		
+		for (int i = 0; i < flexiBusAgencies.size(); i++) {
+			((TransportAgency) flexiBusAgencies.get(i)).commitReturnedVehicles();
+		}
+		
+		List<Entity> carPoolingAgencies = world.getEntitiesOfType(Type.CARPOOLINGAGENCY);
+		
+		for (int i = 0; i < carPoolingAgencies.size(); i++) {
+			((TransportAgency) carPoolingAgencies.get(i)).commitReturnedVehicles();
+		}
+		context.getStatistics().commitReports();
 	}
 	
 	/**
@@ -369,8 +621,112 @@ public class Simulator {
 		return context;
 	}
 	
+	/**
+	 * Writes a checkpoint of the state of the simulation as soon as all
+	 * persons and vehicles are idle (see Checkpoint). If the simulation is
+	 * not quiescent, the checkpoint is written by the first call of
+	 * writePendingCheckpoint() after a step at the end of which it is, but
+	 * at most Checkpoint.MAX_DELAY later.
+	 * 
+	 * @param path Path of the checkpoint file to write.
+	 * @return True, if the checkpoint was written, false if it is pending.
+	 * @throws IOException
+	 */
+	public boolean writeCheckpoint(Path path) throws IOException {
+		pendingCheckpoint = path;
+		checkpointDeadline = context.getTime().getTimestamp() + Checkpoint.MAX_DELAY;
+		return writePendingCheckpoint();
+	}
+	
+	/**
+	 * Writes the checkpoint requested by writeCheckpoint(...), if the
+	 * simulation is quiescent. Must be called between steps.
+	 * 
+	 * @return True, if no checkpoint is pending anymore, false otherwise.
+	 * @throws IOException
+	 * @throws IllegalStateException If the simulation did not become
+	 * quiescent within Checkpoint.MAX_DELAY after the checkpoint was requested.
+	 */
+	public boolean writePendingCheckpoint() throws IOException {
+		
+		if (pendingCheckpoint == null) return true;
+		
+		if (!Checkpoint.isQuiescent(context)) {
+			
+			if (context.getTime().getTimestamp() < checkpointDeadline) return false;
+			Path path = pendingCheckpoint;
+			pendingCheckpoint = null;
+			throw new IllegalStateException("Error: Checkpoint " + path + " could not be written because persons or vehicles "
+					+ "were still moving one simulated day after it was requested.");
+		}
+		Path path = pendingCheckpoint;
+		pendingCheckpoint = null;
+		Checkpoint.write(context, preferencesRandom, path);
+		return true;
+	}
+	
+	/**
+	 * Restores a checkpoint into the simulation which must have been set up
+	 * from the same configuration as the simulation the checkpoint was
+	 * written from.
+	 * 
+	 * @param path Path of the checkpoint file to read.
+	 * @throws IOException
+	 */
+	public void readCheckpoint(Path path) throws IOException {
+		Checkpoint.read(context, preferencesRandom, path);
+		
+		// Reschedule persons according to their restored scheduling queues.
+		personScheduler = new PersonScheduler(context.getTime());
+		
+		for (Entity p : context.getWorld().getEntitiesOfType(Type.PERSON)) {
+			personScheduler.schedule((Person) p);
+		}
+		context.getWorld().updateGrid();
+	}
+	
+	/**
+	 * Sets the listener which is notified after changes of shared state made
+	 * during a step have been committed.
+	 * 
+	 * @param listener Listener to notify or null.
+	 */
+	public void setCommitListener(ICommitListener listener) {
+		commitListener = listener;
+	}
+	
+	/**
+	 * Returns the profiler measuring the phases of a step.
+	 * 
+	 * @return Profiler of the simulation.
+	 */
+	public TickProfiler getProfiler() {
+		return profiler;
+	}
+	
+	/**
+	 * Returns the scheduler keeping track of the persons to execute in a step.
+	 * 
+	 * @return Scheduler of persons.
+	 */
+	public PersonScheduler getPersonScheduler() {
+		return personScheduler;
+	}
+	
 	public void finish() {
 		plannerThreadPool.shutdown();
 		knowlegdeThreadPool.shutdown();
+		context.getEvoKnowledgeService().close();
+		
+		if (tracesWriter != null) {
+			
+			try {
+				tracesWriter.close();
+				
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			tracesWriter = null;
+		}
 	}
 }
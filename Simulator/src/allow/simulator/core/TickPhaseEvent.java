@@ -0,0 +1,38 @@
+package allow.simulator.core;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Java Flight Recorder event emitted by TickProfiler for each measured
+ * phase of a simulation step. Only loaded if JFR is available.
+ *
+ * @author Andreas Poxrucker (DFKI)
+ *
+ */
+@Name("allow.simulator.TickPhase")
+@Label("Tick Phase")
+@Category("Allow Simulator")
+@Description("Duration of a phase of a simulation step")
+final class TickPhaseEvent extends jdk.jfr.Event {
+
+	@Label("Phase")
+	String phase;
+
+	@Label("Duration")
+	@Timespan(Timespan.NANOSECONDS)
+	long duration;
+
+	static void emit(TickProfiler.Phase phase, long duration) {
+		TickPhaseEvent e = new TickPhaseEvent();
+
+		if (e.isEnabled()) {
+			e.phase = phase.name();
+			e.duration = duration;
+			e.commit();
+		}
+	}
+}
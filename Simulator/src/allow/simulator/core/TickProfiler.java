@@ -0,0 +1,202 @@
+package allow.simulator.core;
+
+import java.util.Arrays;
+
+/**
+ * Measures the duration of the phases of a simulation step using
+ * nanosecond timers. For each phase, durations of the last WINDOW_SIZE
+ * measurements are kept in a rolling window, from which exact percentiles
+ * are computed when a summary is requested.
+ * If Java Flight Recorder is available, each measurement is also emitted as
+ * a TickPhaseEvent, such that phases can be analyzed in flight recordings of
+ * production runs.
+ *
+ * Usage:
+ *
+ *   long t = profiler.start();
+ *   ...
+ *   profiler.stop(TickProfiler.Phase.STREET_SEGMENTS, t);
+ *
+ * @author Andreas Poxrucker (DFKI)
+ *
+ */
+public class TickProfiler {
+
+	/**
+	 * Profiled phases of a simulation step.
+	 *
+	 * @author Andreas Poxrucker (DFKI)
+	 *
+	 */
+	public enum Phase {
+
+		/**
+		 * Execution of the journey planner (QueryJourneyPlanner).
+		 */
+		JOURNEY_PLANNER,
+
+		/**
+		 * Movement of cars through the link queue model.
+		 */
+		LINK_QUEUES,
+
+		/**
+		 * Update of driving speeds on street segments.
+		 */
+		STREET_SEGMENTS,
+
+		/**
+		 * Update of the world grid for neighbourhood queries.
+		 */
+		WORLD_GRID,
+
+		/**
+		 * Execution of buffered EvoKnowledge prediction requests.
+		 */
+		KNOWLEDGE_REQUESTS,
+
+		/**
+		 * Cleanup of the EvoKnowledge database.
+		 */
+		KNOWLEDGE_CLEANUP,
+
+		/**
+		 * Update of global statistics.
+		 */
+		STATISTICS
+
+	}
+
+	/**
+	 * Rolling window of the last WINDOW_SIZE durations of a phase.
+	 */
+	private static final class Window {
+		private final long durations[] = new long[WINDOW_SIZE];
+		private int index;
+		private int size;
+		private long total;
+
+		void add(long duration) {
+
+			if (size == WINDOW_SIZE) {
+				total -= durations[index];
+
+			} else {
+				size++;
+			}
+			durations[index] = duration;
+			total += duration;
+			index = (index + 1) % WINDOW_SIZE;
+		}
+
+		long[] sorted() {
+			long sorted[] = Arrays.copyOf(durations, size);
+			Arrays.sort(sorted);
+			return sorted;
+		}
+
+		// Returns the duration of nearest rank ceil(p * n) of sorted durations.
+		static long percentile(long sorted[], double p) {
+
+			if (sorted.length == 0) return 0;
+			int rank = (int) Math.ceil(p * sorted.length);
+			return sorted[Math.max(rank, 1) - 1];
+		}
+	}
+
+	// Number of measurements per phase the windows cover.
+	public static final int WINDOW_SIZE = 1024;
+
+	// Indicates whether JFR events can be emitted.
+	private static final boolean JFR_AVAILABLE = isJfrAvailable();
+
+	// Windows of durations per phase.
+	private final Window windows[];
+
+	// Number of measurements per phase since creation.
+	private final long counts[];
+
+	/**
+	 * Constructor.
+	 * Creates a new profiler without any measurements.
+	 */
+	public TickProfiler() {
+		windows = new Window[Phase.values().length];
+		counts = new long[windows.length];
+
+		for (int i = 0; i < windows.length; i++) {
+			windows[i] = new Window();
+		}
+	}
+
+	/**
+	 * Starts the measurement of a phase.
+	 *
+	 * @return Starting time to pass to stop(...).
+	 */
+	public long start() {
+		return System.nanoTime();
+	}
+
+	/**
+	 * Finishes the measurement of a phase.
+	 *
+	 * @param phase Measured phase.
+	 * @param start Starting time as returned by start().
+	 */
+	public void stop(Phase phase, long start) {
+		long duration = System.nanoTime() - start;
+
+		synchronized (this) {
+			windows[phase.ordinal()].add(duration);
+			counts[phase.ordinal()]++;
+		}
+
+		if (JFR_AVAILABLE) {
+			TickPhaseEvent.emit(phase, duration);
+		}
+	}
+
+	/**
+	 * Returns a summary of the measurements of a phase: total number of
+	 * measurements, and mean, 50th, 90th, and 99th percentile, and maximum of
+	 * the durations in milliseconds over the last WINDOW_SIZE measurements.
+	 * Percentiles are exact (nearest rank) durations of the window.
+	 *
+	 * @param phase Phase to summarize.
+	 * @return Summary of the measurements.
+	 */
+	public synchronized double[] getSummary(Phase phase) {
+		Window w = windows[phase.ordinal()];
+		double mean = (w.size > 0) ? (double) w.total / w.size : 0.0;
+		long sorted[] = w.sorted();
+		return new double[] { counts[phase.ordinal()],
+				mean / 1e6,
+				Window.percentile(sorted, 0.5) / 1e6,
+				Window.percentile(sorted, 0.9) / 1e6,
+				Window.percentile(sorted, 0.99) / 1e6,
+				((sorted.length > 0) ? sorted[sorted.length - 1] : 0) / 1e6 };
+	}
+
+	/**
+	 * Removes all measurements.
+	 */
+	public synchronized void reset() {
+
+		for (int i = 0; i < windows.length; i++) {
+			windows[i] = new Window();
+			counts[i] = 0;
+		}
+	}
+
+	private static boolean isJfrAvailable() {
+
+		try {
+			Class.forName("jdk.jfr.Event");
+			return true;
+
+		} catch (ClassNotFoundException e) {
+			return false;
+		}
+	}
+}
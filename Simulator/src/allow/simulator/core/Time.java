@@ -1,7 +1,11 @@
 package allow.simulator.core;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.sql.Timestamp;
 import java.time.DayOfWeek;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
@@ -92,6 +96,23 @@ public class Time {
 		return deltaT;
 	}
 	
+	/**
+	 * Checks, if the last tick reached a multiple of the given period counted
+	 * from midnight, i.e. if a subsystem updated with this period needs to be
+	 * executed at the current time. Periods smaller than or equal to the time
+	 * interval per tick are due at every tick.
+	 * 
+	 * @param period Update period in seconds.
+	 * @return True, if an update with the given period is due, false otherwise.
+	 */
+	public boolean isDue(int period) {
+		
+		if (period <= 0)
+			throw new IllegalArgumentException("Error: Update period must be positive.");
+		int t = currentTime.toSecondOfDay();
+		return Math.floorDiv(t, period) != Math.floorDiv(t - deltaT, period);
+	}
+	
 	/**
 	 * Returns the number of already simulated days.
 	 * 
@@ -101,6 +122,35 @@ public class Time {
 		return days;
 	}
 	
+	/**
+	 * Writes current date and time and the number of simulated days.
+	 * 
+	 * @param out Output to write state to.
+	 * @throws IOException
+	 */
+	public void writeState(DataOutput out) throws IOException {
+		out.writeLong(currentDateTime.toLocalDate().toEpochDay());
+		out.writeLong(currentTime.toNanoOfDay());
+		out.writeInt(deltaT);
+		out.writeInt(days);
+	}
+	
+	/**
+	 * Restores date and time and the number of simulated days written by
+	 * writeState(...).
+	 * 
+	 * @param in Input to read state from.
+	 * @throws IOException
+	 */
+	public void readState(DataInput in) throws IOException {
+		LocalDate date = LocalDate.ofEpochDay(in.readLong());
+		currentTime = LocalTime.ofNanoOfDay(in.readLong());
+		currentDateTime = LocalDateTime.of(date, currentTime);
+		timestamp = Timestamp.valueOf(currentDateTime).getTime();
+		deltaT = in.readInt();
+		days = in.readInt();
+	}
+	
 	/**
 	 * Returns a string representation of the current time.
 	 * 
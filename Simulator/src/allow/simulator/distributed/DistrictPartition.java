@@ -0,0 +1,224 @@
+package allow.simulator.distributed;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import allow.simulator.util.Coordinate;
+import allow.simulator.world.StreetMap;
+import allow.simulator.world.StreetNode;
+import allow.simulator.world.StreetSegment;
+import allow.simulator.world.layer.Area;
+import allow.simulator.world.layer.DistrictLayer;
+import allow.simulator.world.layer.DistrictType;
+import allow.simulator.world.layer.Layer;
+
+/**
+ * Partitions a street map into shards along the areas of its districts
+ * layer. Areas are identified by name and assigned to shards such that the
+ * number of street nodes per shard is balanced. Nodes which do not lie in any
+ * district belong to the default area. A street segment belongs to the shard
+ * of its starting node.
+ *
+ * The partition only depends on the street map and the number of shards,
+ * such that all shards of a simulation compute the same partition.
+ *
+ * @author Andreas Poxrucker (DFKI)
+ *
+ */
+public class DistrictPartition {
+	// Name of the area containing nodes which do not lie in any district.
+	private static final String DEFAULT_AREA = "default";
+
+	// Number of shards.
+	private int nShards;
+
+	// Areas of the districts layer.
+	private Layer layer;
+
+	// Shard per area name.
+	private Map<String, Integer> areaShards;
+
+	// Shard per street node.
+	private Map<StreetNode, Integer> nodeShards;
+
+	// Street segments of the map in a fixed order and their shards.
+	private List<StreetSegment> segments;
+	private Map<StreetSegment, Integer> segmentIndices;
+	private int segmentShards[];
+
+	/**
+	 * Constructor.
+	 * Creates a new partition of the given street map which must have a
+	 * districts layer.
+	 *
+	 * @param map Street map to partition.
+	 * @param nShards Number of shards.
+	 */
+	public DistrictPartition(StreetMap map, int nShards) {
+
+		if (nShards < 1)
+			throw new IllegalArgumentException("Error: Number of shards must be positive.");
+		DistrictLayer districts = (DistrictLayer) map.getLayer(Layer.Type.DISTRICTS);
+
+		if (districts == null)
+			throw new IllegalStateException("Error: Street map has no districts layer.");
+		this.nShards = nShards;
+		layer = districts;
+
+		// Collect nodes per area name in a fixed order.
+		Map<String, List<StreetNode>> areaNodes = new TreeMap<String, List<StreetNode>>();
+
+		for (DistrictType type : DistrictType.values()) {
+			List<Area> areas = districts.getAreasOfType(type);
+
+			if (areas == null) continue;
+
+			for (Area area : areas) {
+				List<StreetNode> nodes = areaNodes.get(area.getName());
+
+				if (nodes == null) {
+					nodes = new ArrayList<StreetNode>();
+					areaNodes.put(area.getName(), nodes);
+				}
+				nodes.addAll(districts.getPointsInArea(area));
+			}
+		}
+		assignAreas(areaNodes);
+
+		// Assign nodes to the shard of the first district containing them.
+		nodeShards = new HashMap<StreetNode, Integer>();
+
+		for (StreetNode node : map.getStreetNodes()) {
+			nodeShards.put(node, getShard(districts.getAreasContainingPoint(node)));
+		}
+
+		// Assign segments to the shard of their starting node.
+		segments = new ArrayList<StreetSegment>(map.getStreetSegments());
+		Collections.sort(segments, new Comparator<StreetSegment>() {
+
+			@Override
+			public int compare(StreetSegment s1, StreetSegment s2) {
+				int c = Long.compare(s1.getId(), s2.getId());
+
+				if (c != 0) return c;
+				c = Long.compare(s1.getStartingNode().getId(), s2.getStartingNode().getId());
+				return (c != 0) ? c : Long.compare(s1.getEndingNode().getId(), s2.getEndingNode().getId());
+			}
+		});
+		segmentIndices = new IdentityHashMap<StreetSegment, Integer>();
+		segmentShards = new int[segments.size()];
+
+		for (int i = 0; i < segments.size(); i++) {
+			StreetSegment seg = segments.get(i);
+			segmentIndices.put(seg, i);
+			segmentShards[i] = getShard(seg.getStartingNode());
+		}
+	}
+
+	private void assignAreas(Map<String, List<StreetNode>> areaNodes) {
+		// Assign largest areas first to the shard having the fewest nodes.
+		List<String> names = new ArrayList<String>(areaNodes.keySet());
+		final Map<String, List<StreetNode>> nodes = areaNodes;
+		Collections.sort(names, new Comparator<String>() {
+
+			@Override
+			public int compare(String n1, String n2) {
+				int c = Integer.compare(nodes.get(n2).size(), nodes.get(n1).size());
+				return (c != 0) ? c : n1.compareTo(n2);
+			}
+		});
+		areaShards = new HashMap<String, Integer>();
+		long load[] = new long[nShards];
+
+		for (String name : names) {
+			int min = 0;
+
+			for (int i = 1; i < nShards; i++) {
+
+				if (load[i] < load[min]) min = i;
+			}
+			areaShards.put(name, min);
+			load[min] += nodes.get(name).size();
+		}
+	}
+
+	private int getShard(List<Area> areas) {
+
+		if (areas != null) {
+
+			for (Area area : areas) {
+
+				if (!area.getName().equals(DEFAULT_AREA)) return areaShards.get(area.getName());
+			}
+		}
+		Integer shard = areaShards.get(DEFAULT_AREA);
+		return (shard != null) ? shard : 0;
+	}
+
+	/**
+	 * Returns the number of shards.
+	 *
+	 * @return Number of shards.
+	 */
+	public int getNumberOfShards() {
+		return nShards;
+	}
+
+	/**
+	 * Returns the shard owning the given street node.
+	 *
+	 * @param node Street node.
+	 * @return Shard owning the node.
+	 */
+	public int getShard(StreetNode node) {
+		Integer shard = nodeShards.get(node);
+		return (shard != null) ? shard : getShard(layer.getAreasContainingPoint(node.getPosition()));
+	}
+
+	/**
+	 * Returns the shard owning the given position.
+	 *
+	 * @param position Position.
+	 * @return Shard owning the position.
+	 */
+	public int getShard(Coordinate position) {
+		return getShard(layer.getAreasContainingPoint(position));
+	}
+
+	/**
+	 * Returns the street segments of the partitioned map in a fixed order,
+	 * which is the same for all street maps created from the same file.
+	 *
+	 * @return Street segments of the partitioned map.
+	 */
+	public List<StreetSegment> getStreetSegments() {
+		return segments;
+	}
+
+	/**
+	 * Returns the index of the given segment in getStreetSegments().
+	 *
+	 * @param seg Street segment.
+	 * @return Index of the segment or -1, if segment is not part of the map.
+	 */
+	public int getSegmentIndex(StreetSegment seg) {
+		Integer index = segmentIndices.get(seg);
+		return (index != null) ? index : -1;
+	}
+
+	/**
+	 * Returns the shard owning the segment with the given index.
+	 *
+	 * @param index Index of the segment in getStreetSegments().
+	 * @return Shard owning the segment.
+	 */
+	public int getSegmentShard(int index) {
+		return segmentShards[index];
+	}
+}
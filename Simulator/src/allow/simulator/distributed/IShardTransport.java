@@ -0,0 +1,53 @@
+package allow.simulator.distributed;
+
+import java.util.List;
+
+/**
+ * Transport connecting the shards of a sharded simulation. Messages sent
+ * by a shard are delivered at the next barrier, i.e. when all shards have
+ * called exchange(...). All shards must call exchange(...) and
+ * allReduce(...) in the same order.
+ *
+ * @author Andreas Poxrucker (DFKI)
+ *
+ */
+public interface IShardTransport {
+
+	/**
+	 * Returns the number of shards connected by the transport.
+	 *
+	 * @return Number of shards.
+	 */
+	int getNumberOfShards();
+
+	/**
+	 * Sends a message to another shard. The message is delivered at the next
+	 * barrier.
+	 *
+	 * @param source Shard sending the message.
+	 * @param target Shard to deliver the message to.
+	 * @param payload Serialized content of the message.
+	 */
+	void send(int source, int target, byte payload[]);
+
+	/**
+	 * Waits until all shards have reached the barrier and returns the messages
+	 * sent to the given shard before the barrier ordered by sending shard.
+	 * Messages of the same shard are delivered in the order they were sent.
+	 *
+	 * @param shard Shard reaching the barrier.
+	 * @return Messages sent to the shard.
+	 */
+	List<ShardMessage> exchange(int shard);
+
+	/**
+	 * Waits until all shards have contributed their values and returns the
+	 * element-wise sum of the values of all shards.
+	 *
+	 * @param shard Shard contributing the values.
+	 * @param values Values of the shard.
+	 * @return Element-wise sum of the values of all shards.
+	 */
+	double[] allReduce(int shard, double values[]);
+
+}
@@ -0,0 +1,155 @@
+package allow.simulator.distributed;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CyclicBarrier;
+
+/**
+ * Transport connecting shards executed by threads of the same JVM. Intended
+ * as a stand-in for a network transport, e.g. to test sharded simulations on
+ * a single machine.
+ *
+ * @author Andreas Poxrucker (DFKI)
+ *
+ */
+public class LoopbackTransport implements IShardTransport {
+	// Number of shards.
+	private final int nShards;
+
+	// Messages sent to each shard since the last barrier.
+	private final List<Queue<ShardMessage>> pending;
+
+	// Messages delivered to each shard at the last barrier.
+	private final List<List<ShardMessage>> delivered;
+
+	// Values contributed to the current reduction and its result.
+	private final double contributions[][];
+	private volatile double result[];
+
+	// Barriers to exchange messages and to reduce values.
+	private final CyclicBarrier exchangeBarrier;
+	private final CyclicBarrier reduceBarrier;
+
+	/**
+	 * Constructor.
+	 * Creates a new transport connecting the given number of shards.
+	 *
+	 * @param nShards Number of shards.
+	 */
+	public LoopbackTransport(int nShards) {
+
+		if (nShards < 1)
+			throw new IllegalArgumentException("Error: Number of shards must be positive.");
+		this.nShards = nShards;
+		pending = new ArrayList<Queue<ShardMessage>>(nShards);
+		delivered = new ArrayList<List<ShardMessage>>(nShards);
+
+		for (int i = 0; i < nShards; i++) {
+			pending.add(new ConcurrentLinkedQueue<ShardMessage>());
+			delivered.add(new ArrayList<ShardMessage>());
+		}
+		contributions = new double[nShards][];
+
+		exchangeBarrier = new CyclicBarrier(nShards, new Runnable() {
+
+			@Override
+			public void run() {
+				deliver();
+			}
+		});
+		reduceBarrier = new CyclicBarrier(nShards, new Runnable() {
+
+			@Override
+			public void run() {
+				reduce();
+			}
+		});
+	}
+
+	@Override
+	public int getNumberOfShards() {
+		return nShards;
+	}
+
+	@Override
+	public void send(int source, int target, byte payload[]) {
+		pending.get(target).add(new ShardMessage(source, payload));
+	}
+
+	@Override
+	public List<ShardMessage> exchange(int shard) {
+		await(exchangeBarrier);
+		List<ShardMessage> ret = new ArrayList<ShardMessage>(delivered.get(shard));
+		delivered.get(shard).clear();
+		return ret;
+	}
+
+	@Override
+	public double[] allReduce(int shard, double values[]) {
+		contributions[shard] = values;
+		await(reduceBarrier);
+		return result.clone();
+	}
+
+	/**
+	 * Breaks the barriers, such that shards waiting for other shards (e.g.
+	 * after a shard failed) fail, too.
+	 */
+	public void abort() {
+		exchangeBarrier.reset();
+		reduceBarrier.reset();
+	}
+
+	private void deliver() {
+		// Order messages by sending shard keeping the order of each shard.
+		List<List<ShardMessage>> bySource = new ArrayList<List<ShardMessage>>(nShards);
+
+		for (int i = 0; i < nShards; i++) {
+			bySource.add(new ArrayList<ShardMessage>());
+		}
+
+		for (int target = 0; target < nShards; target++) {
+			ShardMessage m = null;
+
+			while ((m = pending.get(target).poll()) != null) {
+				bySource.get(m.getSource()).add(m);
+			}
+			List<ShardMessage> messages = delivered.get(target);
+
+			for (List<ShardMessage> fromSource : bySource) {
+				messages.addAll(fromSource);
+				fromSource.clear();
+			}
+		}
+	}
+
+	private void reduce() {
+		double sum[] = new double[contributions[0].length];
+
+		for (double values[] : contributions) {
+
+			if (values.length != sum.length)
+				throw new IllegalStateException("Error: Shards contributed different numbers of values.");
+
+			for (int i = 0; i < sum.length; i++) sum[i] += values[i];
+		}
+		result = sum;
+	}
+
+	private static void await(CyclicBarrier barrier) {
+
+		try {
+			barrier.await();
+
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Error: Interrupted while waiting for other shards.");
+
+		} catch (BrokenBarrierException e) {
+			throw new IllegalStateException("Error: Other shard failed.");
+		}
+	}
+}
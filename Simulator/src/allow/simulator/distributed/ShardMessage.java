@@ -0,0 +1,45 @@
+package allow.simulator.distributed;
+
+/**
+ * Message exchanged between shards of a sharded simulation.
+ *
+ * @author Andreas Poxrucker (DFKI)
+ *
+ */
+public final class ShardMessage {
+	// Shard which sent the message.
+	private final int source;
+
+	// Serialized content of the message.
+	private final byte payload[];
+
+	/**
+	 * Constructor.
+	 * Creates a new message.
+	 *
+	 * @param source Shard sending the message.
+	 * @param payload Serialized content of the message.
+	 */
+	public ShardMessage(int source, byte payload[]) {
+		this.source = source;
+		this.payload = payload;
+	}
+
+	/**
+	 * Returns the shard which sent the message.
+	 *
+	 * @return Shard which sent the message.
+	 */
+	public int getSource() {
+		return source;
+	}
+
+	/**
+	 * Returns the serialized content of the message.
+	 *
+	 * @return Serialized content of the message.
+	 */
+	public byte[] getPayload() {
+		return payload;
+	}
+}
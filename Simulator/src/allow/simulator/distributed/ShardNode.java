@@ -0,0 +1,390 @@
+package allow.simulator.distributed;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import allow.simulator.core.Context;
+import allow.simulator.core.ICommitListener;
+import allow.simulator.core.IPersonFilter;
+import allow.simulator.core.PersonScheduler;
+import allow.simulator.core.Simulator;
+import allow.simulator.entity.Entity;
+import allow.simulator.entity.Person;
+import allow.simulator.statistics.GlobalStatistics;
+import allow.simulator.util.Coordinate;
+import allow.simulator.world.IWorld;
+import allow.simulator.world.StreetSegment;
+
+/**
+ * Shard of a sharded simulation. A shard owns the persons and street
+ * segments located in its districts (see DistrictPartition). All shards are
+ * set up from the same configuration and seed, but only load the persons
+ * whose home lies in their districts (see OwnedPersons). Persons owned by
+ * other shards do not exist in a shard until they are handed off to it.
+ *
+ * At the barrier of each step (after changes have been committed):
+ *
+ * - Persons which finished a journey during the step and whose position
+ *   lies in the districts of another shard are handed off to that shard
+ *   including their definition and state, from which the receiving shard
+ *   creates the person. Only persons which became idle are visited (see
+ *   PersonScheduler.getNewlyIdlePersons()).
+ * - Shards report the number of vehicles they simulate on segments owned by
+ *   other shards to the owning shards.
+ * - Owning shards reply with the number of vehicles simulated by all other
+ *   shards, such that driving speeds reflect all vehicles on a segment.
+ *
+ * Means of public transportation are simulated by all shards (see
+ * SimulationParameter.Shard).
+ *
+ * @author Andreas Poxrucker (DFKI)
+ *
+ */
+public class ShardNode implements ICommitListener {
+
+	/**
+	 * Filter of the persons of the population owned by a shard when the
+	 * simulation is set up, i.e. whose home lies in the districts of the
+	 * shard. Keeps the definitions of the owned persons to hand them off to
+	 * other shards.
+	 *
+	 * @author Andreas Poxrucker (DFKI)
+	 *
+	 */
+	public static final class OwnedPersons implements IPersonFilter {
+		// Index of the shard.
+		private final int shard;
+
+		// Partition of the street map.
+		private final DistrictPartition partition;
+
+		// Definitions of owned persons by Id.
+		private final Map<Long, String> definitions;
+
+		/**
+		 * Constructor.
+		 * Creates a new filter of the persons owned by a shard.
+		 *
+		 * @param shard Index of the shard.
+		 * @param partition Partition of the street map into shards.
+		 */
+		public OwnedPersons(int shard, DistrictPartition partition) {
+			this.shard = shard;
+			this.partition = partition;
+			definitions = new HashMap<Long, String>();
+		}
+
+		@Override
+		public boolean accept(Person p, String definition) {
+
+			if (partition.getShard(p.getHome()) != shard) return false;
+			definitions.put(p.getId(), definition);
+			return true;
+		}
+	}
+
+	// Types of messages.
+	private static final byte HANDOFF = 0;
+	private static final byte VEHICLES = 1;
+	private static final byte REMOTE_VEHICLES = 2;
+
+	// Index of the shard.
+	private int shard;
+
+	// Transport connecting shards.
+	private IShardTransport transport;
+
+	// Partition of the street map.
+	private DistrictPartition partition;
+
+	// Simulator of the shard.
+	private Simulator simulator;
+
+	// Definitions of owned persons by Id.
+	private Map<Long, String> definitions;
+
+	// Positions of owned persons when they were last assigned to a shard.
+	private Map<Long, Coordinate> assignedPositions;
+
+	// Number of vehicles per shard on owned segments by segment index.
+	private Map<Integer, int[]> vehicles;
+
+	// Number of remote vehicles last sent to each shard by segment index.
+	private Map<Integer, int[]> sentRemoteVehicles;
+
+	// Owned segments whose number of vehicles changed during the current step.
+	private TreeSet<Integer> changed;
+
+	/**
+	 * Constructor.
+	 * Creates a new shard from a simulator which must have been set up with
+	 * SimulationParameter.Shard set to the index of the shard and the given
+	 * filter of owned persons (see Simulator.setPersonFilter(...)).
+	 *
+	 * @param shard Index of the shard.
+	 * @param transport Transport connecting shards.
+	 * @param simulator Simulator of the shard.
+	 * @param owned Filter of persons the simulator was set up with.
+	 */
+	public ShardNode(int shard, IShardTransport transport, Simulator simulator, OwnedPersons owned) {
+
+		if (simulator.getContext().getSimulationParameters().Shard != shard || owned.shard != shard)
+			throw new IllegalArgumentException("Error: Simulator was not set up for shard " + shard + ".");
+
+		if (owned.partition.getNumberOfShards() != transport.getNumberOfShards())
+			throw new IllegalArgumentException("Error: Partition does not match number of shards.");
+		this.shard = shard;
+		this.transport = transport;
+		this.simulator = simulator;
+		partition = owned.partition;
+		definitions = owned.definitions;
+		assignedPositions = new HashMap<Long, Coordinate>();
+		vehicles = new HashMap<Integer, int[]>();
+		sentRemoteVehicles = new HashMap<Integer, int[]>();
+		changed = new TreeSet<Integer>();
+
+		for (Entity p : simulator.getWorld().getEntitiesOfType(Entity.Type.PERSON)) {
+			assignedPositions.put(p.getId(), new Coordinate(p.getPosition()));
+		}
+		simulator.setCommitListener(this);
+	}
+
+	/**
+	 * Returns the index of the shard.
+	 *
+	 * @return Index of the shard.
+	 */
+	public int getShard() {
+		return shard;
+	}
+
+	/**
+	 * Returns the simulator of the shard.
+	 *
+	 * @return Simulator of the shard.
+	 */
+	public Simulator getSimulator() {
+		return simulator;
+	}
+
+	/**
+	 * Returns the partition of the street map into shards.
+	 *
+	 * @return Partition of the street map.
+	 */
+	public DistrictPartition getPartition() {
+		return partition;
+	}
+
+	/**
+	 * Reduces the statistics of all shards. Must be called by all shards at
+	 * the end of each step.
+	 *
+	 * @return Statistics of the whole simulation.
+	 */
+	public GlobalStatistics reduceStatistics() {
+		Context ctx = simulator.getContext();
+		int nPersons = ctx.getWorld().getEntitiesOfType(Entity.Type.PERSON).size();
+		double sum[] = transport.allReduce(shard, GlobalStatistics.contribution(ctx.getStatistics(), nPersons));
+		return new GlobalStatistics(sum, transport.getNumberOfShards());
+	}
+
+	@Override
+	public void changesCommitted(Context context) {
+
+		try {
+			// Send persons and vehicles to other shards.
+			int nShards = transport.getNumberOfShards();
+			ByteArrayOutputStream buffers[] = new ByteArrayOutputStream[nShards];
+			handOffPersons(context.getWorld());
+			sendVehicles(context.getWorld(), buffers);
+
+			for (ShardMessage m : transport.exchange(shard)) {
+				DataInputStream in = new DataInputStream(new ByteArrayInputStream(m.getPayload()));
+				byte type = in.readByte();
+
+				if (type == HANDOFF) {
+					receivePerson(context.getWorld(), in);
+
+				} else if (type == VEHICLES) {
+					receiveVehicles(m.getSource(), in);
+
+				} else {
+					throw new IllegalStateException("Error: Unexpected message " + type + " from shard " + m.getSource() + ".");
+				}
+			}
+
+			// Reply number of vehicles of other shards on owned segments.
+			sendRemoteVehicles(buffers);
+
+			for (ShardMessage m : transport.exchange(shard)) {
+				DataInputStream in = new DataInputStream(new ByteArrayInputStream(m.getPayload()));
+				byte type = in.readByte();
+
+				if (type != REMOTE_VEHICLES)
+					throw new IllegalStateException("Error: Unexpected message " + type + " from shard " + m.getSource() + ".");
+				receiveRemoteVehicles(in);
+			}
+
+		} catch (IOException e) {
+			throw new IllegalStateException("Error: Failed to exchange state with other shards.", e);
+		}
+	}
+
+	private void handOffPersons(IWorld world) throws IOException {
+		PersonScheduler scheduler = simulator.getPersonScheduler();
+
+		// Persons are handed off after finishing a journey.
+		for (Person p : scheduler.getNewlyIdlePersons()) {
+
+			if (p.getPosition().equals(assignedPositions.get(p.getId()))) continue;
+			int target = partition.getShard(p.getPosition());
+
+			if (target == shard) {
+				assignedPositions.put(p.getId(), new Coordinate(p.getPosition()));
+				continue;
+			}
+			ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(buffer);
+			byte definition[] = definitions.remove(p.getId()).getBytes(StandardCharsets.UTF_8);
+			out.writeByte(HANDOFF);
+			out.writeInt(definition.length);
+			out.write(definition);
+			p.writeState(out);
+			out.flush();
+			transport.send(shard, target, buffer.toByteArray());
+
+			scheduler.unschedule(p);
+			world.removeEntity(p.getId());
+			assignedPositions.remove(p.getId());
+		}
+	}
+
+	private void receivePerson(IWorld world, DataInputStream in) throws IOException {
+		byte bytes[] = new byte[in.readInt()];
+		in.readFully(bytes);
+		String definition = new String(bytes, StandardCharsets.UTF_8);
+		Person p = simulator.createPerson(definition);
+
+		if (world.getEntityById(p.getId()) != null)
+			throw new IllegalStateException("Error: Person " + p.getId() + " already exists in shard " + shard + ".");
+		p.readState(in);
+		world.addEntity(p);
+		definitions.put(p.getId(), definition);
+		assignedPositions.put(p.getId(), new Coordinate(p.getPosition()));
+		simulator.getPersonScheduler().schedule(p);
+	}
+
+	private void sendVehicles(IWorld world, ByteArrayOutputStream buffers[]) throws IOException {
+		int counts[] = new int[buffers.length];
+
+		for (StreetSegment seg : world.getStreetMap().getCommittedSegments()) {
+			int index = partition.getSegmentIndex(seg);
+
+			// Segments of public transportation traces are not shared.
+			if (index == -1) continue;
+			int owner = partition.getSegmentShard(index);
+
+			if (owner == shard) {
+				changed.add(index);
+				continue;
+			}
+			DataOutputStream out = getBuffer(buffers, owner, VEHICLES);
+			out.writeInt(index);
+			out.writeInt(seg.getNumberOfLocalVehicles());
+			counts[owner]++;
+		}
+		flush(buffers, counts);
+	}
+
+	private void receiveVehicles(int source, DataInputStream in) throws IOException {
+
+		while (in.available() > 0) {
+			int index = in.readInt();
+			int n = in.readInt();
+			int perShard[] = vehicles.get(index);
+
+			if (perShard == null) {
+				perShard = new int[transport.getNumberOfShards()];
+				vehicles.put(index, perShard);
+			}
+			perShard[source] = n;
+			changed.add(index);
+		}
+	}
+
+	private void sendRemoteVehicles(ByteArrayOutputStream buffers[]) throws IOException {
+		int nShards = buffers.length;
+		int counts[] = new int[nShards];
+		List<StreetSegment> segments = partition.getStreetSegments();
+
+		for (int index : changed) {
+			StreetSegment seg = segments.get(index);
+			int perShard[] = vehicles.get(index);
+			int total = seg.getNumberOfLocalVehicles();
+
+			if (perShard != null) {
+
+				for (int i = 0; i < nShards; i++) total += perShard[i];
+			}
+			int sent[] = sentRemoteVehicles.get(index);
+
+			if (sent == null) {
+				sent = new int[nShards];
+				sentRemoteVehicles.put(index, sent);
+			}
+
+			for (int i = 0; i < nShards; i++) {
+				int remote = total - ((i == shard) ? seg.getNumberOfLocalVehicles() : ((perShard != null) ? perShard[i] : 0));
+
+				if (i == shard) {
+					seg.setRemoteVehicles(remote);
+
+				} else if (remote != sent[i]) {
+					DataOutputStream out = getBuffer(buffers, i, REMOTE_VEHICLES);
+					out.writeInt(index);
+					out.writeInt(remote);
+					sent[i] = remote;
+					counts[i]++;
+				}
+			}
+		}
+		changed.clear();
+		flush(buffers, counts);
+	}
+
+	private void receiveRemoteVehicles(DataInputStream in) throws IOException {
+		List<StreetSegment> segments = partition.getStreetSegments();
+
+		while (in.available() > 0) {
+			int index = in.readInt();
+			segments.get(index).setRemoteVehicles(in.readInt());
+		}
+	}
+
+	private DataOutputStream getBuffer(ByteArrayOutputStream buffers[], int target, byte type) throws IOException {
+
+		if (buffers[target] == null) {
+			buffers[target] = new ByteArrayOutputStream();
+			buffers[target].write(type);
+		}
+		return new DataOutputStream(buffers[target]);
+	}
+
+	private void flush(ByteArrayOutputStream buffers[], int counts[]) {
+
+		for (int i = 0; i < buffers.length; i++) {
+
+			if (counts[i] > 0) transport.send(shard, i, buffers[i].toByteArray());
+			buffers[i] = null;
+		}
+	}
+}
@@ -0,0 +1,193 @@
+package allow.simulator.distributed;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import allow.simulator.core.Configuration;
+import allow.simulator.core.Context;
+import allow.simulator.core.HeadlessSimulation;
+import allow.simulator.core.SharedData;
+import allow.simulator.core.SimulationParameter;
+import allow.simulator.core.Simulator;
+import allow.simulator.statistics.GlobalStatistics;
+
+/**
+ * Executes a simulation partitioned into shards by districts (see ShardNode).
+ * Each shard is executed by its own thread and connected to the other
+ * shards by a LoopbackTransport. Statistics of all shards are reduced at the
+ * end of each step and written by shard 0 in the format of
+ * HeadlessSimulation.
+ *
+ * Usage: ShardedSimulation config runNumber knowledgeModel days output shards [gridExtent [threads [seed]]] [Name=value ...]
+ *
+ * Arguments of the form Name=value set further simulation parameters of all
+ * shards (see SimulationParameter.setOption(...)).
+ *
+ * @author Andreas Poxrucker (DFKI)
+ *
+ */
+public class ShardedSimulation {
+	// Transport connecting the shards.
+	private LoopbackTransport transport;
+
+	// Shards of the simulation.
+	private List<ShardNode> shards;
+
+	/**
+	 * Constructor.
+	 * Creates and sets up a new sharded simulation. Data loaded during setup
+	 * is shared between the shards.
+	 *
+	 * @param config Configuration of the simulation.
+	 * @param params Parameters of the simulation run.
+	 * @param nShards Number of shards.
+	 * @param extent Extent of the neighbourhood grid.
+	 * @throws IOException
+	 */
+	public ShardedSimulation(Configuration config, SimulationParameter params, int nShards, int extent) throws IOException {
+		transport = new LoopbackTransport(nShards);
+		shards = new ArrayList<ShardNode>(nShards);
+		SharedData sharedData = new SharedData();
+		DistrictPartition partition = new DistrictPartition(sharedData.getStreetMap(config), nShards);
+
+		for (int i = 0; i < nShards; i++) {
+			SimulationParameter shardParams = new SimulationParameter(params);
+			shardParams.Shard = i;
+
+			// Load only persons owned by the shard.
+			ShardNode.OwnedPersons owned = new ShardNode.OwnedPersons(i, partition);
+			Simulator simulator = new Simulator(sharedData);
+			simulator.setPersonFilter(owned);
+			simulator.setupHeadless(config, shardParams, -extent, extent, -extent, extent);
+			shards.add(new ShardNode(i, transport, simulator, owned));
+		}
+	}
+
+	/**
+	 * Executes all shards for the given number of steps writing the reduced
+	 * statistics after each step.
+	 *
+	 * @param steps Number of steps to execute.
+	 * @param threads Number of threads per shard to execute entities.
+	 * @param output Path to write statistics to.
+	 * @throws IOException
+	 */
+	public void run(final long steps, final int threads, final Path output) throws IOException {
+		ExecutorService pool = Executors.newFixedThreadPool(shards.size());
+		List<Future<Void>> results = new ArrayList<Future<Void>>(shards.size());
+
+		for (final ShardNode shard : shards) {
+			results.add(pool.submit(new Callable<Void>() {
+
+				@Override
+				public Void call() throws Exception {
+
+					try {
+						runShard(shard, steps, threads, (shard.getShard() == 0) ? output : null);
+						return null;
+
+					} catch (Exception e) {
+						// Release other shards waiting at the next barrier.
+						transport.abort();
+						throw e;
+					}
+				}
+			}));
+		}
+		pool.shutdown();
+
+		try {
+			for (Future<Void> result : results) {
+				result.get();
+			}
+
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+
+		} catch (ExecutionException e) {
+			throw new IOException(e.getCause());
+		}
+	}
+
+	private static void runShard(ShardNode shard, long steps, int threads, Path output) throws IOException {
+		Simulator simulator = shard.getSimulator();
+		HeadlessSimulation driver = new HeadlessSimulation(simulator, threads);
+		simulator.getContext().getStatistics().updateGlobalStatistics(simulator.getContext());
+		BufferedWriter wr = (output != null) ? Files.newBufferedWriter(output, Charset.defaultCharset()) : null;
+
+		try {
+			writeStatistics(wr, simulator.getContext(), shard.reduceStatistics());
+
+			for (long i = 0; i < steps; i++) {
+				driver.step(HeadlessSimulation.DELTA_T);
+				writeStatistics(wr, simulator.getContext(), shard.reduceStatistics());
+			}
+
+		} finally {
+			if (wr != null) wr.close();
+			driver.finish();
+			simulator.finish();
+		}
+	}
+
+	private static void writeStatistics(BufferedWriter wr, Context ctx, GlobalStatistics s) throws IOException {
+
+		if (wr == null) return;
+		StringBuilder line = new StringBuilder();
+		line.append(ctx.getTime().toString()).append(';');
+		line.append(ctx.getWeather().getCurrentState().getDescription()).append(';');
+		line.append(s.getMeanPriorCarTravelTime()).append(';');
+		line.append(s.getMeanPosteriorCarTravelTime()).append(';');
+		line.append(s.getMeanPriorBusTravelTime()).append(';');
+		line.append(s.getMeanPosteriorBusTravelTime()).append(';');
+		line.append(s.getMeanBusPreference()).append(';');
+		line.append(s.getMeanCarPreference()).append(';');
+		line.append(s.getCarJourneyRatio()).append(';');
+		line.append(s.getTransitJourneyRatio()).append(';');
+		line.append(s.getBikeJourneyRatio()).append(';');
+		line.append(s.getWalkJourneyRatio()).append(';');
+		line.append(s.getMeanBusFillingLevel()).append(';');
+		line.append(s.getMeanPriorUtilityCar()).append(';');
+		line.append(s.getMeanPosteriorUtilityCar()).append(';');
+		line.append(s.getMeanPriorUtilityBus()).append(';');
+		line.append(s.getMeanPosteriorUtilityBus()).append(';');
+		line.append(s.getTaxiJourneyRatio()).append(';');
+		line.append(s.getMeanReplaningWaitingTime());
+		wr.write(line.toString());
+		wr.newLine();
+	}
+
+	public static void main(String[] args) throws IOException {
+		SimulationParameter params = new SimulationParameter();
+		args = params.setOptions(args);
+
+		if (args.length < 6) {
+			System.out.println("Usage: ShardedSimulation config runNumber knowledgeModel days output shards [gridExtent [threads [seed]]] [Name=value ...]");
+			System.out.println("Options: " + SimulationParameter.OPTIONS);
+			return;
+		}
+		Configuration config = Configuration.fromJSON(Paths.get(args[0]));
+		params.BehaviourSpaceRunNumber = Integer.parseInt(args[1]);
+		params.KnowledgeModel = args[2];
+		int days = Integer.parseInt(args[3]);
+		Path output = Paths.get(args[4]);
+		int nShards = Integer.parseInt(args[5]);
+		int extent = (args.length > 6) ? Integer.parseInt(args[6]) : HeadlessSimulation.DEFAULT_GRID_EXTENT;
+		int threads = (args.length > 7) ? Integer.parseInt(args[7]) : Math.max(1, Runtime.getRuntime().availableProcessors() / nShards);
+		params.Seed = (args.length > 8) ? Long.parseLong(args[8]) : params.BehaviourSpaceRunNumber;
+
+		ShardedSimulation simulation = new ShardedSimulation(config, params, nShards, extent);
+		simulation.run((long) days * 24 * 3600 / HeadlessSimulation.DELTA_T, threads, output);
+	}
+}
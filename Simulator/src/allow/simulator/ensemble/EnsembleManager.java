@@ -1,7 +1,7 @@
 package allow.simulator.ensemble;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import allow.simulator.entity.Entity;
 
@@ -13,14 +13,15 @@ public class EnsembleManager {
 	private Map<String, Ensemble> ensembles;
 	
 	public EnsembleManager() {
-		ensembles = new HashMap<String, Ensemble>();
+		// Ensembles may be created and queried by entities executed in parallel.
+		ensembles = new ConcurrentHashMap<String, Ensemble>();
 	}
 	
 	public Ensemble getEnsemble(String id) {
 		return ensembles.get(id);
 	}
 	
-	public Ensemble createEnsemble(String id, Entity creator) {
+	public synchronized Ensemble createEnsemble(String id, Entity creator) {
 		Ensemble ensemble = ensembles.get(id);
 		
 		if (ensemble == null) {
@@ -1,8 +1,11 @@
 package allow.simulator.entity;
 
-import java.util.Observable;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import allow.simulator.core.Context;
 import allow.simulator.ensemble.IMessage;
@@ -11,7 +14,9 @@ import allow.simulator.entity.relation.RelationGraph;
 import allow.simulator.entity.utility.IUtility;
 import allow.simulator.entity.utility.Preferences;
 import allow.simulator.flow.activity.Flow;
+import allow.simulator.flow.activity.IDeferredActivity;
 import allow.simulator.util.Coordinate;
+import allow.simulator.util.RandomStream;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
@@ -21,7 +26,7 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
  * @author Andreas Poxrucker (DFKI)
  *
  */
-public abstract class Entity extends Observable {
+public abstract class Entity {
 	
 	public enum Type {
 		
@@ -101,9 +106,26 @@ public abstract class Entity extends Observable {
 	@JsonIgnore
 	protected Coordinate position;
 	
+	// True, if the position changed since the last call of clearPositionChanged().
+	@JsonIgnore
+	protected final AtomicBoolean positionChanged = new AtomicBoolean();
+	
+	// Queue of the world the entity is added to when its position changes.
+	@JsonIgnore
+	private volatile Queue<Entity> movedEntities;
+	
+	// Activity the position is derived from while the entity is put aside
+	// or null.
+	@JsonIgnore
+	private volatile IDeferredActivity deferred;
+	
 	@JsonIgnore
 	protected Queue<IMessage> messageQueue;
 	
+	// Random number stream of the entity.
+	@JsonIgnore
+	protected RandomStream random;
+	
 	/**
 	 * Constructor.
 	 * Creates a new entity with in a given simulation context. Knowledge and
@@ -122,6 +144,7 @@ public abstract class Entity extends Observable {
 		knowledge = new EvoKnowledge(this);
 		relations = new RelationGraph(this);
 		this.context = context;
+		random = context.getRandomService().getEntityStream(id);
 		flow = new Flow();
 		this.utility = utility;
 		this.preferences = prefs;
@@ -173,24 +196,110 @@ public abstract class Entity extends Observable {
 	}
 	
 	/**
-	 * Get current position of entity.
+	 * Get current position of entity. While the entity is put aside, the
+	 * position is derived from its deferred activity for the current point
+	 * in time (see setDeferredActivity(...)).
 	 * 
 	 * @return Current position of entity.
 	 */
 	public Coordinate getPosition() {
+		IDeferredActivity d = deferred;
+		
+		if (d != null) {
+			return d.getPosition(context.getTime().getTimestamp(), new Coordinate());
+		}
 		return new Coordinate(position.x, position.y);
 	}
 		
 	/**
-	 * Set the current position of the entity.
+	 * Set the current position of the entity. Observers of the position
+	 * (e.g. spatial grids and visualization) are updated once per step for
+	 * all entities which moved (see IWorld.updateGrid()). The entity is added
+	 * to the queue of moved entities only by the first change since the last
+	 * call of clearPositionChanged().
 	 * 
 	 * @param newPosition The new position of the entity.
 	 */
 	public void setPosition(Coordinate newPosition) {
 		position.x = newPosition.x;
 		position.y = newPosition.y;
-		setChanged();
-		notifyObservers();
+		markPositionChanged();
+	}
+	
+	/**
+	 * Marks the position of the entity as changed without setting it, e.g.
+	 * when the segment changes the position is derived from (see
+	 * IDeferredActivity.getSegment(...)).
+	 */
+	public void markPositionChanged() {
+		
+		if (positionChanged.compareAndSet(false, true)) {
+			Queue<Entity> moved = movedEntities;
+			
+			if (moved != null) moved.add(this);
+		}
+	}
+	
+	/**
+	 * Puts the entity aside while executing the given activity, such that
+	 * its position is derived from the activity on request instead of being
+	 * set in every step. Passing null sets the position derived for the
+	 * current point in time and stops deriving it. Must not be called
+	 * concurrently to entities being executed.
+	 * 
+	 * @param activity Activity to derive the position from or null.
+	 */
+	public void setDeferredActivity(IDeferredActivity activity) {
+		
+		if (activity == null && deferred != null) {
+			Coordinate p = getPosition();
+			deferred = null;
+			setPosition(p);
+			
+		} else if (activity != null) {
+			deferred = activity;
+			markPositionChanged();
+		}
+	}
+	
+	/**
+	 * Returns the activity the position of the entity is derived from while
+	 * it is put aside.
+	 * 
+	 * @return Deferred activity or null, if the entity is not put aside.
+	 */
+	@JsonIgnore
+	public IDeferredActivity getDeferredActivity() {
+		return deferred;
+	}
+	
+	/**
+	 * Sets the queue the entity is added to when its position changes. Set
+	 * by the world when the entity is added.
+	 * 
+	 * @param moved Queue of moved entities or null.
+	 */
+	public void setMovedEntities(Queue<Entity> moved) {
+		movedEntities = moved;
+	}
+	
+	/**
+	 * Returns true, if the position of the entity changed since the last
+	 * call of clearPositionChanged().
+	 * 
+	 * @return True, if position changed, false otherwise.
+	 */
+	public boolean hasPositionChanged() {
+		return positionChanged.get();
+	}
+	
+	/**
+	 * Marks the position of the entity as unchanged.
+	 * 
+	 * @return True, if the position was marked as changed, false otherwise.
+	 */
+	public boolean clearPositionChanged() {
+		return positionChanged.getAndSet(false);
 	}
 	
 	/**
@@ -241,6 +350,20 @@ public abstract class Entity extends Observable {
 	 */
 	public void setContext(Context context) {
 		this.context = context;
+		random = context.getRandomService().getEntityStream(id);
+	}
+	
+	/**
+	 * Returns the random number stream of this entity. The stream is derived
+	 * from the seed of the simulation and the Id of the entity and must only
+	 * be used by this entity.
+	 * 
+	 * @return Random number stream of this entity or null in case entity has
+	 *         not been assigned to a specific simulation context.
+	 */
+	@JsonIgnore
+	public RandomStream getRandom() {
+		return random;
 	}
 	
 	/**
@@ -298,6 +421,43 @@ public abstract class Entity extends Observable {
 	@JsonIgnore
 	public abstract boolean isActive();
 	
+	/**
+	 * Writes the state of the entity which changes during simulation, i.e.
+	 * position, preferences, and the state of its random number stream.
+	 * Subclasses having additional state extend this method.
+	 * 
+	 * @param out Output to write state to.
+	 * @throws IOException
+	 */
+	public void writeState(DataOutput out) throws IOException {
+		Coordinate p = getPosition();
+		out.writeDouble(p.x);
+		out.writeDouble(p.y);
+		out.writeLong(random.getState());
+		out.writeBoolean(preferences != null);
+		
+		if (preferences != null) {
+			preferences.writeState(out);
+		}
+	}
+	
+	/**
+	 * Restores the state of the entity written by writeState(...).
+	 * 
+	 * @param in Input to read state from.
+	 * @throws IOException
+	 */
+	public void readState(DataInput in) throws IOException {
+		double x = in.readDouble();
+		double y = in.readDouble();
+		setPosition(new Coordinate(x, y));
+		random.setState(in.readLong());
+		
+		if (in.readBoolean()) {
+			preferences.readState(in);
+		}
+	}
+	
 	/**
 	 * Initiate knowledge exchange with other entities.
 	 */
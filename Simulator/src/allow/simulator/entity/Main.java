@@ -56,7 +56,7 @@ public class Main {
 			this.idxEnd = idxEnd;
 			this.map = map;
 			this.latch = latch;
-			service = new OnlineJourneyPlanner("localhost", 8020, Paths.get("temp"));
+			service = new OnlineJourneyPlanner("localhost", 8020, null);
 		}
 
 		@Override
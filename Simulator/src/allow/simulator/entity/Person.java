@@ -1,5 +1,8 @@
 package allow.simulator.entity;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.time.LocalTime;
 import java.util.ArrayDeque;
 import java.util.Queue;
@@ -9,6 +12,8 @@ import allow.simulator.entity.utility.IUtility;
 import allow.simulator.entity.utility.Preferences;
 import allow.simulator.entity.utility.UtilityWithoutPreferences;
 import allow.simulator.flow.activity.Activity;
+import allow.simulator.flow.activity.person.PlanJourney;
+import allow.simulator.flow.activity.person.RegisterToFlexiBus;
 import allow.simulator.mobility.planner.Itinerary;
 import allow.simulator.mobility.planner.RequestBuffer;
 import allow.simulator.util.Coordinate;
@@ -406,6 +411,115 @@ public final class Person extends Entity {
 		return schedule;
 	}
 	
+	/**
+	 * Moves the next activity of the scheduling queue to the flow of the
+	 * person, if the person is currently idle and the activity is due at the
+	 * current time of day.
+	 * 
+	 * @return True, if a scheduled activity was started, false otherwise.
+	 */
+	public boolean startScheduledActivity() {
+		Pair<LocalTime, Activity> next = schedule.peek();
+		
+		if (!flow.isIdle() || (next == null)) {
+			return false;
+		}
+		
+		if (next.first.compareTo(context.getTime().getCurrentTime()) > 0) {
+			return false;
+		}
+		flow.addActivity(next.second);
+		schedule.poll();
+		return true;
+	}
+	
+	/**
+	 * Writes the state of the person including the scheduling queue. The
+	 * scheduling queue may contain journey planning and FlexiBus registration
+	 * activities only.
+	 * 
+	 * @param out Output to write state to.
+	 * @throws IOException
+	 */
+	@Override
+	public void writeState(DataOutput out) throws IOException {
+		super.writeState(out);
+		out.writeBoolean(hasCar);
+		out.writeBoolean(hasBike);
+		out.writeBoolean(useFlexiBus);
+		out.writeBoolean(usedCar);
+		out.writeBoolean(isReplanning);
+		out.writeInt(schedule.size());
+		
+		for (Pair<LocalTime, Activity> next : schedule) {
+			out.writeInt(next.first.toSecondOfDay());
+			
+			if (next.second instanceof PlanJourney) {
+				PlanJourney plan = (PlanJourney) next.second;
+				out.writeByte(0);
+				writeCoordinate(out, plan.getStart());
+				writeCoordinate(out, plan.getDestination());
+				
+			} else if (next.second instanceof RegisterToFlexiBus) {
+				RegisterToFlexiBus register = (RegisterToFlexiBus) next.second;
+				out.writeByte(1);
+				writeCoordinate(out, register.getStart());
+				writeCoordinate(out, register.getDestination());
+				out.writeInt(register.getEarliestStartingTime().toSecondOfDay());
+				
+			} else {
+				throw new IllegalStateException("Error: Cannot write scheduled activity " + next.second);
+			}
+		}
+	}
+	
+	/**
+	 * Restores the state of the person written by writeState(...).
+	 * 
+	 * @param in Input to read state from.
+	 * @throws IOException
+	 */
+	@Override
+	public void readState(DataInput in) throws IOException {
+		super.readState(in);
+		hasCar = in.readBoolean();
+		hasBike = in.readBoolean();
+		useFlexiBus = in.readBoolean();
+		usedCar = in.readBoolean();
+		isReplanning = in.readBoolean();
+		schedule.clear();
+		int n = in.readInt();
+		
+		for (int i = 0; i < n; i++) {
+			LocalTime t = LocalTime.ofSecondOfDay(in.readInt());
+			byte kind = in.readByte();
+			Coordinate start = readCoordinate(in);
+			Coordinate dest = readCoordinate(in);
+			
+			if (kind == 0) {
+				schedule.add(new Pair<LocalTime, Activity>(t, new PlanJourney(this, start, dest)));
+				
+			} else if (kind == 1) {
+				LocalTime earliest = LocalTime.ofSecondOfDay(in.readInt());
+				schedule.add(new Pair<LocalTime, Activity>(t, new RegisterToFlexiBus(this, start, dest, earliest)));
+				
+			} else {
+				throw new IllegalStateException("Error: Unknown scheduled activity " + kind);
+			}
+		}
+	}
+	
+	private static void writeCoordinate(DataOutput out, Coordinate c) throws IOException {
+		out.writeDouble(c.x);
+		out.writeDouble(c.y);
+	}
+	
+	private static Coordinate readCoordinate(DataInput in) throws IOException {
+		double x = in.readDouble();
+		double y = in.readDouble();
+		return new Coordinate(x, y);
+	}
+	
 	/**
 	 * Returns true if person is currently at home and false otherwise.
 	 * 
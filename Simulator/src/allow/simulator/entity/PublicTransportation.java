@@ -1,7 +1,12 @@
 package allow.simulator.entity;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import allow.simulator.core.Context;
 import allow.simulator.entity.utility.Preferences;
@@ -17,11 +22,27 @@ import allow.simulator.mobility.data.Trip;
  *
  */
 public abstract class PublicTransportation extends Entity {
+	// Orders passengers entering during the same step.
+	private static final Comparator<Person> ID_ORDER = new Comparator<Person>() {
+
+		@Override
+		public int compare(Person o1, Person o2) {
+			return Long.compare(o1.getId(), o2.getId());
+		}
+	};
+	
 	// Agency the bus is used by.
 	protected TransportAgency agency;
 		
 	// List of passengers.
 	protected List<Person> passengers;
+	
+	// Passengers which entered or left during the current step.
+	protected Queue<Person> boarding;
+	protected Queue<Person> alighting;
+	
+	// Number of occupied seats including passengers which entered during the current step.
+	protected AtomicInteger occupiedSeats;
 			
 	// Capacity.
 	protected int capacity;
@@ -47,6 +68,9 @@ public abstract class PublicTransportation extends Entity {
 		super(id, type, utility, prefs, context);
 		this.capacity = capacity;
 		passengers = new ArrayList<Person>(capacity);
+		boarding = new ConcurrentLinkedQueue<Person>();
+		alighting = new ConcurrentLinkedQueue<Person>();
+		occupiedSeats = new AtomicInteger();
 		currentDelay = 0;
 	}
 	
@@ -108,34 +132,59 @@ public abstract class PublicTransportation extends Entity {
 	
 	/**
 	 * Adds a passenger to the means of public transportation if the bus has 
-	 * capacity.
+	 * capacity. The passenger is added to the list of passengers when calling
+	 * commitPassengers().
 	 * 
 	 * @param p The person to add to the means of public transportation.
 	 * @return True, if person was added to the means of public transportation,
 	 * false otherwise.
 	 */
 	public boolean addPassenger(Person p) {
-		boolean added = false;
 		
-		synchronized(passengers) {
-			
-			if (passengers.size() < capacity) {
-				added = passengers.add(p);
-			}
+		if (occupiedSeats.incrementAndGet() > capacity) {
+			occupiedSeats.decrementAndGet();
+			return false;
 		}
-		return added;
+		boarding.add(p);
+		return true;
 	}
 	
 	/**
-	 * Removes a passenger from the means of public transportation.
+	 * Removes a passenger from the means of public transportation. The
+	 * passenger is removed from the list of passengers when calling
+	 * commitPassengers().
 	 * 
 	 * @param p The passenger to remove.
 	 */
 	public void removePassenger(Person p) {
+		alighting.add(p);
+	}
+	
+	/**
+	 * Applies entering and leaving of passengers during the last step to the
+	 * list of passengers. Entering passengers are appended ordered by their
+	 * Id. Must not be called concurrently to addPassenger() or
+	 * removePassenger().
+	 */
+	public void commitPassengers() {
+		Person p = null;
+		
+		while ((p = alighting.poll()) != null) {
+			
+			if (passengers.remove(p)) {
+				occupiedSeats.decrementAndGet();
+			}
+		}
+		
+		if (boarding.isEmpty()) {
+			return;
+		}
+		int offset = passengers.size();
 		
-		synchronized(passengers) {
-			passengers.remove(p);
+		while ((p = boarding.poll()) != null) {
+			passengers.add(p);
 		}
+		Collections.sort(passengers.subList(offset, passengers.size()), ID_ORDER);
 	}
 	
 	/**
@@ -1,11 +1,18 @@
 package allow.simulator.entity;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
 import allow.simulator.core.Context;
@@ -22,6 +29,15 @@ import allow.simulator.mobility.data.Trip;
  *
  */
 public abstract class TransportAgency extends Entity {
+	// Orders vehicles returning during the same step.
+	private static final Comparator<PublicTransportation> ID_ORDER = new Comparator<PublicTransportation>() {
+
+		@Override
+		public int compare(PublicTransportation o1, PublicTransportation o2) {
+			return Long.compare(o1.getId(), o2.getId());
+		}
+	};
+	
 	// Id of the agency.
 	protected String agencyId;
 	
@@ -37,6 +53,9 @@ public abstract class TransportAgency extends Entity {
 	// "Live" information about current trips and vehicles executing trips.
 	protected Map<String, PublicTransportation> currentlyUsedVehicles;
 	
+	// Vehicles which finished their trip during the current step.
+	protected Queue<PublicTransportation> returnedVehicles;
+	
 	/**
 	 * Constructor.
 	 * Creates new instance of a transport agency.
@@ -55,7 +74,8 @@ public abstract class TransportAgency extends Entity {
 		vehicles = new ConcurrentLinkedQueue<PublicTransportation>();
 		
 		// "Live" information about trips and vehicles executing trips.
-		currentlyUsedVehicles = new HashMap<String, PublicTransportation>();
+		currentlyUsedVehicles = new ConcurrentHashMap<String, PublicTransportation>();
+		returnedVehicles = new ConcurrentLinkedQueue<PublicTransportation>();
 	}
 	
 	/**
@@ -121,9 +141,32 @@ public abstract class TransportAgency extends Entity {
 		return vehicle;
 	}
 	
+	/**
+	 * Finishes a trip. The vehicle executing the trip becomes available for
+	 * scheduling after calling commitReturnedVehicles().
+	 * 
+	 * @param trip Trip which was finished.
+	 * @param vehicle Vehicle which executed the trip.
+	 */
 	public void finishTrip(Trip trip, PublicTransportation vehicle) {
 		currentlyUsedVehicles.remove(trip.getTripId());
-		vehicles.add(vehicle);
+		returnedVehicles.add(vehicle);
+	}
+	
+	/**
+	 * Makes vehicles which finished their trip during the last step available
+	 * for scheduling ordered by their Id. Must not be called concurrently to
+	 * finishTrip().
+	 */
+	public void commitReturnedVehicles() {
+		
+		if (returnedVehicles.isEmpty()) {
+			return;
+		}
+		List<PublicTransportation> returned = new ArrayList<PublicTransportation>(returnedVehicles);
+		returnedVehicles.clear();
+		Collections.sort(returned, ID_ORDER);
+		vehicles.addAll(returned);
 	}
 	
 	public PublicTransportation getVehicleOfTrip(String tripId) {
@@ -134,6 +177,66 @@ public abstract class TransportAgency extends Entity {
 		vehicles.add(b);
 	}
 	
+	/**
+	 * Writes the state of the agency, i.e. the order of available vehicles and
+	 * the progress of its routes. Requires all vehicles to be available.
+	 * 
+	 * @param out Output to write state to.
+	 * @throws IOException
+	 */
+	@Override
+	public void writeState(DataOutput out) throws IOException {
+		
+		if (!currentlyUsedVehicles.isEmpty() || !returnedVehicles.isEmpty())
+			throw new IllegalStateException("Error: Cannot write state of " + this + " while vehicles execute trips.");
+		super.writeState(out);
+		out.writeInt(vehicles.size());
+		
+		for (PublicTransportation v : vehicles) {
+			out.writeLong(v.getId());
+		}
+		List<String> routeIds = new ArrayList<String>(routes.keySet());
+		Collections.sort(routeIds);
+		out.writeInt(routeIds.size());
+		
+		for (String routeId : routeIds) {
+			out.writeUTF(routeId);
+			routes.get(routeId).writeState(out);
+		}
+	}
+	
+	/**
+	 * Restores the state of the agency written by writeState(...).
+	 * 
+	 * @param in Input to read state from.
+	 * @throws IOException
+	 */
+	@Override
+	public void readState(DataInput in) throws IOException {
+		super.readState(in);
+		vehicles.clear();
+		int n = in.readInt();
+		
+		for (int i = 0; i < n; i++) {
+			long vehicleId = in.readLong();
+			Entity v = context.getWorld().getEntityById(vehicleId);
+			
+			if (!(v instanceof PublicTransportation))
+				throw new IllegalStateException("Error: Unknown vehicle " + vehicleId + " of " + this);
+			vehicles.add((PublicTransportation) v);
+		}
+		n = in.readInt();
+		
+		for (int i = 0; i < n; i++) {
+			String routeId = in.readUTF();
+			Route route = routes.get(routeId);
+			
+			if (route == null)
+				throw new IllegalStateException("Error: Unknown route " + routeId + " of " + this);
+			route.readState(in);
+		}
+	}
+	
 	@Override
 	public void exchangeKnowledge() { }
 	
@@ -1,17 +1,20 @@
 package allow.simulator.entity.knowledge;
 
+import java.io.IOException;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 
 import allow.simulator.core.EvoKnowledgeConfiguration;
-import allow.simulator.core.Simulator;
+import allow.simulator.core.Time;
 import allow.simulator.entity.Entity;
 import allow.simulator.entity.Entity.Type;
+import allow.simulator.world.IWorld;
 
 public class DBConnector {
 	
@@ -23,17 +26,43 @@ public class DBConnector {
 	}
 	// Dictionary holding tables which have been 
 	// private static ConcurrentHashMap<String, Boolean> aIdTableExists = null;
-	private static String prefix = null;
-	private static EvoKnowledgeConfiguration config;
-	private static DBKnowledgeModel model;
-	private static DBType dbType;
+	private String prefix;
+	private EvoKnowledgeConfiguration config;
+	private String knowledgeModel;
+	private DBKnowledgeModel model;
+	private DBType dbType;
+	
+	// World and time of the simulation the connector belongs to.
+	private IWorld world;
+	private Time time;
 	
 	private static final String KNOWLEDGE_MODEL_NO_KNOWLEDGE = "without";
 	private static final String KNOWLEDGE_MODEL_LOCAL = "local";
 	private static final String KNOWLEDGE_MODEL_GLOBAL_TEMPORAL = "global (temporally restricted)";
 	private static final String KNOWLEDGE_MODEL_EXPERT = "expert";
 	
-	private static void initMySQL() {
+	/**
+	 * Constructor.
+	 * Creates a new connector to the EvoKnowledge database of a simulation.
+	 * Tables of the simulation are distinguished from tables of other
+	 * simulations using the same database by their prefix. The database is
+	 * not accessed before init() is called.
+	 * 
+	 * @param config Configuration of the EvoKnowledge database.
+	 * @param knowledgeModel Knowledge model to use.
+	 * @param prefix Prefix of the tables of the simulation.
+	 * @param world World of the simulation.
+	 * @param time Time of the simulation.
+	 */
+	public DBConnector(EvoKnowledgeConfiguration config, String knowledgeModel, String prefix, IWorld world, Time time) {
+		this.config = config;
+		this.knowledgeModel = knowledgeModel;
+		this.prefix = prefix;
+		this.world = world;
+		this.time = time;
+	}
+	
+	private void initMySQL() {
 		Connection con = null, con2 = null;
 		Statement stmt = null, stmt2 = null;
 		ResultSet queries = null;
@@ -80,7 +109,7 @@ public class DBConnector {
 		}
 	}
 	
-	private static void initPostgre() {
+	private void initPostgre() {
 		Connection con = null;
 		Statement stmt = null;
 		
@@ -90,7 +119,7 @@ public class DBConnector {
 			// Reset tables if they exist.
 			con = DriverManager.getConnection(config.getModelPath() + config.getModelName(), config.getUser(), config.getPassword());
 			stmt = con.createStatement();
-			Collection<Entity> persons = Simulator.Instance().getContext().getWorld().getEntitiesOfType(Type.PERSON);
+			Collection<Entity> persons = world.getEntitiesOfType(Type.PERSON);
 			System.out.println(persons.size());
 			
 			for (Entity e : persons) {
@@ -116,7 +145,7 @@ public class DBConnector {
 		}
 	}
 	
-	private static void initDatabase() {
+	private void initDatabase() {
 		
 		if (config.getModelPath().contains("mysql")) {
 			dbType = DBType.MYSQL;
@@ -132,10 +161,22 @@ public class DBConnector {
 		System.out.println("EvoKnowledge database connector initialized.");
 	}
 	
-	public static void init(EvoKnowledgeConfiguration config, String knowledgeModel, String prefix) {
-		DBConnector.prefix = prefix;
-		DBConnector.config = config;
-		DSFactory.init(config);
+	/**
+	 * Resets the tables of the simulation and creates the knowledge model.
+	 * Must be called after the persons of the simulation have been loaded.
+	 */
+	public void init() {
+		
+		if (!knowledgeModel.equals(KNOWLEDGE_MODEL_NO_KNOWLEDGE)) {
+			initDatabase();
+		}
+		createModel();
+		
+		//aIdTableExists = new ConcurrentHashMap<String, Boolean>();
+	}
+	
+	private void createModel() {
+		DSFactory dsFactory = new DSFactory(config);
 		
 		switch (knowledgeModel) {
 			case KNOWLEDGE_MODEL_NO_KNOWLEDGE:
@@ -143,36 +184,111 @@ public class DBConnector {
 				break;
 				
 			case KNOWLEDGE_MODEL_LOCAL:
-				initDatabase();
-				model = new DBLocalKnowledge(dbType);
+				model = new DBLocalKnowledge(dbType, dsFactory);
 				break;
 				
 			case KNOWLEDGE_MODEL_GLOBAL_TEMPORAL:
-				initDatabase();
-				model = new DBGlobalKnowledge(dbType);
+				model = new DBGlobalKnowledge(dbType, dsFactory, time);
 				break;
 			
 			case KNOWLEDGE_MODEL_EXPERT:
-				initDatabase();
 				model = new DBExpertKnowledge(dbType);
 				break;
 				
 			default:
 				throw new IllegalArgumentException("Error: Knowledge model \"" + knowledgeModel  + "\" unknown.");
 		}
+	}
+	
+	/**
+	 * Copies the tables of the simulation to tables with the given prefix,
+	 * e.g. to keep the knowledge learned up to a checkpoint. Existing tables
+	 * with the given prefix are replaced. Must be called while no entries
+	 * are added.
+	 * 
+	 * @param snapshotPrefix Prefix of the tables to copy to.
+	 * @throws IOException
+	 */
+	public void saveTables(String snapshotPrefix) throws IOException {
 		
-		//aIdTableExists = new ConcurrentHashMap<String, Boolean>();
+		if (dbType != null) copyTables(prefix, snapshotPrefix);
+	}
+	
+	/**
+	 * Replaces the tables of the simulation by copies of the tables with the
+	 * given prefix written by saveTables(...). Must be called while no entries
+	 * are added.
+	 * 
+	 * @param snapshotPrefix Prefix of the tables to copy from.
+	 * @throws IOException
+	 */
+	public void restoreTables(String snapshotPrefix) throws IOException {
+		
+		if (dbType == null) return;
+		copyTables(snapshotPrefix, prefix);
+		
+		// Forget tables known to exist before the restore.
+		createModel();
+	}
+	
+	private void copyTables(String from, String to) throws IOException {
+		
+		try {
+			Class.forName((dbType == DBType.MYSQL) ? "com.mysql.jdbc.Driver" : "org.postgresql.Driver");
+			
+		} catch (ClassNotFoundException e) {
+			throw new IOException(e);
+		}
+		String schema = (dbType == DBType.MYSQL) ? "'" + config.getModelName() + "'" : "current_schema()";
+		
+		try (Connection con = DriverManager.getConnection(config.getModelPath() + config.getModelName(), config.getUser(), config.getPassword());
+				Statement stmt = con.createStatement()) {
+			
+			for (String table : getTables(stmt, schema, to)) {
+				stmt.executeUpdate("DROP TABLE IF EXISTS " + table + ";");
+			}
+			
+			for (String table : getTables(stmt, schema, from)) {
+				String copy = to + table.substring(from.length());
+				
+				if (dbType == DBType.MYSQL) {
+					stmt.executeUpdate("CREATE TABLE " + copy + " LIKE " + table + ";");
+					
+				} else {
+					stmt.executeUpdate("CREATE TABLE " + copy + " (LIKE " + table + " INCLUDING ALL);");
+				}
+				stmt.executeUpdate("INSERT INTO " + copy + " SELECT * FROM " + table + ";");
+			}
+			
+		} catch (SQLException e) {
+			throw new IOException(e);
+		}
+	}
+	
+	private static List<String> getTables(Statement stmt, String schema, String tablePrefix) throws SQLException {
+		// Underscores of the prefix must not match arbitrary characters.
+		String pattern = (tablePrefix + "_tbl_").replace("_", "\\_") + "%";
+		List<String> tables = new ArrayList<String>();
+		
+		try (ResultSet result = stmt.executeQuery("SELECT table_name FROM information_schema.tables "
+				+ "WHERE table_schema = " + schema + " AND table_name LIKE '" + pattern + "';")) {
+			
+			while (result.next()) {
+				tables.add(result.getString(1));
+			}
+		}
+		return tables;
 	}
 	
-	public static boolean addEntry(Entity agent, List<TravelExperience> prior, List<TravelExperience> posterior) {
+	public boolean addEntry(Entity agent, TravelExperienceBuffer prior, TravelExperienceBuffer posterior) {
 		return model.addEntry(agent, prior, posterior, prefix);
 	}
 	
-	public static List<TravelExperience> getPredictedItinerary(Entity agent, List<TravelExperience> it) {
+	public List<TravelExperience> getPredictedItinerary(Entity agent, List<TravelExperience> it) {
 		return model.getPredictedItinerary(agent, it, prefix);
 	}
 	
-	public static void cleanModel(Entity agent) {
+	public void cleanModel(Entity agent) {
 		model.clean(agent, prefix);
 	}
 	
@@ -238,7 +354,7 @@ public class DBConnector {
                 stmtString = stmtString.concat(prevDuration + ",");
                 stmtString = stmtString.concat(ex.getWeather().getEncoding() + ",");
                 stmtString = stmtString.concat(ex.getWeekday() + ",");
-                stmtString = stmtString.concat(EvoEncoding.getTimeOfDay(ex.getTStart().getHour()) + ",");
+                stmtString = stmtString.concat(EvoEncoding.getTimeOfDay(ex.getHourOfDay()) + ",");
                 stmtString = stmtString.concat(TType.getEncoding(ex.getTransportationMean()) + ",");
                 stmtString = stmtString.concat(ex.getNumberOfPeopleOnSegment() + ","); // Density = Number of other entities on segment.
                 stmtString = stmtString.concat(String.valueOf(start / 1000) + ",");
@@ -325,7 +441,7 @@ public class DBConnector {
 				
 				long nodeId = ex.getSegmentId();
 				byte modality = TType.getEncoding(ex.getTransportationMean()); //future: might want to handle no specification
-				byte timeOfDay = EvoEncoding.getTimeOfDay(ex.getTStart().getHour()); //TODO: CALCULATE FROM SEGMENTTSTART
+				byte timeOfDay = EvoEncoding.getTimeOfDay(ex.getHourOfDay()); //TODO: CALCULATE FROM SEGMENTTSTART
 				byte weekDay = (byte) ex.getWeekday(); //TODO: CALCULATE FROM SEGMENTTSTART
 				
 				//try the most detailed query first
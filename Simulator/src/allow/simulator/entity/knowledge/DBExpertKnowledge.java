@@ -9,9 +9,6 @@ import allow.simulator.entity.Entity.Type;
 import allow.simulator.entity.knowledge.DBConnector.DBType;
 
 public class DBExpertKnowledge implements DBKnowledgeModel {
-	// Dictionary holding tables which have been
-	private static ConcurrentHashMap<String, Boolean> aIdTableExists = new ConcurrentHashMap<String, Boolean>();
-
 	private static final String MY_SQL_CREATE_TABLE = "CREATE TABLE IF NOT EXISTS %1$s "
 			+ "(entryNo INTEGER UNSIGNED AUTO_INCREMENT PRIMARY KEY, nodeId INT, prevNodeId INT, "
 			+ "ttime DOUBLE, prevttime DOUBLE, weather TINYINT UNSIGNED, weekday TINYINT UNSIGNED, "
@@ -39,8 +36,12 @@ public class DBExpertKnowledge implements DBKnowledgeModel {
 	private String sqlShowTables;
 	private String sqlInsertValues;
 
+	// Dictionary holding tables which have been
+	private ConcurrentHashMap<String, Boolean> aIdTableExists;
+
 	public DBExpertKnowledge(DBType type) {
 		this.type = type;
+		aIdTableExists = new ConcurrentHashMap<String, Boolean>();
 
 		switch (type) {
 
@@ -61,7 +62,7 @@ public class DBExpertKnowledge implements DBKnowledgeModel {
 		}
 	}
 	@Override
-	public boolean addEntry(Entity agent, List<TravelExperience> proir, List<TravelExperience> posterior, String tablePrefix) {
+	public boolean addEntry(Entity agent, TravelExperienceBuffer prior, TravelExperienceBuffer posterior, String tablePrefix) {
 
 		return false;
 	}
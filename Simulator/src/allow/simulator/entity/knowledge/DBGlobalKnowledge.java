@@ -7,14 +7,12 @@ import java.sql.Statement;
 import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 
-import allow.simulator.core.Simulator;
+import allow.simulator.core.Time;
 import allow.simulator.entity.Entity;
 import allow.simulator.entity.knowledge.DBConnector.DBType;
 import allow.simulator.mobility.data.TType;
 
 public class DBGlobalKnowledge implements DBKnowledgeModel {
-	// Dictionary holding tables which have been
-	private static ConcurrentHashMap<String, Boolean> aIdTableExists = new ConcurrentHashMap<String, Boolean>();
 	private static final String GLOBAL_TABLE_NAME = "global";
 
 	private static final String MY_SQL_CREATE_TABLE = "CREATE TABLE IF NOT EXISTS %1$s "
@@ -44,8 +42,20 @@ public class DBGlobalKnowledge implements DBKnowledgeModel {
 	private String sqlShowTables;
 	private String sqlInsertValues;
 	
-	public DBGlobalKnowledge(DBType type) {
+	// Dictionary holding tables which have been
+	private ConcurrentHashMap<String, Boolean> aIdTableExists;
+	
+	// Factory creating database connections.
+	private DSFactory dsFactory;
+	
+	// Simulated time to clean outdated entries.
+	private Time time;
+	
+	public DBGlobalKnowledge(DBType type, DSFactory dsFactory, Time time) {
 		this.type = type;
+		this.dsFactory = dsFactory;
+		this.time = time;
+		aIdTableExists = new ConcurrentHashMap<String, Boolean>();
 		
 		switch (type) {
 		
@@ -67,7 +77,7 @@ public class DBGlobalKnowledge implements DBKnowledgeModel {
 	}
 	
 	@Override
-	public boolean addEntry(Entity agentId, List<TravelExperience> prior, List<TravelExperience> it, String tablePrefix) {
+	public boolean addEntry(Entity agentId, TravelExperienceBuffer prior, TravelExperienceBuffer it, String tablePrefix) {
 		if (it.size() == 0) {
 			return false;
 		}
@@ -88,7 +98,7 @@ public class DBGlobalKnowledge implements DBKnowledgeModel {
 		try {
 
 			// get connection
-			con = DSFactory.getConnection();
+			con = dsFactory.getConnection();
 			stmt = con.createStatement();
 
 			// create a new table for an agent representing his EvoKnowledge if
@@ -114,25 +124,25 @@ public class DBGlobalKnowledge implements DBKnowledgeModel {
 			long prevNodeId = 0;
 			double prevDuration = 0;
 
-			for (TravelExperience ex : it) {
-				long nodeId = ex.getSegmentId();
-				long start = ex.getStartingTime();
-				long end = ex.getEndTime();
-				double duration = ex.getTravelTime();
+			for (int i = 0; i < it.size(); i++) {
+				long nodeId = it.getSegmentId(i);
+				long start = it.getStartingTime(i);
+				long end = it.getEndTime(i);
+				double duration = it.getTravelTime(i);
 
 				stmtString = stmtString.concat(firstSeg ? "" : ",");
 				stmtString = stmtString.concat("('" + nodeId + "',");
 				stmtString = stmtString.concat("'" + prevNodeId + "',");
 				stmtString = stmtString.concat(duration + ",");
 				stmtString = stmtString.concat(prevDuration + ",");
-				stmtString = stmtString.concat(ex.getWeather().getEncoding()
+				stmtString = stmtString.concat(it.getWeatherEncoding(i)
 						+ ",");
-				stmtString = stmtString.concat(ex.getWeekday() + ",");
-				stmtString = stmtString.concat(EvoEncoding.getTimeOfDay(ex
-						.getTStart().getHour()) + ",");
-				stmtString = stmtString.concat(TType.getEncoding(ex
-						.getTransportationMean()) + ",");
-				stmtString = stmtString.concat(ex.getNumberOfPeopleOnSegment()
+				stmtString = stmtString.concat(it.getWeekday(i) + ",");
+				stmtString = stmtString.concat(EvoEncoding.getTimeOfDay(it
+						.getHourOfDay(i)) + ",");
+				stmtString = stmtString.concat(TType.getEncoding(it
+						.getTransportationMean(i)) + ",");
+				stmtString = stmtString.concat(it.getNumberOfPeopleOnSegment(i)
 						+ ","); // Density = Number of other entities on
 								// segment.
 				stmtString = stmtString.concat(String.valueOf(start / 1000)
@@ -179,7 +189,7 @@ public class DBGlobalKnowledge implements DBKnowledgeModel {
 		try {
 
 			// get connection
-			con = DSFactory.getConnection();
+			con = dsFactory.getConnection();
 			stmt = con.createStatement();
 			
 			// check if user even has evoknowledge
@@ -231,10 +241,8 @@ public class DBGlobalKnowledge implements DBKnowledgeModel {
 																				// handle
 																				// no
 																				// specification
-				byte timeOfDay = EvoEncoding.getTimeOfDay(ex.getTStart()
-						.getHour()); // TODO: CALCULATE FROM SEGMENTTSTART
-				byte weekDay = (byte) ex.getWeekday(); // TODO: CALCULATE FROM
-														// SEGMENTTSTART
+				byte timeOfDay = EvoEncoding.getTimeOfDay(ex.getHourOfDay());
+				byte weekDay = (byte) ex.getWeekday();
 
 				// try the most detailed query first
 				if (!firstSeg && prevTTime != -1) {
@@ -401,9 +409,9 @@ public class DBGlobalKnowledge implements DBKnowledgeModel {
 
 		try {
 			// get connection
-			con = DSFactory.getConnection();
+			con = dsFactory.getConnection();
 			stmt = con.createStatement();
-			long tThresh = (Simulator.Instance().getTime().getTimestamp() / 1000) - 1800;
+			long tThresh = (time.getTimestamp() / 1000) - 1800;
 		
 			String stmtString = "DELETE FROM " + tableName + " WHERE startTime < " + tThresh + ";";
 			stmt.executeUpdate(stmtString);
@@ -6,7 +6,7 @@ import allow.simulator.entity.Entity;
 
 public interface DBKnowledgeModel {
 
-	boolean addEntry(Entity agent, List<TravelExperience> proir, List<TravelExperience> posterior, String tablePrefix);
+	boolean addEntry(Entity agent, TravelExperienceBuffer prior, TravelExperienceBuffer posterior, String tablePrefix);
 	
 	List<TravelExperience> getPredictedItinerary(Entity agent, List<TravelExperience> it, String tablePrefix);
 	
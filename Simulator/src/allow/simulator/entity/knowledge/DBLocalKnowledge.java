@@ -41,10 +41,15 @@ public class DBLocalKnowledge implements DBKnowledgeModel {
 	private String sqlInsertValues;
 	
 	// Dictionary holding tables which have been 
-	private static ConcurrentHashMap<String, Boolean> aIdTableExists = new ConcurrentHashMap<String, Boolean>();
+	private ConcurrentHashMap<String, Boolean> aIdTableExists;
 	
-	public DBLocalKnowledge(DBType type) {
+	// Factory creating database connections.
+	private DSFactory dsFactory;
+	
+	public DBLocalKnowledge(DBType type, DSFactory dsFactory) {
 		this.type = type;
+		this.dsFactory = dsFactory;
+		aIdTableExists = new ConcurrentHashMap<String, Boolean>();
 
 		switch (type) {
 		case MYSQL:
@@ -65,7 +70,7 @@ public class DBLocalKnowledge implements DBKnowledgeModel {
 	}
 	
 	@Override
-	public boolean addEntry(Entity agent, List<TravelExperience> prior, List<TravelExperience> it, String tablePrefix) {
+	public boolean addEntry(Entity agent, TravelExperienceBuffer prior, TravelExperienceBuffer it, String tablePrefix) {
 		String agentId = String.valueOf(agent.getId());
 		
 		if (it.size() == 0) {
@@ -88,7 +93,7 @@ public class DBLocalKnowledge implements DBKnowledgeModel {
 		try {
 
 			// get connection
-			con = DSFactory.getConnection();
+			con = dsFactory.getConnection();
 			stmt = con.createStatement();
 
 			// create a new table for an agent representing his EvoKnowledge if it doesnt exist already
@@ -112,25 +117,25 @@ public class DBLocalKnowledge implements DBKnowledgeModel {
 			long prevNodeId = 0;
 			double prevDuration = 0;
 
-			for (TravelExperience ex : it) {
-				long nodeId = ex.getSegmentId();
-				long start = ex.getStartingTime();
-				long end = ex.getEndTime();
-				double duration = ex.getTravelTime();
+			for (int i = 0; i < it.size(); i++) {
+				long nodeId = it.getSegmentId(i);
+				long start = it.getStartingTime(i);
+				long end = it.getEndTime(i);
+				double duration = it.getTravelTime(i);
 
 				stmtString = stmtString.concat(firstSeg ? "" : ",");
 				stmtString = stmtString.concat("('" + nodeId + "',");
 				stmtString = stmtString.concat("'" + prevNodeId + "',");
 				stmtString = stmtString.concat(duration + ",");
 				stmtString = stmtString.concat(prevDuration + ",");
-				stmtString = stmtString.concat(ex.getWeather().getEncoding()
+				stmtString = stmtString.concat(it.getWeatherEncoding(i)
 						+ ",");
-				stmtString = stmtString.concat(ex.getWeekday() + ",");
-				stmtString = stmtString.concat(EvoEncoding.getTimeOfDay(ex
-						.getTStart().getHour()) + ",");
-				stmtString = stmtString.concat(TType.getEncoding(ex
-						.getTransportationMean()) + ",");
-				stmtString = stmtString.concat(ex.getPublicTransportationFillingLevel()
+				stmtString = stmtString.concat(it.getWeekday(i) + ",");
+				stmtString = stmtString.concat(EvoEncoding.getTimeOfDay(it
+						.getHourOfDay(i)) + ",");
+				stmtString = stmtString.concat(TType.getEncoding(it
+						.getTransportationMean(i)) + ",");
+				stmtString = stmtString.concat(it.getPublicTransportationFillingLevel(i)
 						+ ","); // Density = Number of other entities on
 								// segment.
 				stmtString = stmtString.concat(String.valueOf(start / 1000)
@@ -179,7 +184,7 @@ public class DBLocalKnowledge implements DBKnowledgeModel {
 		try {
 
 			// get connection
-			con = DSFactory.getConnection();
+			con = dsFactory.getConnection();
 			stmt = con.createStatement();
 
 			// check if user even has evoknowledge
@@ -232,8 +237,8 @@ public class DBLocalKnowledge implements DBKnowledgeModel {
 																				// handle
 																				// no
 																				// specification
-				byte timeOfDay = EvoEncoding.getTimeOfDay(ex.getTStart().getHour()); // TODO: CALCULATE FROM SEGMENTTSTART
-				byte weekDay = (byte) ex.getWeekday(); // TODO: CALCULATE FROM SEGMENTTSTART
+				byte timeOfDay = EvoEncoding.getTimeOfDay(ex.getHourOfDay());
+				byte weekDay = (byte) ex.getWeekday();
 
 				// try the most detailed query first
 				if (!firstSeg && prevTTime != -1) {
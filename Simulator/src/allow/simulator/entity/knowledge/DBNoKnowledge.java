@@ -7,7 +7,7 @@ import allow.simulator.entity.Entity;
 public class DBNoKnowledge implements DBKnowledgeModel {
 
 	@Override
-	public boolean addEntry(Entity agent, List<TravelExperience> prior, List<TravelExperience> experiences, String tablePrefix) {
+	public boolean addEntry(Entity agent, TravelExperienceBuffer prior, TravelExperienceBuffer experiences, String tablePrefix) {
 		return true;
 	}
 
@@ -8,13 +8,13 @@ import allow.simulator.core.EvoKnowledgeConfiguration;
 
 public class DSFactory {
 
-	private static EvoKnowledgeConfiguration config = null;
+	private EvoKnowledgeConfiguration config;
 	
-	public static void init(EvoKnowledgeConfiguration config) {
-		DSFactory.config = config;
+	public DSFactory(EvoKnowledgeConfiguration config) {
+		this.config = config;
 	}
 	
-	public static Connection getConnection() throws SQLException {
+	public Connection getConnection() throws SQLException {
 		Connection conn = DriverManager.getConnection(config.getModelPath() + config.getModelName(), config.getUser(), config.getPassword());
         return conn;
     }
@@ -1,27 +1,15 @@
 package allow.simulator.entity.knowledge;
 
-import java.io.BufferedWriter;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Queue;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.ExecutorService;
 
-import allow.simulator.core.EvoKnowledgeConfiguration;
 import allow.simulator.entity.Bus;
 import allow.simulator.entity.Entity;
 import allow.simulator.entity.Person;
 import allow.simulator.mobility.data.TType;
 import allow.simulator.mobility.planner.Itinerary;
 import allow.simulator.mobility.planner.Leg;
-import allow.simulator.util.Pair;
 import allow.simulator.world.StreetSegment;
 import allow.simulator.world.Weather;
 
@@ -35,63 +23,12 @@ import com.fasterxml.jackson.annotation.JsonBackReference;
  *
  */
 public class EvoKnowledge {
-	// Writer to log entity specific movement information.
-	private static BufferedWriter loggerMovement;
-	private static final String MOVEMENT_FORMAT = "LOG_TIMESTAMP,ENTITY,SEGMENT_ID,POSITION_START,POSITION_END,TIME_START,TIME_END,COSTS,TRAVEL_TIME,MODE,N_PEOPLE,WEATHER";
-	
-	// Writer to log information about entities in busses etc.
-	private static BufferedWriter loggerStop;
-	private static final String STOP_FORMAT = "LOG_TIMESTAMP,ENTITY,PASSENGERS,STOP_ID,STOP_POSITION,TIME_ARRIVAL,TIME_DEPARTURE,WEATHER";
-	
-	private static BufferedWriter loggerUtility;
-	private static final String UTILITY_FORMAT = "LOG_TIMESTAMP,ENTITY,REQ_ID,REQ_NUMBER,ESTIMATED_UTILITY,ACTUAL_UTILITY";
-
-	private static Queue<Pair<Entity, List<Itinerary>>> predictBuffer;
-	private static List<Worker> tasks;
-	private static WorkerPool workerPool;
-	private static ExecutorService service;
-	
-	static {
-		
-		try {
-			loggerMovement = new BufferedWriter(new OutputStreamWriter(new FileOutputStream("movement_logs")));
-			loggerStop = new BufferedWriter(new OutputStreamWriter(new FileOutputStream("stop_logs")));
-			loggerUtility = new BufferedWriter(new OutputStreamWriter(new FileOutputStream("utility_logs")));
-			
-		} catch (FileNotFoundException e) {
-			e.printStackTrace();
-		}
-	}
-	
-	public static void initialize(EvoKnowledgeConfiguration config, String knowledgeModel, String prefix, ExecutorService service) {
-		DBConnector.init(config, knowledgeModel, prefix);
-		predictBuffer = new LinkedList<Pair<Entity, List<Itinerary>>>();
-		tasks = new ArrayList<Worker>();
-		workerPool = new WorkerPool(128);
-		EvoKnowledge.service = service;
-	}
-	
-	public static void setLoggerDirectory(Path file) throws IOException {
-		loggerMovement = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(Paths.get(file.toString(), "movement_logs").toFile())));
-		loggerMovement.write(MOVEMENT_FORMAT);
-		loggerMovement.newLine();
-		loggerMovement.flush();
-		loggerStop = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(Paths.get(file.toString(), "stop_logs").toFile())));
-		loggerStop.write(STOP_FORMAT);
-		loggerStop.newLine();
-		loggerStop.flush();
-		loggerUtility = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(Paths.get(file.toString(), "utility_logs").toFile())));
-		loggerUtility.write(UTILITY_FORMAT);
-		loggerUtility.newLine();
-		loggerUtility.flush();
-	}
-	
 	// Entity this knowledge instance belongs to.
 	@JsonBackReference
 	private Entity entity; 
 	
 	// Buffer to store experiences of entities for learning.
-	private List<TravelExperience> travelExperienceBuffer;
+	private TravelExperienceBuffer travelExperienceBuffer;
 	private List<StopExperience> stopExperienceBuffer;
 	
 	// Buffer holding entities to exchange knowledge with.
@@ -116,7 +53,7 @@ public class EvoKnowledge {
 		} else if (entity instanceof Bus) {
 			handlerChain = ExchangeHandler.StandardBusChain;
 		}
-		travelExperienceBuffer = new ArrayList<TravelExperience>();
+		travelExperienceBuffer = new TravelExperienceBuffer(0);
 		stopExperienceBuffer = new ArrayList<StopExperience>();
 	}
 	
@@ -135,6 +72,16 @@ public class EvoKnowledge {
 		}
 	}
 	
+	/**
+	 * Adds a sequence of travel experiences to EvoKnowledge. To learn from a
+	 * set of stored experiences call learn() method.
+	 * 
+	 * @param observations New experiences.
+	 */
+	public void collect(TravelExperienceBuffer observations) {
+		travelExperienceBuffer.addAll(observations);
+	}
+	
 	/*private static final double CAR_PREFERENCE_CHANGE_THRESHOLD1 = 600;
 	private static final double CAR_PREFERENCE_CHANGE_STEP1 = 0.02;
 	private static final double BUS_PREFERENCE_CHANGE_THRESHOLD = 1.0;
@@ -164,7 +111,7 @@ public class EvoKnowledge {
 		if (entity instanceof Person) {
 			Person p = (Person) entity;
 			Itinerary it = p.getCurrentItinerary();
-			DBConnector.addEntry(entity, it.priorSegmentation, travelExperienceBuffer);
+			entity.getContext().getEvoKnowledgeService().getConnector().addEntry(entity, it.priorSegmentation, travelExperienceBuffer);
 			
 			ExperienceSummary summary = createSummary(p, it, travelExperienceBuffer);
 			double estimatedTravelTime = it.duration + it.initialWaitingTime; // - p.getCurrentItinerary().waitingTime;
@@ -173,8 +120,8 @@ public class EvoKnowledge {
 			
 				case 0:
 					double actualCarTravelTime = summary.travelTime + it.initialWaitingTime;
-					p.getContext().getStatistics().reportPriorAndPosteriorCarTravelTimes(estimatedTravelTime, actualCarTravelTime);
-					p.getContext().getStatistics().reportPriorAndPosteriorUtilityCar(it.utility, summary.utility);
+					p.getContext().getStatistics().reportPriorAndPosteriorCarTravelTimes(p, estimatedTravelTime, actualCarTravelTime);
+					p.getContext().getStatistics().reportPriorAndPosteriorUtilityCar(p, it.utility, summary.utility);
 					double carPreference = p.getPreferences().getCarPreference();
 					double delay = actualCarTravelTime - estimatedTravelTime;
 
@@ -206,11 +153,11 @@ public class EvoKnowledge {
 				
 				case 1:
 					double actualBusTravelTime = summary.travelTime + it.initialWaitingTime;
-					p.getContext().getStatistics().reportPriorAndPosteriorTransitTravelTimes(estimatedTravelTime, actualBusTravelTime);
-					p.getContext().getStatistics().reportPriorAndPosteriorUtilityBus(p.getCurrentItinerary().utility, summary.utility);
+					p.getContext().getStatistics().reportPriorAndPosteriorTransitTravelTimes(p, estimatedTravelTime, actualBusTravelTime);
+					p.getContext().getStatistics().reportPriorAndPosteriorUtilityBus(p, p.getCurrentItinerary().utility, summary.utility);
 
 					double fillingLevel = getBusFillingLevel(travelExperienceBuffer);
-					p.getContext().getStatistics().reportBusFillingLevel(fillingLevel);
+					p.getContext().getStatistics().reportBusFillingLevel(p, fillingLevel);
 					p.getPreferences().setLastExperiencedBusFillingLevel(fillingLevel);
 					double busPreference = p.getPreferences().getBusPreference();
 					
@@ -232,7 +179,7 @@ public class EvoKnowledge {
 					
 				case 2:
 					double actualBikeTravelTime = summary.travelTime;
-					p.getContext().getStatistics().reportPriorAndPosteriorBikeTravelTimes(estimatedTravelTime, actualBikeTravelTime);
+					p.getContext().getStatistics().reportPriorAndPosteriorBikeTravelTimes(p, estimatedTravelTime, actualBikeTravelTime);
 					
 					// Reduce experienced bus filling level
 					double prevFillingLevel2 = p.getPreferences().getLastExperiencedBusFillingLevel();
@@ -243,7 +190,7 @@ public class EvoKnowledge {
 					
 				case 3:
 					double actualWalkTravelTime = summary.travelTime;
-					p.getContext().getStatistics().reportPriorAndPosteriorWalkTravelTimes(estimatedTravelTime, actualWalkTravelTime);
+					p.getContext().getStatistics().reportPriorAndPosteriorWalkTravelTimes(p, estimatedTravelTime, actualWalkTravelTime);
 					
 					// Reduce experienced bus filling level
 					double prevFillingLevel3 = p.getPreferences().getLastExperiencedBusFillingLevel();
@@ -307,7 +254,7 @@ public class EvoKnowledge {
 			
 				case 0:
 					double actualCarTravelTime = summary.travelTime;
-					p.getContext().getStatistics().reportPriorAndPosteriorCarTravelTimes(estimatedTravelTime, actualCarTravelTime);
+					p.getContext().getStatistics().reportPriorAndPosteriorCarTravelTimes(p, estimatedTravelTime, actualCarTravelTime);
 					double carPreference = p.getPreferences().getCarPreference();
 					double delay = actualCarTravelTime - estimatedTravelTime;
 					
@@ -318,9 +265,9 @@ public class EvoKnowledge {
 				
 				case 1:
 					double actualBusTravelTime = summary.travelTime;
-					p.getContext().getStatistics().reportPriorAndPosteriorTransitTravelTimes(estimatedTravelTime, actualBusTravelTime);
+					p.getContext().getStatistics().reportPriorAndPosteriorTransitTravelTimes(p, estimatedTravelTime, actualBusTravelTime);
 					double fillingLevel = getMaxBusFillingLevel(experienceBuffer);
-					p.getContext().getStatistics().reportBusFillingLevel(fillingLevel);
+					p.getContext().getStatistics().reportBusFillingLevel(p, fillingLevel);
 					double busPreference = p.getPreferences().getBusPreference();
 					
 					if (fillingLevel > BUS_PREFERENCE_CHANGE_THRESHOLD) {
@@ -331,12 +278,12 @@ public class EvoKnowledge {
 					
 				case 2:
 					double actualBikeTravelTime = summary.travelTime;
-					p.getContext().getStatistics().reportPriorAndPosteriorBikeTravelTimes(estimatedTravelTime, actualBikeTravelTime);
+					p.getContext().getStatistics().reportPriorAndPosteriorBikeTravelTimes(p, estimatedTravelTime, actualBikeTravelTime);
 					break;
 					
 				case 3:
 					double actualWalkTravelTime = summary.travelTime;
-					p.getContext().getStatistics().reportPriorAndPosteriorWalkTravelTimes(estimatedTravelTime, actualWalkTravelTime);
+					p.getContext().getStatistics().reportPriorAndPosteriorWalkTravelTimes(p, estimatedTravelTime, actualWalkTravelTime);
 					break;
 					
 				default:
@@ -391,7 +338,7 @@ public class EvoKnowledge {
 		return true;
 	}*/
 	
-	private static ExperienceSummary createSummary(Entity e, Itinerary itinerary, List<TravelExperience> experiences) {
+	private static ExperienceSummary createSummary(Entity e, Itinerary itinerary, TravelExperienceBuffer experiences) {
 		ExperienceSummary summary = new ExperienceSummary();
 		summary.transfers = itinerary.transfers;
 		
@@ -439,49 +386,47 @@ public class EvoKnowledge {
 		
 	}
 	
-	private static double summarizeTravelTime(List<TravelExperience> experiences) {
+	private static double summarizeTravelTime(TravelExperienceBuffer experiences) {
 		double actualTravelTime = 0.0;
 		int experiencesSize = experiences.size();
 		
 		for (int i = 0; i < experiencesSize; i++) {
-			actualTravelTime += experiences.get(i).getTravelTime();
+			actualTravelTime += experiences.getTravelTime(i);
 		}
 		return actualTravelTime;
 	}
 	
-	private static double summarizeWalkingDistance(List<TravelExperience> experiences) {
+	private static double summarizeWalkingDistance(TravelExperienceBuffer experiences) {
 		double walkingDistance = 0.0;
 		int experiencesSize = experiences.size();
 		
 		for (int i = 0; i < experiencesSize; i++) {
-			TravelExperience ex = experiences.get(i);
 			
-			if (ex.getTransportationMean() == TType.WALK) {
-				walkingDistance += ex.getSegmentLength();
+			if (experiences.getTransportationMean(i) == TType.WALK) {
+				walkingDistance += experiences.getSegmentLength(i);
 			}
 		}
 		return walkingDistance;
 	}
 	
-	private static double summarizeCosts(List<TravelExperience> experiences) {
+	private static double summarizeCosts(TravelExperienceBuffer experiences) {
 		double actualCosts = 0.0;
 		int experiencesSize = experiences.size();
 		
 		for (int i = 0; i < experiencesSize; i++) {
-			actualCosts += experiences.get(i).getCosts();
+			actualCosts += experiences.getCosts(i);
 		}
 		return actualCosts;
 	}
 	
-	private static double getBusFillingLevel(List<TravelExperience> experiences) {
+	private static double getBusFillingLevel(TravelExperienceBuffer experiences) {
 		double max = 0.0;
 		int experiencesSize = experiences.size();
 		
 		for (int i = 0; i < experiencesSize; i++) {
-			TravelExperience ex = (TravelExperience) experiences.get(i);
 			
-			if (ex.getTransportationMean() == TType.BUS) {
-				max = Math.max(max, ex.getPublicTransportationFillingLevel());
+			if (experiences.getTransportationMean(i) == TType.BUS) {
+				max = Math.max(max, experiences.getPublicTransportationFillingLevel(i));
 			}
 		}
 		return max;
@@ -531,40 +476,7 @@ public class EvoKnowledge {
 	 * @return Itinerary updated by EvoKnowledge.
 	 */
 	public void predict(List<Itinerary> fromPlanner) {
-		predictBuffer.add(new Pair<Entity, List<Itinerary>>(entity, fromPlanner));
-	}
-	
-	public static void cleanModel() {
-		DBConnector.cleanModel(null);
-	}
-	
-	public static void invokeRequest() {
-		if (predictBuffer.size() == 0) {
-			return;
-		}
-		
-		CountDownLatch latch = new CountDownLatch(predictBuffer.size());
-		
-		while (predictBuffer.size() > 0) {
-			Pair<Entity, List<Itinerary>> request = predictBuffer.poll();
-			Worker w = workerPool.pop();
-			w.prepare(request.first, request.second, latch);
-			tasks.add(w);
-		}
-		
-		try {
-			service.invokeAll(tasks);
-			latch.await();
-		} catch (InterruptedException e) {
-			e.printStackTrace();
-		}
-		
-		for (int j = 0; j < tasks.size(); j++) {
-			Worker w = tasks.get(j);
-			w.reset();
-			workerPool.put(w);
-		}
-		tasks.clear();
+		entity.getContext().getEvoKnowledgeService().predict(entity, fromPlanner);
 	}
 	
 	public static List<TravelExperience> itineraryToTravelExperience(Entity e, Itinerary it) {
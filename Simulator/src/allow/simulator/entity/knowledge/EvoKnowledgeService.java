@@ -0,0 +1,182 @@
+package allow.simulator.entity.knowledge;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+
+import allow.simulator.core.EvoKnowledgeConfiguration;
+import allow.simulator.core.Time;
+import allow.simulator.entity.Entity;
+import allow.simulator.mobility.planner.Itinerary;
+import allow.simulator.util.Pair;
+import allow.simulator.world.IWorld;
+
+/**
+ * Provides the EvoKnowledge database and the prediction of itineraries to
+ * the entities of a single simulation. Each simulation owns its own service
+ * such that several simulations can run in the same JVM.
+ *
+ * @author Andreas Poxrucker (DFKI)
+ *
+ */
+public class EvoKnowledgeService {
+	// Writer to log entity specific movement information.
+	private BufferedWriter loggerMovement;
+	private static final String MOVEMENT_FORMAT = "LOG_TIMESTAMP,ENTITY,SEGMENT_ID,POSITION_START,POSITION_END,TIME_START,TIME_END,COSTS,TRAVEL_TIME,MODE,N_PEOPLE,WEATHER";
+
+	// Writer to log information about entities in busses etc.
+	private BufferedWriter loggerStop;
+	private static final String STOP_FORMAT = "LOG_TIMESTAMP,ENTITY,PASSENGERS,STOP_ID,STOP_POSITION,TIME_ARRIVAL,TIME_DEPARTURE,WEATHER";
+
+	private BufferedWriter loggerUtility;
+	private static final String UTILITY_FORMAT = "LOG_TIMESTAMP,ENTITY,REQ_ID,REQ_NUMBER,ESTIMATED_UTILITY,ACTUAL_UTILITY";
+
+	// Orders prediction requests by the Id of the requesting entity.
+	private static final Comparator<Pair<Entity, List<Itinerary>>> ENTITY_ORDER = new Comparator<Pair<Entity, List<Itinerary>>>() {
+
+		@Override
+		public int compare(Pair<Entity, List<Itinerary>> r1, Pair<Entity, List<Itinerary>> r2) {
+			return Long.compare(r1.first.getId(), r2.first.getId());
+		}
+	};
+
+	// Connector to the EvoKnowledge database.
+	private DBConnector connector;
+
+	// Buffered prediction requests and workers to execute them.
+	private Queue<Pair<Entity, List<Itinerary>>> predictBuffer;
+	private List<Worker> tasks;
+	private WorkerPool workerPool;
+	private ExecutorService service;
+
+	/**
+	 * Constructor.
+	 * Creates a new EvoKnowledge service. The database is not accessed before
+	 * initialize() is called.
+	 *
+	 * @param config Configuration of the EvoKnowledge database.
+	 * @param knowledgeModel Knowledge model to use.
+	 * @param prefix Prefix of the database tables of the simulation.
+	 * @param service Executor to execute prediction requests.
+	 * @param world World of the simulation.
+	 * @param time Time of the simulation.
+	 */
+	public EvoKnowledgeService(EvoKnowledgeConfiguration config, String knowledgeModel, String prefix, ExecutorService service, IWorld world, Time time) {
+		connector = new DBConnector(config, knowledgeModel, prefix, world, time);
+		predictBuffer = new ConcurrentLinkedQueue<Pair<Entity, List<Itinerary>>>();
+		tasks = new ArrayList<Worker>();
+		workerPool = new WorkerPool(128, connector);
+		this.service = service;
+	}
+
+	/**
+	 * Resets the database tables of the simulation. Must be called after the
+	 * persons of the simulation have been loaded.
+	 */
+	public void initialize() {
+		connector.init();
+	}
+
+	public void setLoggerDirectory(Path file) throws IOException {
+		loggerMovement = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(Paths.get(file.toString(), "movement_logs").toFile())));
+		loggerMovement.write(MOVEMENT_FORMAT);
+		loggerMovement.newLine();
+		loggerMovement.flush();
+		loggerStop = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(Paths.get(file.toString(), "stop_logs").toFile())));
+		loggerStop.write(STOP_FORMAT);
+		loggerStop.newLine();
+		loggerStop.flush();
+		loggerUtility = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(Paths.get(file.toString(), "utility_logs").toFile())));
+		loggerUtility.write(UTILITY_FORMAT);
+		loggerUtility.newLine();
+		loggerUtility.flush();
+	}
+
+	/**
+	 * Returns the connector to the EvoKnowledge database.
+	 *
+	 * @return Connector to the EvoKnowledge database.
+	 */
+	public DBConnector getConnector() {
+		return connector;
+	}
+
+	/**
+	 * Buffers a request to predict the given itineraries of an entity. The
+	 * request is executed during the next call of invokeRequest().
+	 *
+	 * @param entity Entity requesting the prediction.
+	 * @param fromPlanner Itineraries as returned by the planner.
+	 */
+	public void predict(Entity entity, List<Itinerary> fromPlanner) {
+		predictBuffer.add(new Pair<Entity, List<Itinerary>>(entity, fromPlanner));
+	}
+
+	public void cleanModel() {
+		connector.cleanModel(null);
+	}
+
+	public void invokeRequest() {
+		if (predictBuffer.isEmpty()) {
+			return;
+		}
+
+		// Requests are buffered in the order entities were executed in, so
+		// they are sorted to submit them independent of thread scheduling.
+		List<Pair<Entity, List<Itinerary>>> requests = new ArrayList<Pair<Entity, List<Itinerary>>>(predictBuffer.size());
+		Pair<Entity, List<Itinerary>> request = null;
+
+		while ((request = predictBuffer.poll()) != null) {
+			requests.add(request);
+		}
+		Collections.sort(requests, ENTITY_ORDER);
+		CountDownLatch latch = new CountDownLatch(requests.size());
+
+		for (int i = 0; i < requests.size(); i++) {
+			request = requests.get(i);
+			Worker w = workerPool.pop();
+			w.prepare(request.first, request.second, latch);
+			tasks.add(w);
+		}
+
+		try {
+			service.invokeAll(tasks);
+			latch.await();
+		} catch (InterruptedException e) {
+			e.printStackTrace();
+		}
+
+		for (int j = 0; j < tasks.size(); j++) {
+			Worker w = tasks.get(j);
+			w.reset();
+			workerPool.put(w);
+		}
+		tasks.clear();
+	}
+
+	/**
+	 * Closes the log files of the service.
+	 */
+	public void close() {
+
+		try {
+			if (loggerMovement != null) loggerMovement.close();
+			if (loggerStop != null) loggerStop.close();
+			if (loggerUtility != null) loggerUtility.close();
+
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+}
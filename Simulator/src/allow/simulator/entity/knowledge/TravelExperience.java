@@ -1,9 +1,5 @@
 package allow.simulator.entity.knowledge;
 
-import java.time.Instant;
-import java.time.LocalDateTime;
-import java.time.ZoneId;
-
 import allow.simulator.mobility.data.TType;
 import allow.simulator.util.Coordinate;
 import allow.simulator.world.StreetSegment;
@@ -24,7 +20,6 @@ public final class TravelExperience extends Experience {
 	
 	// Timestamp in ms the entity began to move along the segment.
 	private long timeStart;
-	private LocalDateTime tStart;
 	
 	// Timestamp in ms the entity finished to move along the segment.
 	private long timeEnd;
@@ -58,7 +53,6 @@ public final class TravelExperience extends Experience {
 		this.costs = costs;
 		this.meansOfTransportation = meansOfTransportation;
 		this.timeStart = timeStart;
-		tStart = LocalDateTime.ofInstant(Instant.ofEpochMilli(timeStart), ZoneId.of("Europe/Rome"));
 		this.timeEnd = timeEnd;
 		this.nPeopleOnSegment = nPeopleOnSegment;
 		this.publicTransportationFillingLevel = publicTranbsportationFillingLevel;
@@ -80,7 +74,6 @@ public final class TravelExperience extends Experience {
 		this.costs = costs;
 		this.meansOfTransportation = meansOfTransportation;
 		this.timeStart = timeStart;
-		tStart = LocalDateTime.ofInstant(Instant.ofEpochMilli(timeStart), ZoneId.of("Europe/Rome"));
 		this.timeEnd = timeEnd;
 		this.nPeopleOnSegment = nPeopleOnSegment;
 		this.publicTransportationFillingLevel = publicTranbsportationFillingLevel;
@@ -132,17 +125,16 @@ public final class TravelExperience extends Experience {
 		return timeStart;
 	}
 	
-	public LocalDateTime getTStart() {
-		return tStart;
+	public int getHourOfDay() {
+		return ZoneClock.getHourOfDay(timeStart);
 	}
 	
 	public void setStartingTime(long startingTime) {
 		timeStart = startingTime;
-		tStart = LocalDateTime.ofInstant(Instant.ofEpochMilli(timeStart), ZoneId.of("Europe/Rome"));
 	}
 	
 	public int getWeekday() {
-		return tStart.getDayOfWeek().getValue();
+		return ZoneClock.getWeekday(timeStart);
 	}
 	
 	public long getEndTime() {
@@ -180,7 +172,6 @@ public final class TravelExperience extends Experience {
 		ret.costs = costs;
 		ret.meansOfTransportation = meansOfTransportation;
 		ret.timeStart = timeStart;
-		ret.tStart = tStart.minusSeconds(0);
 		ret.timeEnd = timeEnd;
 		ret.nPeopleOnSegment = nPeopleOnSegment;
 		ret.publicTransportationFillingLevel = publicTransportationFillingLevel;
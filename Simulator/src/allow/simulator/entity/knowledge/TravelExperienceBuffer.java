@@ -0,0 +1,283 @@
+package allow.simulator.entity.knowledge;
+
+import java.util.Arrays;
+import java.util.List;
+
+import allow.simulator.mobility.data.TType;
+import allow.simulator.world.StreetSegment;
+import allow.simulator.world.Weather;
+
+/**
+ * Sequence of travel experiences stored as one array per attribute instead
+ * of one TravelExperience instance per passed segment. Adding experiences
+ * does not allocate objects except for growing the arrays, which are reused
+ * after calling clear().
+ *
+ * @author Andreas Poxrucker (DFKI)
+ *
+ */
+public final class TravelExperienceBuffer {
+	// Minimal capacity of a non-empty buffer.
+	private static final int MIN_CAPACITY = 8;
+
+	// Means of transportation by ordinal.
+	private static final TType MODES[] = TType.values();
+
+	// Marks experiences not associated with a segment. Segment ids are stored
+	// as int and may be negative (see MobilityRepository.createPolyTrace()),
+	// so the smallest int value is reserved.
+	private static final int TRANSIENT = Integer.MIN_VALUE;
+
+	// Id of the segment or TRANSIENT, if the experience is not associated with
+	// a segment (see TravelExperience.isTransient()).
+	private int segments[];
+
+	// Length of the segment in m.
+	private float lengths[];
+
+	// Timestamps in ms the entity began and finished to move along the segment.
+	private long starts[];
+	private long ends[];
+
+	// Travel time in seconds.
+	private float travelTimes[];
+
+	// Costs to travel the segment.
+	private float costs[];
+
+	// Ordinal of the means of transportation used to travel the segment.
+	private byte modes[];
+
+	// Number of people on the segment.
+	private int occupancies[];
+
+	// Filling level of public transportation, if it was used.
+	private float fillingLevels[];
+
+	// Id of trip of public transportation, if it was used.
+	private String tripIds[];
+
+	// Encoding of the weather when the segment was finished.
+	private byte weather[];
+
+	// Number of experiences in the buffer.
+	private int size;
+
+	/**
+	 * Constructor.
+	 * Creates a new empty buffer.
+	 *
+	 * @param capacity Number of experiences the buffer can hold before growing.
+	 */
+	public TravelExperienceBuffer(int capacity) {
+		segments = new int[capacity];
+		lengths = new float[capacity];
+		starts = new long[capacity];
+		ends = new long[capacity];
+		travelTimes = new float[capacity];
+		costs = new float[capacity];
+		modes = new byte[capacity];
+		occupancies = new int[capacity];
+		fillingLevels = new float[capacity];
+		tripIds = new String[capacity];
+		weather = new byte[capacity];
+	}
+
+	/**
+	 * Adds the experience of having passed a street segment.
+	 *
+	 * @param segment Segment passed or null, if the experience is not
+	 *        associated with a segment.
+	 * @param travelTime Travel time in seconds.
+	 * @param cost Costs to travel the segment.
+	 * @param mode Means of transportation used.
+	 * @param start Timestamp in ms the entity began to move along the segment.
+	 * @param end Timestamp in ms the entity finished to move along the segment.
+	 * @param occupancy Number of people on the segment.
+	 * @param fillingLevel Filling level of public transportation.
+	 * @param tripId Id of trip of public transportation or null.
+	 * @param state Weather when the segment was finished.
+	 */
+	public void add(StreetSegment segment,
+			double travelTime,
+			double cost,
+			TType mode,
+			long start,
+			long end,
+			int occupancy,
+			double fillingLevel,
+			String tripId,
+			Weather.State state) {
+
+		if (size == segments.length) {
+			grow(Math.max(2 * size, MIN_CAPACITY));
+		}
+		segments[size] = (segment != null) ? toIndex(segment.getId()) : TRANSIENT;
+		lengths[size] = (segment != null) ? (float) segment.getLength() : 0.0f;
+		starts[size] = start;
+		ends[size] = end;
+		travelTimes[size] = (float) travelTime;
+		costs[size] = (float) cost;
+		modes[size] = (byte) mode.ordinal();
+		occupancies[size] = occupancy;
+		fillingLevels[size] = (float) fillingLevel;
+		tripIds[size] = tripId;
+		weather[size] = state.getEncoding();
+		size++;
+	}
+
+	/**
+	 * Adds an experience given as TravelExperience instance.
+	 *
+	 * @param ex Experience to add.
+	 */
+	public void add(TravelExperience ex) {
+
+		if (size == segments.length) {
+			grow(Math.max(2 * size, MIN_CAPACITY));
+		}
+		segments[size] = ex.isTransient() ? TRANSIENT : toIndex(ex.getSegmentId());
+		lengths[size] = ex.isTransient() ? 0.0f : (float) ex.getSegmentLength();
+		starts[size] = ex.getStartingTime();
+		ends[size] = ex.getEndTime();
+		travelTimes[size] = (float) ex.getTravelTime();
+		costs[size] = (float) ex.getCosts();
+		modes[size] = (byte) ex.getTransportationMean().ordinal();
+		occupancies[size] = ex.getNumberOfPeopleOnSegment();
+		fillingLevels[size] = (float) ex.getPublicTransportationFillingLevel();
+		tripIds[size] = ex.getPublicTransportationTripId();
+		weather[size] = ex.getWeather().getEncoding();
+		size++;
+	}
+
+	/**
+	 * Adds the given experiences in their order.
+	 *
+	 * @param experiences Experiences to add.
+	 */
+	public void addAll(List<TravelExperience> experiences) {
+
+		for (int i = 0; i < experiences.size(); i++) {
+			add(experiences.get(i));
+		}
+	}
+
+	/**
+	 * Adds all experiences of another buffer in their order.
+	 *
+	 * @param other Buffer holding experiences to add.
+	 */
+	public void addAll(TravelExperienceBuffer other) {
+		int n = size + other.size;
+
+		if (n > segments.length) {
+			grow(Math.max(n, 2 * size));
+		}
+		System.arraycopy(other.segments, 0, segments, size, other.size);
+		System.arraycopy(other.lengths, 0, lengths, size, other.size);
+		System.arraycopy(other.starts, 0, starts, size, other.size);
+		System.arraycopy(other.ends, 0, ends, size, other.size);
+		System.arraycopy(other.travelTimes, 0, travelTimes, size, other.size);
+		System.arraycopy(other.costs, 0, costs, size, other.size);
+		System.arraycopy(other.modes, 0, modes, size, other.size);
+		System.arraycopy(other.occupancies, 0, occupancies, size, other.size);
+		System.arraycopy(other.fillingLevels, 0, fillingLevels, size, other.size);
+		System.arraycopy(other.tripIds, 0, tripIds, size, other.size);
+		System.arraycopy(other.weather, 0, weather, size, other.size);
+		size = n;
+	}
+
+	/**
+	 * Returns the number of experiences in the buffer.
+	 *
+	 * @return Number of experiences.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Removes all experiences from the buffer keeping its capacity.
+	 */
+	public void clear() {
+		Arrays.fill(tripIds, 0, size, null);
+		size = 0;
+	}
+
+	public long getSegmentId(int i) {
+		return segments[i];
+	}
+
+	public boolean isTransient(int i) {
+		return segments[i] == TRANSIENT;
+	}
+
+	public double getSegmentLength(int i) {
+		return lengths[i];
+	}
+
+	public long getStartingTime(int i) {
+		return starts[i];
+	}
+
+	public long getEndTime(int i) {
+		return ends[i];
+	}
+
+	public double getTravelTime(int i) {
+		return travelTimes[i];
+	}
+
+	public double getCosts(int i) {
+		return costs[i];
+	}
+
+	public TType getTransportationMean(int i) {
+		return MODES[modes[i]];
+	}
+
+	public int getNumberOfPeopleOnSegment(int i) {
+		return occupancies[i];
+	}
+
+	public double getPublicTransportationFillingLevel(int i) {
+		return fillingLevels[i];
+	}
+
+	public String getPublicTransportationTripId(int i) {
+		return tripIds[i];
+	}
+
+	public byte getWeatherEncoding(int i) {
+		return weather[i];
+	}
+
+	public int getWeekday(int i) {
+		return ZoneClock.getWeekday(starts[i]);
+	}
+
+	public int getHourOfDay(int i) {
+		return ZoneClock.getHourOfDay(starts[i]);
+	}
+
+	private static int toIndex(long segmentId) {
+
+		if (segmentId <= TRANSIENT || segmentId > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("Error: Segment id " + segmentId + " out of range.");
+		return (int) segmentId;
+	}
+
+	private void grow(int capacity) {
+		segments = Arrays.copyOf(segments, capacity);
+		lengths = Arrays.copyOf(lengths, capacity);
+		starts = Arrays.copyOf(starts, capacity);
+		ends = Arrays.copyOf(ends, capacity);
+		travelTimes = Arrays.copyOf(travelTimes, capacity);
+		costs = Arrays.copyOf(costs, capacity);
+		modes = Arrays.copyOf(modes, capacity);
+		occupancies = Arrays.copyOf(occupancies, capacity);
+		fillingLevels = Arrays.copyOf(fillingLevels, capacity);
+		tripIds = Arrays.copyOf(tripIds, capacity);
+		weather = Arrays.copyOf(weather, capacity);
+	}
+}
@@ -1,6 +1,5 @@
 package allow.simulator.entity.knowledge;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
@@ -15,6 +14,13 @@ public class Worker implements Callable<List<Itinerary>> {
 	
 	// Latch to count down for thread synchronization.
 	public CountDownLatch latch;
+	
+	// Connector to the EvoKnowledge database.
+	private DBConnector connector;
+	
+	public Worker(DBConnector connector) {
+		this.connector = connector;
+	}
 
 	public void prepare(Entity entity, List<Itinerary> toUpdate, CountDownLatch latch) {
 		this.entity = entity;
@@ -33,14 +39,11 @@ public class Worker implements Callable<List<Itinerary>> {
 		
 		for (Itinerary it : toUpdate) {
 			List<TravelExperience> ex = EvoKnowledge.itineraryToTravelExperience(entity, it);
-			it.priorSegmentation = new ArrayList<TravelExperience>(ex.size());
-			
-			for (TravelExperience e : ex) {
-				it.priorSegmentation.add(e.clone());
-			}
+			it.priorSegmentation = new TravelExperienceBuffer(ex.size());
+			it.priorSegmentation.addAll(ex);
 			
 			try {
-				DBConnector.getPredictedItinerary(entity, ex);
+				connector.getPredictedItinerary(entity, ex);
 				EvoKnowledge.updateItineraryFromTravelExperience(it, ex);
 				
 			} catch (Exception e) {
@@ -7,16 +7,20 @@ public class WorkerPool {
 	
 	private Queue<Worker> workerPool;
 	
-	public WorkerPool(int initialCapacity) {
+	// Connector passed to new workers.
+	private DBConnector connector;
+	
+	public WorkerPool(int initialCapacity, DBConnector connector) {
+		this.connector = connector;
 		workerPool = new LinkedList<Worker>();
 		
 		for (int i = 0; i < initialCapacity; i++) {
-			workerPool.add(new Worker());
+			workerPool.add(new Worker(connector));
 		}
 	}
 	
 	public Worker pop() {
-		return !workerPool.isEmpty() ? workerPool.poll() : new Worker();
+		return !workerPool.isEmpty() ? workerPool.poll() : new Worker(connector);
 	}
 	
 	public void put(Worker worker) {
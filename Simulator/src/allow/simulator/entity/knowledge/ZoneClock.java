@@ -0,0 +1,86 @@
+package allow.simulator.entity.knowledge;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+
+/**
+ * Derives the hour of day and the weekday of timestamps in the time zone of
+ * the simulated region. The offset of the zone is cached together with the
+ * interval it is valid for, such that conversions are done with integer
+ * arithmetic and only changes of daylight saving time require a lookup.
+ *
+ * @author Andreas Poxrucker (DFKI)
+ *
+ */
+final class ZoneClock {
+	// Rules of the time zone of the simulated region.
+	private static final ZoneRules RULES = ZoneId.of("Europe/Rome").getRules();
+
+	// Milliseconds per hour and per day.
+	private static final long MILLIS_PER_HOUR = 3600000L;
+	private static final long MILLIS_PER_DAY = 24 * MILLIS_PER_HOUR;
+
+	/**
+	 * Offset of the time zone valid from (inclusive) and to (exclusive) the
+	 * given timestamps in ms.
+	 */
+	private static final class Offset {
+		private final long from;
+		private final long to;
+		private final long millis;
+
+		Offset(long from, long to, long millis) {
+			this.from = from;
+			this.to = to;
+			this.millis = millis;
+		}
+	}
+
+	// Offset used for the last conversion.
+	private static volatile Offset current = new Offset(0, 0, 0);
+
+	private ZoneClock() {
+	}
+
+	/**
+	 * Returns the hour of day of a timestamp.
+	 *
+	 * @param timestamp Timestamp in ms.
+	 * @return Hour of day from 0 to 23.
+	 */
+	static int getHourOfDay(long timestamp) {
+		return (int) (Math.floorMod(toLocal(timestamp), MILLIS_PER_DAY) / MILLIS_PER_HOUR);
+	}
+
+	/**
+	 * Returns the weekday of a timestamp.
+	 *
+	 * @param timestamp Timestamp in ms.
+	 * @return Weekday from 1 (Monday) to 7 (Sunday).
+	 */
+	static int getWeekday(long timestamp) {
+		// 1 January 1970 was a Thursday.
+		return Math.floorMod(Math.floorDiv(toLocal(timestamp), MILLIS_PER_DAY) + 3, 7) + 1;
+	}
+
+	private static long toLocal(long timestamp) {
+		Offset offset = current;
+
+		if (timestamp < offset.from || timestamp >= offset.to) {
+			offset = lookup(timestamp);
+			current = offset;
+		}
+		return timestamp + offset.millis;
+	}
+
+	private static Offset lookup(long timestamp) {
+		Instant instant = Instant.ofEpochMilli(timestamp);
+		ZoneOffsetTransition previous = RULES.previousTransition(instant.plusMillis(1));
+		ZoneOffsetTransition next = RULES.nextTransition(instant);
+		long from = (previous != null) ? previous.toEpochSecond() * 1000 : Long.MIN_VALUE;
+		long to = (next != null) ? next.toEpochSecond() * 1000 : Long.MAX_VALUE;
+		return new Offset(from, to, RULES.getOffset(instant).getTotalSeconds() * 1000L);
+	}
+}
@@ -1,5 +1,9 @@
 package allow.simulator.entity.utility;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Random;
 import java.util.concurrent.ThreadLocalRandom;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
@@ -78,7 +82,11 @@ public class Preferences {
 	}
 	
 	public Preferences() {
-		double vec[] = createNormVec();
+		this(ThreadLocalRandom.current());
+	}
+	
+	public Preferences(Random random) {
+		double vec[] = createNormVec(random);
 		ttweight = vec[0];
 		cweight = vec[1];
 		// wdweight = vec[2];
@@ -91,16 +99,16 @@ public class Preferences {
 			busPreference = ThreadLocalRandom.current().nextDouble(0.5, 1.0);
 			carPreference = 1.0 - busPreference;
 		} else {*/
-			carPreference = ThreadLocalRandom.current().nextDouble(0, 0.2);
+			carPreference = random.nextDouble() * 0.2;
 			busPreference = 1.0 - carPreference;
 		//}
 		nBusPreferenceChanges = 0;
 		nCarPreferenceChanges = 0;
 	}
 	
-	private static double[] createNormVec() {
-		double v[] = { Math.abs(ThreadLocalRandom.current().nextGaussian()),
-				Math.abs(ThreadLocalRandom.current().nextGaussian()) };
+	private static double[] createNormVec(Random random) {
+		double v[] = { Math.abs(random.nextGaussian()),
+				Math.abs(random.nextGaussian()) };
 				//Math.abs(ThreadLocalRandom.current().nextGaussian()),
 				//Math.abs(ThreadLocalRandom.current().nextGaussian()) };
 		double normInv = 1.0 / (v[0] + v[1] /*+ v[2] + v[3]*/);
@@ -213,6 +221,40 @@ public class Preferences {
 		lastExperiencedBusFillingLevel = level;
 	}
 	
+	public void writeState(DataOutput out) throws IOException {
+		out.writeDouble(ttweight);
+		out.writeDouble(cweight);
+		out.writeDouble(wdweight);
+		out.writeDouble(ncweight);
+		out.writeLong(tmax);
+		out.writeDouble(cmax);
+		out.writeDouble(wmax);
+		out.writeDouble(busPreference);
+		out.writeDouble(carPreference);
+		out.writeInt(nBusPreferenceChanges);
+		out.writeInt(nCarPreferenceChanges);
+		out.writeDouble(lastExperiencedBusFillingLevel);
+		out.writeDouble(busPenalty);
+		out.writeDouble(carPenalty);
+	}
+	
+	public void readState(DataInput in) throws IOException {
+		ttweight = in.readDouble();
+		cweight = in.readDouble();
+		wdweight = in.readDouble();
+		ncweight = in.readDouble();
+		tmax = in.readLong();
+		cmax = in.readDouble();
+		wmax = in.readDouble();
+		busPreference = in.readDouble();
+		carPreference = in.readDouble();
+		nBusPreferenceChanges = in.readInt();
+		nCarPreferenceChanges = in.readInt();
+		lastExperiencedBusFillingLevel = in.readDouble();
+		busPenalty = in.readDouble();
+		carPenalty = in.readDouble();
+	}
+	
 	public String toString() {
 		return "[Preferences: " + ttweight + ", " + cweight + ", " + wdweight + ", " + ncweight + ", " + tmax + ", " + cmax + ", " + wmax + "]"; 
 	}
@@ -0,0 +1,54 @@
+package allow.simulator.flow.activity;
+
+import allow.simulator.util.Coordinate;
+import allow.simulator.world.StreetSegment;
+
+/**
+ * Interface for activities moving an entity which do not need to be executed
+ * in every step, e.g. because the movement is computed in advance (see
+ * ScheduledMovementActivity) or by a traffic model (see LinkQueueModel).
+ * Persons executing such an activity are put aside by the PersonScheduler
+ * until the activity needs to be executed again. Meanwhile, the position of
+ * the person is derived from the activity when it is requested (see
+ * Entity.getPosition()).
+ *
+ * @author Andreas Poxrucker (DFKI)
+ *
+ */
+public interface IDeferredActivity {
+
+	// Resume time of activities which are resumed by a notification.
+	long ON_NOTIFICATION = Long.MAX_VALUE;
+
+	/**
+	 * Returns the point in time the activity needs to be executed again.
+	 *
+	 * @return Point in time in ms, ON_NOTIFICATION if the activity waits to be
+	 * resumed (see PersonScheduler.resume(...)), or -1 if the activity needs
+	 * to be executed in every step.
+	 */
+	long getResumeTime();
+
+	/**
+	 * Returns the position of the entity at the given point in time while the
+	 * activity is not executed. Does not change the state of the activity
+	 * and may be called concurrently.
+	 *
+	 * @param timestamp Point in time in ms before the activity is resumed.
+	 * @param pos Coordinate to store the position in.
+	 * @return Position of the entity.
+	 */
+	Coordinate getPosition(long timestamp, Coordinate pos);
+
+	/**
+	 * Returns the segment the entity is located on at the given point in
+	 * time while the activity is not executed. The entity does not leave the
+	 * segment until the activity is resumed or the position of the entity is
+	 * marked as changed (see Entity.markPositionChanged()), such that spatial
+	 * hashes only need to be updated at these points in time.
+	 *
+	 * @param timestamp Point in time in ms before the activity is resumed.
+	 * @return Segment the entity is located on.
+	 */
+	StreetSegment getSegment(long timestamp);
+}
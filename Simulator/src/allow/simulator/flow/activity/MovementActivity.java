@@ -1,10 +1,9 @@
 package allow.simulator.flow.activity;
 
-import java.util.ArrayList;
 import java.util.List;
 
 import allow.simulator.entity.Entity;
-import allow.simulator.entity.knowledge.Experience;
+import allow.simulator.entity.knowledge.TravelExperienceBuffer;
 import allow.simulator.util.Coordinate;
 import allow.simulator.world.StreetSegment;
 
@@ -32,7 +31,7 @@ public abstract class MovementActivity extends Activity {
 		
 	// Utility variables to log travel statistics per segment.
 	protected double segmentTravelTime;
-	protected List<Experience> experiences;
+	protected TravelExperienceBuffer experiences;
 
 	/**
 	 * Creates a new Activity to move an entity.
@@ -66,7 +65,7 @@ public abstract class MovementActivity extends Activity {
 			distOnSeg = 0;
 		
 			// Prepare logging.
-			experiences = new ArrayList<Experience>(path.size());
+			experiences = new TravelExperienceBuffer(path.size());
 
 			// Prepare entity state.
 			entity.setPosition(getStartPoint());
@@ -96,16 +95,18 @@ public abstract class MovementActivity extends Activity {
 		if (path.size() == 0) {
 			return null;
 		}
-		// Get current segment.
-		StreetSegment currentSeg = getCurrentSegment();
-		
-		// Use distanceIndex to calculate position using linear interpolation.
-		double r = distOnSeg / currentSeg.getLength();
-		double r_inv = 1.0 - r;
-		currentPosition.x = r_inv * currentSeg.getStartingPoint().x + r * currentSeg.getEndPoint().x;
-		currentPosition.y = r_inv * currentSeg.getStartingPoint().y + r * currentSeg.getEndPoint().y;
-		// return new Coordinate(r_inv * currentSeg.getStartingPoint().x + r * currentSeg.getEndPoint().x, r_inv * currentSeg.getStartingPoint().y + r * currentSeg.getEndPoint().y);
-		return currentPosition;
+		// Interpolate position from distance travelled on current segment.
+		return getCurrentSegment().getPosition(distOnSeg, currentPosition);
+	}
+	
+	/**
+	 * Returns the distance from the current position to the end of the
+	 * current segment.
+	 * 
+	 * @return Remaining distance on current segment in m.
+	 */
+	protected double getDistanceToNextSegment() {
+		return Math.max(0.0, getCurrentSegment().getLength() - distOnSeg);
 	}
 	
 	/**
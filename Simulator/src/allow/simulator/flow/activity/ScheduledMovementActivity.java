@@ -0,0 +1,212 @@
+package allow.simulator.flow.activity;
+
+import java.util.List;
+
+import allow.simulator.core.Time;
+import allow.simulator.entity.Entity;
+import allow.simulator.entity.relation.Relation;
+import allow.simulator.mobility.data.TType;
+import allow.simulator.util.Coordinate;
+import allow.simulator.world.StreetSegment;
+import allow.simulator.world.Weather;
+
+/**
+ * Abstract class representing an Activity to move an entity at a speed which
+ * does not depend on the state of the street segments (e.g. walking). The
+ * points in time the entity leaves each segment of its path are computed
+ * once when the movement starts. The Activity only needs to be executed in
+ * the steps the entity enters a new segment (see getResumeTime()), where the
+ * number of vehicles and the weather are sampled for the segments entered.
+ * In between, the position of the entity is derived from these points in
+ * time when it is requested (see getPosition(...)). Experiences are
+ * collected in bulk when the entity arrives.
+ *
+ * @author Andreas Poxrucker (DFKI)
+ *
+ */
+public abstract class ScheduledMovementActivity extends MovementActivity implements IDeferredActivity {
+
+	// Point in time the movement started in ms or -1, if it did not start yet.
+	private long departure;
+
+	// Time in seconds after departure the entity leaves each segment of the path.
+	private double exitTimes[];
+	
+	// Number of vehicles on and weather at each segment when it was entered.
+	private int occupancies[];
+	private Weather.State weather[];
+	
+	// Number of segments entered so far.
+	private int entered;
+
+	/**
+	 * Creates a new Activity to move an entity at constant speed.
+	 *
+	 * @param type Type of the Activity.
+	 * @param entity Entity executing the Activity (i.e. the entity to move).
+	 * @param path Path to move along.
+	 */
+	protected ScheduledMovementActivity(Type type, Entity entity, List<StreetSegment> path) {
+		super(type, entity, path);
+		departure = -1;
+	}
+
+	@Override
+	public double execute(double deltaT) {
+
+		if (isFinished())
+			return 0.0;
+
+		// Register for knowledge exchange.
+		entity.getRelations().addToUpdate(Relation.Type.DISTANCE);
+
+		// The current step lasts until the end of the time interval and the
+		// Activity is executed for the last deltaT seconds of it.
+		Time time = entity.getContext().getTime();
+		long end = time.getTimestamp() + time.getDeltaT() * 1000L;
+		long start = end - (long) (deltaT * 1000);
+
+		if (departure == -1) {
+			depart(start);
+		}
+		long arrival = getArrivalTime();
+
+		if (arrival > end) {
+			locate((end - departure) / 1000.0);
+			entity.setPosition(getCurrentPosition());
+			return deltaT;
+		}
+		arrive();
+		return Math.max(0.0, (arrival - start) / 1000.0);
+	}
+
+	/**
+	 * Returns the point in time the entity reaches the end of the path.
+	 *
+	 * @return Point in time of arrival in ms or -1, if the movement did not
+	 * start yet.
+	 */
+	public long getArrivalTime() {
+		return (departure != -1) ? departure + toMillis(exitTimes[exitTimes.length - 1]) : -1;
+	}
+
+	@Override
+	public long getResumeTime() {
+		// Resume when the entity leaves its current segment.
+		return (departure != -1) ? departure + toMillis(exitTimes[distanceIndex]) : -1;
+	}
+
+	@Override
+	public Coordinate getPosition(long timestamp, Coordinate pos) {
+		double elapsed = (timestamp - departure) / 1000.0;
+		int i = indexOf(elapsed);
+		double entered = (i > 0) ? exitTimes[i - 1] : 0.0;
+		double duration = exitTimes[i] - entered;
+		double length = path.get(i).getLength();
+		double dist = (duration > 0.0) ? Math.max(0.0, Math.min(length, length * (elapsed - entered) / duration)) : length;
+		return path.get(i).getPosition(dist, pos);
+	}
+
+	@Override
+	public StreetSegment getSegment(long timestamp) {
+		return path.get(indexOf((timestamp - departure) / 1000.0));
+	}
+
+	/**
+	 * Returns the speed to move along a segment in m/s.
+	 *
+	 * @param s Street segment.
+	 * @return Speed on the segment in m/s.
+	 */
+	protected abstract double getSpeed(StreetSegment s);
+
+	/**
+	 * Returns the costs to pass a segment.
+	 *
+	 * @param s Street segment.
+	 * @return Costs to pass the segment.
+	 */
+	protected abstract double getCosts(StreetSegment s);
+
+	/**
+	 * Returns the means of transportation used to move.
+	 *
+	 * @return Means of transportation.
+	 */
+	protected abstract TType getTransportationMean();
+
+	private void depart(long start) {
+		departure = start;
+		tStart = start;
+		exitTimes = new double[path.size()];
+		occupancies = new int[path.size()];
+		weather = new Weather.State[path.size()];
+		entered = 0;
+		enter(0);
+		double t = 0.0;
+
+		for (int i = 0; i < exitTimes.length; i++) {
+			StreetSegment s = path.get(i);
+			t += s.getLength() / getSpeed(s);
+			exitTimes[i] = t;
+		}
+	}
+
+	private void arrive() {
+		TType mode = getTransportationMean();
+		// Segments passed within the last step are entered now.
+		enter(exitTimes.length - 1);
+		double t = 0.0;
+
+		for (int i = 0; i < exitTimes.length; i++) {
+			StreetSegment s = path.get(i);
+			long segStart = departure + toMillis(t);
+			long segEnd = departure + toMillis(exitTimes[i]);
+			experiences.add(s, exitTimes[i] - t, getCosts(s), mode, segStart, segEnd,
+					occupancies[i], 0, null, weather[i]);
+			t = exitTimes[i];
+		}
+		tEnd = getArrivalTime();
+		distanceIndex = path.size() - 1;
+		distOnSeg = path.get(distanceIndex).getLength();
+		setFinished();
+		entity.setPosition(getEndPoint());
+		entity.getKnowledge().collect(experiences);
+	}
+
+	private void locate(double elapsed) {
+		distanceIndex = indexOf(elapsed);
+		enter(distanceIndex);
+		double entered = (distanceIndex > 0) ? exitTimes[distanceIndex - 1] : 0.0;
+		double duration = exitTimes[distanceIndex] - entered;
+		double length = path.get(distanceIndex).getLength();
+		distOnSeg = (duration > 0.0) ? Math.min(length, length * (elapsed - entered) / duration) : length;
+	}
+
+	// Returns the index of the segment the entity is located on the given
+	// number of seconds after departure. Points in time are increasing, so the
+	// segment is searched starting from the current one.
+	private int indexOf(double elapsed) {
+		int i = distanceIndex;
+
+		while (i < exitTimes.length - 1 && exitTimes[i] <= elapsed) {
+			i++;
+		}
+		return i;
+	}
+
+	private void enter(int last) {
+
+		if (entered > last) return;
+		Weather.State state = entity.getContext().getWeather().getCurrentState();
+		
+		for (; entered <= last; entered++) {
+			occupancies[entered] = path.get(entered).getNumberOfVehicles();
+			weather[entered] = state;
+		}
+	}
+
+	private static long toMillis(double seconds) {
+		return (long) (seconds * 1000);
+	}
+}
@@ -3,29 +3,40 @@ package allow.simulator.flow.activity.person;
 import java.util.List;
 
 import allow.simulator.entity.Person;
-import allow.simulator.entity.knowledge.Experience;
-import allow.simulator.entity.knowledge.TravelExperience;
 import allow.simulator.entity.relation.Relation;
 import allow.simulator.flow.activity.Activity;
+import allow.simulator.flow.activity.IDeferredActivity;
 import allow.simulator.flow.activity.MovementActivity;
 import allow.simulator.mobility.data.TType;
 import allow.simulator.util.Coordinate;
-import allow.simulator.util.Geometry;
+import allow.simulator.world.LinkQueueModel;
 import allow.simulator.world.StreetSegment;
 
 /**
- * Class representing driving Activity.
+ * Class representing driving Activity. Depending on the traffic model of the
+ * street map, the car either advances along its path in every step or is
+ * moved through the queues of street segments (see LinkQueueModel), in which
+ * case the activity only departs the car and is resumed when it arrived.
+ * Until then, the position of the person is derived from the queues on
+ * request (see getPosition(...)) and spatial hashes are only updated when
+ * the car enters a new segment.
  * 
  * @author Andreas Poxrucker (DFKI)
  *
  */
-public class Drive extends MovementActivity {
+public class Drive extends MovementActivity implements IDeferredActivity {
 	// Indicates whether taxi journey should be emulated
 	private boolean isTaxi;
 	
 	// Base costs per segment in case taxi journey is emulated
 	private double taxiBaseCostPerSegment;
 	
+	// Queues of cars if cars are moved by the link queue model, otherwise null.
+	private LinkQueueModel linkQueues;
+	
+	// Car moved by the link queue model once departed.
+	private QueuedCar car;
+	
 	/**
 	 * Creates new instance of the driving Activity.
 	 * 
@@ -35,8 +46,9 @@ public class Drive extends MovementActivity {
 	public Drive(Person entity, List<StreetSegment> path, boolean isTaxi) {
 		super(Activity.Type.DRIVE, entity, path);
 		this.isTaxi = isTaxi;
+		linkQueues = entity.getContext().getWorld().getStreetMap().getLinkQueueModel();
 		
-		if (!path.isEmpty()) {
+		if (!path.isEmpty() && linkQueues == null) {
 			currentSegment.addVehicle();
 			
 			//if (isTaxi)
@@ -46,7 +58,6 @@ public class Drive extends MovementActivity {
 
 	@Override
 	public double execute(double deltaT) {
-		if (currentSegment != null) currentSegment.removeVehicle();
 		
 		if (isFinished())
 			return 0.0;
@@ -56,21 +67,86 @@ public class Drive extends MovementActivity {
 			tStart = entity.getContext().getTime().getTimestamp();
 		}
 		entity.getRelations().addToUpdate(Relation.Type.DISTANCE);
+		
+		if (linkQueues != null) {
+			return followQueuedCar(deltaT);
+		}
 		double rem = travel(deltaT);
 		entity.setPosition(getCurrentPosition());
 		
 		if (isFinished()) {
+			currentSegment.removeVehicle();
+			entity.getKnowledge().collect(experiences);
 			
-			for (Experience entry : experiences) {
-				entity.getKnowledge().collect(entry);
-			}
 		} else {
-			currentSegment = getCurrentSegment();
-			currentSegment.addVehicle();
+			StreetSegment next = getCurrentSegment();
+			
+			// Occupy segments only when entering a new one.
+			if (next != currentSegment) {
+				currentSegment.removeVehicle();
+				next.addVehicle();
+				currentSegment = next;
+			}
 		}
 		return rem;
 	}
 	
+	@Override
+	public long getResumeTime() {
+		// Wait for the arrival of a car which departed.
+		return (car != null && !car.hasArrived()) ? IDeferredActivity.ON_NOTIFICATION : -1;
+	}
+	
+	@Override
+	public Coordinate getPosition(long timestamp, Coordinate pos) {
+		return (car != null) ? car.getPosition(timestamp / 1000.0, pos) : path.get(0).getPosition(0.0, pos);
+	}
+	
+	@Override
+	public StreetSegment getSegment(long timestamp) {
+		return (car != null) ? car.getSegment() : path.get(0);
+	}
+	
+	private double followQueuedCar(double deltaT) {
+		
+		if (car == null) {
+			// Depart at the current time, the car enters the first segment
+			// with the next update of the link queue model.
+			car = new QueuedCar(tStart / 1000.0);
+			linkQueues.depart(car);
+			return deltaT;
+		}
+		
+		if (!car.hasArrived()) {
+			// Only reached if the person is not put aside until the car
+			// arrived (e.g. if executed without PersonScheduler).
+			entity.setPosition(car.getPosition(entity.getContext().getTime().getTimestamp() / 1000.0, currentPosition));
+			return deltaT;
+		}
+		// Car arrived during the last update of the link queue model.
+		setFinished();
+		entity.setPosition(getEndPoint());
+		entity.getKnowledge().collect(experiences);
+		return 0.0;
+	}
+	
+	private double getCosts(StreetSegment s) {
+		return isTaxi ? (taxiBaseCostPerSegment + s.getLength() * 0.0004) : (s.getLength() * 0.00035);
+	}
+	
+	private void addExperience(StreetSegment s, double travelTime, long start, long end) {
+		experiences.add(s,
+				travelTime,
+				getCosts(s),
+				TType.CAR, 
+				start,
+				end,
+				s.getNumberOfVehicles(),
+				0,
+				null,
+				entity.getContext().getWeather().getCurrentState());
+	}
+	
 	/**
 	 * 
 	 * 
@@ -85,10 +161,9 @@ public class Drive extends MovementActivity {
 			// Get current state.
 			StreetSegment s = getCurrentSegment();
 			double v = isTaxi ? s.getDrivingSpeed() : s.getDrivingSpeed(); // * entity.getContext().getWeather().getCurrentState().getSpeedReductionFactor();
-			Coordinate p = getCurrentPosition();
 			
 			// Compute distance to next segment (i.e. end of current segment).
-			double distToNextSeg = Geometry.haversine(p, s.getEndPoint());
+			double distToNextSeg = getDistanceToNextSegment();
 			
 			// Compute distance to travel within deltaT seconds.
 			double distToTravel = (travelTime - deltaT) * v;
@@ -100,17 +175,7 @@ public class Drive extends MovementActivity {
 				
 				double sumTravelTime = segmentTravelTime + tNextSegment;
 				tEnd = tStart + (long) (sumTravelTime * 1000);
-				Experience newEx = new TravelExperience(s,
-						sumTravelTime,
-						(isTaxi ? (taxiBaseCostPerSegment + s.getLength() * 0.0004) : (s.getLength() * 0.00035)),
-						TType.CAR, 
-						tStart,
-						tEnd,
-						s.getNumberOfVehicles(),
-						0,
-						null,
-						entity.getContext().getWeather().getCurrentState());
-				experiences.add(newEx);
+				addExperience(s, sumTravelTime, tStart, tEnd);
 				segmentTravelTime = 0.0;
 				distOnSeg = 0.0;
 				tStart = tEnd;
@@ -133,4 +198,22 @@ public class Drive extends MovementActivity {
 	public String toString() {
 		return "Drive " + entity;
 	}
+	
+	// Car moved by the link queue model logging the segments it left.
+	private final class QueuedCar extends LinkQueueModel.Vehicle {
+		
+		QueuedCar(double departure) {
+			super(entity.getId(), path, departure);
+		}
+
+		@Override
+		protected void segmentLeft(StreetSegment segment, double entered, double left) {
+			tEnd = (long) (left * 1000);
+			addExperience(segment, left - entered, tStart, tEnd);
+			tStart = tEnd;
+			
+			// Car entered the next segment or arrived.
+			entity.markPositionChanged();
+		}
+	}
 }
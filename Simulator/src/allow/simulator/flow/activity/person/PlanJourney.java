@@ -56,6 +56,24 @@ public final class PlanJourney extends Activity {
 		this.destination = destination;
 		requestSent = false;
 	}
+	
+	/**
+	 * Returns the starting point of the journey to plan.
+	 * 
+	 * @return Starting point of the journey.
+	 */
+	public Coordinate getStart() {
+		return start;
+	}
+	
+	/**
+	 * Returns the destination of the journey to plan.
+	 * 
+	 * @return Destination of the journey.
+	 */
+	public Coordinate getDestination() {
+		return destination;
+	}
 			
 	@Override
 	public double execute(double deltaT) {
@@ -72,7 +90,6 @@ public final class PlanJourney extends Activity {
 		person.getPreferences().setWmax(Math.min(dist, 1000));
 		
 		if (!requestSent) {
-			long reqId = getReqId();
 			List<JourneyRequest> requests = new ArrayList<JourneyRequest>(4);
 			LocalDateTime date = person.getContext().getTime().getCurrentDateTime();
 			LocalTime time = person.getContext().getTime().getCurrentTime();
@@ -81,17 +98,17 @@ public final class PlanJourney extends Activity {
 			// Car requests are now sent out in any case. If a person does not
 			// own a private car or person left the car at home, a taxi request
 			// is emulated.
-			requests.add(createRequest(start, destination, date, time, carJourney, person, reqId, reqNumber++));
+			requests.add(createRequest(start, destination, date, time, carJourney, person, reqNumber++));
 			
 			if (!person.hasUsedCar()) {
-				requests.add(createRequest(start, destination, date, time, transitJourney, person, reqId, reqNumber++));
-				requests.add(createRequest(start, destination, date, time, walkJourney, person, reqId, reqNumber++));
+				requests.add(createRequest(start, destination, date, time, transitJourney, person, reqNumber++));
+				requests.add(createRequest(start, destination, date, time, walkJourney, person, reqNumber++));
 			
 				// if (person.hasBike())
-				//	requests.add(createRequest(start, destination, date, time, bikeJourney, person, reqId, reqNumber++));
+				//	requests.add(createRequest(start, destination, date, time, bikeJourney, person, reqNumber++));
 			
 				if (person.useFlexiBus())
-					requests.add(createRequest(start, destination, date, time, flexiBusJourney, person, reqId, reqNumber++));
+					requests.add(createRequest(start, destination, date, time, flexiBusJourney, person, reqNumber++));
 			}
 			person.getContext().getWorld().getUrbanMobilitySystem().addRequests(requests, person.getRequestBuffer());
 			requestSent = true;
@@ -126,11 +143,10 @@ public final class PlanJourney extends Activity {
 			LocalTime time,
 			TType modes[],
 			Person person,
-			long reqId,
 			int reqNumber) {
 		JourneyRequest s = new JourneyRequest();
 		s.entity = person;
-		s.reqId = reqId;
+		// Request Id is assigned by QueryJourneyPlanner.
 		s.reqNumber = reqNumber;
 		s.Date = date.format(dateFormat);
 		s.DepartureTime = time.format(timeFormat);
@@ -153,14 +169,6 @@ public final class PlanJourney extends Activity {
 		return s;
 	}
 	
-	private static long reqId = 0;
-
-	private static synchronized long getReqId() {
-		long id = reqId;
-		reqId++;
-		return id;
-	}
-	
 	public String toString() {
 		return "PlanJourney " + entity;
 	}
@@ -49,7 +49,7 @@ public final class PrepareJourney extends Activity {
 			person.getFlow().addActivity(new Wait(person, journey.initialWaitingTime));
 
 			if (person.isReplanning()) {
-	    		person.getContext().getStatistics().reportReplaningWaitingTime(journey.initialWaitingTime);
+	    		person.getContext().getStatistics().reportReplaningWaitingTime(person, journey.initialWaitingTime);
 	    	}
 		}
 		person.setReplanning(false);
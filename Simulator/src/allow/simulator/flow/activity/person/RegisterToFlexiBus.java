@@ -30,6 +30,33 @@ public final class RegisterToFlexiBus extends Activity {
 		this.destination = dest;
 		this.earliestStartingTime = earliestStartingTime;
 	}
+	
+	/**
+	 * Returns the starting point of the journey.
+	 * 
+	 * @return Starting point of the journey.
+	 */
+	public Coordinate getStart() {
+		return start;
+	}
+	
+	/**
+	 * Returns the destination of the journey.
+	 * 
+	 * @return Destination of the journey.
+	 */
+	public Coordinate getDestination() {
+		return destination;
+	}
+	
+	/**
+	 * Returns the earliest time the person is willing to start the journey.
+	 * 
+	 * @return Earliest starting time of the journey.
+	 */
+	public LocalTime getEarliestStartingTime() {
+		return earliestStartingTime;
+	}
 
 	@Override
 	public double execute(double deltaT) {
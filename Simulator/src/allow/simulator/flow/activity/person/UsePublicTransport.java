@@ -8,7 +8,6 @@ import allow.simulator.entity.PublicTransportation;
 import allow.simulator.entity.relation.Relation;
 import allow.simulator.flow.activity.Activity;
 import allow.simulator.mobility.data.Stop;
-import allow.simulator.mobility.data.TransportationRepository;
 import allow.simulator.mobility.data.Trip;
 
 /**
@@ -78,7 +77,7 @@ public class UsePublicTransport extends Activity {
 		} else if (!enteredBus) {
 			// Try to get transportation mean.
 			if (b == null) {
-				b = TransportationRepository.Instance().getGTFSTransportAgency(agencyId).getVehicleOfTrip(trip.getTripId());
+				b = person.getContext().getWorld().getUrbanMobilitySystem().getTransportationRepository().getGTFSTransportAgency(agencyId).getVehicleOfTrip(trip.getTripId());
 			}
 			
 			// Reaching a stop needs zero time.
@@ -4,13 +4,9 @@ import java.util.List;
 
 import allow.simulator.entity.Entity;
 import allow.simulator.entity.PublicTransportation;
-import allow.simulator.entity.knowledge.Experience;
-import allow.simulator.entity.knowledge.TravelExperience;
 import allow.simulator.flow.activity.Activity;
 import allow.simulator.flow.activity.MovementActivity;
 import allow.simulator.mobility.data.TType;
-import allow.simulator.util.Coordinate;
-import allow.simulator.util.Geometry;
 import allow.simulator.world.StreetSegment;
 
 /**
@@ -24,18 +20,21 @@ public class DriveToNextStop extends MovementActivity {
 
 	private double fillingLevel;
 	
+	// Indicates whether vehicle occupies street segments (see SimulationParameter.Shard).
+	private boolean occupySegments;
+	
 	public DriveToNextStop(PublicTransportation entity, List<StreetSegment> path) {
 		// Constructor of super class.
 		super(Activity.Type.DRIVE_TO_NEXT_STOP, entity, path);
+		occupySegments = (entity.getContext().getSimulationParameters().Shard == 0);
 		
-		if (!path.isEmpty()) {
+		if (!path.isEmpty() && occupySegments) {
 			currentSegment.addVehicle();
 		}
 	}
 
 	@Override
 	public double execute(double deltaT) {
-		if (currentSegment != null) currentSegment.removeVehicle();
 
 		if (isFinished()) {
 			return 0;
@@ -63,17 +62,26 @@ public class DriveToNextStop extends MovementActivity {
 		}
 				
 		if (isFinished()) {
+			
+			if (occupySegments) currentSegment.removeVehicle();
 					
-			for (Experience ex : experiences) {
-				p.getKnowledge().collect(ex);
+			p.getKnowledge().collect(experiences);
+			
+			for (Entity pass : p.getPassengers()) {
+				pass.getKnowledge().collect(experiences);
+			}
+		} else {
+			StreetSegment next = getCurrentSegment();
+			
+			// Occupy segments only when entering a new one.
+			if (next != currentSegment) {
 				
-				for (Entity pass : p.getPassengers()) {
-					pass.getKnowledge().collect(ex);
+				if (occupySegments) {
+					currentSegment.removeVehicle();
+					next.addVehicle();
 				}
+				currentSegment = next;
 			}
-		} else {
-			currentSegment = getCurrentSegment();
-			currentSegment.addVehicle();
 		}
 		return rem;
 	}
@@ -92,10 +100,9 @@ public class DriveToNextStop extends MovementActivity {
 			// Get current state.
 			StreetSegment s = getCurrentSegment();
 			double v = s.getBusDrivingSpeed(); // * entity.getContext().getWeather().getCurrentState().getSpeedReductionFactor();
-			Coordinate p = getCurrentPosition();
 			
 			// Compute distance to next segment (i.e. end of current segment).
-			double distToNextSeg = Geometry.haversine(p, s.getEndPoint());
+			double distToNextSeg = getDistanceToNextSegment();
 			
 			// Compute distance to travel within deltaT seconds.
 			double distToTravel = (travelTime - deltaT) * v;
@@ -107,7 +114,7 @@ public class DriveToNextStop extends MovementActivity {
 				
 				double sumTravelTime = segmentTravelTime + tNextSegment;
 				tEnd = tStart + (long) (sumTravelTime * 1000);
-				Experience newEx = new TravelExperience(s,
+				experiences.add(s,
 						sumTravelTime,
 						s.getLength() * 0.0008,
 						TType.BUS, 
@@ -117,7 +124,6 @@ public class DriveToNextStop extends MovementActivity {
 						fillingLevel,
 						((PublicTransportation) entity).getCurrentTrip().getTripId(),
 						entity.getContext().getWeather().getCurrentState());
-				experiences.add(newEx);
 				segmentTravelTime = 0.0;
 				distOnSeg = 0.0;
 				tStart = tEnd;
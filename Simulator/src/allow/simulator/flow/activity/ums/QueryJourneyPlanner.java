@@ -1,6 +1,8 @@
 package allow.simulator.flow.activity.ums;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.CountDownLatch;
@@ -20,7 +22,18 @@ import allow.simulator.util.Pair;
  *
  */
 public class QueryJourneyPlanner extends Activity {
-		
+	// Orders requests by the Id of the requesting entity.
+	private static final Comparator<Pair<List<JourneyRequest>, RequestBuffer>> ENTITY_ORDER = new Comparator<Pair<List<JourneyRequest>, RequestBuffer>>() {
+
+		@Override
+		public int compare(Pair<List<JourneyRequest>, RequestBuffer> r1, Pair<List<JourneyRequest>, RequestBuffer> r2) {
+			return Long.compare(r1.first.get(0).entity.getId(), r2.first.get(0).entity.getId());
+		}
+	};
+	
+	// Id assigned to the next group of requests.
+	private long nextReqId;
+	
 	private List<Worker> tasks;
 	private WorkerPool workerPool;
 	private ExecutorService service;
@@ -36,12 +49,28 @@ public class QueryJourneyPlanner extends Activity {
 	public double execute(double deltaT) {
 		// Get planner entity.
 		UrbanMobilitySystem planner = (UrbanMobilitySystem) entity;
-		Queue<Pair<List<JourneyRequest>, RequestBuffer>> requests = planner.getRequestQueue();
+		Queue<Pair<List<JourneyRequest>, RequestBuffer>> queue = planner.getRequestQueue();
+		
+		// Requests are queued in the order persons were executed in, so they
+		// are sorted to assign Ids and planners independent of thread
+		// scheduling.
+		List<Pair<List<JourneyRequest>, RequestBuffer>> requests = new ArrayList<Pair<List<JourneyRequest>, RequestBuffer>>(queue.size());
+		Pair<List<JourneyRequest>, RequestBuffer> request = null;
+		
+		while ((request = queue.poll()) != null) {
+			requests.add(request);
+		}
+		Collections.sort(requests, ENTITY_ORDER);
 		CountDownLatch latch = new CountDownLatch(requests.size());
 
 		int i = 0;
-		while(requests.size() > 0) {
-			Pair<List<JourneyRequest>, RequestBuffer> request = requests.poll();
+		for (int j = 0; j < requests.size(); j++) {
+			request = requests.get(j);
+			
+			for (JourneyRequest r : request.first) {
+				r.reqId = nextReqId;
+			}
+			nextReqId++;
 			Worker w = workerPool.pop();
 			w.prepare(request.first, request.second, planner.getContext().getPlannerServices().get(i), planner.getContext().getFlexiBusPlannerService(), latch);
 			tasks.add(w);
@@ -6,6 +6,7 @@ import java.nio.file.Path;
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -54,6 +55,10 @@ public class MobilityRepository {
 	
 	// Mapping of identifier (stop1.id,stop2.id) to list of segments.
 	private Map<String, List<StreetSegment>> routing;
+	
+	// Id counters for segments and nodes of traces not matched to the street map.
+	private long virtualSegId = 1;
+	private long virtualNodeId = 0;
 
 	/**
 	 * Constructor.
@@ -75,6 +80,65 @@ public class MobilityRepository {
 		routing = createRouting(path, map);
 	}
 	
+	/**
+	 * Constructor.
+	 * Creates a new instance of a mobility repository sharing the GTFS data
+	 * set with the given repository. Traces between stops are resolved to the
+	 * segments of the given street map, which must share its topology with
+	 * the street map the given repository was created from.
+	 * 
+	 * @param repository Repository to share GTFS data set with.
+	 * @param map Street map used for routing.
+	 */
+	public MobilityRepository(MobilityRepository repository, StreetMap map) {
+		agencies = repository.agencies;
+		routes = repository.routes;
+		service = repository.service;
+		exceptions = repository.exceptions;
+		stops = repository.stops;
+		stoptimes = repository.stoptimes;
+		trips = repository.trips;
+		routing = new HashMap<String, List<StreetSegment>>(repository.routing.size());
+		Map<StreetSegment, StreetSegment> copies = new IdentityHashMap<StreetSegment, StreetSegment>();
+		
+		for (Map.Entry<String, List<StreetSegment>> entry : repository.routing.entrySet()) {
+			List<StreetSegment> trace = entry.getValue();
+			
+			if (trace == null) {
+				routing.put(entry.getKey(), null);
+				continue;
+			}
+			List<StreetSegment> copy = new ArrayList<StreetSegment>(trace.size());
+			
+			for (StreetSegment seg : trace) {
+				StreetSegment c = copies.get(seg);
+				
+				if (c == null) {
+					c = resolveSegment(seg, map);
+					copies.put(seg, c);
+				}
+				copy.add(c);
+			}
+			routing.put(entry.getKey(), copy);
+		}
+	}
+	
+	private static StreetSegment resolveSegment(StreetSegment seg, StreetMap map) {
+		
+		if (seg.getId() < 0) {
+			// Segments of traces not matched to the street map are copied.
+			StreetSegment copy = new StreetSegment(seg.getId(), seg.getStartingNode(), seg.getEndingNode(), seg.getMaxSpeed(), seg.getLength());
+			map.registerSegment(copy);
+			return copy;
+		}
+		
+		for (StreetSegment candidate : map.getOutGoingSegments(seg.getStartingNode())) {
+			
+			if (candidate.getId() == seg.getId()) return candidate;
+		}
+		throw new IllegalStateException("Error: Segment " + seg.getId() + " unknown.");
+	}
+	
 	private Map<String, GTFSAgency> loadAgencies(Path path) throws IOException {
 		// Read file.
 		List<String> content = Files.readAllLines(path);
@@ -330,7 +394,7 @@ public class MobilityRepository {
 					}
 					
 					// Get trace of shape and continue, if no trace is available.
-					List<StreetSegment> polyTrace = createPolyTrace(shapes.get(trip.getShapeId()));
+					List<StreetSegment> polyTrace = createPolyTrace(shapes.get(trip.getShapeId()), map);
 					if (polyTrace == null || polyTrace.size() == 0) {
 						continue;
 					}
@@ -408,7 +472,7 @@ public class MobilityRepository {
 					}
 					
 					for (int i = 0; i < stopIds.length - 1; i++) {
-						ret.put(stopIds[i] + "," + stopIds[i + 1], createPolyTrace(newShape.get(i + 1)));
+						ret.put(stopIds[i] + "," + stopIds[i + 1], createPolyTrace(newShape.get(i + 1), map));
 					}
 					processedShapes.add(trip.getShapeId());
 				}
@@ -417,10 +481,7 @@ public class MobilityRepository {
 		return ret;
 	}
 	
-	private static long virtualSegId = 1;
-	private static long virtualNodeId = 0;
-	
-	private static List<StreetSegment> createPolyTrace(List<Coordinate> coordinates) {
+	private List<StreetSegment> createPolyTrace(List<Coordinate> coordinates, StreetMap map) {
 		if (coordinates == null) {
 			return null;
 		}
@@ -433,11 +494,13 @@ public class MobilityRepository {
 		for (int i = 0; i < coordinates.size() - 1; i++) {
 			
 			if (!coordinates.get(i).equals(coordinates.get(i + 1))) {
-				ret.add(new StreetSegment(-(virtualSegId++), 
+				StreetSegment seg = new StreetSegment(-(virtualSegId++), 
 						new StreetNode(-(virtualNodeId++), "", coordinates.get(i)),
 						new StreetNode(-(virtualNodeId++), "", coordinates.get(i + 1)),
 						11.1,
-						Geometry.haversine(coordinates.get(i), coordinates.get(i + 1))));
+						Geometry.haversine(coordinates.get(i), coordinates.get(i + 1)));
+				map.registerSegment(seg);
+				ret.add(seg);
 			}
 		}
 		return ret;
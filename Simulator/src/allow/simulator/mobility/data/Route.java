@@ -1,5 +1,8 @@
 package allow.simulator.mobility.data;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
@@ -9,7 +12,6 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
-import allow.simulator.core.Simulator;
 import allow.simulator.mobility.data.TimeTable.Day;
 import allow.simulator.mobility.data.gtfs.GTFSService;
 import allow.simulator.mobility.data.gtfs.GTFSServiceException;
@@ -36,20 +38,19 @@ public class Route {
 	 * 
 	 * @param routeId Id of this route.
 	 * @param timeTable Time table of this route.
+	 * @param stops Stops of this route.
+	 * @param service Data service to obtain traces between stops.
 	 */
-	public Route(String routeId, TimeTable timeTable, Map<String, Stop> stops) {
+	public Route(String routeId, TimeTable timeTable, Map<String, Stop> stops, IDataService service) {
 		this.routeId = routeId;
 		this.stops = stops;
-		timeTableToTrips(timeTable);
+		timeTableToTrips(timeTable, service);
 		tripsToReturn = new ArrayList<Trip>(16);
 	}
 	
 	private static final DateTimeFormatter format = DateTimeFormatter.ofPattern("kk:mm:ss");
 	
-	private void timeTableToTrips(TimeTable tt) {
-		// For routing.
-		IDataService service = Simulator.Instance().getDataService().get(0);
-
+	private void timeTableToTrips(TimeTable tt, IDataService service) {
 		// Allocate trips structure.
 		trips = new ArrayList<List<Trip>>(7);
 		tripInfo = new HashMap<String, Trip>();
@@ -146,6 +147,55 @@ public class Route {
 		return tripsToReturn;
 	}
 	
+	/**
+	 * Writes the Ids of the trips of every day in their current order which
+	 * determines the trips returned by getNextTrip(...).
+	 * 
+	 * @param out Output to write state to.
+	 * @throws IOException
+	 */
+	public void writeState(DataOutput out) throws IOException {
+		
+		for (List<Trip> dayTrips : trips) {
+			out.writeInt(dayTrips.size());
+			
+			for (Trip t : dayTrips) {
+				out.writeUTF(t.getTripId());
+			}
+		}
+	}
+	
+	/**
+	 * Restores the order of trips written by writeState(...).
+	 * 
+	 * @param in Input to read state from.
+	 * @throws IOException
+	 */
+	public void readState(DataInput in) throws IOException {
+		
+		for (int i = 0; i < trips.size(); i++) {
+			List<Trip> dayTrips = trips.get(i);
+			Map<String, Trip> tripsOfDay = new HashMap<String, Trip>();
+			
+			for (Trip t : dayTrips) {
+				tripsOfDay.put(t.getTripId(), t);
+			}
+			int n = in.readInt();
+			List<Trip> restored = new ArrayList<Trip>(n);
+			
+			for (int j = 0; j < n; j++) {
+				String tripId = in.readUTF();
+				Trip t = tripsOfDay.get(tripId);
+				
+				if (t == null)
+					throw new IllegalStateException("Error: Unknown trip " + tripId + " of route " + routeId);
+				restored.add(t);
+			}
+			dayTrips.clear();
+			dayTrips.addAll(restored);
+		}
+	}
+	
 	public Stop getStop(String stopId) {
 		return stops.get(stopId);
 	}
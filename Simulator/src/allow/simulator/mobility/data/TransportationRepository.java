@@ -26,10 +26,14 @@ public class TransportationRepository {
 	// Carpooling agency providing dynamic on-request ride-sharing.
 	private CarPoolingAgency carPoolingAgency;
 	
-	// Instance of object.
-	private static TransportationRepository instance;
-	
-	private TransportationRepository(Simulator simulator) {
+	/**
+	 * Constructor.
+	 * Creates the public transportation of a simulation from the first data
+	 * service of the simulation and adds agencies and vehicles to it.
+	 * 
+	 * @param simulator Simulator to add agencies and vehicles to.
+	 */
+	public TransportationRepository(Simulator simulator) {
 		// Load GTFS agencies and FlexiBus.
 		reload(simulator);
 	}
@@ -67,7 +71,7 @@ public class TransportationRepository {
 				}
 				
 				// Create a new route for the agency and add it.
-				Route newRoute = new Route(routeId, tt, stopMap);
+				Route newRoute = new Route(routeId, tt, stopMap, simulator.getDataService().get(0));
 				newAgency.addRoute(newRoute);
 				
 				for (int k = 0; k < tt.getMaximalNumberOfTrips(); k++) {
@@ -94,19 +98,6 @@ public class TransportationRepository {
 		carPoolingAgency.setAgencyId("carpoolingagency");
 	}
 	
-	public static TransportationRepository loadPublicTransportation(Simulator simulator) {
-		instance = new TransportationRepository(simulator);
-		return instance;
-	}
-	
-	public static TransportationRepository Instance() {
-		
-		if (instance == null) {
-			throw new IllegalStateException("Error: Buslines not loaded. Execute loadBuslines() before.");
-		}
-		return instance;
-	}
-	
 	public TransportAgency getGTFSTransportAgency(String agencyId) {
 		return gtfsAgencies.get(agencyId);
 	}
@@ -15,7 +15,7 @@ package allow.simulator.mobility.planner;
 import java.util.ArrayList;
 import java.util.List;
 
-import allow.simulator.entity.knowledge.TravelExperience;
+import allow.simulator.entity.knowledge.TravelExperienceBuffer;
 import allow.simulator.util.Coordinate;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
@@ -135,7 +135,7 @@ public class Itinerary {
     
     public int itineraryType;
     
-    public List<TravelExperience> priorSegmentation;
+    public TravelExperienceBuffer priorSegmentation;
     
     public static int getItineraryType(Itinerary it) {
     	if ((it.legs.size() == 1)) {
@@ -21,9 +21,10 @@ public class JourneyRepository {
 	private Map<String, String> solutions;
 	
 	// Random generator.
-	private static Random rg = new Random(System.currentTimeMillis());
+	private Random rg;
 
-	public JourneyRepository(String path) throws IOException {
+	public JourneyRepository(String path, Random rg) throws IOException {
+		this.rg = rg;
 		loadJourneys(path);
 	}
 
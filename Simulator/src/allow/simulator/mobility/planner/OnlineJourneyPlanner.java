@@ -1,11 +1,9 @@
 package allow.simulator.mobility.planner;
 
 import java.io.BufferedWriter;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
@@ -61,8 +59,8 @@ public class OnlineJourneyPlanner extends OTPJourneyPlanner {
 	// Host requests are send to.
 	private HttpHost target;
 
-	// Writer to log request/response pairs.
-	static BufferedWriter wr;
+	// Writer to log request/response pairs (shared by the planners of a simulation).
+	private BufferedWriter wr;
 
 	/**
 	 * Constructor. Creates a new instance of OnlineJourneyPlanner sending
@@ -74,18 +72,13 @@ public class OnlineJourneyPlanner extends OTPJourneyPlanner {
 	 *            Port of OpenTripPlanner service.
 	 * @param world
 	 *            Simulated world.
-	 * @param tracesFile
-	 *            Path to file to write request/response pairs to.
+	 * @param traces
+	 *            Writer to write request/response pairs to.
 	 */
-	public OnlineJourneyPlanner(String host, int port, Path tracesFile) {
+	public OnlineJourneyPlanner(String host, int port, BufferedWriter traces) {
 		target = new HttpHost(host, port, "http");
 		client = new DefaultHttpClient();
-
-		try {
-			wr = new BufferedWriter(new FileWriter(tracesFile.toFile()));
-		} catch (IOException e) {
-			e.printStackTrace();
-		}
+		wr = traces;
 	}
 
 	/**
@@ -173,25 +166,7 @@ public class OnlineJourneyPlanner extends OTPJourneyPlanner {
 						if (l.mode == TType.CAR || l.mode == TType.BICYCLE
 								|| l.mode == TType.WALK) {
 							l.segments = new ArrayList<StreetSegment>();
-							for (int j = 0; j < l.osmNodes.size() - 1; j++) {
-								String first = normalize(l.osmNodes.get(j), map);
-								String second = normalize(
-										l.osmNodes.get(j + 1), map);
-
-								Street street = map.getStreet(first, second);
-
-								if (street != null) {
-									l.segments.addAll(street.getSubSegments());
-									continue;
-								}
-
-								StreetSegment seg = map.getStreetSegment(first,
-										second);
-
-								if (seg != null) {
-									l.segments.add(seg);
-								}
-							}
+							addSegments(l, map);
 						}
 					}
 					safetyLevel = calculateSafetyLevel(nextIt,
@@ -222,25 +197,45 @@ public class OnlineJourneyPlanner extends OTPJourneyPlanner {
 		return null;
 	}
 
-	private String normalize(String nodeLabel, StreetMap map) {
+	private static void addSegments(Leg l, StreetMap map) {
+		// Resolve each node of the leg once.
+		StreetNode first = null;
+
+		for (int j = 0; j < l.osmNodes.size(); j++) {
+			StreetNode second = resolve(l.osmNodes.get(j), map);
+
+			if ((first != null) && (second != null)) {
+				Street street = map.getStreet(first, second);
+
+				if (street != null) {
+					l.segments.addAll(street.getSubSegments());
+
+				} else {
+					StreetSegment seg = map.getStreetSegment(first, second);
+
+					if (seg != null) {
+						l.segments.add(seg);
+					}
+				}
+			}
+			first = second;
+		}
+	}
+
+	private static StreetNode resolve(String nodeLabel, StreetMap map) {
 		if (nodeLabel.startsWith("osm:node") || nodeLabel.startsWith("split"))
 			// These are nodes which have the same label as in the planner.
-			return nodeLabel;
+			return map.getStreetNode(nodeLabel);
 		String tokens[] = nodeLabel.split("_");
 
 		if (tokens.length == 1) {
 			// These are unknown nodes.
-			return "";
+			return null;
 		}
 		// These are intermediate nodes which can be determined by their
 		// position.
 		// Planner returns "streetname_lat,lon".
-		StreetNode n = map.getStreetNodeFromPosition(tokens[1]);
-
-		if (n == null) {
-			return "";
-		}
-		return n.getLabel();
+		return map.getStreetNodeFromPosition(tokens[1]);
 	}
 
 	@Override
@@ -325,27 +320,7 @@ public class OnlineJourneyPlanner extends OTPJourneyPlanner {
 
 						if (l.mode == TType.CAR || l.mode == TType.BICYCLE
 								|| l.mode == TType.WALK) {
-
-							for (int j = 0; j < l.osmNodes.size() - 1; j++) {
-								String first = normalize(l.osmNodes.get(j), map);
-								String second = normalize(
-										l.osmNodes.get(j + 1), map);
-
-								Street street = map.getStreet(first, second);
-
-								if (street != null) {
-									l.segments.addAll(street.getSubSegments());
-									continue;
-								}
-
-								StreetSegment seg = map.getStreetSegment(first,
-										second);
-
-								if (seg != null) {
-									l.segments.add(seg);
-									continue;
-								}
-							}
+							addSegments(l, map);
 
 						} else {
 							IDataService dataService = request.entity
@@ -0,0 +1,195 @@
+package allow.simulator.mobility.planner;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+import allow.simulator.mobility.data.TType;
+import allow.simulator.world.StreetMap;
+import allow.simulator.world.StreetNode;
+import allow.simulator.world.StreetRouter;
+import allow.simulator.world.StreetSegment;
+
+/**
+ * Represents a journey planner for the Allow Ensembles urban traffic
+ * simulation. Implements the IPlannerService interface. Plans car, bicycle,
+ * and walking journeys in-process on the street map of the simulation using
+ * the current driving speeds of street segments (see StreetRouter). Requests
+ * involving public transportation are forwarded to another planner service.
+ *
+ * @author Andreas Poxrucker (DFKI)
+ *
+ */
+public class StreetJourneyPlanner implements IPlannerService {
+	// Formats of date and time of journey requests.
+	private static final DateTimeFormatter dateFormat = DateTimeFormatter.ofPattern("MM/dd/yyyy");
+	private static final DateTimeFormatter timeFormat = DateTimeFormatter.ofPattern("hh:mma");
+
+	// Street map to plan journeys on.
+	private StreetMap map;
+
+	// Routers shared by the planners of a simulation.
+	private StreetRouter.Pool routers;
+
+	// Planner to forward requests involving public transportation to (may be null).
+	private IPlannerService transitPlanner;
+
+	/**
+	 * Constructor.
+	 * Creates a new instance of StreetJourneyPlanner.
+	 *
+	 * @param map Street map to plan journeys on.
+	 * @param routers Pool of routers on the given street map.
+	 * @param transitPlanner Planner to forward requests involving public
+	 *        transportation to or null, if such requests cannot be answered.
+	 */
+	public StreetJourneyPlanner(StreetMap map, StreetRouter.Pool routers, IPlannerService transitPlanner) {
+		this.map = map;
+		this.routers = routers;
+		this.transitPlanner = transitPlanner;
+	}
+
+	@Override
+	public List<Itinerary> requestSingleJourney(JourneyRequest request) {
+		return requestSingleJourney(request, new ArrayList<Itinerary>(1));
+	}
+
+	@Override
+	public List<Itinerary> requestSingleJourney(JourneyRequest request, List<Itinerary> itineraries) {
+		TType mode = getStreetMode(request.TransportTypes);
+
+		if (mode == null) {
+			return (transitPlanner != null) ? transitPlanner.requestSingleJourney(request, itineraries) : null;
+		}
+		StreetNode source = map.getNearestStreetNode(request.From);
+		StreetNode target = map.getNearestStreetNode(request.To);
+
+		if (source == null || target == null)
+			return null;
+
+		if (source == target) {
+			// Origin and destination coincide, no journey needed.
+			return itineraries;
+		}
+		List<StreetSegment> segments = new ArrayList<StreetSegment>();
+		StreetRouter router = routers.acquire();
+		double travelTime;
+
+		try {
+			travelTime = router.route(source, target, toRouterMode(mode), segments);
+
+		} finally {
+			routers.release(router);
+		}
+
+		if (travelTime < 0)
+			return null;
+		itineraries.add(createItinerary(request, mode, segments, travelTime));
+		return itineraries;
+	}
+
+	private Itinerary createItinerary(JourneyRequest request, TType mode, List<StreetSegment> segments, double travelTime) {
+		long now = getRequestTime(request);
+		double distance = 0.0;
+		List<String> nodes = new ArrayList<String>(segments.size() + 1);
+		nodes.add(segments.get(0).getStartingNode().getLabel());
+
+		for (StreetSegment seg : segments) {
+			distance += seg.getLength();
+			nodes.add(seg.getEndingNode().getLabel());
+		}
+		Leg leg = new Leg();
+		leg.mode = mode;
+		leg.startTime = now;
+		leg.endTime = now + (long) (travelTime * 1000);
+		leg.distance = distance;
+		leg.from = request.From;
+		leg.to = request.To;
+		leg.osmNodes = nodes;
+		leg.segments = segments;
+
+		switch (mode) {
+		case BICYCLE:
+			leg.costs = distance * 0.000005;
+			break;
+
+		case CAR:
+			leg.costs = distance * (request.isTaxiRequest ? 0.0004 : 0.00035);
+			break;
+
+		case WALK:
+		default:
+			leg.costs = 0.0;
+			break;
+		}
+
+		Itinerary it = new Itinerary();
+		it.addLeg(leg);
+		it.startTime = leg.startTime;
+		it.endTime = leg.endTime;
+		it.duration = (long) travelTime;
+		it.walkTime = (mode == TType.WALK) ? it.duration : 0;
+		it.walkDistance = (mode == TType.WALK) ? distance : 0.0;
+		it.costs = leg.costs;
+		it.itineraryType = Itinerary.getItineraryType(it);
+		it.from = request.From;
+		it.to = request.To;
+		it.reqId = request.reqId;
+		it.reqNumber = request.reqNumber;
+		it.isTaxiItinerary = request.isTaxiRequest;
+		return it;
+	}
+
+	private static long getRequestTime(JourneyRequest request) {
+
+		if (request.entity != null)
+			return request.entity.getContext().getTime().getTimestamp();
+		LocalDateTime time = LocalDateTime.of(LocalDate.parse(request.Date, dateFormat),
+				LocalTime.parse((request.ArrivalTime != null) ? request.ArrivalTime : request.DepartureTime, timeFormat));
+		return Timestamp.valueOf(time).getTime();
+	}
+
+	private static TType getStreetMode(TType modes[]) {
+		TType mode = null;
+
+		for (TType t : modes) {
+
+			switch (t) {
+			case CAR:
+				mode = TType.CAR;
+				break;
+
+			case BICYCLE:
+				if (mode != TType.CAR) mode = TType.BICYCLE;
+				break;
+
+			case WALK:
+				if (mode == null) mode = TType.WALK;
+				break;
+
+			default:
+				// Request involves other means of transportation.
+				return null;
+			}
+		}
+		return mode;
+	}
+
+	private static StreetRouter.Mode toRouterMode(TType mode) {
+
+		switch (mode) {
+		case CAR:
+			return StreetRouter.Mode.CAR;
+
+		case BICYCLE:
+			return StreetRouter.Mode.BICYCLE;
+
+		default:
+			return StreetRouter.Mode.WALK;
+		}
+	}
+}
@@ -1,8 +1,6 @@
 package allow.simulator.netlogo.agent;
 
 import java.util.EnumMap;
-import java.util.Observable;
-import java.util.Observer;
 
 import org.nlogo.agent.Turtle;
 import org.nlogo.agent.World;
@@ -20,7 +18,7 @@ import allow.simulator.util.Coordinate;
  * @author Andreas Poxrucker (DFKI)
  *
  */
-public class BusAgent extends Turtle implements Observer, IAgent {
+public class BusAgent extends Turtle implements IAgent {
 	// Actual bus agent.
 	private Bus bImpl;
 	
@@ -43,7 +41,6 @@ public class BusAgent extends Turtle implements Observer, IAgent {
 		super(world, world.getBreed("BUSSES"), 0.0, 0.0);
 		temp = new Coordinate();
 		bImpl = b;
-		bImpl.addObserver(this);
 		hidden(true);
 		shape("bus");
 		size(1.0);
@@ -73,11 +70,9 @@ public class BusAgent extends Turtle implements Observer, IAgent {
 	}
 	
 	@Override
-	public void update(Observable o, Object arg) {
-		Bus b = (Bus) o;
-		
+	public void updatePosition() {
 		// Update x and y coordinates.
-		b.getContext().getWorld().getTransformation().GISToNetLogo(b.getPosition(), temp);
+		bImpl.getContext().getWorld().getTransformation().GISToNetLogo(bImpl.getPosition(), temp);
 		
 		if ((temp.x > world().minPxcor()) && (temp.x < world().maxPxcor()) && (temp.y > world().minPycor() && (temp.y < world().maxPycor()))) {
 			try {
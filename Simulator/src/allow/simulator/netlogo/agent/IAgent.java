@@ -32,4 +32,9 @@ public interface IAgent {
 	 * Initiates knowledge exchange.
 	 */
 	public void exchangeKnowledge();
+	
+	/**
+	 * Moves the agent to the current position of the underlying entity.
+	 */
+	public void updatePosition();
 }
@@ -1,9 +1,6 @@
 package allow.simulator.netlogo.agent;
 
-import java.time.LocalTime;
 import java.util.EnumMap;
-import java.util.Observable;
-import java.util.Observer;
 
 import org.nlogo.agent.Turtle;
 import org.nlogo.agent.World;
@@ -15,7 +12,6 @@ import allow.simulator.entity.PlanGenerator;
 import allow.simulator.flow.activity.Activity;
 import allow.simulator.flow.activity.Activity.Type;
 import allow.simulator.util.Coordinate;
-import allow.simulator.util.Pair;
 
 /**
  * Wrapper class to add person state information to NetLogo Person agents.
@@ -23,7 +19,7 @@ import allow.simulator.util.Pair;
  * @author Andreas Poxrucker (DFKI)
  *
  */
-public class PersonAgent extends Turtle implements Observer, IAgent {
+public class PersonAgent extends Turtle implements IAgent {
 	// Actual person entity.
 	private Person pImpl;
 	
@@ -64,11 +60,10 @@ public class PersonAgent extends Turtle implements Observer, IAgent {
 		super(world, world.getBreed("PERSONS"), 0.0, 0.0);
 		temp = new Coordinate();
 		pImpl = p;
-		pImpl.addObserver(this);
 		shape("person");
 		size(1.0);
 		hidden(true);
-		colorDouble((double) Math.random() * 149.0);
+		colorDouble(p.getContext().getRandomService().getSubsystemStream("color" + p.getId()).nextDouble() * 149.0);
 				
 		// Define appearance and shape.
 		Coordinate netlogo = pImpl.getContext().getWorld().getTransformation().GISToNetLogo(pImpl.getPosition());
@@ -83,16 +78,7 @@ public class PersonAgent extends Turtle implements Observer, IAgent {
 	}
 	
 	public boolean execute() throws AgentException {
-		Pair<LocalTime, Activity> next = pImpl.getScheduleQueue().peek();
-		
-		if (pImpl.getFlow().isIdle() && (next != null)) {
-			LocalTime c = pImpl.getContext().getTime().getCurrentTime();
-
-			if (next.first.compareTo(c) <= 0) {
-				pImpl.getFlow().addActivity(next.second);
-				pImpl.getScheduleQueue().poll();
-			}
-		}
+		pImpl.startScheduledActivity();
 		return executeActivity();
 	}
 	
@@ -113,14 +99,18 @@ public class PersonAgent extends Turtle implements Observer, IAgent {
 	}
 
 	@Override
-	public void update(Observable arg0, Object arg1) {
-		Person p = (Person) arg0;
-		p.getContext().getWorld().getTransformation().GISToNetLogo(p.getPosition(), temp);
-				
-		try {
-			xandycor(temp.x, temp.y);
-		} catch (AgentException e) {
-			e.printStackTrace();
+	public void updatePosition() {
+		pImpl.getContext().getWorld().getTransformation().GISToNetLogo(pImpl.getPosition(), temp);
+		
+		// Hide persons outside the view instead of moving them.
+		if ((temp.x > world().minPxcor()) && (temp.x < world().maxPxcor()) && (temp.y > world().minPycor() && (temp.y < world().maxPycor()))) {
+			try {
+				xandycor(temp.x, temp.y);
+			} catch (AgentException e) {
+				e.printStackTrace();
+			}
+		} else {
+			hidden(true);
 		}
 	}
 
@@ -30,8 +30,12 @@ public class TransportAgencyAgent extends Turtle implements IAgent {
 			// If there is no current activity return finished signal.
 			return true;
 		}
-		// Otherwise execute current activity and return not finished.
-		aImpl.getFlow().executeActivity(aImpl.getContext().getTime().getDeltaT());
+		// Otherwise execute current activity with update period of agencies, if due.
+		int period = aImpl.getContext().getSimulationParameters().AgencyUpdatePeriod;
+		
+		if (aImpl.getContext().getTime().isDue(period)) {
+			aImpl.getFlow().executeActivity(period);
+		}
 		return false;
 	}
 
@@ -45,4 +49,9 @@ public class TransportAgencyAgent extends Turtle implements IAgent {
 		aImpl.exchangeKnowledge();
 	}
 
+	@Override
+	public void updatePosition() {
+		// Agencies are not shown.
+	}
+
 }
@@ -1,5 +1,6 @@
 package allow.simulator.netlogo.commands;
 
+import org.nlogo.agent.World;
 import org.nlogo.api.Argument;
 import org.nlogo.api.Context;
 import org.nlogo.api.DefaultCommand;
@@ -18,7 +19,7 @@ public class CreatePersons extends DefaultCommand {
 		int numberOfAgents = args[0].getIntValue();
 		
 		for (int i = 0; i < numberOfAgents; i++) {
-			Simulator.Instance().addEntity(Entity.Type.PERSON);
+			Simulator.Instance((World) context.getAgent().world()).addEntity(Entity.Type.PERSON);
 		}
 	}
 	
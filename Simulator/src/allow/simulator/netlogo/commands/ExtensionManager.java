@@ -22,7 +22,11 @@ public class ExtensionManager extends DefaultClassManager {
 		primitiveManager.addPrimitive("execute-transport-agency", new ExecuteTransportAgencies());
 		primitiveManager.addPrimitive("setup-simulator", new SetupSimulator());
 		primitiveManager.addPrimitive("shutdown-simulator", new ShutDownSimulator());
+		primitiveManager.addPrimitive("save-checkpoint", new SaveCheckpoint());
+		primitiveManager.addPrimitive("load-checkpoint", new LoadCheckpoint());
 		primitiveManager.addPrimitive("tick", new Tick());
+		primitiveManager.addPrimitive("profile", new GetProfile());
+		primitiveManager.addPrimitive("get-hotspots", new GetHotspots());
 		primitiveManager.addPrimitive("get-regions", new GetRegions());
 		primitiveManager.addPrimitive("get-region", new GetRegion());
 		primitiveManager.addPrimitive("get-person-roles", new GetPersonRoles());
@@ -0,0 +1,56 @@
+package allow.simulator.netlogo.commands;
+
+import java.util.List;
+
+import org.nlogo.agent.World;
+import org.nlogo.api.Argument;
+import org.nlogo.api.Context;
+import org.nlogo.api.DefaultReporter;
+import org.nlogo.api.ExtensionException;
+import org.nlogo.api.LogoException;
+import org.nlogo.api.LogoListBuilder;
+import org.nlogo.api.Syntax;
+
+import allow.simulator.core.Simulator;
+import allow.simulator.world.HotspotTracker;
+import allow.simulator.world.Street;
+
+/**
+ * Reports the n busiest streets of a district area over the time window of
+ * the hotspot tracker as a list of [id name vehicles score] entries, where
+ * score is the decayed number of vehicles which passed the street (see
+ * HotspotTracker). Area "all" reports the busiest streets of the whole map.
+ * 
+ * @author Andreas Poxrucker (DFKI)
+ *
+ */
+public class GetHotspots extends DefaultReporter {
+
+	@Override
+	public Object report(Argument[] args, Context context) throws ExtensionException, LogoException {
+		Simulator simulator = Simulator.Instance((World) context.getAgent().world());
+		HotspotTracker tracker = simulator.getContext().getWorld().getStreetMap().getHotspotTracker(
+				simulator.getContext().getSimulationParameters().HotspotWindow);
+		
+		if (tracker == null)
+			throw new ExtensionException("Error: Simulator has not been set up.");
+		String area = args[0].getString();
+		int n = args[1].getIntValue();
+		List<Street> busiest = area.equals("all") ? tracker.getHotspots(n) : tracker.getHotspots(area, n);
+		LogoListBuilder listBuilder = new LogoListBuilder();
+		
+		for (Street street : busiest) {
+			LogoListBuilder entry = new LogoListBuilder();
+			entry.add((double) street.getId());
+			entry.add(street.getName());
+			entry.add((double) street.getNumberOfVehicles());
+			entry.add(tracker.getScore(street));
+			listBuilder.add(entry.toLogoList());
+		}
+		return listBuilder.toLogoList();
+	}
+
+	public Syntax getSyntax() {
+		return Syntax.reporterSyntax(new int[] { Syntax.StringType(), Syntax.NumberType() }, Syntax.ListType());
+	}
+}
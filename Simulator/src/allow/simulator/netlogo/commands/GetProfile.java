@@ -0,0 +1,45 @@
+package allow.simulator.netlogo.commands;
+
+import org.nlogo.agent.World;
+import org.nlogo.api.Argument;
+import org.nlogo.api.Context;
+import org.nlogo.api.DefaultReporter;
+import org.nlogo.api.ExtensionException;
+import org.nlogo.api.LogoException;
+import org.nlogo.api.LogoListBuilder;
+import org.nlogo.api.Syntax;
+
+import allow.simulator.core.Simulator;
+import allow.simulator.core.TickProfiler;
+
+/**
+ * Reports the durations of the phases of a simulation step as a list of
+ * [phase count mean p50 p90 p99 max] entries with durations in milliseconds
+ * (see TickProfiler).
+ * 
+ * @author Andreas Poxrucker (DFKI)
+ *
+ */
+public class GetProfile extends DefaultReporter {
+
+	@Override
+	public Object report(Argument[] args, Context context) throws ExtensionException, LogoException {
+		TickProfiler profiler = Simulator.Instance((World) context.getAgent().world()).getProfiler();
+		LogoListBuilder listBuilder = new LogoListBuilder();
+		
+		for (TickProfiler.Phase phase : TickProfiler.Phase.values()) {
+			LogoListBuilder entry = new LogoListBuilder();
+			entry.add(phase.toString());
+			
+			for (double value : profiler.getSummary(phase)) {
+				entry.add(value);
+			}
+			listBuilder.add(entry.toLogoList());
+		}
+		return listBuilder.toLogoList();
+	}
+
+	public Syntax getSyntax() {
+		return Syntax.reporterSyntax(Syntax.ListType());
+	}
+}
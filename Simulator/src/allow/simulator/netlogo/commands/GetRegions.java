@@ -6,6 +6,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
+import org.nlogo.agent.World;
 import org.nlogo.api.Argument;
 import org.nlogo.api.Context;
 import org.nlogo.api.DefaultReporter;
@@ -27,7 +28,8 @@ public class GetRegions extends DefaultReporter
 	@Override
 	public Object report(Argument[] args, Context context) throws ExtensionException, LogoException {
 		LogoListBuilder bldr = new LogoListBuilder();
-		StreetMap map = Simulator.Instance().getWorld().getStreetMap();
+		Simulator simulator = Simulator.Instance((World) context.getAgent().world());
+		StreetMap map = simulator.getWorld().getStreetMap();
 		
 		if (map == null) 
 			throw new ExtensionException("Error: Simulator is not initialized.");
@@ -59,7 +61,7 @@ public class GetRegions extends DefaultReporter
 			LogoListBuilder bldr2 = new LogoListBuilder();
 			bldr2.add(area);
 			System.out.println(centers.get(area));
-			Coordinate center = Simulator.Instance().getWorld().getTransformation().GISToNetLogo(centers.get(area));
+			Coordinate center = simulator.getWorld().getTransformation().GISToNetLogo(centers.get(area));
 			bldr2.add(center.x);
 			bldr2.add(center.y);
 			
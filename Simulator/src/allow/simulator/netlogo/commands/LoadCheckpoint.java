@@ -0,0 +1,41 @@
+package allow.simulator.netlogo.commands;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+import org.nlogo.agent.World;
+import org.nlogo.api.Argument;
+import org.nlogo.api.Context;
+import org.nlogo.api.DefaultCommand;
+import org.nlogo.api.ExtensionException;
+import org.nlogo.api.LogoException;
+import org.nlogo.api.Syntax;
+
+import allow.simulator.core.Simulator;
+
+/**
+ * NetLogo command to restore a checkpoint into a simulation which has been
+ * set up from the same configuration.
+ * 
+ * @author Andreas Poxrucker (DFKI)
+ *
+ */
+public class LoadCheckpoint extends DefaultCommand {
+		
+	@Override
+	public void perform(Argument[] args, Context context) throws ExtensionException, LogoException {
+		
+		try {
+			Simulator.Instance((World) context.getAgent().world()).readCheckpoint(Paths.get(args[0].getString()));
+			
+		} catch (IOException | IllegalArgumentException | IllegalStateException e) {
+			throw new ExtensionException(e.getMessage());
+		}
+	}
+
+	@Override
+	public Syntax getSyntax() {
+		int right[] = new int[] { Syntax.StringType() };
+		return Syntax.commandSyntax(right);
+	}
+}
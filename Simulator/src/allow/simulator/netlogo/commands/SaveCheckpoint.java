@@ -0,0 +1,42 @@
+package allow.simulator.netlogo.commands;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+import org.nlogo.agent.World;
+import org.nlogo.api.Argument;
+import org.nlogo.api.Context;
+import org.nlogo.api.DefaultCommand;
+import org.nlogo.api.ExtensionException;
+import org.nlogo.api.LogoException;
+import org.nlogo.api.Syntax;
+
+import allow.simulator.core.Simulator;
+
+/**
+ * NetLogo command to write a checkpoint of the simulation. If persons or
+ * vehicles are not idle, the checkpoint is written after the first tick at
+ * the end of which they are (see Tick), but at most one simulated day later.
+ * 
+ * @author Andreas Poxrucker (DFKI)
+ *
+ */
+public class SaveCheckpoint extends DefaultCommand {
+		
+	@Override
+	public void perform(Argument[] args, Context context) throws ExtensionException, LogoException {
+		
+		try {
+			Simulator.Instance((World) context.getAgent().world()).writeCheckpoint(Paths.get(args[0].getString()));
+			
+		} catch (IOException e) {
+			throw new ExtensionException(e.getMessage());
+		}
+	}
+
+	@Override
+	public Syntax getSyntax() {
+		int right[] = new int[] { Syntax.StringType() };
+		return Syntax.commandSyntax(right);
+	}
+}
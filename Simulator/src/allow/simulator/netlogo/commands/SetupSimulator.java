@@ -40,8 +40,24 @@ public class SetupSimulator extends DefaultReporter {
 		params.BehaviourSpaceRunNumber = args[1].getIntValue();
 		params.KnowledgeModel = args[2].getString();
 		
+		// Seed random streams with the run number to make BehaviorSpace runs reproducible.
+		params.Seed = params.BehaviourSpaceRunNumber;
+		
+		// Set further parameters given as options of the form Name=value.
+		try {
+			for (int i = 3; i < args.length; i++) {
+				params.setOption(args[i].getString());
+			}
+			
+		} catch (IllegalArgumentException e) {
+			throw new ExtensionException(e.getMessage());
+		}
+		
+		World world = (World) context.getAgent().world();
+		Simulator simulator = Simulator.Instance(world);
+		
 		try {
-			Simulator.Instance().setup(config, params, (World) context.getAgent().world());
+			simulator.setup(config, params, world);
 			
 		} catch (IOException e) {
 			throw new ExtensionException(e.getMessage());
@@ -49,7 +65,7 @@ public class SetupSimulator extends DefaultReporter {
 
 		// List buffer.
 		LogoListBuilder listBuilder = new LogoListBuilder();
-		allow.simulator.core.Context ctx = Simulator.Instance().getContext();
+		allow.simulator.core.Context ctx = simulator.getContext();
 		ctx.getStatistics().updateGlobalStatistics(ctx);
 		
 		listBuilder.add(ctx.getTime().toString());
@@ -77,7 +93,9 @@ public class SetupSimulator extends DefaultReporter {
 
 	@Override
 	public Syntax getSyntax() {
-		int right[] = new int[] { Syntax.StringType(), Syntax.NumberType(), Syntax.StringType() };
-		return Syntax.reporterSyntax(right, Syntax.ListType() );
+		// Options of the form Name=value may follow, e.g.
+		// (allow:setup-simulator config run model "TrafficModel=queue").
+		int right[] = new int[] { Syntax.StringType(), Syntax.NumberType(), Syntax.StringType(), Syntax.StringType() | Syntax.RepeatableType() };
+		return Syntax.reporterSyntax(right, Syntax.ListType(), 3);
 	}
 }
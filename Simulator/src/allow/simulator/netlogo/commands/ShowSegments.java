@@ -1,7 +1,8 @@
 package allow.simulator.netlogo.commands;
 
-import java.util.Collection;
+import java.util.List;
 
+import org.nlogo.agent.World;
 import org.nlogo.api.Argument;
 import org.nlogo.api.Context;
 import org.nlogo.api.DefaultCommand;
@@ -10,15 +11,23 @@ import org.nlogo.api.LogoException;
 import org.nlogo.api.Syntax;
 
 import allow.simulator.core.Simulator;
-import allow.simulator.world.StreetSegment;
+import allow.simulator.world.HotspotTracker;
+import allow.simulator.world.Street;
+import allow.simulator.world.StreetMap;
 
 public class ShowSegments extends DefaultCommand {
 	@Override
 	public void perform(Argument[] args, Context context) throws ExtensionException, LogoException {
-		Collection<StreetSegment> s = Simulator.Instance().getContext().getWorld().getStreetMap().getStreetSegments();
+		Simulator simulator = Simulator.Instance((World) context.getAgent().world());
+		StreetMap map = simulator.getContext().getWorld().getStreetMap();
+		HotspotTracker tracker = map.getHotspotTracker(simulator.getContext().getSimulationParameters().HotspotWindow);
+		
+		if (tracker == null)
+			throw new ExtensionException("Error: Simulator has not been set up.");
+		List<Street> busiest = tracker.getHotspots(simulator.getContext().getSimulationParameters().Hotspots);
 	
-		for (StreetSegment seg : s) {
-			if (seg.getNumberOfVehicles() > 0) System.out.println(seg.getId() + " " + seg.getNumberOfVehicles());
+		for (Street street : busiest) {
+			System.out.println(street.getId() + " " + street.getName() + " " + street.getNumberOfVehicles() + " " + tracker.getScore(street));
 		}
 	}
 	
@@ -1,5 +1,6 @@
 package allow.simulator.netlogo.commands;
 
+import org.nlogo.agent.World;
 import org.nlogo.api.Argument;
 import org.nlogo.api.Context;
 import org.nlogo.api.DefaultCommand;
@@ -13,7 +14,11 @@ public class ShutDownSimulator extends DefaultCommand {
 		
 	@Override
 	public void perform(Argument[] args, Context context) throws ExtensionException, LogoException {
-		Simulator.Instance().finish();
+		Simulator simulator = Simulator.removeInstance((World) context.getAgent().world());
+		
+		if (simulator != null) {
+			simulator.finish();
+		}
 	}
 
 	@Override
@@ -1,5 +1,8 @@
 package allow.simulator.netlogo.commands;
 
+import java.io.IOException;
+
+import org.nlogo.agent.World;
 import org.nlogo.api.Argument;
 import org.nlogo.api.Context;
 import org.nlogo.api.DefaultReporter;
@@ -9,6 +12,7 @@ import org.nlogo.api.LogoListBuilder;
 import org.nlogo.api.Syntax;
 
 import allow.simulator.core.Simulator;
+import allow.simulator.core.TickProfiler;
 import allow.simulator.statistics.Statistics;
 
 public class Tick extends DefaultReporter {
@@ -17,17 +21,28 @@ public class Tick extends DefaultReporter {
 	public Object report(Argument[] args, Context context) throws ExtensionException, LogoException {
 		// Get deltaT.
 		int deltaT = args[0].getIntValue();
+		Simulator simulator = Simulator.Instance((World) context.getAgent().world());
 		
 		// Smart Planner execution.
-		Simulator.Instance().getContext().getWorld().getUrbanMobilitySystem().getFlow().executeActivity(Simulator.Instance().getContext().getTime().getDeltaT());
+		TickProfiler profiler = simulator.getProfiler();
+		long t = profiler.start();
+		simulator.getContext().getWorld().getUrbanMobilitySystem().getFlow().executeActivity(simulator.getContext().getTime().getDeltaT());
+		profiler.stop(TickProfiler.Phase.JOURNEY_PLANNER, t);
 		
 		// Update simulator.
-		Simulator.Instance().tick(deltaT);
+		simulator.tick(deltaT);
+		
+		try {
+			// Write checkpoint requested by save-checkpoint, if possible.
+			simulator.writePendingCheckpoint();
+			
+		} catch (IOException | IllegalStateException e) {
+			throw new ExtensionException(e.getMessage());
+		}
 		
 		// Return context and statistics.
 		LogoListBuilder listBuilder = new LogoListBuilder();
-		allow.simulator.core.Context ctx = Simulator.Instance().getContext();
-		ctx.getStatistics().updateGlobalStatistics(ctx);
+		allow.simulator.core.Context ctx = simulator.getContext();
 		
 		listBuilder.add(ctx.getTime().toString());
 		listBuilder.add(ctx.getWeather().getCurrentState().getDescription());
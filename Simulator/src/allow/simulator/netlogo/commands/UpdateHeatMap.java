@@ -1,5 +1,6 @@
 package allow.simulator.netlogo.commands;
 
+import org.nlogo.agent.World;
 import org.nlogo.api.Argument;
 import org.nlogo.api.Context;
 import org.nlogo.api.DefaultCommand;
@@ -13,7 +14,7 @@ public class UpdateHeatMap extends DefaultCommand {
 
 	@Override
 	public void perform(Argument[] arg0, Context arg1) throws ExtensionException, LogoException {
-		NetLogoWorld world = (NetLogoWorld) Simulator.Instance().getWorld();
+		NetLogoWorld world = (NetLogoWorld) Simulator.Instance((World) arg1.getAgent().world()).getWorld();
 		world.updateHeatMap();
 	}
 
@@ -0,0 +1,169 @@
+package allow.simulator.statistics;
+
+/**
+ * Statistics of a sharded simulation reduced from the statistics of all
+ * shards. Each shard contributes a vector of values (see contribution(...))
+ * which are summed up element-wise. Journey ratios are computed from the
+ * total numbers of journeys, mean preferences are weighted by the number of
+ * persons per shard, and means of sliding windows are averaged over shards.
+ *
+ * @author Andreas Poxrucker (DFKI)
+ *
+ */
+public class GlobalStatistics {
+	// Indices of reduced values.
+	private static final int PERSONS = 0;
+	private static final int BUS_PREFERENCE = 1;
+	private static final int CAR_PREFERENCE = 2;
+	private static final int CAR_JOURNEYS = 3;
+	private static final int TRANSIT_JOURNEYS = 4;
+	private static final int BIKE_JOURNEYS = 5;
+	private static final int WALK_JOURNEYS = 6;
+	private static final int TAXI_JOURNEYS = 7;
+	private static final int PRIOR_CAR_TRAVEL_TIME = 8;
+	private static final int POSTERIOR_CAR_TRAVEL_TIME = 9;
+	private static final int PRIOR_BUS_TRAVEL_TIME = 10;
+	private static final int POSTERIOR_BUS_TRAVEL_TIME = 11;
+	private static final int BUS_FILLING_LEVEL = 12;
+	private static final int PRIOR_UTILITY_CAR = 13;
+	private static final int POSTERIOR_UTILITY_CAR = 14;
+	private static final int PRIOR_UTILITY_BUS = 15;
+	private static final int POSTERIOR_UTILITY_BUS = 16;
+	private static final int REPLANING_WAITING_TIME = 17;
+	private static final int SIZE = 18;
+
+	// Reduced values.
+	private double values[];
+
+	// Number of shards.
+	private int nShards;
+
+	/**
+	 * Constructor.
+	 * Creates new global statistics from the element-wise sum of the
+	 * contributions of all shards.
+	 *
+	 * @param values Sum of contributions of all shards.
+	 * @param nShards Number of shards.
+	 */
+	public GlobalStatistics(double values[], int nShards) {
+
+		if (values.length != SIZE)
+			throw new IllegalArgumentException("Error: Expected " + SIZE + " values.");
+		this.values = values;
+		this.nShards = nShards;
+	}
+
+	/**
+	 * Returns the contribution of the statistics of a shard to the global
+	 * statistics.
+	 *
+	 * @param s Statistics of the shard.
+	 * @param nPersons Number of persons simulated by the shard.
+	 * @return Contribution to the global statistics.
+	 */
+	public static double[] contribution(Statistics s, int nPersons) {
+		double ret[] = new double[SIZE];
+		ret[PERSONS] = nPersons;
+
+		// Means of preferences are undefined for shards without persons.
+		if (nPersons > 0) {
+			ret[BUS_PREFERENCE] = s.getMeanBusPreference() * nPersons;
+			ret[CAR_PREFERENCE] = s.getMeanCarPreference() * nPersons;
+		}
+		ret[CAR_JOURNEYS] = s.getNumberOfCarJourneys();
+		ret[TRANSIT_JOURNEYS] = s.getNumberOfTransitJourneys();
+		ret[BIKE_JOURNEYS] = s.getNumberOfBikeJourneys();
+		ret[WALK_JOURNEYS] = s.getNumberOfWalkJourneys();
+		ret[TAXI_JOURNEYS] = s.getNumberOfTaxiJourneys();
+		ret[PRIOR_CAR_TRAVEL_TIME] = s.getMeanPriorCarTravelTime();
+		ret[POSTERIOR_CAR_TRAVEL_TIME] = s.getMeanPosteriorCarTravelTime();
+		ret[PRIOR_BUS_TRAVEL_TIME] = s.getMeanPriorBusTravelTime();
+		ret[POSTERIOR_BUS_TRAVEL_TIME] = s.getMeanPosteriorBusTravelTime();
+		ret[BUS_FILLING_LEVEL] = s.getMeanBusFillingLevel();
+		ret[PRIOR_UTILITY_CAR] = s.getMeanPriorUtilityCar();
+		ret[POSTERIOR_UTILITY_CAR] = s.getMeanPosteriorUtilityCar();
+		ret[PRIOR_UTILITY_BUS] = s.getMeanPriorUtilityBus();
+		ret[POSTERIOR_UTILITY_BUS] = s.getMeanPosteriorUtilityBus();
+		ret[REPLANING_WAITING_TIME] = s.getMeanReplaningWaitingTime();
+		return ret;
+	}
+
+	public double getNumberOfPersons() {
+		return values[PERSONS];
+	}
+
+	public double getCarJourneyRatio() {
+		return journeyRatio(CAR_JOURNEYS);
+	}
+
+	public double getTransitJourneyRatio() {
+		return journeyRatio(TRANSIT_JOURNEYS);
+	}
+
+	public double getBikeJourneyRatio() {
+		return journeyRatio(BIKE_JOURNEYS);
+	}
+
+	public double getWalkJourneyRatio() {
+		return journeyRatio(WALK_JOURNEYS);
+	}
+
+	public double getTaxiJourneyRatio() {
+		return journeyRatio(TAXI_JOURNEYS);
+	}
+
+	public double getMeanPriorCarTravelTime() {
+		return values[PRIOR_CAR_TRAVEL_TIME] / nShards;
+	}
+
+	public double getMeanPosteriorCarTravelTime() {
+		return values[POSTERIOR_CAR_TRAVEL_TIME] / nShards;
+	}
+
+	public double getMeanPriorBusTravelTime() {
+		return values[PRIOR_BUS_TRAVEL_TIME] / nShards;
+	}
+
+	public double getMeanPosteriorBusTravelTime() {
+		return values[POSTERIOR_BUS_TRAVEL_TIME] / nShards;
+	}
+
+	public double getMeanBusPreference() {
+		return (values[PERSONS] > 0) ? values[BUS_PREFERENCE] / values[PERSONS] : 0.5;
+	}
+
+	public double getMeanCarPreference() {
+		return (values[PERSONS] > 0) ? values[CAR_PREFERENCE] / values[PERSONS] : 0.5;
+	}
+
+	public double getMeanBusFillingLevel() {
+		return values[BUS_FILLING_LEVEL] / nShards;
+	}
+
+	public double getMeanPriorUtilityCar() {
+		return values[PRIOR_UTILITY_CAR] / nShards;
+	}
+
+	public double getMeanPosteriorUtilityCar() {
+		return values[POSTERIOR_UTILITY_CAR] / nShards;
+	}
+
+	public double getMeanPriorUtilityBus() {
+		return values[PRIOR_UTILITY_BUS] / nShards;
+	}
+
+	public double getMeanPosteriorUtilityBus() {
+		return values[POSTERIOR_UTILITY_BUS] / nShards;
+	}
+
+	public double getMeanReplaningWaitingTime() {
+		return values[REPLANING_WAITING_TIME] / nShards;
+	}
+
+	private double journeyRatio(int index) {
+		double total = values[CAR_JOURNEYS] + values[TRANSIT_JOURNEYS] + values[BIKE_JOURNEYS]
+				+ values[WALK_JOURNEYS] + values[TAXI_JOURNEYS];
+		return (total > 0) ? values[index] / total : 0.0;
+	}
+}
@@ -1,5 +1,8 @@
 package allow.simulator.statistics;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 
 
 
@@ -36,4 +39,21 @@ public class SlidingWindow {
 		for (int i = 0; i < values.length; i++) values[i] = 0;
 		index = 0;
 	}
+	
+	public void writeState(DataOutput out) throws IOException {
+		out.writeInt(windowSize);
+		out.writeInt(index);
+		
+		for (int i = 0; i < values.length; i++) out.writeDouble(values[i]);
+	}
+	
+	public void readState(DataInput in) throws IOException {
+		int size = in.readInt();
+		
+		if (size != windowSize)
+			throw new IllegalStateException("Error: Window size " + size + " does not match " + windowSize + ".");
+		index = in.readInt();
+		
+		for (int i = 0; i < values.length; i++) values[i] = in.readDouble();
+	}
 }
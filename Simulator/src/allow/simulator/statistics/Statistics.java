@@ -1,6 +1,14 @@
 package allow.simulator.statistics;
 
-import java.util.Collection;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import allow.simulator.core.Context;
 import allow.simulator.entity.Entity;
@@ -24,6 +32,34 @@ public class Statistics {
 	private SlidingWindow posteriorUtilityBus;
 	private SlidingWindow replaningWaitingTime;
 	
+	/**
+	 * Value reported to a sliding window by an entity. Reports are applied to
+	 * the windows when calling commitReports().
+	 */
+	private static final class Report {
+		private final long entityId;
+		private final SlidingWindow window;
+		private final double value;
+		
+		Report(long entityId, SlidingWindow window, double value) {
+			this.entityId = entityId;
+			this.window = window;
+			this.value = value;
+		}
+	}
+	
+	// Orders reports by the Id of the reporting entity.
+	private static final Comparator<Report> ENTITY_ORDER = new Comparator<Report>() {
+
+		@Override
+		public int compare(Report r1, Report r2) {
+			return Long.compare(r1.entityId, r2.entityId);
+		}
+	};
+	
+	// Reports made since the last call to commitReports().
+	private final Queue<Report> pendingReports = new ConcurrentLinkedQueue<Report>();
+	
 	private double meanBusPreference;
 	private double meanCarPreference;
 	
@@ -116,6 +152,26 @@ public class Statistics {
 		return taxiJourneyRatio;
 	}
 	
+	public long getNumberOfCarJourneys() {
+		return numberOfCarJourneys;
+	}
+	
+	public long getNumberOfTransitJourneys() {
+		return numberOfTransitJourneys;
+	}
+	
+	public long getNumberOfBikeJourneys() {
+		return numberOfBikeJourneys;
+	}
+	
+	public long getNumberOfWalkJourneys() {
+		return numberOfWalkJourneys;
+	}
+	
+	public long getNumberOfTaxiJourneys() {
+		return numberOfTaxiJourneys;
+	}
+	
 	public double getNumberOfTaxiJourneysPerDay() {
 		return numberOfTaxiJourneysPerDay;
 	}
@@ -189,58 +245,128 @@ public class Statistics {
 		numberOfTaxiJourneysPerDay++;
 	}
 	
-	public synchronized void reportPriorAndPosteriorCarTravelTimes(double priorToAdd, double posteriorToAdd) {
-		priorCarTravelTime.addValue(priorToAdd);
-		posteriorCarTravelTime.addValue(posteriorToAdd);
+	public void reportPriorAndPosteriorCarTravelTimes(Entity reporter, double priorToAdd, double posteriorToAdd) {
+		pendingReports.add(new Report(reporter.getId(), priorCarTravelTime, priorToAdd));
+		pendingReports.add(new Report(reporter.getId(), posteriorCarTravelTime, posteriorToAdd));
 	}
 	
-	public synchronized void reportPriorAndPosteriorTransitTravelTimes(double priorToAdd, double posteriorToAdd) {
-		priorBusTravelTime.addValue(priorToAdd);
-		posteriorBusTravelTime.addValue(posteriorToAdd);
+	public void reportPriorAndPosteriorTransitTravelTimes(Entity reporter, double priorToAdd, double posteriorToAdd) {
+		pendingReports.add(new Report(reporter.getId(), priorBusTravelTime, priorToAdd));
+		pendingReports.add(new Report(reporter.getId(), posteriorBusTravelTime, posteriorToAdd));
 	}
 	
-	public synchronized void reportPriorAndPosteriorBikeTravelTimes(double priorToAdd, double posteriorToAdd) {
-		priorBikeTravelTime.addValue(priorToAdd);
-		posteriorBikeTravelTime.addValue(posteriorToAdd);
+	public void reportPriorAndPosteriorBikeTravelTimes(Entity reporter, double priorToAdd, double posteriorToAdd) {
+		pendingReports.add(new Report(reporter.getId(), priorBikeTravelTime, priorToAdd));
+		pendingReports.add(new Report(reporter.getId(), posteriorBikeTravelTime, posteriorToAdd));
 	}
 	
-	public synchronized void reportPriorAndPosteriorWalkTravelTimes(double priorToAdd, double posteriorToAdd) {
-		priorWalkTravelTime.addValue(priorToAdd);
-		posteriorWalkTravelTime.addValue(posteriorToAdd);
+	public void reportPriorAndPosteriorWalkTravelTimes(Entity reporter, double priorToAdd, double posteriorToAdd) {
+		pendingReports.add(new Report(reporter.getId(), priorWalkTravelTime, priorToAdd));
+		pendingReports.add(new Report(reporter.getId(), posteriorWalkTravelTime, posteriorToAdd));
 	}
 	
-	public synchronized void reportBusFillingLevel(double fillingLevel) {
-		busFillingLevel.addValue(fillingLevel);
+	public void reportBusFillingLevel(Entity reporter, double fillingLevel) {
+		pendingReports.add(new Report(reporter.getId(), busFillingLevel, fillingLevel));
 	}
 	
-	public synchronized void reportReplaningWaitingTime(double waitingTime) {
-		replaningWaitingTime.addValue(waitingTime);
+	public void reportReplaningWaitingTime(Entity reporter, double waitingTime) {
+		pendingReports.add(new Report(reporter.getId(), replaningWaitingTime, waitingTime));
 	}
 	
-	public synchronized void reportPriorAndPosteriorUtilityCar(double priorToAdd, double posteriorToAdd) {
-		priorUtilityCar.addValue(priorToAdd);
-		posteriorUtilityCar.addValue(posteriorToAdd);
+	public void reportPriorAndPosteriorUtilityCar(Entity reporter, double priorToAdd, double posteriorToAdd) {
+		pendingReports.add(new Report(reporter.getId(), priorUtilityCar, priorToAdd));
+		pendingReports.add(new Report(reporter.getId(), posteriorUtilityCar, posteriorToAdd));
+	}
+	
+	public void reportPriorAndPosteriorUtilityBus(Entity reporter, double priorToAdd, double posteriorToAdd) {
+		pendingReports.add(new Report(reporter.getId(), priorUtilityBus, priorToAdd));
+		pendingReports.add(new Report(reporter.getId(), posteriorUtilityBus, posteriorToAdd));
+	}
+	
+	/**
+	 * Applies values reported to the sliding windows during the last step
+	 * ordered by the Id of the reporting entity, such that the windows do not
+	 * depend on the order entities were executed in. Values reported by the
+	 * same entity are applied in the order they were reported. Must not be
+	 * called concurrently to the report methods.
+	 */
+	public synchronized void commitReports() {
+		if (pendingReports.isEmpty()) {
+			return;
+		}
+		List<Report> reports = new ArrayList<Report>(pendingReports.size());
+		Report r = null;
+		
+		while ((r = pendingReports.poll()) != null) {
+			reports.add(r);
+		}
+		Collections.sort(reports, ENTITY_ORDER);
+		
+		for (int i = 0; i < reports.size(); i++) {
+			r = reports.get(i);
+			r.window.addValue(r.value);
+		}
 	}
 	
-	public synchronized void reportPriorAndPosteriorUtilityBus(double priorToAdd, double posteriorToAdd) {
-		priorUtilityBus.addValue(priorToAdd);
-		posteriorUtilityBus.addValue(posteriorToAdd);
+	private SlidingWindow[] getWindows() {
+		return new SlidingWindow[] { priorCarTravelTime, posteriorCarTravelTime,
+				priorBusTravelTime, posteriorBusTravelTime,
+				priorBikeTravelTime, posteriorBikeTravelTime,
+				priorWalkTravelTime, posteriorWalkTravelTime,
+				busFillingLevel,
+				priorUtilityCar, posteriorUtilityCar,
+				priorUtilityBus, posteriorUtilityBus,
+				replaningWaitingTime };
+	}
+	
+	public synchronized void writeState(DataOutput out) throws IOException {
+		for (SlidingWindow w : getWindows()) w.writeState(out);
+		out.writeDouble(meanBusPreference);
+		out.writeDouble(meanCarPreference);
+		out.writeLong(numberOfCarJourneys);
+		out.writeLong(numberOfTransitJourneys);
+		out.writeLong(numberOfBikeJourneys);
+		out.writeLong(numberOfWalkJourneys);
+		out.writeLong(numberOfTaxiJourneys);
+		out.writeLong(numberOfTaxiJourneysPerDay);
+		out.writeDouble(carJourneysRatio);
+		out.writeDouble(transitJourneysRatio);
+		out.writeDouble(bikeJourneysRatio);
+		out.writeDouble(walkJourneysRatio);
+		out.writeDouble(taxiJourneyRatio);
+	}
+	
+	public synchronized void readState(DataInput in) throws IOException {
+		for (SlidingWindow w : getWindows()) w.readState(in);
+		meanBusPreference = in.readDouble();
+		meanCarPreference = in.readDouble();
+		numberOfCarJourneys = in.readLong();
+		numberOfTransitJourneys = in.readLong();
+		numberOfBikeJourneys = in.readLong();
+		numberOfWalkJourneys = in.readLong();
+		numberOfTaxiJourneys = in.readLong();
+		numberOfTaxiJourneysPerDay = in.readLong();
+		carJourneysRatio = in.readDouble();
+		transitJourneysRatio = in.readDouble();
+		bikeJourneysRatio = in.readDouble();
+		walkJourneysRatio = in.readDouble();
+		taxiJourneyRatio = in.readDouble();
 	}
 	
 	public synchronized void updateGlobalStatistics(Context simulationContext) {
-		Collection<Entity> persons = simulationContext.getWorld().getEntitiesOfType(Entity.Type.PERSON);
+		List<Entity> persons = simulationContext.getWorld().getEntitiesOfType(Entity.Type.PERSON);
 		updateMeanTransportPreferences(persons);
 		updateJourneyChoices();
 	}
 	
-	private void updateMeanTransportPreferences(Collection<Entity> persons) {
+	private void updateMeanTransportPreferences(List<Entity> persons) {
 		// int busPrefAcc = 0;
 		// int carPrefAcc = 0;
 		double busPrefAcc = 0.0;
 		double carPrefAcc = 0.0;
 		
-		for (Entity person : persons) {
-			Preferences p = person.getPreferences();
+		for (int i = 0; i < persons.size(); i++) {
+			Preferences p = persons.get(i).getPreferences();
 			
 			/*if (p.getBusPreference() >= p.getCarPreference()) {
 				busPrefAcc++;
@@ -0,0 +1,174 @@
+package allow.simulator.util;
+
+import java.util.Arrays;
+
+/**
+ * Hash map from long keys to non-negative int values using open addressing
+ * with linear probing. Keys and values are kept in primitive arrays, such
+ * that neither lookups nor insertions allocate objects (except for growing
+ * the table). Not thread-safe.
+ *
+ * @author Andreas Poxrucker (DFKI)
+ *
+ */
+public final class LongIntHashMap {
+	// Value returned for absent keys and marking empty slots.
+	public static final int NO_VALUE = -1;
+
+	// Keys of the table.
+	private long[] keys;
+
+	// Values of the table (NO_VALUE for empty slots).
+	private int[] values;
+
+	// Number of entries.
+	private int size;
+
+	/**
+	 * Constructor.
+	 * Creates a new empty map with space for the given number of entries.
+	 *
+	 * @param expectedSize Expected number of entries.
+	 */
+	public LongIntHashMap(int expectedSize) {
+		int capacity = 16;
+
+		while (capacity < 2 * expectedSize) {
+			capacity <<= 1;
+		}
+		keys = new long[capacity];
+		values = new int[capacity];
+		Arrays.fill(values, NO_VALUE);
+	}
+
+	/**
+	 * Returns the value of the given key.
+	 *
+	 * @param key Key to return value of.
+	 * @return Value of the key or NO_VALUE, if the map does not contain the key.
+	 */
+	public int get(long key) {
+		int pos = find(key);
+		return (pos != -1) ? values[pos] : NO_VALUE;
+	}
+
+	/**
+	 * Sets the value of the given key.
+	 *
+	 * @param key Key to set value of.
+	 * @param value Non-negative value.
+	 * @return Previous value of the key or NO_VALUE, if the map did not
+	 * contain the key.
+	 */
+	public int put(long key, int value) {
+
+		if (value < 0)
+			throw new IllegalArgumentException("Error: Values must not be negative.");
+		int pos = find(key);
+
+		if (pos != -1) {
+			int old = values[pos];
+			values[pos] = value;
+			return old;
+		}
+
+		if (2 * (size + 1) > keys.length) {
+			rehash(keys.length * 2);
+		}
+		insert(key, value);
+		size++;
+		return NO_VALUE;
+	}
+
+	/**
+	 * Removes the given key.
+	 *
+	 * @param key Key to remove.
+	 * @return Value of the removed key or NO_VALUE, if the map did not
+	 * contain the key.
+	 */
+	public int remove(long key) {
+		int pos = find(key);
+
+		if (pos == -1) return NO_VALUE;
+		int old = values[pos];
+
+		// Shift following entries back to keep probe sequences intact.
+		int mask = keys.length - 1;
+		int next = (pos + 1) & mask;
+
+		while (values[next] != NO_VALUE) {
+			int home = hash(keys[next]) & mask;
+
+			if (((next - home) & mask) >= ((next - pos) & mask)) {
+				keys[pos] = keys[next];
+				values[pos] = values[next];
+				pos = next;
+			}
+			next = (next + 1) & mask;
+		}
+		values[pos] = NO_VALUE;
+		size--;
+		return old;
+	}
+
+	/**
+	 * Returns the number of entries of the map.
+	 *
+	 * @return Number of entries.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Packs two int values into a long key, e.g. the indices of the starting
+	 * and ending node of a segment.
+	 *
+	 * @param high Value of the upper 32 bits.
+	 * @param low Value of the lower 32 bits.
+	 * @return Key.
+	 */
+	public static long pack(int high, int low) {
+		return ((long) high << 32) | (low & 0xFFFFFFFFL);
+	}
+
+	private int find(long key) {
+		int mask = keys.length - 1;
+
+		for (int pos = hash(key) & mask; values[pos] != NO_VALUE; pos = (pos + 1) & mask) {
+
+			if (keys[pos] == key) return pos;
+		}
+		return -1;
+	}
+
+	private void insert(long key, int value) {
+		int mask = keys.length - 1;
+		int pos = hash(key) & mask;
+
+		while (values[pos] != NO_VALUE) {
+			pos = (pos + 1) & mask;
+		}
+		keys[pos] = key;
+		values[pos] = value;
+	}
+
+	private void rehash(int capacity) {
+		long[] oldKeys = keys;
+		int[] oldValues = values;
+		keys = new long[capacity];
+		values = new int[capacity];
+		Arrays.fill(values, NO_VALUE);
+
+		for (int i = 0; i < oldValues.length; i++) {
+
+			if (oldValues[i] != NO_VALUE) insert(oldKeys[i], oldValues[i]);
+		}
+	}
+
+	private static int hash(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+}
@@ -0,0 +1,136 @@
+package allow.simulator.util;
+
+import java.util.Random;
+
+/**
+ * Stream of pseudo random numbers based on the SplitMix64 generator. The
+ * complete state of a stream is a single long value which can be read and
+ * restored to continue the stream at the same position.
+ *
+ * Streams are not thread-safe. Each stream is meant to be used by a single
+ * entity or subsystem of the simulation only.
+ *
+ * @author Andreas Poxrucker (DFKI)
+ *
+ */
+public class RandomStream extends Random {
+	private static final long serialVersionUID = 1L;
+
+	// Increment of the generator state.
+	private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+	// State of the generator.
+	private long state;
+
+	/**
+	 * Constructor.
+	 * Creates a new stream starting from the given seed.
+	 *
+	 * @param seed Seed of the stream.
+	 */
+	public RandomStream(long seed) {
+		super(seed);
+	}
+
+	@Override
+	public void setSeed(long seed) {
+		state = seed;
+	}
+
+	/**
+	 * Returns the current state of the stream.
+	 *
+	 * @return State of the stream.
+	 */
+	public long getState() {
+		return state;
+	}
+
+	/**
+	 * Restores the state of the stream.
+	 *
+	 * @param state State to restore.
+	 */
+	public void setState(long state) {
+		this.state = state;
+	}
+
+	@Override
+	protected int next(int bits) {
+		return (int) (nextLong() >>> (64 - bits));
+	}
+
+	@Override
+	public long nextLong() {
+		state += GOLDEN_GAMMA;
+		return mix64(state);
+	}
+
+	@Override
+	public double nextDouble() {
+		return (nextLong() >>> 11) * 0x1.0p-53;
+	}
+
+	/**
+	 * Returns a uniformly distributed int value between origin (inclusive)
+	 * and bound (exclusive).
+	 *
+	 * @param origin Lower bound (inclusive).
+	 * @param bound Upper bound (exclusive).
+	 * @return Uniformly distributed int value.
+	 */
+	public int nextInt(int origin, int bound) {
+
+		if (origin >= bound)
+			throw new IllegalArgumentException("Error: Bound must be greater than origin.");
+		return origin + nextInt(bound - origin);
+	}
+
+	/**
+	 * Returns a uniformly distributed double value between origin (inclusive)
+	 * and bound (exclusive).
+	 *
+	 * @param origin Lower bound (inclusive).
+	 * @param bound Upper bound (exclusive).
+	 * @return Uniformly distributed double value.
+	 */
+	public double nextDouble(double origin, double bound) {
+
+		if (origin >= bound)
+			throw new IllegalArgumentException("Error: Bound must be greater than origin.");
+		return origin + nextDouble() * (bound - origin);
+	}
+
+	/**
+	 * Returns a normally distributed double value with mean 0 and standard
+	 * deviation 1. In contrast to Random, no second value is cached such that
+	 * the state of the stream is fully described by getState().
+	 *
+	 * @return Normally distributed double value.
+	 */
+	@Override
+	public double nextGaussian() {
+		double v1;
+		double v2;
+		double s;
+
+		do {
+			v1 = 2 * nextDouble() - 1;
+			v2 = 2 * nextDouble() - 1;
+			s = v1 * v1 + v2 * v2;
+		} while ((s >= 1) || (s == 0));
+		return v1 * StrictMath.sqrt(-2 * StrictMath.log(s) / s);
+	}
+
+	/**
+	 * Scrambles the bits of a long value (finalizer of SplitMix64).
+	 *
+	 * @param z Value to scramble.
+	 * @return Scrambled value.
+	 */
+	public static long mix64(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+}
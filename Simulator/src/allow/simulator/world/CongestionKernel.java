@@ -0,0 +1,224 @@
+package allow.simulator.world;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Updates the possible driving speed on street segments in batches. The
+ * kernel keeps the data of segments needed to compute their speed in
+ * primitive arrays indexed by the slot of a segment (see SegmentOccupancy):
+ * neighbouring slots within the same street, capacity of the window formed
+ * by a segment and its neighbours, and free-flow speed. The load of a
+ * segment is the number of vehicles within its window divided by the
+ * capacity of the window.
+ *
+ * Speeds are computed from a link performance function which is tabulated
+ * on the interval [0, MAX_LOAD] and interpolated linearly. Large batches
+ * are split across the threads of the common ForkJoinPool.
+ *
+ * @author Andreas Poxrucker (DFKI)
+ *
+ */
+public final class CongestionKernel {
+	// Length of a street segment in m per vehicle at capacity. With a
+	// spacing of 10 m, the sigmoid function yields the speeds the simulator
+	// has been using so far.
+	public static final double VEHICLE_SPACING = 10.0;
+
+	// Number of lanes assumed for segments (the street network does not
+	// contain lane counts).
+	public static final int LANES = 1;
+
+	// Maximal load covered by the table of the link performance function.
+	private static final double MAX_LOAD = 8.0;
+
+	// Number of entries of the table of the link performance function.
+	private static final int TABLE_SIZE = 4097;
+
+	// Minimal number of segments a task updates without splitting further.
+	private static final int THRESHOLD = 4096;
+
+	private final class UpdateTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final int[] slots;
+		private final int from;
+		private final int to;
+
+		UpdateTask(int[] slots, int from, int to) {
+			this.slots = slots;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+
+			if (to - from <= THRESHOLD) {
+				update(slots, from, to);
+				return;
+			}
+			int mid = (from + to) >>> 1;
+			invokeAll(new UpdateTask(slots, from, mid), new UpdateTask(slots, mid, to));
+		}
+	}
+
+	// Number of vehicles and possible speed per slot.
+	private final SegmentOccupancy occupancy;
+
+	// Link performance function and its table.
+	private ILinkPerformanceFunction function;
+	private double[] table;
+
+	// Slots of the previous and next segment within the street per slot (-1 if none).
+	private int[] previous;
+	private int[] next;
+
+	// Capacity of the window of a segment per slot.
+	private double[] capacities;
+
+	// Free-flow speed per slot.
+	private double[] freeFlowSpeeds;
+
+	// Number of slots the kernel has been built for.
+	private int size;
+
+	/**
+	 * Constructor.
+	 * Creates a new kernel updating the speeds of the given occupancy using
+	 * the given link performance function.
+	 *
+	 * @param occupancy Occupancy of segments.
+	 * @param function Link performance function.
+	 */
+	public CongestionKernel(SegmentOccupancy occupancy, ILinkPerformanceFunction function) {
+		this.occupancy = occupancy;
+		previous = new int[0];
+		next = new int[0];
+		capacities = new double[0];
+		freeFlowSpeeds = new double[0];
+		setFunction(function);
+	}
+
+	/**
+	 * Sets the link performance function.
+	 *
+	 * @param function Link performance function.
+	 */
+	public void setFunction(ILinkPerformanceFunction function) {
+		double t[] = new double[TABLE_SIZE];
+
+		for (int i = 0; i < TABLE_SIZE; i++) {
+			t[i] = function.getSpeedFactor(i * MAX_LOAD / (TABLE_SIZE - 1));
+		}
+		this.function = function;
+		table = t;
+	}
+
+	/**
+	 * Returns the link performance function.
+	 *
+	 * @return Link performance function.
+	 */
+	public ILinkPerformanceFunction getFunction() {
+		return function;
+	}
+
+	/**
+	 * Rebuilds the data of segments in case segments have been registered
+	 * since the last call.
+	 *
+	 * @param slots Registered segments by slot.
+	 */
+	public void build(List<StreetSegment> slots) {
+
+		if (slots.size() == size) return;
+		int n = slots.size();
+		previous = new int[n];
+		next = new int[n];
+		capacities = new double[n];
+		freeFlowSpeeds = new double[n];
+
+		for (int i = 0; i < n; i++) {
+			StreetSegment seg = slots.get(i);
+			Street street = seg.getStreet();
+			double length = seg.getLength();
+			previous[i] = -1;
+			next[i] = -1;
+
+			if (street != null) {
+				List<StreetSegment> subSegments = street.getSubSegments();
+				int index = seg.getStreetIndex();
+
+				if (index > 0) {
+					StreetSegment p = subSegments.get(index - 1);
+					previous[i] = p.getSlot();
+					length += p.getLength();
+				}
+
+				if (index < subSegments.size() - 1) {
+					StreetSegment nx = subSegments.get(index + 1);
+					next[i] = nx.getSlot();
+					length += nx.getLength();
+				}
+			}
+			capacities[i] = LANES * length / VEHICLE_SPACING;
+			freeFlowSpeeds[i] = seg.getMaxSpeed();
+		}
+		size = n;
+	}
+
+	/**
+	 * Updates the possible speed of the given slots.
+	 *
+	 * @param slots Array containing the slots to update.
+	 * @param n Number of slots to update.
+	 */
+	public void update(int[] slots, int n) {
+
+		if (n > THRESHOLD) {
+			ForkJoinPool.commonPool().invoke(new UpdateTask(slots, 0, n));
+
+		} else {
+			update(slots, 0, n);
+		}
+	}
+
+	private void update(int[] slots, int from, int to) {
+
+		for (int i = from; i < to; i++) {
+			int slot = slots[i];
+
+			if (occupancy.getVehicles(slot) < 0)
+				throw new IllegalStateException("Negative number of vehicles on segment");
+			int vehicles = occupancy.getTotalVehicles(slot);
+
+			if (previous[slot] != -1) vehicles += occupancy.getTotalVehicles(previous[slot]);
+			if (next[slot] != -1) vehicles += occupancy.getTotalVehicles(next[slot]);
+			occupancy.setSpeed(slot, getSpeed(freeFlowSpeeds[slot], vehicles / capacities[slot]));
+		}
+	}
+
+	/**
+	 * Returns the possible speed on a segment at the given load using the
+	 * table of the link performance function.
+	 *
+	 * @param freeFlowSpeed Maximum allowed driving speed in m/s.
+	 * @param load Ratio of the number of vehicles and the capacity.
+	 * @return Possible driving speed in m/s.
+	 */
+	public double getSpeed(double freeFlowSpeed, double load) {
+		double factor;
+
+		if (load >= MAX_LOAD) {
+			factor = function.getSpeedFactor(load);
+
+		} else {
+			double x = load * ((TABLE_SIZE - 1) / MAX_LOAD);
+			int i = (int) x;
+			double r = x - i;
+			factor = table[i] + r * (table[i + 1] - table[i]);
+		}
+		return (freeFlowSpeed - StreetSegment.MIN_DRIVING_SPEED) * factor + StreetSegment.MIN_DRIVING_SPEED;
+	}
+}
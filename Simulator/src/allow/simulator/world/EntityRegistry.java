@@ -0,0 +1,167 @@
+package allow.simulator.world;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+import allow.simulator.entity.Entity;
+import allow.simulator.util.LongIntHashMap;
+
+/**
+ * Registry of the entities of a world. Entities of each type are kept in a
+ * contiguous array in the order they were added, such that they can be
+ * iterated by index without allocation. When an entity is removed, the last
+ * entity of its type takes its place. Ids are mapped to the slots of
+ * entities by a hash map with primitive keys.
+ *
+ * Entities must not be added or removed concurrently to other calls. Reading
+ * from several threads is safe as long as no entities are added or removed.
+ *
+ * @author Andreas Poxrucker (DFKI)
+ *
+ */
+public final class EntityRegistry {
+	// Initial capacity of the array of a type.
+	private static final int INITIAL_CAPACITY = 16;
+
+	// Number of bits of a slot holding the index within the array of a type.
+	private static final int INDEX_BITS = 27;
+	private static final int INDEX_MASK = (1 << INDEX_BITS) - 1;
+
+	// Entities per type ordinal.
+	private Entity[][] entities;
+
+	// Number of entities per type ordinal.
+	private int[] counts;
+
+	// Unmodifiable views of the entities per type ordinal.
+	private List<Entity>[] views;
+
+	// Slots of entities by Id encoding type ordinal and index within its array.
+	private LongIntHashMap slots;
+
+	/**
+	 * Constructor.
+	 * Creates a new empty registry.
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public EntityRegistry() {
+		int nTypes = Entity.Type.values().length;
+		entities = new Entity[nTypes][];
+		counts = new int[nTypes];
+		views = new List[nTypes];
+
+		for (int i = 0; i < nTypes; i++) {
+			entities[i] = new Entity[INITIAL_CAPACITY];
+			views[i] = new TypeView(i);
+		}
+		slots = new LongIntHashMap(64);
+	}
+
+	/**
+	 * Adds an entity to the registry.
+	 *
+	 * @param e Entity to add.
+	 */
+	public void add(Entity e) {
+
+		if (slots.get(e.getId()) != LongIntHashMap.NO_VALUE)
+			throw new IllegalStateException("Error: Simulator entity Id" + e.getId() + " already in use.");
+		int type = e.getType().ordinal();
+		int index = counts[type];
+
+		if (index > INDEX_MASK)
+			throw new IllegalStateException("Error: Too many entities of type " + e.getType() + ".");
+
+		if (index == entities[type].length) {
+			entities[type] = Arrays.copyOf(entities[type], index * 2);
+		}
+		entities[type][index] = e;
+		counts[type] = index + 1;
+		slots.put(e.getId(), (type << INDEX_BITS) | index);
+	}
+
+	/**
+	 * Removes the entity with the given Id from the registry.
+	 *
+	 * @param id Id of the entity to remove.
+	 * @return Removed entity or null if no entity with given Id existed.
+	 */
+	public Entity remove(long id) {
+		int slot = slots.remove(id);
+
+		if (slot == LongIntHashMap.NO_VALUE) return null;
+		int type = slot >>> INDEX_BITS;
+		int index = slot & INDEX_MASK;
+		Entity[] ofType = entities[type];
+		Entity removed = ofType[index];
+
+		// Move last entity of the type to the freed index.
+		int last = --counts[type];
+
+		if (index != last) {
+			Entity moved = ofType[last];
+			ofType[index] = moved;
+			slots.put(moved.getId(), (type << INDEX_BITS) | index);
+		}
+		ofType[last] = null;
+		return removed;
+	}
+
+	/**
+	 * Returns the entity with the given Id.
+	 *
+	 * @param id Id of the entity to return.
+	 * @return Entity with given Id or null if no entity with given Id exists.
+	 */
+	public Entity get(long id) {
+		int slot = slots.get(id);
+
+		if (slot == LongIntHashMap.NO_VALUE) return null;
+		return entities[slot >>> INDEX_BITS][slot & INDEX_MASK];
+	}
+
+	/**
+	 * Returns an unmodifiable view of the entities of the given type. The view
+	 * reflects later changes of the registry and supports fast access by
+	 * index.
+	 *
+	 * @param type Type of entities to return.
+	 * @return Entities of the given type.
+	 */
+	public List<Entity> getEntitiesOfType(Entity.Type type) {
+		return views[type.ordinal()];
+	}
+
+	/**
+	 * Returns the number of entities in the registry.
+	 *
+	 * @return Number of entities.
+	 */
+	public int size() {
+		return slots.size();
+	}
+
+	private final class TypeView extends AbstractList<Entity> implements RandomAccess {
+		// Ordinal of the type of the view.
+		private final int type;
+
+		TypeView(int type) {
+			this.type = type;
+		}
+
+		@Override
+		public Entity get(int index) {
+
+			if (index >= counts[type])
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + counts[type]);
+			return entities[type][index];
+		}
+
+		@Override
+		public int size() {
+			return counts[type];
+		}
+	}
+}
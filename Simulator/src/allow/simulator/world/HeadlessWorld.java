@@ -0,0 +1,30 @@
+package allow.simulator.world;
+
+/**
+ * Represents the simulated world without binding to a visualization
+ * environment. The transformation maps the world to the patch coordinates
+ * of a NetLogo world of the same dimensions.
+ *
+ * @author Andreas Poxrucker (DFKI)
+ *
+ */
+public class HeadlessWorld extends World {
+
+	/**
+	 * Constructor.
+	 * Creates a new instance of a simulated world without visualization.
+	 * Bounds correspond to the patch coordinates of a NetLogo world.
+	 *
+	 * @param streetNetwork Street network of the world.
+	 * @param minX Minimal x coordinate of grid.
+	 * @param maxX Maximal x coordinate of grid.
+	 * @param minY Minimal y coordinate of grid.
+	 * @param maxY Maximal y coordinate of grid.
+	 */
+	public HeadlessWorld(StreetMap streetNetwork, int minX, int maxX, int minY, int maxY) {
+		super(streetNetwork);
+		// Set transformation between loaded world and grid.
+		double gridEnvelope[] = new double[] { minX, maxX, minY, maxY };
+		transformation.setTransformation(streetNetwork.getDimensions(), gridEnvelope);
+	}
+}
@@ -0,0 +1,306 @@
+package allow.simulator.world;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import allow.simulator.util.LongIntHashMap;
+import allow.simulator.world.layer.Area;
+import allow.simulator.world.layer.DistrictLayer;
+import allow.simulator.world.layer.DistrictType;
+import allow.simulator.world.layer.Layer;
+
+/**
+ * Tracks the busiest streets of a street map over a sliding time window.
+ * The score of a street is the mean number of vehicles which entered its
+ * segments, each entry weighted by exp(-age / window), i.e. an exponentially
+ * decayed count of the vehicles which passed the street in the recent past.
+ *
+ * Scores are kept relative to a landmark time (forward decay), such that
+ * the scores of streets which were not entered do not change and recording
+ * an entry only touches the entered street. Since scores of untouched
+ * streets decay uniformly, they keep their order and a bounded min-heap of
+ * the k streets with highest score per district area (and for the whole
+ * map) stays exact. The busiest streets of an area can thus be queried in
+ * O(k log k) without scanning the street network.
+ *
+ * Must not be called concurrently to entities being executed.
+ *
+ * @author Andreas Poxrucker (DFKI)
+ *
+ */
+public final class HotspotTracker {
+	// Maximal weight of an entry before scores are rescaled to a new landmark.
+	private static final double MAX_WEIGHT = 1e100;
+
+	// Bounded min-heap of the streets with highest scores.
+	private final class TopK {
+		// Indices of streets in heap order.
+		private final int[] heap;
+
+		// Position of streets within the heap by street index.
+		private final LongIntHashMap positions;
+
+		// Number of streets in the heap.
+		private int size;
+
+		TopK(int k) {
+			heap = new int[k];
+			positions = new LongIntHashMap(k);
+		}
+
+		void offer(int street) {
+			int pos = positions.get(street);
+
+			if (pos != LongIntHashMap.NO_VALUE) {
+				// Scores only increase, so the street moves towards the leaves.
+				siftDown(pos);
+
+			} else if (size < heap.length) {
+				heap[size] = street;
+				positions.put(street, size);
+				siftUp(size++);
+
+			} else if (scores[street] > scores[heap[0]]) {
+				positions.remove(heap[0]);
+				heap[0] = street;
+				positions.put(street, 0);
+				siftDown(0);
+			}
+		}
+
+		List<Street> get(int n) {
+			Integer[] order = new Integer[size];
+
+			for (int i = 0; i < size; i++) {
+				order[i] = heap[i];
+			}
+			Arrays.sort(order, new Comparator<Integer>() {
+
+				@Override
+				public int compare(Integer o1, Integer o2) {
+					return Double.compare(scores[o2], scores[o1]);
+				}
+			});
+			int actual = Math.min(n, size);
+			List<Street> ret = new ArrayList<Street>(actual);
+
+			for (int i = 0; i < actual; i++) {
+				ret.add(streets[order[i]]);
+			}
+			return ret;
+		}
+
+		private void siftUp(int pos) {
+			int street = heap[pos];
+
+			while (pos > 0) {
+				int parent = (pos - 1) >> 1;
+
+				if (scores[heap[parent]] <= scores[street]) break;
+				move(heap[parent], pos);
+				pos = parent;
+			}
+			move(street, pos);
+		}
+
+		private void siftDown(int pos) {
+			int street = heap[pos];
+
+			while (true) {
+				int child = 2 * pos + 1;
+
+				if (child >= size) break;
+
+				if (child + 1 < size && scores[heap[child + 1]] < scores[heap[child]]) child++;
+
+				if (scores[street] <= scores[heap[child]]) break;
+				move(heap[child], pos);
+				pos = child;
+			}
+			move(street, pos);
+		}
+
+		private void move(int street, int pos) {
+			heap[pos] = street;
+			positions.put(street, pos);
+		}
+	}
+
+	// Length of the time window in seconds.
+	private final long window;
+
+	// Streets by index and scores relative to the landmark per street.
+	private final Street[] streets;
+	private final double[] scores;
+
+	// Top-k of the whole street map and per district area.
+	private final TopK global;
+	private final Map<String, TopK> areas;
+
+	// Top-k of district areas the first node of a street lies in per street index.
+	private final TopK[][] streetAreas;
+
+	// Landmark time in ms and time of the last update.
+	private long landmark;
+	private long time;
+
+	// Weight of an entry at the time of the last update.
+	private double weight;
+
+	/**
+	 * Constructor.
+	 * Creates a new tracker of the busiest streets of the given street map
+	 * keeping the k busiest streets per area of its district layer (if any).
+	 *
+	 * @param map Street map to track busiest streets of.
+	 * @param window Length of the time window in seconds.
+	 * @param k Maximal number of streets tracked per area.
+	 */
+	public HotspotTracker(StreetMap map, long window, int k) {
+
+		if (window <= 0)
+			throw new IllegalArgumentException("Error: Window of hotspot tracker must be positive.");
+
+		if (k <= 0)
+			throw new IllegalArgumentException("Error: Number of hotspots must be positive.");
+		this.window = window;
+		streets = map.getStreets();
+		scores = new double[streets.length];
+		global = new TopK(k);
+		areas = new HashMap<String, TopK>();
+		streetAreas = new TopK[streets.length][];
+		weight = 1.0;
+		landmark = -1;
+
+		DistrictLayer districts = (DistrictLayer) map.getLayer(Layer.Type.DISTRICTS);
+		Map<Area, TopK> byArea = new HashMap<Area, TopK>();
+
+		if (districts != null) {
+
+			for (DistrictType type : DistrictType.values()) {
+				List<Area> ofType = districts.getAreasOfType(type);
+
+				if (ofType == null) continue;
+
+				for (Area area : ofType) {
+					TopK topK = new TopK(k);
+					byArea.put(area, topK);
+					areas.put(area.getName(), topK);
+				}
+			}
+		}
+
+		for (int i = 0; i < streets.length; i++) {
+			List<Area> containing = (districts != null && streets[i].getNumberOfSubSegments() > 0) ?
+					districts.getAreasContainingPoint(streets[i].getSubSegments().get(0).getStartingNode()) : null;
+
+			if (containing == null) {
+				streetAreas[i] = new TopK[0];
+				continue;
+			}
+			streetAreas[i] = new TopK[containing.size()];
+
+			for (int j = 0; j < containing.size(); j++) {
+				streetAreas[i][j] = byArea.get(containing.get(j));
+			}
+		}
+	}
+
+	/**
+	 * Returns the length of the time window in seconds.
+	 *
+	 * @return Length of the time window in seconds.
+	 */
+	public long getWindow() {
+		return window;
+	}
+
+	/**
+	 * Sets the time of entries recorded subsequently.
+	 *
+	 * @param time Current time in ms.
+	 */
+	public void setTime(long time) {
+
+		if (landmark == -1) landmark = time;
+		this.time = time;
+		weight = Math.exp((time - landmark) / (1000.0 * window));
+
+		if (weight > MAX_WEIGHT) {
+			// Rescale scores uniformly, which does not change their order.
+			for (int i = 0; i < scores.length; i++) {
+				scores[i] /= weight;
+			}
+			landmark = time;
+			weight = 1.0;
+		}
+	}
+
+	/**
+	 * Records vehicles entering a segment of a street at the current time.
+	 *
+	 * @param segment Segment vehicles entered.
+	 * @param vehicles Number of vehicles.
+	 */
+	public void record(StreetSegment segment, int vehicles) {
+		Street street = segment.getStreet();
+		int i = (street != null) ? street.index : -1;
+
+		if (i < 0 || i >= streets.length || streets[i] != street)
+			throw new IllegalArgumentException("Error: " + segment + " is not part of a tracked street.");
+		scores[i] += vehicles * weight / street.getNumberOfSubSegments();
+		global.offer(i);
+
+		for (TopK topK : streetAreas[i]) {
+			topK.offer(i);
+		}
+	}
+
+	/**
+	 * Returns the decayed number of vehicles which entered a street as of the
+	 * time of the last update.
+	 *
+	 * @param street Street to return score of.
+	 * @return Decayed number of vehicles.
+	 */
+	public double getScore(Street street) {
+		return scores[street.index] / weight;
+	}
+
+	/**
+	 * Returns the busiest streets of the whole street map in descending order.
+	 *
+	 * @param n Number of streets to return (at most k).
+	 * @return Busiest streets.
+	 */
+	public List<Street> getHotspots(int n) {
+		return global.get(n);
+	}
+
+	/**
+	 * Returns the busiest streets of a district area in descending order.
+	 *
+	 * @param area Name of the area.
+	 * @param n Number of streets to return (at most k).
+	 * @return Busiest streets of the area or an empty list, if the area is
+	 * unknown.
+	 */
+	public List<Street> getHotspots(String area, int n) {
+		TopK topK = areas.get(area);
+		return (topK != null) ? topK.get(n) : Collections.<Street>emptyList();
+	}
+
+	/**
+	 * Returns the time of the last update.
+	 *
+	 * @return Time of the last update in ms.
+	 */
+	public long getTime() {
+		return time;
+	}
+}
@@ -0,0 +1,22 @@
+package allow.simulator.world;
+
+/**
+ * Interface for link performance functions relating the load of a street
+ * segment to the possible driving speed on it (see CongestionKernel).
+ * 
+ * @author Andreas Poxrucker (DFKI)
+ *
+ */
+public interface ILinkPerformanceFunction {
+
+	/**
+	 * Returns the fraction of the speed range between the minimum driving
+	 * speed and the maximum allowed speed which is possible at the given
+	 * load. Must be non-increasing in the load and must not depend on state
+	 * other than the load.
+	 * 
+	 * @param load Ratio of the number of vehicles and the capacity of a segment.
+	 * @return Fraction of the speed range between 0 and 1.
+	 */
+	double getSpeedFactor(double load);
+}
@@ -1,6 +1,5 @@
 package allow.simulator.world;
 
-import java.util.Collection;
 import java.util.List;
 
 import allow.simulator.entity.Entity;
@@ -39,12 +38,13 @@ public interface IWorld {
 	 Entity getEntityById(long entityId);
 	
 	/**
-	 * Returns all entities of the given type.
+	 * Returns all entities of the given type. The returned list must not be
+	 * modified and supports fast access by index.
 	 * 
 	 * @param type Type of entities to return.
-	 * @return Collection of entities of given type.
+	 * @return List of entities of given type.
 	 */
-	 Collection<Entity> getEntitiesOfType(Entity.Type type);
+	 List<Entity> getEntitiesOfType(Entity.Type type);
 	
 	/**
 	 * Returns entities with certain distance entity with given Id.
@@ -55,6 +55,13 @@ public interface IWorld {
 	 */
 	 List<Entity> getNearEntities(Entity entity, double distance, List<Entity> buffer);
 	
+	/**
+	 * Updates the spatial grid of the world used to answer neighbourhood
+	 * queries and other views of the positions of entities. Must be called
+	 * after entities have moved.
+	 */
+	 void updateGrid();
+	 
 	/**
 	 * Returns the street map (graph) of this world.
 	 * 
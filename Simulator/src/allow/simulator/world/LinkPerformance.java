@@ -0,0 +1,46 @@
+package allow.simulator.world;
+
+/**
+ * Link performance functions available to the simulation.
+ * 
+ * @author Andreas Poxrucker (DFKI)
+ *
+ */
+public enum LinkPerformance implements ILinkPerformanceFunction {
+	
+	/**
+	 * Logistic function 1 / (1 + exp(9 * load - 7)) which has been used by
+	 * the simulator from the beginning.
+	 */
+	SIGMOID {
+		
+		@Override
+		public double getSpeedFactor(double load) {
+			return 1.0 / (1.0 + Math.exp(9 * load - 7));
+		}
+	},
+	
+	/**
+	 * Function of the Bureau of Public Roads 1 / (1 + 0.15 * load^4).
+	 */
+	BPR {
+		
+		@Override
+		public double getSpeedFactor(double load) {
+			double l2 = load * load;
+			return 1.0 / (1.0 + 0.15 * l2 * l2);
+		}
+	};
+	
+	public static LinkPerformance fromString(String functionString) {
+		String temp = functionString.toUpperCase().trim();
+		
+		if (temp.equals("SIGMOID")) {
+			return SIGMOID;
+		} else if (temp.equals("BPR")) {
+			return BPR;
+		} else {
+			throw new IllegalArgumentException("Error: Unknown link performance function " + functionString + ".");
+		}
+	}
+}
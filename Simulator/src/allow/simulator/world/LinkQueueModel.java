@@ -0,0 +1,500 @@
+package allow.simulator.world;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import allow.simulator.util.Coordinate;
+
+/**
+ * Mesoscopic traffic model moving vehicles through first-in-first-out queues
+ * of street segments. A vehicle entering a segment may leave it after the
+ * free-flow travel time, but only once it is at the head of the queue, the
+ * flow capacity of the segment admits another vehicle, and the next segment
+ * of its path has storage capacity left (spillback). Vehicles blocked for
+ * longer than STUCK_TIME enter the next segment anyway to resolve gridlock.
+ *
+ * The model is event-driven: each non-empty segment has a single pending
+ * event at the point in time its head vehicle may leave, such that the cost
+ * of advancing the model depends on the number of vehicles changing
+ * segments rather than on the number of vehicles. Vehicles occupy the
+ * segments they are queued on (see StreetSegment.addVehicle()), such that
+ * driving speeds and hotspots reflect the queues.
+ *
+ * Vehicles which left the last segment of their path during an update are
+ * reported by getArrivals(), such that entities driving them do not need to
+ * check for their arrival in every step.
+ *
+ * Vehicles may depart concurrently while entities are executed. All other
+ * methods must not be called concurrently to entities being executed.
+ *
+ * @author Andreas Poxrucker (DFKI)
+ *
+ */
+public final class LinkQueueModel {
+	// Length of a street segment in m per vehicle in a jam.
+	public static final double JAM_SPACING = 7.5;
+
+	// Number of vehicles per second and lane which may leave a segment.
+	public static final double FLOW_CAPACITY = 0.5;
+
+	// Time in seconds after which a vehicle blocked by a full segment enters it anyway.
+	public static final double STUCK_TIME = 300.0;
+
+	/**
+	 * Vehicle moved by the model along a path of street segments. Subclasses
+	 * are notified when the vehicle leaves a segment.
+	 *
+	 * @author Andreas Poxrucker (DFKI)
+	 *
+	 */
+	public static abstract class Vehicle {
+		// Id of the vehicle (e.g. of the entity driving it) to order vehicles
+		// departing at the same time.
+		private final long id;
+
+		// Path of the vehicle and index of the current segment.
+		private final List<StreetSegment> path;
+		private int index;
+
+		// Time of departure, of entering the current segment, and the point
+		// in time the vehicle may leave the current segment in seconds.
+		private final double departure;
+		private double entered;
+		private double ready;
+
+		// Next vehicle in the queue of the current segment.
+		private Vehicle next;
+
+		// Time of arrival or NaN, if the vehicle has not arrived yet.
+		private double arrival;
+
+		/**
+		 * Constructor.
+		 * Creates a new vehicle departing at the given time.
+		 *
+		 * @param id Id of the vehicle.
+		 * @param path Path of the vehicle (must not be empty).
+		 * @param departure Time of departure in seconds.
+		 */
+		protected Vehicle(long id, List<StreetSegment> path, double departure) {
+
+			if (path.isEmpty())
+				throw new IllegalArgumentException("Error: Path of vehicle must not be empty.");
+			this.id = id;
+			this.path = path;
+			this.departure = departure;
+			index = -1;
+			arrival = Double.NaN;
+		}
+
+		/**
+		 * Called when the vehicle left a segment of its path.
+		 *
+		 * @param segment Segment the vehicle left.
+		 * @param entered Time the vehicle entered the segment in seconds.
+		 * @param left Time the vehicle left the segment in seconds.
+		 */
+		protected abstract void segmentLeft(StreetSegment segment, double entered, double left);
+
+		/**
+		 * Returns the Id of the vehicle.
+		 *
+		 * @return Id of the vehicle.
+		 */
+		public long getId() {
+			return id;
+		}
+
+		/**
+		 * Returns true, if the vehicle left the last segment of its path.
+		 *
+		 * @return True, if vehicle arrived, false otherwise.
+		 */
+		public boolean hasArrived() {
+			return !Double.isNaN(arrival);
+		}
+
+		/**
+		 * Returns the time the vehicle left the last segment of its path.
+		 *
+		 * @return Time of arrival in seconds or NaN, if vehicle has not arrived.
+		 */
+		public double getArrivalTime() {
+			return arrival;
+		}
+
+		/**
+		 * Returns the segment of the path the vehicle is queued on, i.e. the
+		 * first segment before it departed and the last one after it arrived.
+		 *
+		 * @return Current segment of the vehicle.
+		 */
+		public StreetSegment getSegment() {
+			return path.get(Math.max(0, index));
+		}
+
+		/**
+		 * Returns the position of the vehicle at a given time assuming
+		 * free-flow speed on the current segment. Vehicles waiting in a queue
+		 * are placed at the end of their segment.
+		 *
+		 * @param time Time in seconds.
+		 * @param pos Coordinate to store the position in.
+		 * @return Position of the vehicle.
+		 */
+		public Coordinate getPosition(double time, Coordinate pos) {
+
+			if (index == -1) {
+				return path.get(0).getPosition(0.0, pos);
+			}
+			StreetSegment seg = path.get(index);
+
+			if (hasArrived() || ready <= entered) {
+				return seg.getPosition(seg.getLength(), pos);
+			}
+			double r = Math.max(0.0, Math.min(1.0, (time - entered) / (ready - entered)));
+			return seg.getPosition(r * seg.getLength(), pos);
+		}
+	}
+
+	// Orders departing vehicles by time of departure and Id.
+	private static final Comparator<Vehicle> DEPARTURE_ORDER = new Comparator<Vehicle>() {
+
+		@Override
+		public int compare(Vehicle v1, Vehicle v2) {
+			int c = Double.compare(v1.departure, v2.departure);
+			return (c != 0) ? c : Long.compare(v1.id, v2.id);
+		}
+	};
+
+	// Vehicles which departed since the last call of advance(...).
+	private final Queue<Vehicle> departures;
+
+	// Vehicles which arrived during the last call of advance(...).
+	private final List<Vehicle> arrivals;
+
+	// Queues of vehicles per slot of segments (see SegmentOccupancy).
+	private Vehicle[] heads;
+	private Vehicle[] tails;
+	private int[] counts;
+
+	// Point in time the next vehicle may leave per slot (flow capacity).
+	private double[] nextExits;
+
+	// Time the head vehicle got blocked by a full segment per slot or NaN.
+	private double[] blocked;
+
+	// Slots whose head vehicle may wait for storage capacity per slot and
+	// the slot the head vehicle of a slot waits for or -1. Entries of slots
+	// which no longer wait for the respective slot are skipped.
+	private int[][] waiters;
+	private int[] waiterCounts;
+	private int[] waitingFor;
+
+	// Pending events of slots.
+	private final EventHeap events;
+
+	// Number of vehicles in the model.
+	private int vehicles;
+
+	/**
+	 * Constructor.
+	 * Creates a new model without vehicles.
+	 */
+	public LinkQueueModel() {
+		departures = new ConcurrentLinkedQueue<Vehicle>();
+		arrivals = new ArrayList<Vehicle>();
+		events = new EventHeap();
+		grow(64);
+	}
+
+	/**
+	 * Adds a vehicle which enters the first segment of its path at its time
+	 * of departure during the next call of advance(...). May be called
+	 * concurrently.
+	 *
+	 * @param vehicle Vehicle to add.
+	 */
+	public void depart(Vehicle vehicle) {
+		departures.add(vehicle);
+	}
+
+	/**
+	 * Moves vehicles through the queues of segments up to the given time.
+	 *
+	 * @param time Time in ms.
+	 */
+	public void advance(long time) {
+		double now = time / 1000.0;
+		arrivals.clear();
+
+		if (!departures.isEmpty()) {
+			// Insert departed vehicles in a fixed order to keep queues deterministic.
+			List<Vehicle> departed = new ArrayList<Vehicle>(departures.size());
+			Vehicle v = null;
+
+			while ((v = departures.poll()) != null) {
+				departed.add(v);
+			}
+			Collections.sort(departed, DEPARTURE_ORDER);
+
+			for (Vehicle d : departed) {
+				vehicles++;
+				enter(d, d.departure);
+			}
+		}
+
+		while (!events.isEmpty() && events.peekKey() <= now) {
+			double t = events.peekKey();
+			process(events.poll(), t);
+		}
+	}
+
+	/**
+	 * Returns the vehicles which arrived during the last call of
+	 * advance(...) in the order of their arrival.
+	 *
+	 * @return Vehicles which arrived.
+	 */
+	public List<Vehicle> getArrivals() {
+		return arrivals;
+	}
+
+	/**
+	 * Returns the number of vehicles queued on segments.
+	 *
+	 * @return Number of vehicles in the model.
+	 */
+	public int getNumberOfVehicles() {
+		return vehicles;
+	}
+
+	/**
+	 * Returns the number of vehicles a segment can store.
+	 *
+	 * @param segment Street segment.
+	 * @return Storage capacity of the segment.
+	 */
+	public static int getStorageCapacity(StreetSegment segment) {
+		return Math.max(1, (int) Math.ceil(CongestionKernel.LANES * segment.getLength() / JAM_SPACING));
+	}
+
+	// Moves vehicles off a segment as far as possible at time t.
+	private void process(int slot, double t) {
+
+		while (heads[slot] != null) {
+			Vehicle v = heads[slot];
+			double ready = Math.max(v.ready, nextExits[slot]);
+
+			if (ready > t) {
+				events.update(slot, ready);
+				return;
+			}
+			StreetSegment seg = v.path.get(v.index);
+
+			if (v.index == v.path.size() - 1) {
+				// Vehicle leaves the network.
+				leave(slot, t);
+				vehicles--;
+				v.arrival = t;
+				v.segmentLeft(seg, v.entered, t);
+				arrivals.add(v);
+				continue;
+			}
+			StreetSegment nextSeg = v.path.get(v.index + 1);
+			int next = slotOf(nextSeg);
+
+			if (counts[next] >= getStorageCapacity(nextSeg)) {
+
+				if (Double.isNaN(blocked[slot])) blocked[slot] = t;
+
+				if (t < blocked[slot] + STUCK_TIME) {
+					// Wait for storage capacity or until vehicle is stuck.
+					addWaiting(next, slot);
+					events.update(slot, blocked[slot] + STUCK_TIME);
+					return;
+				}
+			}
+			blocked[slot] = Double.NaN;
+			waitingFor[slot] = -1;
+			leave(slot, t);
+			v.segmentLeft(seg, v.entered, t);
+			enter(v, t);
+		}
+	}
+
+	// Moves a vehicle to the next segment of its path at time t.
+	private void enter(Vehicle v, double t) {
+		v.index++;
+		StreetSegment seg = v.path.get(v.index);
+		int slot = slotOf(seg);
+		v.entered = t;
+		v.ready = t + seg.getLength() / Math.max(seg.getMaxSpeed(), StreetSegment.MIN_DRIVING_SPEED);
+		v.next = null;
+
+		if (heads[slot] == null) {
+			heads[slot] = v;
+			tails[slot] = v;
+			events.update(slot, Math.max(v.ready, nextExits[slot]));
+
+		} else {
+			tails[slot].next = v;
+			tails[slot] = v;
+		}
+		counts[slot]++;
+		seg.addVehicle();
+	}
+
+	// Removes the head vehicle of a slot at time t.
+	private void leave(int slot, double t) {
+		Vehicle v = heads[slot];
+		heads[slot] = v.next;
+
+		if (heads[slot] == null) tails[slot] = null;
+		v.next = null;
+		counts[slot]--;
+		nextExits[slot] = t + 1.0 / (CongestionKernel.LANES * FLOW_CAPACITY);
+		v.path.get(v.index).removeVehicle();
+
+		// Wake slots waiting for storage capacity.
+		for (int i = 0; i < waiterCounts[slot]; i++) {
+			int w = waiters[slot][i];
+
+			if (waitingFor[w] != slot) continue;
+			waitingFor[w] = -1;
+			events.update(w, t);
+		}
+		waiterCounts[slot] = 0;
+	}
+
+	private void addWaiting(int slot, int waitingSlot) {
+
+		if (waitingFor[waitingSlot] == slot) return;
+		waitingFor[waitingSlot] = slot;
+
+		if (waiters[slot] == null) {
+			waiters[slot] = new int[4];
+
+		} else if (waiterCounts[slot] == waiters[slot].length) {
+			waiters[slot] = Arrays.copyOf(waiters[slot], 2 * waiterCounts[slot]);
+		}
+		waiters[slot][waiterCounts[slot]++] = waitingSlot;
+	}
+
+	private int slotOf(StreetSegment seg) {
+		int slot = seg.getSlot();
+
+		if (slot == -1)
+			throw new IllegalStateException("Error: " + seg + " is not registered to a street map.");
+
+		if (slot >= heads.length) grow(Math.max(slot + 1, 2 * heads.length));
+		return slot;
+	}
+
+	private void grow(int capacity) {
+		int old = (heads != null) ? heads.length : 0;
+		heads = (heads != null) ? Arrays.copyOf(heads, capacity) : new Vehicle[capacity];
+		tails = (tails != null) ? Arrays.copyOf(tails, capacity) : new Vehicle[capacity];
+		counts = (counts != null) ? Arrays.copyOf(counts, capacity) : new int[capacity];
+		nextExits = (nextExits != null) ? Arrays.copyOf(nextExits, capacity) : new double[capacity];
+		blocked = (blocked != null) ? Arrays.copyOf(blocked, capacity) : new double[capacity];
+		waiters = (waiters != null) ? Arrays.copyOf(waiters, capacity) : new int[capacity][];
+		waiterCounts = (waiterCounts != null) ? Arrays.copyOf(waiterCounts, capacity) : new int[capacity];
+		waitingFor = (waitingFor != null) ? Arrays.copyOf(waitingFor, capacity) : new int[capacity];
+		Arrays.fill(nextExits, old, capacity, Double.NEGATIVE_INFINITY);
+		Arrays.fill(blocked, old, capacity, Double.NaN);
+		Arrays.fill(waitingFor, old, capacity, -1);
+		events.grow(capacity);
+	}
+
+	// Indexed binary min-heap of slots ordered by time of their next event
+	// and slot.
+	private static final class EventHeap {
+		private int[] slots = new int[0];
+		private double[] keys = new double[0];
+		private int[] positions = new int[0];
+		private int size;
+
+		void grow(int capacity) {
+			int old = positions.length;
+			slots = Arrays.copyOf(slots, capacity);
+			keys = Arrays.copyOf(keys, capacity);
+			positions = Arrays.copyOf(positions, capacity);
+			Arrays.fill(positions, old, capacity, -1);
+		}
+
+		boolean isEmpty() {
+			return size == 0;
+		}
+
+		double peekKey() {
+			return keys[0];
+		}
+
+		void update(int slot, double key) {
+			int pos = positions[slot];
+
+			if (pos == -1) {
+				siftUp(size++, slot, key);
+
+			} else if (less(key, slot, keys[pos], slot)) {
+				siftUp(pos, slot, key);
+
+			} else {
+				siftDown(pos, slot, key);
+			}
+		}
+
+		int poll() {
+			int top = slots[0];
+			positions[top] = -1;
+			size--;
+
+			if (size > 0) siftDown(0, slots[size], keys[size]);
+			return top;
+		}
+
+		private void siftUp(int pos, int slot, double key) {
+
+			while (pos > 0) {
+				int parent = (pos - 1) >> 1;
+
+				if (!less(key, slot, keys[parent], slots[parent])) break;
+				set(pos, slots[parent], keys[parent]);
+				pos = parent;
+			}
+			set(pos, slot, key);
+		}
+
+		private void siftDown(int pos, int slot, double key) {
+
+			while (true) {
+				int child = 2 * pos + 1;
+
+				if (child >= size) break;
+
+				if (child + 1 < size && less(keys[child + 1], slots[child + 1], keys[child], slots[child])) child++;
+
+				if (!less(keys[child], slots[child], key, slot)) break;
+				set(pos, slots[child], keys[child]);
+				pos = child;
+			}
+			set(pos, slot, key);
+		}
+
+		private void set(int pos, int slot, double key) {
+			slots[pos] = slot;
+			keys[pos] = key;
+			positions[slot] = pos;
+		}
+
+		private static boolean less(double k1, int s1, double k2, int s2) {
+			return (k1 < k2) || (k1 == k2 && s1 < s2);
+		}
+	}
+}
@@ -0,0 +1,111 @@
+package allow.simulator.world;
+
+import java.util.List;
+
+import allow.simulator.entity.Entity;
+import allow.simulator.util.Coordinate;
+import allow.simulator.util.Geometry;
+
+/**
+ * Spatial hash with square cells of a fixed size in meters of an
+ * equirectangular projection of the street map. Radius queries visit all
+ * cells which may contain entities within the radius, discard candidates
+ * using the projected distance, and compute the exact (haversine) distance
+ * of the remaining candidates only.
+ *
+ * Longitudes are scaled by the cosine of the latitude of the street map
+ * farthest from the equator, such that projected distances never exceed
+ * exact distances within the street map and no neighbour is missed.
+ *
+ * @author Andreas Poxrucker (DFKI)
+ *
+ */
+public class MetricGrid extends SpatialHash {
+	// Meters per degree of latitude (mean earth radius of 6371 km).
+	private static final double METERS_PER_DEGREE = 6371000.0 * Math.PI / 180.0;
+
+	// Size of cells in meters.
+	private double cellSize;
+
+	// Origin of the projection.
+	private double originX;
+	private double originY;
+
+	// Meters per degree of longitude and of latitude.
+	private double scaleX;
+	private double scaleY;
+
+	/**
+	 * Constructor.
+	 * Creates a new empty grid covering the given envelope.
+	 *
+	 * @param envelope Envelope { minLon, maxLon, minLat, maxLat } of the street map.
+	 * @param cellSize Size of cells in meters.
+	 */
+	public MetricGrid(double envelope[], double cellSize) {
+
+		if (cellSize <= 0)
+			throw new IllegalArgumentException("Error: Cell size must be positive.");
+		this.cellSize = cellSize;
+		originX = envelope[0];
+		originY = envelope[2];
+		double maxAbsLat = Math.min(90.0, Math.max(Math.abs(envelope[2]), Math.abs(envelope[3])));
+		scaleX = METERS_PER_DEGREE * Math.cos(Math.toRadians(maxAbsLat));
+		scaleY = METERS_PER_DEGREE;
+	}
+
+	/**
+	 * Adds entities to the buffer which are within the given distance of the
+	 * entity and moving, i.e. active and not idle. Cells are considered as of
+	 * the last commit, positions of entities put aside are derived for the
+	 * entities in the visited cells only.
+	 *
+	 * @param entity Entity to find neighbours of.
+	 * @param distance Maximal distance in meters.
+	 * @param buffer List to add neighbours to.
+	 * @return Buffer containing the neighbours.
+	 */
+	public List<Entity> getNearEntities(Entity entity, double distance, List<Entity> buffer) {
+		Coordinate pos = entity.getPosition();
+		double x = (pos.x - originX) * scaleX;
+		double y = (pos.y - originY) * scaleY;
+		int cx = (int) Math.floor(x / cellSize);
+		int cy = (int) Math.floor(y / cellSize);
+		int r = (int) Math.ceil(distance / cellSize);
+		double maxSq = distance * distance;
+
+		for (int i = cx - r; i <= cx + r; i++) {
+
+			for (int j = cy - r; j <= cy + r; j++) {
+				long key = toKey(i, j);
+				List<Entity> cell = getCell(key);
+
+				if (cell == null) continue;
+
+				for (Entity temp : cell) {
+
+					if (!temp.isActive() || temp.getFlow().isIdle() || (temp.getId() == entity.getId())) continue;
+
+					if (!contains(key, temp)) continue;
+					Coordinate other = temp.getPosition();
+					double dx = (other.x - pos.x) * scaleX;
+					double dy = (other.y - pos.y) * scaleY;
+
+					if ((dx * dx + dy * dy) > maxSq) continue;
+
+					if (Geometry.haversine(pos, other) <= distance) {
+						buffer.add(temp);
+					}
+				}
+			}
+		}
+		return buffer;
+	}
+
+	@Override
+	protected long getCellKey(Coordinate pos) {
+		int cx = (int) Math.floor((pos.x - originX) * scaleX / cellSize);
+		int cy = (int) Math.floor((pos.y - originY) * scaleY / cellSize);
+		return toKey(cx, cy);
+	}
+}
@@ -1,11 +1,7 @@
 package allow.simulator.world;
 
-import java.io.IOException;
-import java.nio.file.Path;
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 import org.nlogo.agent.Agent;
@@ -25,7 +21,6 @@ import allow.simulator.netlogo.agent.IAgent;
 import allow.simulator.netlogo.agent.PersonAgent;
 import allow.simulator.netlogo.agent.TransportAgencyAgent;
 import allow.simulator.util.Coordinate;
-import allow.simulator.util.Geometry;
 import allow.simulator.util.Pair;
 
 /**
@@ -44,10 +39,14 @@ public class NetLogoWorld extends World {
 	private Map<Long, Long> simToNetLogo;
 	private Map<Long, Long> netLogoToSim;
 	
+	// NetLogo agents by simulator Id.
+	private Map<Long, IAgent> agents;
+	
 	// Mapping of street segments to NetLogo links.
 	private Map<StreetSegment, Link> links;
 	
-	private List<List<List<IAgent>>> agentsPerPatch;
+	// Persons per patch.
+	private PatchGrid patchGrid;
 	
 	/**
 	 * Constructor.
@@ -55,26 +54,14 @@ public class NetLogoWorld extends World {
 	 * simulation environment.
 	 * 
 	 * @param w NetLogo world.
-	 * @param mapUrl Path to map containing the street graph description.
-	 * @throws IOException 
+	 * @param streetNetwork Street network of the world.
 	 */
-	public NetLogoWorld(org.nlogo.agent.World w, Path worldConfig) throws IOException {
-		super(worldConfig);
+	public NetLogoWorld(org.nlogo.agent.World w, StreetMap streetNetwork) {
+		super(streetNetwork);
 		simToNetLogo = new HashMap<Long, Long>();
 		netLogoToSim = new HashMap<Long, Long>();
+		agents = new HashMap<Long, IAgent>();
 		netlogoWorld = w;
-		int width = Math.abs(netlogoWorld.minPxcor()) + Math.abs(netlogoWorld.maxPxcor()) + 1;
-		int height = Math.abs(netlogoWorld.minPycor()) + Math.abs(netlogoWorld.maxPycor()) + 1;
-		agentsPerPatch = new ArrayList<List<List<IAgent>>>(width);
-		
-		for (int i = 0; i < width; i++) {
-			List<List<IAgent>> newList = new ArrayList<List<IAgent>>(height);
-			
-			for (int j = 0; j < height; j++) {
-				newList.add(new ArrayList<IAgent>());
-			}
-			agentsPerPatch.add(newList);
-		}		
 		// Create NetLogo street network.
 		double worldEnvelope[] = new double[] { netlogoWorld.minPxcor(), netlogoWorld.maxPxcor(), netlogoWorld.minPycor(), netlogoWorld.maxPxcor() };
 						
@@ -84,6 +71,10 @@ public class NetLogoWorld extends World {
 		// Set transformation between NetLogo and loaded world.
 		transformation.setTransformation(gisEnvelope, worldEnvelope);
 		
+		// Create grid of persons corresponding to patches.
+		patchGrid = new PatchGrid(transformation, netlogoWorld.minPxcor(), netlogoWorld.maxPxcor(), netlogoWorld.minPycor(), netlogoWorld.maxPycor());
+		addGrid(patchGrid);
+		
 		// Create NetLogo bindings for street nodes.
 		Coordinate temp = new Coordinate();
 		Map<Long, Turtle> util = new HashMap<Long, Turtle>();
@@ -157,6 +148,7 @@ public class NetLogoWorld extends World {
 				if (simToNetLogo.get(e.getId()) != null) 
 					throw new IllegalStateException("Error: Simulator entity Id" + e.getId() + " already in use.");
 				simToNetLogo.put(e.getId(), newAgent.id);
+				agents.put(e.getId(), (IAgent) newAgent);
 			}
 		} catch (AgentException e1) {
 			e1.printStackTrace();
@@ -180,70 +172,44 @@ public class NetLogoWorld extends World {
 			Turtle t = (Turtle) netlogoWorld.turtles().agent(simToNetLogo.get(entityId));
 			netLogoToSim.remove(t.id);
 			simToNetLogo.remove(entityId);
+			agents.remove(entityId);
 			t.die();
 		}
 		return e;
 	}
 	
 	/**
-	 * Returns a list of entities which are physically close to a given entity.
-	 * Closeness is defined by the distance parameter.
+	 * Moves the NetLogo agent of an entity whose position changed. Called
+	 * once per step for each moved entity instead of on every position
+	 * update. Agents of persons which are put aside are only moved when
+	 * changing segments (see Entity.setDeferredActivity(...)).
 	 * 
-	 * @param entityId Id of the entity to return near entities.
-	 * @param distance Maximal distance within which entities are close.
-	 * @return List of close entities.
+	 * @param e Entity whose position changed.
 	 */
 	@Override
-	public List<Entity> getNearEntities(Entity entity, double distance, List<Entity> buffer) {
-		// Get patch entity is on.
-		Patch currentPatch = ((Turtle) netlogoWorld.turtles().agent(simToNetLogo.get(entity.getId()))).getPatchHere();
+	protected void positionChanged(Entity e) {
+		super.positionChanged(e);
+		IAgent agent = agents.get(e.getId());
 		
-		List<IAgent> agentsOnCurrentPatch = agentsPerPatch.get(currentPatch.pxcor + netlogoWorld.maxPxcor()).get(currentPatch.pycor + netlogoWorld.maxPycor());
-		
-		for (IAgent temp : agentsOnCurrentPatch) {
-			if (temp.getEntity().isActive() 
-					&& !temp.getEntity().getFlow().isIdle()
-					&& (temp.getEntity().getId() != entity.getId())
-					&& (Geometry.haversine(entity.getPosition(), temp.getEntity().getPosition()) <= distance)) {
-				buffer.add(temp.getEntity());
-			}
-		}
-		return buffer;
-	}
-	
-	public void updateGrid() {
-		AgentSet patches = netlogoWorld.patches();
-		int maxX = netlogoWorld.maxPxcor();
-		int maxY = netlogoWorld.maxPycor();
-	
-		for (Iterator patchesIt = patches.iterator(); patchesIt.hasNext(); ) {
-			Patch patch = (Patch) patchesIt.next();
-			List<IAgent> agentsOnCurrentPatch = agentsPerPatch.get(patch.pxcor + maxX).get(patch.pycor + maxY);
-			agentsOnCurrentPatch.clear();
-
-			for (Turtle t : patch.turtlesHere()) {
-				 
-				if (t instanceof PersonAgent) {
-					agentsOnCurrentPatch.add((IAgent) t);
-				}
-			}
-		}
+		if (agent != null) agent.updatePosition();
 	}
 	
+	/**
+	 * Colors patches according to the number of persons on the patch and its
+	 * neighbouring patches.
+	 */
 	public void updateHeatMap() {
 		AgentSet patches = netlogoWorld.patches();
-		int maxX = netlogoWorld.maxPxcor();
-		int maxY = netlogoWorld.maxPycor();
 		
 		for (Iterator patchesIt = patches.iterator(); patchesIt.hasNext(); ) {
 			 Patch patch = (Patch) patchesIt.next();
 			 AgentSet neighbours = patch.getNeighbors();
-			 double n = agentsPerPatch.get(patch.pxcor + maxX).get(patch.pycor + maxY).size();
+			 double n = patchGrid.getNumberOfEntities(patch.pxcor, patch.pycor);
 			 double weight = 1.0 / (double) neighbours.count();
 			 
 			 for (Iterator nIt = neighbours.iterator(); nIt.hasNext(); ) {
 				 Patch nei = (Patch) nIt.next();
-				 n += (weight * agentsPerPatch.get(nei.pxcor + maxX).get(nei.pycor + maxY).size());
+				 n += (weight * patchGrid.getNumberOfEntities(nei.pxcor, nei.pycor));
 			 }
 			 n *= 0.5;
 			 
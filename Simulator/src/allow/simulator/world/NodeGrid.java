@@ -0,0 +1,131 @@
+package allow.simulator.world;
+
+import java.util.List;
+
+import allow.simulator.util.Coordinate;
+
+/**
+ * Immutable uniform grid over the nodes of a street network to find the node
+ * nearest to a position. Node indices are kept per cell in compressed sparse
+ * row layout. Distances are compared using an equirectangular approximation,
+ * which is exact enough at the scale of a city.
+ *
+ * @author Andreas Poxrucker (DFKI)
+ *
+ */
+public final class NodeGrid {
+	// Edge length of a cell in degrees (about 500 m).
+	private static final double CELL_SIZE = 0.005;
+
+	// Nodes by index.
+	private final StreetNode[] nodes;
+
+	// Lower left corner and number of columns and rows of the grid.
+	private final double minX;
+	private final double minY;
+	private final int cols;
+	private final int rows;
+
+	// Index of the first entry of cellNodes per cell plus total number of nodes.
+	private final int[] cellOffsets;
+
+	// Node indices grouped by cell.
+	private final int[] cellNodes;
+
+	// Scale of longitude differences relative to latitude differences.
+	private final double lonScale;
+
+	/**
+	 * Constructor.
+	 * Creates a new grid over the given nodes. The Id of a node must equal
+	 * its position in the list.
+	 *
+	 * @param nodeList Nodes of the street network.
+	 * @param envelope Dimensions of the street network (minX, maxX, minY, maxY).
+	 */
+	public NodeGrid(List<StreetNode> nodeList, double[] envelope) {
+		nodes = nodeList.toArray(new StreetNode[nodeList.size()]);
+		minX = envelope[0];
+		minY = envelope[2];
+		cols = Math.max(1, (int) ((envelope[1] - envelope[0]) / CELL_SIZE) + 1);
+		rows = Math.max(1, (int) ((envelope[3] - envelope[2]) / CELL_SIZE) + 1);
+		lonScale = Math.cos(Math.toRadians((envelope[2] + envelope[3]) / 2.0));
+		cellOffsets = new int[cols * rows + 1];
+		cellNodes = new int[nodes.length];
+
+		for (StreetNode n : nodes) {
+			cellOffsets[cellOf(n.getPosition()) + 1]++;
+		}
+
+		for (int i = 0; i < cols * rows; i++) {
+			cellOffsets[i + 1] += cellOffsets[i];
+		}
+		int next[] = new int[cols * rows];
+		System.arraycopy(cellOffsets, 0, next, 0, next.length);
+
+		for (int i = 0; i < nodes.length; i++) {
+			cellNodes[next[cellOf(nodes[i].getPosition())]++] = i;
+		}
+	}
+
+	/**
+	 * Returns the node nearest to the given position.
+	 *
+	 * @param pos Position.
+	 * @return Nearest node or null, if the grid is empty.
+	 */
+	public StreetNode getNearestNode(Coordinate pos) {
+		int col = clamp((int) Math.floor((pos.x - minX) / CELL_SIZE), cols);
+		int row = clamp((int) Math.floor((pos.y - minY) / CELL_SIZE), rows);
+		int maxRing = Math.max(cols, rows);
+		int best = -1;
+		double bestDist = Double.MAX_VALUE;
+
+		for (int ring = 0; ring <= maxRing; ring++) {
+
+			// Nodes in cells outside the ring are at least (ring - 1) cells away.
+			if (best != -1) {
+				double bound = (ring - 1) * CELL_SIZE * Math.min(1.0, lonScale);
+
+				if (bound > 0 && bound * bound > bestDist) break;
+			}
+
+			for (int r = row - ring; r <= row + ring; r++) {
+
+				if (r < 0 || r >= rows) continue;
+
+				for (int c = col - ring; c <= col + ring; c++) {
+
+					if (c < 0 || c >= cols) continue;
+
+					// Visit only cells on the border of the ring.
+					if (Math.abs(r - row) != ring && Math.abs(c - col) != ring) continue;
+					int cell = r * cols + c;
+
+					for (int i = cellOffsets[cell]; i < cellOffsets[cell + 1]; i++) {
+						Coordinate p = nodes[cellNodes[i]].getPosition();
+						double dx = (p.x - pos.x) * lonScale;
+						double dy = p.y - pos.y;
+						double dist = dx * dx + dy * dy;
+
+						if (dist < bestDist) {
+							bestDist = dist;
+							best = cellNodes[i];
+						}
+					}
+				}
+			}
+		}
+		return (best != -1) ? nodes[best] : null;
+	}
+
+	private int cellOf(Coordinate pos) {
+		int col = clamp((int) Math.floor((pos.x - minX) / CELL_SIZE), cols);
+		int row = clamp((int) Math.floor((pos.y - minY) / CELL_SIZE), rows);
+		return row * cols + col;
+	}
+
+	private static int clamp(int value, int size) {
+		return Math.max(0, Math.min(size - 1, value));
+	}
+}
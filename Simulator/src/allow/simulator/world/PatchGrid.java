@@ -0,0 +1,76 @@
+package allow.simulator.world;
+
+import java.util.List;
+
+import allow.simulator.entity.Entity;
+import allow.simulator.util.Coordinate;
+
+/**
+ * Spatial hash whose cells correspond to the patches of a NetLogo world,
+ * e.g. to visualize the density of persons.
+ *
+ * @author Andreas Poxrucker (DFKI)
+ *
+ */
+public class PatchGrid extends SpatialHash {
+	// Transformation from world coordinates to patch coordinates.
+	private WorldTransformation transformation;
+
+	// Dimensions of the grid.
+	private int minX;
+	private int maxX;
+	private int minY;
+	private int maxY;
+
+	/**
+	 * Constructor.
+	 * Creates a new empty grid given the patch coordinates of a NetLogo world.
+	 *
+	 * @param transformation Transformation from world to patch coordinates.
+	 * @param minX Minimal x coordinate of patches.
+	 * @param maxX Maximal x coordinate of patches.
+	 * @param minY Minimal y coordinate of patches.
+	 * @param maxY Maximal y coordinate of patches.
+	 */
+	public PatchGrid(WorldTransformation transformation, int minX, int maxX, int minY, int maxY) {
+		this.transformation = transformation;
+		this.minX = minX;
+		this.maxX = maxX;
+		this.minY = minY;
+		this.maxY = maxY;
+	}
+
+	/**
+	 * Returns the number of entities located on the given patch as of the
+	 * last commit.
+	 *
+	 * @param x X coordinate of the patch.
+	 * @param y Y coordinate of the patch.
+	 * @return Number of entities on the patch.
+	 */
+	public int getNumberOfEntities(int x, int y) {
+		long key = toKey(x, y);
+		List<Entity> cell = getCell(key);
+
+		if (cell == null) return 0;
+		int n = 0;
+
+		for (Entity e : cell) {
+
+			if (contains(key, e)) n++;
+		}
+		return n;
+	}
+
+	@Override
+	protected long getCellKey(Coordinate pos) {
+		Coordinate patch = transformation.GISToNetLogo(pos);
+		int x = (int) Math.floor(patch.x + 0.5);
+		int y = (int) Math.floor(patch.y + 0.5);
+
+		if ((x < minX) || (x > maxX) || (y < minY) || (y > maxY)) {
+			return OUTSIDE;
+		}
+		return toKey(x, y);
+	}
+}
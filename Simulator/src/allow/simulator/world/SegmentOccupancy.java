@@ -0,0 +1,284 @@
+package allow.simulator.world;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Number of vehicles on and possible driving speed of the street segments of
+ * a street map kept in primitive arrays indexed by the slot of a segment.
+ * Changes are collected in atomic counters while entities are executed and
+ * marked in a concurrent dirty bitset, such that committing them only visits
+ * segments which actually changed. Committed segments and segments whose number of remote
+ * vehicles changed are marked in a second bitset to update their possible
+ * driving speed (see StreetMap.updateStreetSegments()).
+ *
+ * changeVehicles(...) may be called concurrently. All other methods must not
+ * be called concurrently to entities being executed.
+ *
+ * @author Andreas Poxrucker (DFKI)
+ *
+ */
+public final class SegmentOccupancy {
+	// Initial number of slots.
+	private static final int INITIAL_CAPACITY = 1024;
+
+	// Number of vehicles per slot as of the last commit.
+	private int[] vehicles;
+
+	// Number of vehicles per slot simulated by other shards.
+	private int[] remoteVehicles;
+
+	// Possible driving speed per slot.
+	private double[] speeds;
+
+	// Changes of the number of vehicles per slot since the last commit.
+	private AtomicIntegerArray changes;
+
+	// Number of vehicles which entered each slot since the last commit.
+	private AtomicIntegerArray entries;
+
+	// Slots with uncommitted changes.
+	private AtomicLongArray dirty;
+
+	// Slots whose possible driving speed needs to be updated.
+	private long[] updated;
+
+	// Number of registered slots.
+	private int size;
+
+	/**
+	 * Constructor.
+	 * Creates a new instance without slots.
+	 */
+	public SegmentOccupancy() {
+		vehicles = new int[INITIAL_CAPACITY];
+		remoteVehicles = new int[INITIAL_CAPACITY];
+		speeds = new double[INITIAL_CAPACITY];
+		changes = new AtomicIntegerArray(INITIAL_CAPACITY);
+		entries = new AtomicIntegerArray(INITIAL_CAPACITY);
+		dirty = new AtomicLongArray(INITIAL_CAPACITY >> 6);
+		updated = new long[INITIAL_CAPACITY >> 6];
+	}
+
+	/**
+	 * Adds a new slot.
+	 *
+	 * @param speed Initial possible driving speed of the slot.
+	 * @return Index of the new slot.
+	 */
+	public int register(double speed) {
+
+		if (size == vehicles.length) {
+			int capacity = 2 * vehicles.length;
+			vehicles = Arrays.copyOf(vehicles, capacity);
+			remoteVehicles = Arrays.copyOf(remoteVehicles, capacity);
+			speeds = Arrays.copyOf(speeds, capacity);
+			AtomicIntegerArray newChanges = new AtomicIntegerArray(capacity);
+			AtomicIntegerArray newEntries = new AtomicIntegerArray(capacity);
+			AtomicLongArray newDirty = new AtomicLongArray(capacity >> 6);
+
+			for (int i = 0; i < size; i++) {
+				newChanges.set(i, changes.get(i));
+				newEntries.set(i, entries.get(i));
+			}
+
+			for (int i = 0; i < dirty.length(); i++) {
+				newDirty.set(i, dirty.get(i));
+			}
+			changes = newChanges;
+			entries = newEntries;
+			dirty = newDirty;
+			updated = Arrays.copyOf(updated, capacity >> 6);
+		}
+		speeds[size] = speed;
+		return size++;
+	}
+
+	/**
+	 * Returns the number of registered slots.
+	 *
+	 * @return Number of slots.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the number of vehicles of a slot as of the last commit.
+	 *
+	 * @param slot Slot to return number of vehicles of.
+	 * @return Number of vehicles.
+	 */
+	public int getVehicles(int slot) {
+		return vehicles[slot];
+	}
+
+	/**
+	 * Returns the number of vehicles of a slot as of the last commit
+	 * including vehicles simulated by other shards.
+	 *
+	 * @param slot Slot to return number of vehicles of.
+	 * @return Number of vehicles.
+	 */
+	public int getTotalVehicles(int slot) {
+		return vehicles[slot] + remoteVehicles[slot];
+	}
+
+	public int getRemoteVehicles(int slot) {
+		return remoteVehicles[slot];
+	}
+
+	/**
+	 * Sets the number of vehicles of a slot simulated by other shards and
+	 * marks the slot as updated, if the number changed.
+	 *
+	 * @param slot Slot to set number of remote vehicles of.
+	 * @param n Number of vehicles simulated by other shards.
+	 */
+	public void setRemoteVehicles(int slot, int n) {
+
+		if (remoteVehicles[slot] != n) {
+			remoteVehicles[slot] = n;
+			markUpdated(slot);
+		}
+	}
+
+	public double getSpeed(int slot) {
+		return speeds[slot];
+	}
+
+	public void setSpeed(int slot, double speed) {
+		speeds[slot] = speed;
+	}
+
+	/**
+	 * Returns the changes of the number of vehicles of a slot which have not
+	 * been committed yet.
+	 *
+	 * @param slot Slot to return changes of.
+	 * @return Uncommitted changes of the number of vehicles.
+	 */
+	public int getChanges(int slot) {
+		return changes.get(slot);
+	}
+
+	/**
+	 * Changes the number of vehicles of a slot. The change becomes visible
+	 * after committing the slot. May be called concurrently.
+	 *
+	 * @param slot Slot to change.
+	 * @param delta Change of the number of vehicles.
+	 */
+	public void changeVehicles(int slot, int delta) {
+		changes.addAndGet(slot, delta);
+		int word = slot >> 6;
+		long bit = 1L << slot;
+		long bits = dirty.get(word);
+
+		while ((bits & bit) == 0) {
+
+			if (dirty.compareAndSet(word, bits, bits | bit)) break;
+			bits = dirty.get(word);
+		}
+	}
+
+	/**
+	 * Adds a vehicle entering a slot. In contrast to changeVehicles(...), the
+	 * vehicle is counted as entry of the slot (see commitEntries(...)). May
+	 * be called concurrently.
+	 *
+	 * @param slot Slot the vehicle entered.
+	 */
+	public void enterVehicle(int slot) {
+		entries.incrementAndGet(slot);
+		changeVehicles(slot, 1);
+	}
+
+	/**
+	 * Returns the first slot with uncommitted changes starting at the given
+	 * slot.
+	 *
+	 * @param from Slot to start searching from.
+	 * @return First slot with uncommitted changes or -1, if there is none.
+	 */
+	public int nextDirty(int from) {
+		int word = from >> 6;
+
+		if (word >= dirty.length()) return -1;
+		long bits = dirty.get(word) & (-1L << from);
+
+		while (bits == 0) {
+
+			if (++word >= dirty.length()) return -1;
+			bits = dirty.get(word);
+		}
+		return (word << 6) + Long.numberOfTrailingZeros(bits);
+	}
+
+	/**
+	 * Applies the uncommitted changes of a slot and marks the slot as updated,
+	 * if its number of vehicles changed.
+	 *
+	 * @param slot Slot to commit.
+	 * @return Change of the number of vehicles.
+	 */
+	public int commit(int slot) {
+		int word = slot >> 6;
+		dirty.set(word, dirty.get(word) & ~(1L << slot));
+		int delta = changes.getAndSet(slot, 0);
+
+		if (delta == 0) return 0;
+		vehicles[slot] += delta;
+		markUpdated(slot);
+		return delta;
+	}
+
+	/**
+	 * Returns and resets the number of vehicles which entered a slot since
+	 * the last commit. Must be called before committing the slot, as entries
+	 * are only counted for slots with uncommitted changes.
+	 *
+	 * @param slot Slot to commit entries of.
+	 * @return Number of vehicles which entered the slot.
+	 */
+	public int commitEntries(int slot) {
+		return entries.getAndSet(slot, 0);
+	}
+
+	/**
+	 * Marks a slot whose possible driving speed needs to be updated.
+	 *
+	 * @param slot Slot to mark.
+	 */
+	public void markUpdated(int slot) {
+		updated[slot >> 6] |= 1L << slot;
+	}
+
+	/**
+	 * Returns the first slot marked as updated starting at the given slot.
+	 *
+	 * @param from Slot to start searching from.
+	 * @return First slot marked as updated or -1, if there is none.
+	 */
+	public int nextUpdated(int from) {
+		int word = from >> 6;
+
+		if (word >= updated.length) return -1;
+		long bits = updated[word] & (-1L << from);
+
+		while (bits == 0) {
+
+			if (++word >= updated.length) return -1;
+			bits = updated[word];
+		}
+		return (word << 6) + Long.numberOfTrailingZeros(bits);
+	}
+
+	/**
+	 * Removes the marks of all slots marked as updated.
+	 */
+	public void clearUpdated() {
+		Arrays.fill(updated, 0L);
+	}
+}
@@ -0,0 +1,241 @@
+package allow.simulator.world;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import allow.simulator.entity.Entity;
+import allow.simulator.flow.activity.IDeferredActivity;
+import allow.simulator.util.Coordinate;
+
+/**
+ * Hash of grid cells keeping track of the entities located in each cell.
+ * Subclasses define the mapping of positions to cells.
+ *
+ * The hash is updated incrementally: Entities report position changes by
+ * calling positionChanged(...), which may be called concurrently, and are
+ * only moved to their new cell by commit() if they left their cell. Queries
+ * return the state as of the last commit, such that the cost per step only
+ * depends on the number of entities which changed cells.
+ *
+ * Positions of entities which are put aside (see
+ * Entity.setDeferredActivity(...)) are derived on request and change without
+ * being reported. Such entities are added to all cells covered by the
+ * segment they are located on (see IDeferredActivity.getSegment(...)) and
+ * are only reported again when changing segments. Queries must check the
+ * cell of their current position by calling contains(...), such that
+ * positions are only derived for entities a query actually visits.
+ *
+ * @author Andreas Poxrucker (DFKI)
+ *
+ */
+public abstract class SpatialHash {
+	// Key of positions which are not mapped to any cell.
+	protected static final long OUTSIDE = Long.MIN_VALUE;
+
+	// Orders entities by Id.
+	private static final Comparator<Entity> ID_ORDER = new Comparator<Entity>() {
+
+		@Override
+		public int compare(Entity e1, Entity e2) {
+			return Long.compare(e1.getId(), e2.getId());
+		}
+	};
+
+	// Entities per (non-empty) cell.
+	private Map<Long, List<Entity>> cells;
+
+	// Cells of each entity as of the last commit.
+	private Map<Long, long[]> cellsOfEntity;
+
+	// Entities which may have changed cells since the last commit.
+	private Queue<Entity> moved;
+
+	/**
+	 * Constructor.
+	 * Creates a new empty hash.
+	 */
+	protected SpatialHash() {
+		cells = new HashMap<Long, List<Entity>>();
+		cellsOfEntity = new ConcurrentHashMap<Long, long[]>();
+		moved = new ConcurrentLinkedQueue<Entity>();
+	}
+
+	/**
+	 * Returns the key of the cell containing the given position.
+	 *
+	 * @param pos Position in world coordinates.
+	 * @return Key of the cell or OUTSIDE.
+	 */
+	protected abstract long getCellKey(Coordinate pos);
+
+	/**
+	 * Returns the key of a cell given its coordinates.
+	 *
+	 * @param x X coordinate of the cell.
+	 * @param y Y coordinate of the cell.
+	 * @return Key of the cell.
+	 */
+	protected static long toKey(int x, int y) {
+		return ((long) x << 32) | (y & 0xffffffffL);
+	}
+
+	/**
+	 * Adds an entity to the cell of its current position. Must not be called
+	 * concurrently to other methods.
+	 *
+	 * @param e Entity to add.
+	 */
+	public void add(Entity e) {
+		long cells[] = getCellKeys(e);
+		cellsOfEntity.put(e.getId(), cells);
+
+		for (long cell : cells) addToCell(cell, e);
+	}
+
+	/**
+	 * Removes an entity from the hash. Must not be called concurrently to
+	 * other methods.
+	 *
+	 * @param e Entity to remove.
+	 */
+	public void remove(Entity e) {
+		long cells[] = cellsOfEntity.remove(e.getId());
+
+		if (cells == null) return;
+
+		for (long cell : cells) removeFromCell(cell, e);
+	}
+
+	/**
+	 * Notifies the hash that the position of an entity changed. The entity is
+	 * moved to its new cell during the next commit, if it left its cell. May
+	 * be called concurrently for different entities.
+	 *
+	 * @param e Entity whose position changed.
+	 */
+	public void positionChanged(Entity e) {
+		long cells[] = cellsOfEntity.get(e.getId());
+
+		if ((cells != null) && !Arrays.equals(cells, getCellKeys(e))) {
+			moved.add(e);
+		}
+	}
+
+	/**
+	 * Moves entities which left their cell since the last commit to their new
+	 * cell. Must not be called concurrently to other methods.
+	 */
+	public void commit() {
+
+		if (moved.isEmpty()) return;
+		List<Entity> toMove = new ArrayList<Entity>(moved.size());
+		Entity e = null;
+
+		while ((e = moved.poll()) != null) {
+			toMove.add(e);
+		}
+		// Apply moves in a fixed order to keep the order within cells deterministic.
+		Collections.sort(toMove, ID_ORDER);
+
+		for (Entity m : toMove) {
+			long oldCells[] = cellsOfEntity.get(m.getId());
+
+			if (oldCells == null) continue;
+			long newCells[] = getCellKeys(m);
+
+			if (Arrays.equals(oldCells, newCells)) continue;
+
+			for (long cell : oldCells) removeFromCell(cell, m);
+
+			for (long cell : newCells) addToCell(cell, m);
+			cellsOfEntity.put(m.getId(), newCells);
+		}
+	}
+
+	/**
+	 * Checks if an entity returned by getCell(...) is located in the given
+	 * cell. Entities which are put aside are added to all cells covered by
+	 * their segment, such that the cell of their current position is derived
+	 * and compared.
+	 *
+	 * @param cell Key of the cell.
+	 * @param e Entity of the cell.
+	 * @return True, if entity is located in the cell, false otherwise.
+	 */
+	protected boolean contains(long cell, Entity e) {
+		return (e.getDeferredActivity() == null) || (getCellKey(e.getPosition()) == cell);
+	}
+
+	/**
+	 * Returns the entities located in the given cell as of the last commit.
+	 *
+	 * @param cell Key of the cell.
+	 * @return Entities in the cell or null, if cell is empty.
+	 */
+	protected List<Entity> getCell(long cell) {
+		return cells.get(cell);
+	}
+
+	// Returns the cell of the position of an entity or, if the entity is put
+	// aside, all cells of the bounding box of its segment.
+	private long[] getCellKeys(Entity e) {
+		IDeferredActivity deferred = e.getDeferredActivity();
+
+		if (deferred == null) {
+			return new long[] { getCellKey(e.getPosition()) };
+		}
+		StreetSegment seg = deferred.getSegment(e.getContext().getTime().getTimestamp());
+		long start = getCellKey(seg.getStartingPoint());
+		long end = getCellKey(seg.getEndPoint());
+
+		if ((start == end) || (start == OUTSIDE) || (end == OUTSIDE)) {
+			// Segments leaving the grid are not covered by any cell.
+			return new long[] { (start == end) ? start : OUTSIDE };
+		}
+		int minX = Math.min((int) (start >> 32), (int) (end >> 32));
+		int maxX = Math.max((int) (start >> 32), (int) (end >> 32));
+		int minY = Math.min((int) start, (int) end);
+		int maxY = Math.max((int) start, (int) end);
+		long cells[] = new long[(maxX - minX + 1) * (maxY - minY + 1)];
+		int i = 0;
+
+		for (int x = minX; x <= maxX; x++) {
+
+			for (int y = minY; y <= maxY; y++) {
+				cells[i++] = toKey(x, y);
+			}
+		}
+		return cells;
+	}
+
+	private void addToCell(long cell, Entity e) {
+
+		if (cell == OUTSIDE) return;
+		List<Entity> entities = cells.get(cell);
+
+		if (entities == null) {
+			entities = new ArrayList<Entity>(4);
+			cells.put(cell, entities);
+		}
+		entities.add(e);
+	}
+
+	private void removeFromCell(long cell, Entity e) {
+
+		if (cell == OUTSIDE) return;
+		List<Entity> entities = cells.get(cell);
+
+		if (entities == null) return;
+		entities.remove(e);
+
+		if (entities.isEmpty()) cells.remove(cell);
+	}
+}
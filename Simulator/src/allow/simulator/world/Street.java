@@ -1,9 +1,6 @@
 package allow.simulator.world;
 
 import java.util.List;
-import java.util.Observable;
-import java.util.Observer;
-
 
 /**
  * Represents a street of the street map in the Allow Ensembles simulator.
@@ -12,7 +9,7 @@ import java.util.Observer;
  * @author Andreas Poxrucker (DFKI)
  *
  */
-public class Street extends Observable implements Observer {
+public class Street {
 	// Unique Id of the street.
 	private long id;
 
@@ -29,6 +26,12 @@ public class Street extends Observable implements Observer {
 	// Subsegments this street is divided into.
 	private List<StreetSegment> subSegments;
 	
+	// Indicates whether the street is scheduled to update its number of vehicles.
+	boolean scheduled;
+	
+	// Index of the street within its street map.
+	int index;
+	
 	/**
 	 * Constructor.
 	 * Creates a new instance of a street.
@@ -42,9 +45,10 @@ public class Street extends Observable implements Observer {
 		this.name = name;
 		this.subSegments = subSegments;
 
-		for (StreetSegment subseg : subSegments) {
+		for (int i = 0; i < subSegments.size(); i++) {
+			StreetSegment subseg = subSegments.get(i);
+			subseg.setStreet(this, i);
 			length += subseg.getLength();
-			subseg.addObserver(this);
 		}
 	}
 
@@ -133,47 +137,10 @@ public class Street extends Observable implements Observer {
 		return id == s.id && name.equals(s.name) && length == s.length;
 	}
 
-	public void update(Observable o, Object arg) {
-		
-		if (!hasChanged()) {
-			setChanged();
-			notifyObservers();
-		}
-	}
-	
-	public void updatePossibleSpeedOnSegments() {
-		
-		if (subSegments.size() == 1) {
-			StreetSegment seg = subSegments.get(0);
-			seg.updatePossibleSpeed(10 * (double) seg.getNumberOfVehicles() / length);
-			
-		} else if (subSegments.size() == 2) {
-			StreetSegment first = subSegments.get(0);
-			StreetSegment second = subSegments.get(1);
-			double carsPerMeter = (double) (first.getNumberOfVehicles() + second.getNumberOfVehicles()) / length;
-			first.updatePossibleSpeed(10 * carsPerMeter);
-			second.updatePossibleSpeed(10 * carsPerMeter);
-		
-		} else if (subSegments.size() > 2) {
-			StreetSegment first = subSegments.get(0);
-			StreetSegment second = subSegments.get(1);
-			double carsPerMeter = (double) (first.getNumberOfVehicles() + second.getNumberOfVehicles()) / (first.getLength() + second.getLength());
-			first.updatePossibleSpeed(10 * carsPerMeter);
-			
-			for (int i = 1; i < subSegments.size() - 1; i++) {
-				StreetSegment prev = subSegments.get(i - 1);
-				StreetSegment curr = subSegments.get(i);
-				StreetSegment next = subSegments.get(i + 1);
-				carsPerMeter = (double) (prev.getNumberOfVehicles() + curr.getNumberOfVehicles() + next.getNumberOfVehicles()) 
-						/ (prev.getLength() + curr.getLength() + next.getLength());
-				curr.updatePossibleSpeed(10 * carsPerMeter);
-			}
-			
-			StreetSegment previous = subSegments.get(subSegments.size() - 2);
-			StreetSegment last = subSegments.get(subSegments.size() - 1);
-			carsPerMeter = (double) (last.getNumberOfVehicles() + previous.getNumberOfVehicles()) / (last.getLength() + previous.getLength());
-			last.updatePossibleSpeed(10 * carsPerMeter);
-		}
+	/**
+	 * Updates the number of vehicles on the street from its sub segments.
+	 */
+	public void updateNumberOfVehicles() {
 		int temp = 0;
 		
 		for (StreetSegment seg : subSegments) {
@@ -182,4 +149,4 @@ public class Street extends Observable implements Observer {
 		numberOfVehicles = temp;
 		vehicleLengthRatio = numberOfVehicles / length;
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,216 @@
+package allow.simulator.world;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Immutable topology of a street network in compressed sparse row layout.
+ * Nodes and segments are identified by dense int indices. Segments are
+ * ordered by their starting node such that the outgoing segments of node n
+ * are the segments with indices getFirstOutSegment(n) (inclusive) to
+ * getFirstOutSegment(n + 1) (exclusive). Incoming segments are given by a
+ * separate index array. Lengths and speed limits of segments are kept in
+ * primitive arrays.
+ *
+ * A graph does not keep track of vehicles and can therefore be shared by
+ * several street maps (see StreetMap).
+ *
+ * @author Andreas Poxrucker (DFKI)
+ *
+ */
+public final class StreetGraph {
+	// Nodes by index. The index of a node equals its Id.
+	private final StreetNode[] nodes;
+
+	// Index of the first outgoing segment per node plus total number of segments.
+	private final int[] outOffsets;
+
+	// Index of the first entry of inSegments per node plus total number of segments.
+	private final int[] inOffsets;
+
+	// Incoming segments grouped by ending node.
+	private final int[] inSegments;
+
+	// Starting and ending node per segment.
+	private final int[] sources;
+	private final int[] targets;
+
+	// Ids, lengths in m, and maximum driving speeds in m/s per segment.
+	private final long[] ids;
+	private final double[] lengths;
+	private final double[] maxSpeeds;
+
+	/**
+	 * Constructor.
+	 * Creates a new graph from the given nodes and segments. The Id of a node
+	 * must equal its position in the list of nodes. Segments keep their
+	 * relative order among the outgoing segments of a node, i.e. if segments
+	 * are ordered by starting node, the index of a segment equals its
+	 * position in the list.
+	 *
+	 * @param nodeList Nodes of the graph.
+	 * @param segmentList Segments of the graph.
+	 */
+	public StreetGraph(List<StreetNode> nodeList, List<StreetSegment> segmentList) {
+		int nNodes = nodeList.size();
+		int nSegments = segmentList.size();
+		nodes = nodeList.toArray(new StreetNode[nNodes]);
+
+		for (int i = 0; i < nNodes; i++) {
+
+			if (nodes[i].getId() != i)
+				throw new IllegalArgumentException("Error: Id of node " + nodes[i].getLabel() + " does not match its index " + i + ".");
+		}
+
+		// Count outgoing and incoming segments per node.
+		outOffsets = new int[nNodes + 1];
+		inOffsets = new int[nNodes + 1];
+
+		for (StreetSegment seg : segmentList) {
+
+			if ((indexOf(seg.getStartingNode()) == -1) || (indexOf(seg.getEndingNode()) == -1))
+				throw new IllegalArgumentException("Error: Nodes of segment " + seg.getId() + " are not part of the graph.");
+			outOffsets[indexOf(seg.getStartingNode()) + 1]++;
+			inOffsets[indexOf(seg.getEndingNode()) + 1]++;
+		}
+
+		for (int i = 0; i < nNodes; i++) {
+			outOffsets[i + 1] += outOffsets[i];
+			inOffsets[i + 1] += inOffsets[i];
+		}
+
+		// Place segments ordered by starting node.
+		sources = new int[nSegments];
+		targets = new int[nSegments];
+		ids = new long[nSegments];
+		lengths = new double[nSegments];
+		maxSpeeds = new double[nSegments];
+		int next[] = Arrays.copyOf(outOffsets, nNodes);
+
+		for (StreetSegment seg : segmentList) {
+			int source = indexOf(seg.getStartingNode());
+			int index = next[source]++;
+			sources[index] = source;
+			targets[index] = indexOf(seg.getEndingNode());
+			ids[index] = seg.getId();
+			lengths[index] = seg.getLength();
+			maxSpeeds[index] = seg.getMaxSpeed();
+		}
+
+		// Group segments by ending node.
+		inSegments = new int[nSegments];
+		next = Arrays.copyOf(inOffsets, nNodes);
+
+		for (int i = 0; i < nSegments; i++) {
+			inSegments[next[targets[i]]++] = i;
+		}
+	}
+
+	/**
+	 * Returns the number of nodes of the graph.
+	 *
+	 * @return Number of nodes.
+	 */
+	public int getNumberOfNodes() {
+		return nodes.length;
+	}
+
+	/**
+	 * Returns the number of segments of the graph.
+	 *
+	 * @return Number of segments.
+	 */
+	public int getNumberOfSegments() {
+		return ids.length;
+	}
+
+	/**
+	 * Returns the node with the given index.
+	 *
+	 * @param node Index of the node.
+	 * @return Node with the given index.
+	 */
+	public StreetNode getNode(int node) {
+		return nodes[node];
+	}
+
+	/**
+	 * Returns the index of the given node.
+	 *
+	 * @param node Node to return index of.
+	 * @return Index of the node or -1, if the node is not part of the graph.
+	 */
+	public int indexOf(StreetNode node) {
+		long id = node.getId();
+		return ((id >= 0) && (id < nodes.length) && (nodes[(int) id] == node)) ? (int) id : -1;
+	}
+
+	/**
+	 * Returns the index of the first outgoing segment of the given node.
+	 * Outgoing segments of node n range up to getFirstOutSegment(n + 1)
+	 * (exclusive).
+	 *
+	 * @param node Index of the node.
+	 * @return Index of the first outgoing segment.
+	 */
+	public int getFirstOutSegment(int node) {
+		return outOffsets[node];
+	}
+
+	/**
+	 * Returns the number of incoming segments of the given node.
+	 *
+	 * @param node Index of the node.
+	 * @return Number of incoming segments.
+	 */
+	public int getInDegree(int node) {
+		return inOffsets[node + 1] - inOffsets[node];
+	}
+
+	/**
+	 * Returns the i-th incoming segment of the given node.
+	 *
+	 * @param node Index of the node.
+	 * @param i Number of the incoming segment.
+	 * @return Index of the segment.
+	 */
+	public int getInSegment(int node, int i) {
+		return inSegments[inOffsets[node] + i];
+	}
+
+	/**
+	 * Returns the index of the first segment from node source to node target.
+	 *
+	 * @param source Index of the starting node.
+	 * @param target Index of the ending node.
+	 * @return Index of the segment or -1, if no such segment exists.
+	 */
+	public int findSegment(int source, int target) {
+
+		for (int i = outOffsets[source]; i < outOffsets[source + 1]; i++) {
+
+			if (targets[i] == target) return i;
+		}
+		return -1;
+	}
+
+	public int getSource(int segment) {
+		return sources[segment];
+	}
+
+	public int getTarget(int segment) {
+		return targets[segment];
+	}
+
+	public long getSegmentId(int segment) {
+		return ids[segment];
+	}
+
+	public double getLength(int segment) {
+		return lengths[segment];
+	}
+
+	public double getMaxSpeed(int segment) {
+		return maxSpeeds[segment];
+	}
+}
@@ -1,25 +1,24 @@
 package allow.simulator.world;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.EnumMap;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Observable;
-import java.util.Observer;
-import java.util.Queue;
-import java.util.Set;
 
 import allow.simulator.util.Coordinate;
-import allow.simulator.util.Geometry;
+import allow.simulator.util.LongIntHashMap;
 import allow.simulator.util.Pair;
 import allow.simulator.world.layer.Area;
 import allow.simulator.world.layer.DistrictArea;
@@ -28,126 +27,237 @@ import allow.simulator.world.layer.DistrictType;
 import allow.simulator.world.layer.Layer;
 import allow.simulator.world.layer.SafetyArea;
 import allow.simulator.world.layer.SafetyLayer;
-import edu.uci.ics.jung.graph.DirectedSparseMultigraph;
-import edu.uci.ics.jung.graph.Graph;
-import edu.uci.ics.jung.graph.util.EdgeType;
 
-public final class StreetMap implements Observer {
+/**
+ * Street network of the simulation. The topology is kept in a StreetGraph
+ * which is shared by street maps created from the same topology. Each
+ * street map owns the street segment objects of the graph indexed by the
+ * segment indices of the graph. The number of vehicles on segments is kept
+ * in a SegmentOccupancy in which segments of the graph occupy the slots
+ * equal to their segment index.
+ * 
+ * @author Andreas Poxrucker (DFKI)
+ *
+ */
+public final class StreetMap {
 	
-	private static final class StreetComparator implements Comparator<Street> {
+	private static final class StartingNodeComparator implements Comparator<StreetSegment> {
 		
 		@Override
-		public int compare(Street o1, Street o2) {
-			if (o1.getVehicleLengthRatio() > o2.getVehicleLengthRatio()) {
-				return -1;
-			}
-			
-			if (o1.getVehicleLengthRatio() == o2.getVehicleLengthRatio()) {
-				return 0;
-			}
-			return 1;
+		public int compare(StreetSegment o1, StreetSegment o2) {
+			return Long.compare(o1.getStartingNode().getId(), o2.getStartingNode().getId());
 		}
-		
 	}
+	
 	// Dimensions of street map.
 	private double envelope[];
 	
 	// Encodes network structure of StreetMap.
-	private Graph<StreetNode, StreetSegment> map;
-	private Map<String, Street> streets;
+	private StreetGraph graph;
+	
+	// Segments by segment index of the graph.
+	private StreetSegment[] segments;
+	private List<StreetSegment> segmentList;
+	
+	// Streets in order of loading and index of street per pair of nodes
+	// (see LongIntHashMap.pack(...)).
+	private Street[] streets;
+	private LongIntHashMap streetKeys;
+	
+	// Nodes by label and index of node per position (see positionKey(...)).
 	private Map<String, StreetNode> nodes;
-	private Map<String, StreetNode> posNodes;
+	private LongIntHashMap posNodes;
+	
+	// Grid to find nodes nearest to a position.
+	private NodeGrid nodeGrid;
 	private List<StreetNode> temp;
 	Map<Layer.Type, Layer> layers;
 	
-	// Set of street segments to update after each time step.
-	private Set<Street> streetsToUpdate;
-	private Queue<Street> busiestStreets;
+	// Trackers of the busiest streets over sliding time windows.
+	private List<HotspotTracker> hotspots;
+	
+	// Number of vehicles on registered segments and segments by slot.
+	private SegmentOccupancy occupancy;
+	private List<StreetSegment> slots;
+	
+	// Kernel updating possible speeds on segments.
+	private CongestionKernel kernel;
+	
+	// Buffer of slots to pass to the kernel.
+	private int[] slotBuffer;
+	
+	// Slots of segments whose possible speed needs to be updated and streets
+	// whose number of vehicles needs to be updated.
+	private BitSet speedUpdates;
+	private List<Street> streetsToUpdate;
+	
+	// Segments whose number of vehicles changed during the last commit and
+	// the respective changes.
+	private List<StreetSegment> committedSegments;
+	private int[] committedChanges;
+	
+	// Segments vehicles entered during the last commit and the respective
+	// numbers of vehicles.
+	private List<StreetSegment> enteredSegments;
+	private int[] enteredVehicles;
+	
+	// Queues of cars if cars are moved by the link queue model, otherwise null.
+	private LinkQueueModel linkQueues;
 	
 	public StreetMap(Path path) throws IOException {
 		envelope = new double[] { 180.0, -180.0, 90.0, -90.0 };
-		map = new DirectedSparseMultigraph<StreetNode, StreetSegment>();
-		streets = new HashMap<String, Street>();
 		nodes = new HashMap<String, StreetNode>();
-		posNodes = new HashMap<String, StreetNode>();
 		temp = new ArrayList<StreetNode>();
 		layers = new EnumMap<Layer.Type, Layer>(Layer.Type.class);
-		busiestStreets = new LinkedList<Street>();
+		hotspots = new ArrayList<HotspotTracker>(1);
+		occupancy = new SegmentOccupancy();
+		slots = new ArrayList<StreetSegment>();
+		kernel = new CongestionKernel(occupancy, LinkPerformance.SIGMOID);
+		slotBuffer = new int[64];
+		speedUpdates = new BitSet();
+		streetsToUpdate = new ArrayList<Street>();
+		committedSegments = new ArrayList<StreetSegment>();
+		committedChanges = new int[64];
+		enteredSegments = new ArrayList<StreetSegment>();
+		enteredVehicles = new int[64];
 		loadStreetNetwork(path);
 	}
-	
+
+	/**
+	 * Constructor.
+	 * Creates a new street map sharing nodes, layers, and dimensions with the
+	 * given street map. Streets and street segments are created anew, such
+	 * that the number of vehicles on segments and the resulting driving speeds
+	 * are independent of the given map. Layers must be added to the given map
+	 * before.
+	 *
+	 * @param topology Street map to share the topology with.
+	 */
+	public StreetMap(StreetMap topology) {
+		envelope = topology.envelope;
+		graph = topology.graph;
+		streetKeys = topology.streetKeys;
+		nodes = topology.nodes;
+		posNodes = topology.posNodes;
+		nodeGrid = topology.nodeGrid;
+		temp = topology.temp;
+		layers = new EnumMap<Layer.Type, Layer>(topology.layers);
+		hotspots = new ArrayList<HotspotTracker>(1);
+		occupancy = new SegmentOccupancy();
+		slots = new ArrayList<StreetSegment>();
+		kernel = new CongestionKernel(occupancy, LinkPerformance.SIGMOID);
+		slotBuffer = new int[64];
+		speedUpdates = new BitSet();
+		streetsToUpdate = new ArrayList<Street>();
+		committedSegments = new ArrayList<StreetSegment>();
+		committedChanges = new int[64];
+		enteredSegments = new ArrayList<StreetSegment>();
+		enteredVehicles = new int[64];
+
+		Map<StreetSegment, StreetSegment> copies = new IdentityHashMap<StreetSegment, StreetSegment>();
+		segments = new StreetSegment[topology.segments.length];
+
+		for (int i = 0; i < segments.length; i++) {
+			StreetSegment seg = topology.segments[i];
+			StreetSegment copy = new StreetSegment(seg.getId(), seg.getStartingNode(), seg.getEndingNode(), seg.getMaxSpeed(), seg.getLength());
+			registerSegment(copy);
+			copies.put(seg, copy);
+			segments[i] = copy;
+		}
+		segmentList = Collections.unmodifiableList(Arrays.asList(segments));
+
+		streets = new Street[topology.streets.length];
+		
+		for (int i = 0; i < streets.length; i++) {
+			Street s = topology.streets[i];
+			List<StreetSegment> segments = new ArrayList<StreetSegment>(s.getNumberOfSubSegments());
+
+			for (StreetSegment seg : s.getSubSegments()) {
+				segments.add(copies.get(seg));
+			}
+			streets[i] = new Street(s.getId(), s.getName(), segments);
+			streets[i].index = i;
+		}
+	}
+
 	private void loadStreetNetwork(Path mapFile) throws IOException {
-		List<String> lines = Files.readAllLines(mapFile);
-		int offset = 0;
+		StreetNetwork network = StreetNetwork.read(mapFile);
 		
-		// Read nodes.
-		String headerNodes = lines.get(offset++);
-		String tokens[] = headerNodes.split(" ");
-		int numberOfNodes = Integer.parseInt(tokens[1]);
-		nodes = new HashMap<String, StreetNode>();
-		long nodeIds = 0;
+		// Create nodes.
+		int numberOfNodes = network.getNumberOfNodes();
+		StreetNode nodesByIndex[] = new StreetNode[numberOfNodes];
+		nodes = new HashMap<String, StreetNode>(2 * numberOfNodes);
+		posNodes = new LongIntHashMap(numberOfNodes);
 			
 		for (int i = 0; i < numberOfNodes; i++) {
-			String temp = lines.get(offset++);
-			tokens = temp.split(";;");
-			Coordinate c = new Coordinate(Double.parseDouble(tokens[1]), Double.parseDouble(tokens[2]));
+			Coordinate c = network.getPosition(i);
 			if (c.x < envelope[0]) envelope[0] = c.x;
 			if (c.x > envelope[1]) envelope[1] = c.x;
 			if (c.y < envelope[2]) envelope[2] = c.y;
 			if (c.y > envelope[3]) envelope[3] = c.y;
-			StreetNode n = new StreetNode(nodeIds++, tokens[0], c);
-			map.addVertex(n);
-			nodes.put(tokens[0], n);
-			posNodes.put(c.y + "," + c.x, n);
+			StreetNode n = new StreetNode(i, network.getLabel(i), c);
+			nodesByIndex[i] = n;
+			this.temp.add(n);
+			nodes.put(n.getLabel(), n);
+			posNodes.put(positionKey(c.y, c.x), i);
 		}
-		offset++;
 
-		// Read links.
-		String headerLinks = lines.get(offset++);
-		tokens = headerLinks.split(" ");
-		int numberOfLinks = Integer.parseInt(tokens[1]);
+		// Create streets and their reversed streets.
+		int numberOfLinks = network.getNumberOfStreets();
 		long linkIds = 1;
-		double mphTomps = 1.609 / 3.6;
+		List<StreetSegment> loaded = new ArrayList<StreetSegment>();
+		List<Street> loadedStreets = new ArrayList<Street>(2 * numberOfLinks);
+		streetKeys = new LongIntHashMap(2 * numberOfLinks);
 		
 		for (int i = 0; i < numberOfLinks; i++) {
-			String temp = lines.get(offset++);
-			tokens = temp.split(";;");
-			String idStart = tokens[1];
-			String idEnd = tokens[2];
-			String name = tokens[3];
-			double speedLimit = Double.parseDouble(tokens[4]) * mphTomps;
-			String subSegs[] = tokens[5].split(" ");
-				
-			StreetNode source = nodes.get(idStart);
-			StreetNode dest = nodes.get(idEnd);
+			String name = network.getName(i);
+			double speedLimit = network.getSpeedLimit(i);
+			int source = network.getStartingNode(i);
+			int dest = network.getEndingNode(i);
+			int first = network.getFirstPoint(i);
+			int last = network.getFirstPoint(i + 1) - 1;
 			
 			// Add a new street from the loaded segments.						
-			List<StreetSegment> segments = new ArrayList<StreetSegment>();
-			List<StreetSegment> segmentsRev = new ArrayList<StreetSegment>();
+			List<StreetSegment> segments = new ArrayList<StreetSegment>(last - first);
+			List<StreetSegment> segmentsRev = new ArrayList<StreetSegment>(last - first);
 			
-			for (int j = 0; j < subSegs.length - 1; j++) {
-				StreetNode start = nodes.get(subSegs[j]);
-				StreetNode end = nodes.get(subSegs[j + 1]);
-				StreetSegment seg = new StreetSegment(linkIds++, start, end, speedLimit, Geometry.haversine(start.getPosition(), end.getPosition()));
+			for (int j = first; j < last; j++) {
+				StreetNode start = nodesByIndex[network.getPoint(j)];
+				StreetNode end = nodesByIndex[network.getPoint(j + 1)];
+				StreetSegment seg = new StreetSegment(linkIds++, start, end, speedLimit, network.getLength(j + 1));
 				segments.add(seg);
-				map.addEdge(seg, start, end, EdgeType.DIRECTED);
+				loaded.add(seg);
 				
 				// Add reversed segment for walking.
 				StreetSegment segRev = new StreetSegment(linkIds++, end, start, speedLimit, seg.getLength());
 				segmentsRev.add(segRev);
-				//if (end.getLabel().startsWith("split"))
-				map.addEdge(segRev, end, start, EdgeType.DIRECTED); 
+				loaded.add(segRev);
 			}
 			Street s = new Street(linkIds++, name, segments);
-			s.addObserver(this);
-			streets.put(source.getLabel() + ";;" + dest.getLabel(), s);
+			streetKeys.put(LongIntHashMap.pack(source, dest), loadedStreets.size());
+			loadedStreets.add(s);
 
 			Street sRev = new Street(linkIds++, name, segmentsRev);
-			sRev.addObserver(this);
-			streets.put(dest.getLabel() + ";;" + source.getLabel(), sRev);
+			streetKeys.put(LongIntHashMap.pack(dest, source), loadedStreets.size());
+			loadedStreets.add(sRev);
+		}
+		streets = loadedStreets.toArray(new Street[loadedStreets.size()]);
+		
+		for (int i = 0; i < streets.length; i++) {
+			streets[i].index = i;
+		}
+		
+		// Build graph with segments ordered by starting node (stable, such
+		// that segments keep their order of loading).
+		Collections.sort(loaded, new StartingNodeComparator());
+		graph = new StreetGraph(temp, loaded);
+		nodeGrid = new NodeGrid(temp, envelope);
+		segments = loaded.toArray(new StreetSegment[loaded.size()]);
+		segmentList = Collections.unmodifiableList(Arrays.asList(segments));
+		
+		for (StreetSegment seg : segments) {
+			registerSegment(seg);
 		}
-		streetsToUpdate = new HashSet<Street>(streets.size() / 2);
-		temp = new ArrayList<StreetNode>(map.getVertices());
 		System.out.println(envelope[0] + " " + envelope[1] + " " + envelope[2] + " " + envelope[3]);
 	}
 	
@@ -178,6 +288,7 @@ public final class StreetMap implements Observer {
 	private Layer loadDistrictLayer(Path path) throws IOException {
 		List<String> lines = Files.readAllLines(path);
 		DistrictLayer newLayer = new DistrictLayer(Layer.Type.DISTRICTS, this);
+		List<Area> newAreas = new ArrayList<Area>();
 		
 		for (String line : lines) {
 			String tokens[] = line.split(";;");
@@ -201,10 +312,17 @@ public final class StreetMap implements Observer {
 				DistrictType type = DistrictType.fromString(areaType);
 				Area newArea = new DistrictArea(tokens[0], polygon, type);
 				newLayer.addArea(newArea);
-				System.out.println("    Adding area " + tokens[0] + " (" + polygon.size()
-						+ " boundary vertices, type " + type + ", nodes: " + newLayer.getPointsInArea(newArea).size() + ")");
+				newAreas.add(newArea);
 			}
 		}
+		// Assign nodes to areas at once instead of scanning all nodes per area.
+		newLayer.buildIndex();
+		
+		for (Area newArea : newAreas) {
+			System.out.println("    Adding area " + newArea.getName() + " (" + newArea.getBoundary().size()
+					+ " boundary vertices, type " + ((DistrictArea) newArea).getType() + ", nodes: "
+					+ newLayer.getPointsInArea(newArea).size() + ")");
+		}
 		return newLayer;
 	}
 	
@@ -257,59 +375,344 @@ public final class StreetMap implements Observer {
 	 * Returns the street segments forming the street graph together with the
 	 * set of street nodes.
 	 * 
-	 * @return Set of street segments of the street graph.
+	 * @return Unmodifiable list of street segments ordered by segment index.
+	 */
+	public List<StreetSegment> getStreetSegments() {
+		return segmentList;
+	}
+	
+	/**
+	 * Returns the topology of the street graph.
+	 * 
+	 * @return Topology of the street graph.
+	 */
+	public StreetGraph getStreetGraph() {
+		return graph;
+	}
+	
+	/**
+	 * Returns the street segment with the given index in the street graph.
+	 * 
+	 * @param index Index of the segment.
+	 * @return Street segment with given index.
 	 */
-	public Collection<StreetSegment> getStreetSegments() {
-		return map.getEdges();
+	public StreetSegment getStreetSegment(int index) {
+		return segments[index];
 	}
 	
 	public Pair<StreetNode, StreetNode> getIncidentNodes(StreetSegment seg) {
-		edu.uci.ics.jung.graph.util.Pair<StreetNode> nodes = map.getEndpoints(seg);
-		return new Pair<StreetNode, StreetNode>(nodes.getFirst(), nodes.getSecond());
+		return new Pair<StreetNode, StreetNode>(seg.getStartingNode(), seg.getEndingNode());
 	}
 
 	public Collection<StreetSegment> getIncidentEdges(StreetNode node) {
-		return map.getIncidentEdges(node);
+		int n = graph.indexOf(node);
+		
+		if (n == -1) return Collections.emptyList();
+		int first = graph.getFirstOutSegment(n);
+		int last = graph.getFirstOutSegment(n + 1);
+		int in = graph.getInDegree(n);
+		List<StreetSegment> ret = new ArrayList<StreetSegment>(last - first + in);
+		
+		for (int i = first; i < last; i++) {
+			ret.add(segments[i]);
+		}
+		
+		for (int i = 0; i < in; i++) {
+			ret.add(segments[graph.getInSegment(n, i)]);
+		}
+		return ret;
 	}
 	
 	public Collection<StreetSegment> getOutGoingSegments(StreetNode source) {
-		return map.getOutEdges(source);
+		int n = graph.indexOf(source);
+		
+		if (n == -1) return Collections.emptyList();
+		return segmentList.subList(graph.getFirstOutSegment(n), graph.getFirstOutSegment(n + 1));
 	}
 	
 	public StreetNode getSource(StreetSegment seg) {
-		return map.getSource(seg);
+		return seg.getStartingNode();
 	}
 	
 	public StreetNode getDestination(StreetSegment seg) {
-		return map.getDest(seg);
+		return seg.getEndingNode();
+	}
+	
+	/**
+	 * Registers a street segment which is not part of the street graph (e.g.
+	 * a segment of a public transportation trace) such that vehicles can be
+	 * added to it and changes of its number of vehicles are committed
+	 * together with the segments of the street graph. Must not be called
+	 * concurrently to entities being executed.
+	 * 
+	 * @param seg Segment to register.
+	 */
+	public void registerSegment(StreetSegment seg) {
+		
+		if (seg.getSlot() != -1)
+			throw new IllegalStateException("Error: " + seg + " is already registered.");
+		seg.setOccupancy(occupancy, occupancy.register(kernel.getSpeed(seg.getMaxSpeed(), 0.0)));
+		slots.add(seg);
+	}
+	
+	/**
+	 * Commits changes of the number of vehicles on street segments made
+	 * during the last step. Only segments marked as dirty by addVehicle() or
+	 * removeVehicle() are visited. Segments whose number of vehicles changed
+	 * are updated calling updateStreetSegments(). Must not be called
+	 * concurrently to entities being executed.
+	 */
+	public void commitVehicleChanges() {
+		committedSegments.clear();
+		enteredSegments.clear();
+		
+		for (int slot = occupancy.nextDirty(0); slot != -1; slot = occupancy.nextDirty(slot + 1)) {
+			int entered = occupancy.commitEntries(slot);
+			int delta = occupancy.commit(slot);
+			
+			if (entered > 0) {
+				
+				if (enteredSegments.size() == enteredVehicles.length) {
+					enteredVehicles = Arrays.copyOf(enteredVehicles, 2 * enteredVehicles.length);
+				}
+				enteredVehicles[enteredSegments.size()] = entered;
+				enteredSegments.add(slots.get(slot));
+			}
+			
+			if (delta == 0) continue;
+			
+			if (committedSegments.size() == committedChanges.length) {
+				committedChanges = Arrays.copyOf(committedChanges, 2 * committedChanges.length);
+			}
+			committedChanges[committedSegments.size()] = delta;
+			committedSegments.add(slots.get(slot));
+		}
+	}
+	
+	/**
+	 * Returns the segments whose number of vehicles changed during the last
+	 * call of commitVehicleChanges().
+	 * 
+	 * @return Segments whose number of vehicles changed.
+	 */
+	public List<StreetSegment> getCommittedSegments() {
+		return committedSegments;
 	}
 	
 	/**
-	 * Updates all street segments which 
+	 * Updates the possible speed on segments whose number of vehicles changed
+	 * since the last update and on their neighbours within the same street,
+	 * as well as the number of vehicles on the affected streets. Speeds are
+	 * computed in one batch by the congestion kernel.
 	 */
 	public void updateStreetSegments() {
-		// Reset busiest streets queue. 
-		busiestStreets.clear();
+		// Collect segments whose density changed.
+		for (int slot = occupancy.nextUpdated(0); slot != -1; slot = occupancy.nextUpdated(slot + 1)) {
+			StreetSegment seg = slots.get(slot);
+			Street street = seg.getStreet();
+			speedUpdates.set(slot);
+			
+			if (street == null) continue;
+			List<StreetSegment> subSegments = street.getSubSegments();
+			int i = seg.getStreetIndex();
+			
+			if (i > 0) speedUpdates.set(subSegments.get(i - 1).getSlot());
+			if (i < subSegments.size() - 1) speedUpdates.set(subSegments.get(i + 1).getSlot());
+			
+			if (!street.scheduled) {
+				street.scheduled = true;
+				streetsToUpdate.add(street);
+			}
+		}
+		occupancy.clearUpdated();
+		
+		int n = speedUpdates.cardinality();
+		
+		if (slotBuffer.length < n) {
+			slotBuffer = new int[Math.max(n, 2 * slotBuffer.length)];
+		}
+		n = 0;
+		
+		for (int slot = speedUpdates.nextSetBit(0); slot != -1; slot = speedUpdates.nextSetBit(slot + 1)) {
+			slotBuffer[n++] = slot;
+		}
+		speedUpdates.clear();
+		kernel.build(slots);
+		kernel.update(slotBuffer, n);
 		
 		for (Street toUpdate : streetsToUpdate) {
-			toUpdate.updatePossibleSpeedOnSegments();
-			
-			if (toUpdate.getNumberOfVehicles() > 0)
-				busiestStreets.add(toUpdate);
+			toUpdate.updateNumberOfVehicles();
+			toUpdate.scheduled = false;
 		}
 		streetsToUpdate.clear();
 	}
 	
-	public List<Street> getNBusiestStreets(int n) {
-		int actual = Math.min(n, busiestStreets.size());
-		List<Street> ret = new ArrayList<Street>(actual);
-		Street temp[] = busiestStreets.toArray(new Street[busiestStreets.size()]);
-		Arrays.sort(temp, new StreetComparator());
+	/**
+	 * Sets the model of moving cars along street segments. Must be called
+	 * before cars start driving.
+	 * 
+	 * @param model Traffic model.
+	 */
+	public void setTrafficModel(TrafficModel model) {
+		linkQueues = (model == TrafficModel.QUEUE) ? new LinkQueueModel() : null;
+	}
+	
+	/**
+	 * Returns the queues of cars if cars are moved by the link queue model.
+	 * 
+	 * @return Link queue model or null, if cars advance in every step.
+	 */
+	public LinkQueueModel getLinkQueueModel() {
+		return linkQueues;
+	}
+	
+	/**
+	 * Moves cars through the link queue model (if any) up to the given time.
+	 * Changes of the number of vehicles on segments become visible after
+	 * calling commitVehicleChanges().
+	 * 
+	 * @param time Current time in ms.
+	 */
+	public void advanceLinkQueues(long time) {
+		
+		if (linkQueues != null) linkQueues.advance(time);
+	}
+	
+	/**
+	 * Sets the link performance function used to compute possible speeds on
+	 * segments and updates the speed on all registered segments.
+	 * 
+	 * @param function Link performance function.
+	 */
+	public void setLinkPerformanceFunction(ILinkPerformanceFunction function) {
+		kernel.setFunction(function);
 		
-		for (int i = 0; i < actual; i++) {
-			ret.add(temp[i]);
+		for (int i = 0; i < occupancy.size(); i++) {
+			occupancy.markUpdated(i);
+		}
+		updateStreetSegments();
+	}
+	
+	/**
+	 * Writes the number of vehicles of all street segments of the street
+	 * graph having vehicles on them.
+	 * 
+	 * @param out Output to write state to.
+	 * @throws IOException
+	 */
+	public void writeState(DataOutput out) throws IOException {
+		List<StreetSegment> occupied = new ArrayList<StreetSegment>();
+		
+		for (StreetSegment seg : segments) {
+			
+			if (seg.getNumberOfLocalVehicles() != 0) occupied.add(seg);
+		}
+		out.writeInt(occupied.size());
+		
+		for (StreetSegment seg : occupied) {
+			out.writeUTF(seg.getStartingNode().getLabel());
+			out.writeUTF(seg.getEndingNode().getLabel());
+			out.writeLong(seg.getId());
+			out.writeInt(seg.getNumberOfLocalVehicles());
 		}
-		return ret;
+	}
+	
+	/**
+	 * Restores the number of vehicles of street segments written by 
+	 * writeState(...) and updates the possible speed on affected streets.
+	 * 
+	 * @param in Input to read state from.
+	 * @throws IOException
+	 */
+	public void readState(DataInput in) throws IOException {
+		Map<String, StreetSegment> segments = new HashMap<String, StreetSegment>();
+		
+		for (StreetSegment seg : this.segments) {
+			segments.put(seg.getStartingNode().getLabel() + ";;" + seg.getEndingNode().getLabel() + ";;" + seg.getId(), seg);
+			seg.setNumberOfVehicles(0);
+		}
+		int n = in.readInt();
+		
+		for (int i = 0; i < n; i++) {
+			String key = in.readUTF() + ";;" + in.readUTF() + ";;" + in.readLong();
+			StreetSegment seg = segments.get(key);
+			
+			if (seg == null)
+				throw new IllegalStateException("Error: Unknown street segment " + key);
+			seg.setNumberOfVehicles(in.readInt());
+		}
+		commitVehicleChanges();
+		updateStreetSegments();
+	}
+	
+	/**
+	 * Adds a tracker of the busiest streets over a sliding time window. Must
+	 * be called after adding layers to the street map.
+	 * 
+	 * @param window Length of the time window in seconds.
+	 * @param k Maximal number of streets tracked per district area.
+	 * @return Tracker of the busiest streets.
+	 */
+	public HotspotTracker addHotspotTracker(long window, int k) {
+		HotspotTracker tracker = new HotspotTracker(this, window, k);
+		hotspots.add(tracker);
+		return tracker;
+	}
+	
+	/**
+	 * Returns the tracker of the busiest streets over the given time window.
+	 * 
+	 * @param window Length of the time window in seconds.
+	 * @return Tracker of the busiest streets or null, if there is no tracker
+	 * with the given window.
+	 */
+	public HotspotTracker getHotspotTracker(long window) {
+		
+		for (HotspotTracker tracker : hotspots) {
+			
+			if (tracker.getWindow() == window) return tracker;
+		}
+		return null;
+	}
+	
+	/**
+	 * Records vehicles which entered streets (see StreetSegment.addVehicle())
+	 * and were committed by the last call of commitVehicleChanges() in all
+	 * hotspot trackers. Vehicles entering and leaving a segment within the
+	 * same step are counted as well. Segments without a street, e.g.
+	 * segments of public transportation traces, are not tracked.
+	 * 
+	 * @param time Current time in ms.
+	 */
+	public void updateHotspots(long time) {
+		
+		for (HotspotTracker tracker : hotspots) {
+			tracker.setTime(time);
+			
+			for (int i = 0; i < enteredSegments.size(); i++) {
+				StreetSegment seg = enteredSegments.get(i);
+				
+				if (seg.getStreet() != null) tracker.record(seg, enteredVehicles[i]);
+			}
+		}
+	}
+	
+	/**
+	 * Returns the n busiest streets over the time window of the first hotspot
+	 * tracker added to the street map.
+	 * 
+	 * @param n Number of streets to return.
+	 * @return Busiest streets in descending order.
+	 */
+	public List<Street> getNBusiestStreets(int n) {
+		
+		if (hotspots.isEmpty())
+			throw new IllegalStateException("Error: No hotspot tracker added to street map.");
+		return hotspots.get(0).getHotspots(n);
+	}
+	
+	Street[] getStreets() {
+		return streets;
 	}
 	
 	/**
@@ -320,29 +723,96 @@ public final class StreetMap implements Observer {
 	 * @return
 	 */
 	public Street getStreet(String first, String second) {
-		return streets.get(first + ";;" + second);
+		StreetNode n1 = nodes.get(first);
+		StreetNode n2 = nodes.get(second);
+		
+		if ((n1 == null) || (n2 == null)) return null;
+		return getStreet(n1, n2);
+	}
+	
+	/**
+	 * Returns a street given its start and end node.
+	 * 
+	 * @param first Start node of street.
+	 * @param second End node of street.
+	 * @return Street from first to second node or null, if no such street exists.
+	 */
+	public Street getStreet(StreetNode first, StreetNode second) {
+		int n1 = graph.indexOf(first);
+		int n2 = graph.indexOf(second);
+		
+		if ((n1 == -1) || (n2 == -1)) return null;
+		int s = streetKeys.get(LongIntHashMap.pack(n1, n2));
+		return (s != LongIntHashMap.NO_VALUE) ? streets[s] : null;
 	}
 
 	public StreetSegment getStreetSegment(StreetNode first, StreetNode second) {
-		return map.findEdge(first, second);
+		int n1 = graph.indexOf(first);
+		int n2 = graph.indexOf(second);
+		
+		if ((n1 == -1) || (n2 == -1)) return null;
+		int seg = graph.findSegment(n1, n2);
+		return (seg != -1) ? segments[seg] : null;
 	}
 	
 	public StreetSegment getStreetSegment(String first, String second) {
 		StreetNode n1 = nodes.get(first);
 		StreetNode n2 = nodes.get(second);
-		return map.findEdge(n1, n2);
+		
+		if ((n1 == null) || (n2 == null)) return null;
+		return getStreetSegment(n1, n2);
 	}
 	
 	public StreetNode getStreetNode(String label) {
 		return nodes.get(label);
 	}
 	
+	/**
+	 * Returns the node at the given position.
+	 * 
+	 * @param posString Position formatted as "latitude,longitude".
+	 * @return Node at the given position or null, if no node exists at the
+	 * position or the position cannot be parsed.
+	 */
 	public StreetNode getStreetNodeFromPosition(String posString) {
-		return posNodes.get(posString);
+		int sep = posString.indexOf(',');
+		
+		if (sep == -1) return null;
+		
+		try {
+			return getStreetNodeFromPosition(Double.parseDouble(posString.substring(0, sep)),
+					Double.parseDouble(posString.substring(sep + 1)));
+			
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+	
+	/**
+	 * Returns the node at the given position. Positions are compared with a
+	 * resolution of 1e-7 degrees.
+	 * 
+	 * @param lat Latitude of the position.
+	 * @param lon Longitude of the position.
+	 * @return Node at the given position or null, if no node exists at the
+	 * position.
+	 */
+	public StreetNode getStreetNodeFromPosition(double lat, double lon) {
+		int n = posNodes.get(positionKey(lat, lon));
+		return (n != LongIntHashMap.NO_VALUE) ? graph.getNode(n) : null;
+	}
+	
+	/**
+	 * Returns the node nearest to the given position.
+	 * 
+	 * @param pos Position (longitude as x, latitude as y).
+	 * @return Nearest node.
+	 */
+	public StreetNode getNearestStreetNode(Coordinate pos) {
+		return nodeGrid.getNearestNode(pos);
 	}
 	
-	@Override
-	public void update(Observable o, Object arg) {
-		streetsToUpdate.add((Street) o);
+	private static long positionKey(double lat, double lon) {
+		return LongIntHashMap.pack((int) Math.round(lat * 1e7), (int) Math.round(lon * 1e7));
 	}
 }
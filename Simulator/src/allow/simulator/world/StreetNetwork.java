@@ -0,0 +1,498 @@
+package allow.simulator.world;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import allow.simulator.util.Coordinate;
+import allow.simulator.util.Geometry;
+
+/**
+ * Street network as loaded from a file before creating nodes, segments, and
+ * streets of a StreetMap from it. Nodes are identified by their index.
+ * Streets are given by their starting and ending node, name, speed limit,
+ * and sequence of nodes (geometry) with precomputed lengths of the segments
+ * in between. The reversed street of each street is not stored but created
+ * by StreetMap.
+ *
+ * Networks can be read from the text format (.world files) and read from or
+ * written to a versioned binary format which is memory-mapped on loading:
+ *
+ * header: int magic, int version, int #nodes, int #streets, int #points,
+ *         int #bytes of labels, int #bytes of names, int reserved
+ * nodes: double[#nodes] x, double[#nodes] y
+ * streets: int[#streets] starting nodes, int[#streets] ending nodes,
+ *          double[#streets] speed limits in m/s,
+ *          int[#streets + 1] offsets into points, int[#points] points,
+ *          double[#points] lengths of the segment ending at a point in m
+ *          (0 for the first point of a street)
+ * strings: int[#nodes + 1] offsets, byte[] UTF-8 labels,
+ *          int[#streets + 1] offsets, byte[] UTF-8 names
+ *
+ * All values are stored in little-endian byte order.
+ *
+ * @author Andreas Poxrucker (DFKI)
+ *
+ */
+public final class StreetNetwork {
+	// Magic number ("ASNW") and version of the binary format.
+	public static final int MAGIC = 0x57534E41;
+	public static final int VERSION = 1;
+
+	// Conversion factor of speed limits of the text format (mph) to m/s.
+	public static final double MPH_TO_MPS = 1.609 / 3.6;
+
+	// Size of the header of the binary format in bytes.
+	private static final int HEADER_SIZE = 32;
+
+	// Initial capacity of arrays.
+	private static final int INITIAL_CAPACITY = 1024;
+
+	// Labels and positions per node.
+	private String[] labels;
+	private double[] x;
+	private double[] y;
+	private int nodes;
+
+	// Starting node, ending node, name, speed limit in m/s, and offset
+	// into points per street (plus total number of points).
+	private int[] from;
+	private int[] to;
+	private String[] names;
+	private double[] speeds;
+	private int[] pointOffsets;
+	private int streets;
+
+	// Nodes of the geometry of streets and lengths of the segments ending at them.
+	private int[] points;
+	private double[] lengths;
+
+	// Index of nodes by label.
+	private Map<String, Integer> nodeIndex;
+
+	/**
+	 * Constructor.
+	 * Creates a new empty street network.
+	 */
+	public StreetNetwork() {
+		labels = new String[INITIAL_CAPACITY];
+		x = new double[INITIAL_CAPACITY];
+		y = new double[INITIAL_CAPACITY];
+		from = new int[INITIAL_CAPACITY];
+		to = new int[INITIAL_CAPACITY];
+		names = new String[INITIAL_CAPACITY];
+		speeds = new double[INITIAL_CAPACITY];
+		pointOffsets = new int[INITIAL_CAPACITY + 1];
+		points = new int[INITIAL_CAPACITY];
+		lengths = new double[INITIAL_CAPACITY];
+		nodeIndex = new HashMap<String, Integer>();
+	}
+
+	/**
+	 * Adds a node.
+	 *
+	 * @param label Unique label of the node.
+	 * @param position Position of the node.
+	 * @return Index of the node.
+	 */
+	public int addNode(String label, Coordinate position) {
+
+		if (nodeIndex.containsKey(label))
+			throw new IllegalArgumentException("Error: Duplicate node label " + label);
+
+		if (nodes == labels.length) {
+			labels = Arrays.copyOf(labels, 2 * nodes);
+			x = Arrays.copyOf(x, 2 * nodes);
+			y = Arrays.copyOf(y, 2 * nodes);
+		}
+		labels[nodes] = label;
+		x[nodes] = position.x;
+		y[nodes] = position.y;
+		nodeIndex.put(label, nodes);
+		return nodes++;
+	}
+
+	/**
+	 * Adds a street computing the lengths of its segments from the positions
+	 * of its nodes.
+	 *
+	 * @param from Index of the starting node.
+	 * @param to Index of the ending node.
+	 * @param name Name of the street.
+	 * @param speed Speed limit in m/s.
+	 * @param geometry Indices of the nodes of the street including starting
+	 *        and ending node.
+	 * @return Index of the street.
+	 */
+	public int addStreet(int from, int to, String name, double speed, int[] geometry) {
+
+		if (streets == this.from.length) {
+			this.from = Arrays.copyOf(this.from, 2 * streets);
+			this.to = Arrays.copyOf(this.to, 2 * streets);
+			names = Arrays.copyOf(names, 2 * streets);
+			speeds = Arrays.copyOf(speeds, 2 * streets);
+			pointOffsets = Arrays.copyOf(pointOffsets, 2 * streets + 1);
+		}
+		int offset = pointOffsets[streets];
+
+		if (offset + geometry.length > points.length) {
+			int capacity = Math.max(2 * points.length, offset + geometry.length);
+			points = Arrays.copyOf(points, capacity);
+			lengths = Arrays.copyOf(lengths, capacity);
+		}
+
+		for (int i = 0; i < geometry.length; i++) {
+			int node = geometry[i];
+			checkNode(node);
+			points[offset + i] = node;
+			lengths[offset + i] = (i == 0) ? 0.0 : Geometry.haversine(getPosition(geometry[i - 1]), getPosition(node));
+		}
+		checkNode(from);
+		checkNode(to);
+		this.from[streets] = from;
+		this.to[streets] = to;
+		names[streets] = name;
+		speeds[streets] = speed;
+		pointOffsets[streets + 1] = offset + geometry.length;
+		return streets++;
+	}
+
+	/**
+	 * Returns the number of nodes.
+	 *
+	 * @return Number of nodes.
+	 */
+	public int getNumberOfNodes() {
+		return nodes;
+	}
+
+	public String getLabel(int node) {
+		return labels[node];
+	}
+
+	public Coordinate getPosition(int node) {
+		return new Coordinate(x[node], y[node]);
+	}
+
+	/**
+	 * Returns the index of a node given its label.
+	 *
+	 * @param label Label of the node.
+	 * @return Index of the node or -1, if there is no node with given label.
+	 */
+	public int getNode(String label) {
+		Integer index = nodeIndex.get(label);
+		return (index != null) ? index : -1;
+	}
+
+	/**
+	 * Returns the number of streets.
+	 *
+	 * @return Number of streets.
+	 */
+	public int getNumberOfStreets() {
+		return streets;
+	}
+
+	public int getStartingNode(int street) {
+		return from[street];
+	}
+
+	public int getEndingNode(int street) {
+		return to[street];
+	}
+
+	public String getName(int street) {
+		return names[street];
+	}
+
+	public double getSpeedLimit(int street) {
+		return speeds[street];
+	}
+
+	/**
+	 * Returns the index of the first point of a street. The points of street
+	 * s are the points with indices getFirstPoint(s) (inclusive) to
+	 * getFirstPoint(s + 1) (exclusive).
+	 *
+	 * @param street Index of the street.
+	 * @return Index of the first point of the street.
+	 */
+	public int getFirstPoint(int street) {
+		return pointOffsets[street];
+	}
+
+	public int getPoint(int point) {
+		return points[point];
+	}
+
+	/**
+	 * Returns the length of the segment ending at the given point.
+	 *
+	 * @param point Index of the point.
+	 * @return Length of the segment in m (0 for the first point of a street).
+	 */
+	public double getLength(int point) {
+		return lengths[point];
+	}
+
+	/**
+	 * Reads a street network from a file in the text format or the binary
+	 * format (see isBinary(...)).
+	 *
+	 * @param path Path to the file.
+	 * @return Street network.
+	 * @throws IOException
+	 */
+	public static StreetNetwork read(Path path) throws IOException {
+		return isBinary(path) ? readBinary(path) : readText(path);
+	}
+
+	/**
+	 * Checks whether a file starts with the magic number of the binary format.
+	 *
+	 * @param path Path to the file.
+	 * @return True, if the file is in binary format, false otherwise.
+	 * @throws IOException
+	 */
+	public static boolean isBinary(Path path) throws IOException {
+
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			ByteBuffer header = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+
+			while (header.hasRemaining()) {
+
+				if (channel.read(header) == -1) return false;
+			}
+			return header.getInt(0) == MAGIC;
+		}
+	}
+
+	/**
+	 * Reads a street network from a file in text format. Speed limits are
+	 * converted from mph to m/s.
+	 *
+	 * @param path Path to the file.
+	 * @return Street network.
+	 * @throws IOException
+	 */
+	public static StreetNetwork readText(Path path) throws IOException {
+		List<String> lines = Files.readAllLines(path);
+		StreetNetwork network = new StreetNetwork();
+		int offset = 0;
+
+		// Read nodes.
+		String tokens[] = lines.get(offset++).split(" ");
+		int numberOfNodes = Integer.parseInt(tokens[1]);
+
+		for (int i = 0; i < numberOfNodes; i++) {
+			tokens = lines.get(offset++).split(";;");
+			network.addNode(tokens[0], new Coordinate(Double.parseDouble(tokens[1]), Double.parseDouble(tokens[2])));
+		}
+		offset++;
+
+		// Read links.
+		tokens = lines.get(offset++).split(" ");
+		int numberOfLinks = Integer.parseInt(tokens[1]);
+
+		for (int i = 0; i < numberOfLinks; i++) {
+			String line = lines.get(offset++);
+			tokens = line.split(";;");
+			String subSegs[] = tokens[5].split(" ");
+			int geometry[] = new int[subSegs.length];
+
+			for (int j = 0; j < subSegs.length; j++) {
+				geometry[j] = network.resolve(subSegs[j], line);
+			}
+			network.addStreet(network.resolve(tokens[1], line), network.resolve(tokens[2], line),
+					tokens[3], Double.parseDouble(tokens[4]) * MPH_TO_MPS, geometry);
+		}
+		return network;
+	}
+
+	/**
+	 * Reads a street network from a file in binary format by mapping it into
+	 * memory.
+	 *
+	 * @param path Path to the file.
+	 * @return Street network.
+	 * @throws IOException
+	 */
+	public static StreetNetwork readBinary(Path path) throws IOException {
+		MappedByteBuffer buffer;
+
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+		if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC)
+			throw new IOException("Error: " + path + " is not a binary street network.");
+		int version = buffer.getInt();
+
+		if (version != VERSION)
+			throw new IOException("Error: Unsupported version " + version + " of binary street network " + path);
+		int nNodes = buffer.getInt();
+		int nStreets = buffer.getInt();
+		int nPoints = buffer.getInt();
+		int labelBytes = buffer.getInt();
+		int nameBytes = buffer.getInt();
+		buffer.getInt();
+
+		StreetNetwork network = new StreetNetwork();
+		network.nodes = nNodes;
+		network.x = readDoubles(buffer, nNodes);
+		network.y = readDoubles(buffer, nNodes);
+		network.streets = nStreets;
+		network.from = readInts(buffer, nStreets);
+		network.to = readInts(buffer, nStreets);
+		network.speeds = readDoubles(buffer, nStreets);
+		network.pointOffsets = readInts(buffer, nStreets + 1);
+		network.points = readInts(buffer, nPoints);
+		network.lengths = readDoubles(buffer, nPoints);
+		network.labels = readStrings(buffer, nNodes, labelBytes);
+		network.names = readStrings(buffer, nStreets, nameBytes);
+		network.nodeIndex = new HashMap<String, Integer>(2 * nNodes);
+
+		for (int i = 0; i < nNodes; i++) {
+			network.nodeIndex.put(network.labels[i], i);
+		}
+		return network;
+	}
+
+	/**
+	 * Writes the street network to a file in binary format.
+	 *
+	 * @param path Path to the file.
+	 * @throws IOException
+	 */
+	public void write(Path path) throws IOException {
+		int nPoints = pointOffsets[streets];
+		byte[][] labelBytes = encode(labels, nodes);
+		byte[][] nameBytes = encode(names, streets);
+		int labelSize = size(labelBytes);
+		int nameSize = size(nameBytes);
+		long size = HEADER_SIZE
+				+ 16L * nodes
+				+ 16L * streets + 4L * (streets + 1)
+				+ 12L * nPoints
+				+ 4L * (nodes + 1) + labelSize
+				+ 4L * (streets + 1) + nameSize;
+
+		if (size > Integer.MAX_VALUE)
+			throw new IOException("Error: Street network too large for binary format.");
+		ByteBuffer buffer = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.putInt(MAGIC).putInt(VERSION).putInt(nodes).putInt(streets).putInt(nPoints)
+				.putInt(labelSize).putInt(nameSize).putInt(0);
+		buffer.asDoubleBuffer().put(x, 0, nodes);
+		buffer.position(buffer.position() + 8 * nodes);
+		buffer.asDoubleBuffer().put(y, 0, nodes);
+		buffer.position(buffer.position() + 8 * nodes);
+		writeInts(buffer, from, streets);
+		writeInts(buffer, to, streets);
+		buffer.asDoubleBuffer().put(speeds, 0, streets);
+		buffer.position(buffer.position() + 8 * streets);
+		writeInts(buffer, pointOffsets, streets + 1);
+		writeInts(buffer, points, nPoints);
+		buffer.asDoubleBuffer().put(lengths, 0, nPoints);
+		buffer.position(buffer.position() + 8 * nPoints);
+		writeStrings(buffer, labelBytes);
+		writeStrings(buffer, nameBytes);
+		buffer.flip();
+
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		}
+	}
+
+	private int resolve(String label, String line) {
+		int node = getNode(label);
+
+		if (node == -1)
+			throw new IllegalArgumentException("Error: Unknown node " + label + " in line " + line);
+		return node;
+	}
+
+	private void checkNode(int node) {
+
+		if (node < 0 || node >= nodes)
+			throw new IllegalArgumentException("Error: Unknown node index " + node);
+	}
+
+	private static double[] readDoubles(ByteBuffer buffer, int n) {
+		double[] values = new double[n];
+		buffer.asDoubleBuffer().get(values);
+		buffer.position(buffer.position() + 8 * n);
+		return values;
+	}
+
+	private static int[] readInts(ByteBuffer buffer, int n) {
+		int[] values = new int[n];
+		buffer.asIntBuffer().get(values);
+		buffer.position(buffer.position() + 4 * n);
+		return values;
+	}
+
+	private static String[] readStrings(ByteBuffer buffer, int n, int bytes) {
+		int[] offsets = readInts(buffer, n + 1);
+		byte[] data = new byte[bytes];
+		buffer.get(data);
+		String[] strings = new String[n];
+
+		for (int i = 0; i < n; i++) {
+			strings[i] = new String(data, offsets[i], offsets[i + 1] - offsets[i], StandardCharsets.UTF_8);
+		}
+		return strings;
+	}
+
+	private static void writeInts(ByteBuffer buffer, int[] values, int n) {
+		buffer.asIntBuffer().put(values, 0, n);
+		buffer.position(buffer.position() + 4 * n);
+	}
+
+	private static void writeStrings(ByteBuffer buffer, byte[][] strings) {
+		int offset = 0;
+		buffer.putInt(offset);
+
+		for (byte[] s : strings) {
+			offset += s.length;
+			buffer.putInt(offset);
+		}
+
+		for (byte[] s : strings) {
+			buffer.put(s);
+		}
+	}
+
+	private static byte[][] encode(String[] strings, int n) {
+		byte[][] encoded = new byte[n][];
+
+		for (int i = 0; i < n; i++) {
+			encoded[i] = String.valueOf(strings[i]).getBytes(StandardCharsets.UTF_8);
+		}
+		return encoded;
+	}
+
+	private static int size(byte[][] strings) {
+		int size = 0;
+
+		for (byte[] s : strings) {
+			size += s.length;
+		}
+		return size;
+	}
+}
@@ -0,0 +1,407 @@
+package allow.simulator.world;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import allow.simulator.util.Coordinate;
+import allow.simulator.util.Geometry;
+
+/**
+ * Computes fastest paths on the street graph of a street map using
+ * bidirectional A* search. Travel times of segments are given by their
+ * length and the speed of the respective mode, where driving speeds reflect
+ * the current congestion (see StreetSegment.getDrivingSpeed()). The
+ * heuristic is the great-circle distance to the target divided by the
+ * maximal speed of the mode, which is consistent since segment lengths are
+ * great-circle distances as well. Both searches use the average of the
+ * forward and backward potentials, such that the search can stop as soon as
+ * the sum of the minimal keys of both queues reaches the length of the best
+ * path found.
+ *
+ * A router keeps its search state in arrays indexed by node which are reused
+ * across queries and is therefore not thread-safe (see Pool).
+ *
+ * @author Andreas Poxrucker (DFKI)
+ *
+ */
+public final class StreetRouter {
+
+	/**
+	 * Modes of travelling on streets.
+	 */
+	public enum Mode {
+		CAR,
+		BICYCLE,
+		WALK
+	}
+
+	/**
+	 * Pool of routers to be shared by threads planning journeys
+	 * concurrently. Routers are created on demand up to the given number.
+	 *
+	 * @author Andreas Poxrucker (DFKI)
+	 *
+	 */
+	public static final class Pool {
+		// Street map to create routers for.
+		private final StreetMap map;
+
+		// Idle routers.
+		private final BlockingQueue<StreetRouter> idle;
+
+		// Number of routers which may still be created.
+		private final AtomicInteger remaining;
+
+		/**
+		 * Constructor.
+		 * Creates a new pool of routers on the given street map.
+		 *
+		 * @param map Street map to route on.
+		 * @param size Maximal number of routers.
+		 */
+		public Pool(StreetMap map, int size) {
+			this.map = map;
+			idle = new ArrayBlockingQueue<StreetRouter>(size);
+			remaining = new AtomicInteger(size);
+		}
+
+		/**
+		 * Returns an idle router, creating one if possible, or waits for a
+		 * router to be released.
+		 *
+		 * @return Router.
+		 */
+		public StreetRouter acquire() {
+			StreetRouter router = idle.poll();
+
+			if (router != null) return router;
+
+			if (remaining.getAndDecrement() > 0) return new StreetRouter(map);
+			remaining.incrementAndGet();
+
+			try {
+				return idle.take();
+
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Error: Interrupted while waiting for a router.");
+			}
+		}
+
+		/**
+		 * Returns a router to the pool.
+		 *
+		 * @param router Router acquired before.
+		 */
+		public void release(StreetRouter router) {
+			idle.offer(router);
+		}
+	}
+
+	// Street map and its graph.
+	private final StreetMap map;
+	private final StreetGraph graph;
+
+	// Maximal speed limit of all segments of the graph.
+	private final double maxSpeed;
+
+	// Search state per node of the forward and backward search.
+	private final double[] distF;
+	private final double[] distR;
+	private final int[] parentF;
+	private final int[] parentR;
+	private final int[] stampF;
+	private final int[] stampR;
+	private final boolean[] settledF;
+	private final boolean[] settledR;
+
+	// Priority queues of the forward and backward search.
+	private final NodeHeap heapF;
+	private final NodeHeap heapR;
+
+	// Number of the current query (marks valid search state).
+	private int query;
+
+	// Positions of source and target of the current query.
+	private Coordinate sourcePos;
+	private Coordinate targetPos;
+	private double heuristicSpeed;
+
+	/**
+	 * Constructor.
+	 * Creates a new router on the street graph of the given street map.
+	 *
+	 * @param map Street map to route on.
+	 */
+	public StreetRouter(StreetMap map) {
+		this.map = map;
+		graph = map.getStreetGraph();
+		int n = graph.getNumberOfNodes();
+		double max = StreetSegment.MIN_DRIVING_SPEED;
+
+		for (int i = 0; i < graph.getNumberOfSegments(); i++) {
+			max = Math.max(max, graph.getMaxSpeed(i));
+		}
+		maxSpeed = max;
+		distF = new double[n];
+		distR = new double[n];
+		parentF = new int[n];
+		parentR = new int[n];
+		stampF = new int[n];
+		stampR = new int[n];
+		settledF = new boolean[n];
+		settledR = new boolean[n];
+		heapF = new NodeHeap(n);
+		heapR = new NodeHeap(n);
+	}
+
+	/**
+	 * Computes the fastest path between two nodes.
+	 *
+	 * @param source Starting node.
+	 * @param target Destination node.
+	 * @param mode Mode of travelling.
+	 * @param path List to add segments of the path to.
+	 * @return Travel time along the path in seconds or -1, if there is no path.
+	 */
+	public double route(StreetNode source, StreetNode target, Mode mode, List<StreetSegment> path) {
+		int s = graph.indexOf(source);
+		int t = graph.indexOf(target);
+
+		if (s == -1 || t == -1)
+			throw new IllegalArgumentException("Error: Nodes are not part of the street graph.");
+
+		if (s == t) return 0.0;
+		startQuery(s, t, mode);
+		double best = Double.MAX_VALUE;
+		int meeting = -1;
+
+		while (!heapF.isEmpty() && !heapR.isEmpty()) {
+
+			if (heapF.peekKey() + heapR.peekKey() >= best) break;
+
+			if (heapF.size() <= heapR.size()) {
+				// Expand forward search.
+				int u = heapF.poll();
+				settledF[u] = true;
+
+				for (int seg = graph.getFirstOutSegment(u); seg < graph.getFirstOutSegment(u + 1); seg++) {
+					int v = graph.getTarget(seg);
+					double d = distF[u] + getTravelTime(seg, mode);
+
+					if (stampF[v] != query) {
+						init(v, stampF, distF, settledF);
+
+					} else if (settledF[v] || d >= distF[v]) {
+						continue;
+					}
+					distF[v] = d;
+					parentF[v] = seg;
+					heapF.update(v, d + potential(v));
+
+					if (stampR[v] == query && d + distR[v] < best) {
+						best = d + distR[v];
+						meeting = v;
+					}
+				}
+
+			} else {
+				// Expand backward search.
+				int u = heapR.poll();
+				settledR[u] = true;
+
+				for (int i = 0; i < graph.getInDegree(u); i++) {
+					int seg = graph.getInSegment(u, i);
+					int v = graph.getSource(seg);
+					double d = distR[u] + getTravelTime(seg, mode);
+
+					if (stampR[v] != query) {
+						init(v, stampR, distR, settledR);
+
+					} else if (settledR[v] || d >= distR[v]) {
+						continue;
+					}
+					distR[v] = d;
+					parentR[v] = seg;
+					heapR.update(v, d - potential(v));
+
+					if (stampF[v] == query && d + distF[v] < best) {
+						best = d + distF[v];
+						meeting = v;
+					}
+				}
+			}
+		}
+
+		if (meeting == -1) return -1.0;
+		addPath(s, t, meeting, path);
+		return best;
+	}
+
+	/**
+	 * Returns the travel time on a segment of the graph.
+	 *
+	 * @param segment Index of the segment.
+	 * @param mode Mode of travelling.
+	 * @return Travel time in seconds.
+	 */
+	public double getTravelTime(int segment, Mode mode) {
+
+		switch (mode) {
+
+		case CAR:
+			return graph.getLength(segment) / map.getStreetSegment(segment).getDrivingSpeed();
+
+		case BICYCLE:
+			return graph.getLength(segment) / StreetSegment.CYCLING_SPEED;
+
+		case WALK:
+		default:
+			return graph.getLength(segment) / StreetSegment.WALKING_SPEED;
+		}
+	}
+
+	private void startQuery(int s, int t, Mode mode) {
+
+		if (++query == 0) {
+			// Reset stamps on overflow.
+			Arrays.fill(stampF, 0);
+			Arrays.fill(stampR, 0);
+			query = 1;
+		}
+		sourcePos = graph.getNode(s).getPosition();
+		targetPos = graph.getNode(t).getPosition();
+		heuristicSpeed = (mode == Mode.CAR) ? maxSpeed
+				: ((mode == Mode.BICYCLE) ? StreetSegment.CYCLING_SPEED : StreetSegment.WALKING_SPEED);
+		heapF.clear();
+		heapR.clear();
+		init(s, stampF, distF, settledF);
+		distF[s] = 0.0;
+		heapF.update(s, potential(s));
+		init(t, stampR, distR, settledR);
+		distR[t] = 0.0;
+		heapR.update(t, -potential(t));
+	}
+
+	private void init(int node, int[] stamp, double[] dist, boolean[] settled) {
+		stamp[node] = query;
+		dist[node] = Double.MAX_VALUE;
+		settled[node] = false;
+	}
+
+	// Average of the forward potential (estimated time to target) and the
+	// negated backward potential (estimated time from source).
+	private double potential(int node) {
+		Coordinate p = graph.getNode(node).getPosition();
+		return (Geometry.haversine(p, targetPos) - Geometry.haversine(sourcePos, p)) / (2.0 * heuristicSpeed);
+	}
+
+	private void addPath(int s, int t, int meeting, List<StreetSegment> path) {
+		int start = path.size();
+
+		for (int v = meeting; v != s; v = graph.getSource(parentF[v])) {
+			path.add(map.getStreetSegment(parentF[v]));
+		}
+
+		// Segments of the forward search were added in reverse order.
+		for (int i = start, j = path.size() - 1; i < j; i++, j--) {
+			StreetSegment temp = path.get(i);
+			path.set(i, path.get(j));
+			path.set(j, temp);
+		}
+
+		for (int v = meeting; v != t; v = graph.getTarget(parentR[v])) {
+			path.add(map.getStreetSegment(parentR[v]));
+		}
+	}
+
+	// Indexed binary min-heap of nodes supporting decrease-key.
+	private static final class NodeHeap {
+		private final int[] nodes;
+		private final double[] keys;
+		private final int[] positions;
+		private int size;
+
+		NodeHeap(int capacity) {
+			nodes = new int[capacity];
+			keys = new double[capacity];
+			positions = new int[capacity];
+			Arrays.fill(positions, -1);
+		}
+
+		boolean isEmpty() {
+			return size == 0;
+		}
+
+		int size() {
+			return size;
+		}
+
+		double peekKey() {
+			return keys[0];
+		}
+
+		void clear() {
+
+			for (int i = 0; i < size; i++) {
+				positions[nodes[i]] = -1;
+			}
+			size = 0;
+		}
+
+		void update(int node, double key) {
+			int pos = positions[node];
+
+			if (pos == -1) {
+				pos = size++;
+			}
+			siftUp(pos, node, key);
+		}
+
+		int poll() {
+			int top = nodes[0];
+			positions[top] = -1;
+			size--;
+
+			if (size > 0) siftDown(0, nodes[size], keys[size]);
+			return top;
+		}
+
+		private void siftUp(int pos, int node, double key) {
+
+			while (pos > 0) {
+				int parent = (pos - 1) >> 1;
+
+				if (keys[parent] <= key) break;
+				set(pos, nodes[parent], keys[parent]);
+				pos = parent;
+			}
+			set(pos, node, key);
+		}
+
+		private void siftDown(int pos, int node, double key) {
+
+			while (true) {
+				int child = 2 * pos + 1;
+
+				if (child >= size) break;
+
+				if (child + 1 < size && keys[child + 1] < keys[child]) child++;
+
+				if (key <= keys[child]) break;
+				set(pos, nodes[child], keys[child]);
+				pos = child;
+			}
+			set(pos, node, key);
+		}
+
+		private void set(int pos, int node, double key) {
+			nodes[pos] = node;
+			keys[pos] = key;
+			positions[node] = pos;
+		}
+	}
+}
@@ -1,16 +1,16 @@
 package allow.simulator.world;
 
-import java.util.Observable;
-
 import allow.simulator.util.Coordinate;
 
 /**
- * Represents a segment of a street.
+ * Represents a segment of a street. The number of vehicles on the segment is
+ * kept in the SegmentOccupancy of the street map the segment is registered
+ * to.
  * 
  * @author Andreas Poxrucker (DFKI)
  *
  */
-public class StreetSegment extends Observable implements Comparable<StreetSegment> {
+public class StreetSegment implements Comparable<StreetSegment> {
 	// Minimum driving speed on segment.
 	public static final double MIN_DRIVING_SPEED = 0.5;
 
@@ -35,14 +35,23 @@ public class StreetSegment extends Observable implements Comparable<StreetSegmen
 	// Maximal speed on segment.
 	private double maxSpeed;
 	
-	// Possible speed.
-	private double drivingSpeed;
-	
 	// Length of segment.
 	private double length;
 	
-	// Number of vehicles on the segment.
-	private int numberOfVehicles;
+	// Change of longitude (x) and latitude (y) in degrees per metre travelled
+	// along the segment, such that positions are interpolated linearly
+	// between the end points.
+	private double dirX;
+	private double dirY;
+	
+	// Occupancy of the street map the segment is registered to and slot of
+	// the segment.
+	private SegmentOccupancy occupancy;
+	private int slot;
+	
+	// Street the segment belongs to and index of the segment in the street.
+	private Street street;
+	private int streetIndex;
 	
 	/**
 	 * Creates a new street segment given its adjacent nodes, maximum allowed
@@ -60,7 +69,12 @@ public class StreetSegment extends Observable implements Comparable<StreetSegmen
 		this.end = end;
 		this.maxSpeed = maxSpeed;
 		this.length = length;
-		updatePossibleSpeed(0);
+		slot = -1;
+		
+		if (length > 0.0) {
+			dirX = (end.getPosition().x - start.getPosition().x) / length;
+			dirY = (end.getPosition().y - start.getPosition().y) / length;
+		}
 	}
 	
 	/**
@@ -73,30 +87,121 @@ public class StreetSegment extends Observable implements Comparable<StreetSegmen
 	}
 	
 	/**
-	 * Returns the current number of vehicles on the segment.
+	 * Returns the number of vehicles on the segment as of the last commit.
+	 * Vehicles added or removed during the current step are not included.
+	 * In a sharded simulation, vehicles simulated by other shards are
+	 * included.
 	 * 
 	 * @return Current number of vehicles.
 	 */
 	public int getNumberOfVehicles() {
-		return numberOfVehicles;
+		return (occupancy != null) ? occupancy.getTotalVehicles(slot) : 0;
+	}
+	
+	/**
+	 * Returns the number of vehicles on the segment as of the last commit
+	 * excluding vehicles simulated by other shards.
+	 * 
+	 * @return Number of vehicles simulated by this simulation.
+	 */
+	public int getNumberOfLocalVehicles() {
+		return (occupancy != null) ? occupancy.getVehicles(slot) : 0;
+	}
+	
+	/**
+	 * Sets the number of vehicles on the segment which are simulated by other
+	 * shards of a sharded simulation. Must not be called concurrently to
+	 * entities being executed.
+	 * 
+	 * @param n Number of vehicles simulated by other shards.
+	 */
+	public void setRemoteVehicles(int n) {
+		getOccupancy().setRemoteVehicles(slot, n);
 	}
 
 	/**
-	 * Increases number of vehicles on the segment by 1.
+	 * Increases number of vehicles on the segment by 1, i.e. a vehicle enters
+	 * the segment (see StreetMap.updateHotspots(...)). The change becomes
+	 * visible after calling StreetMap.commitVehicleChanges().
 	 */
-	public synchronized void addVehicle() {
-		numberOfVehicles++;
-		setChanged();
-		notifyObservers();
+	public void addVehicle() {
+		getOccupancy().enterVehicle(slot);
 	}
 
 	/**
-	 * Decreases number of vehicles on the segment by 1.
+	 * Decreases number of vehicles on the segment by 1. The change becomes
+	 * visible after calling StreetMap.commitVehicleChanges().
 	 */
-	public synchronized void removeVehicle() {
-		numberOfVehicles--;
-		setChanged();
-		notifyObservers();
+	public void removeVehicle() {
+		getOccupancy().changeVehicles(slot, -1);
+	}
+	
+	/**
+	 * Sets number of vehicles on the segment, e.g. when restoring a
+	 * checkpoint. The change becomes visible after calling
+	 * StreetMap.commitVehicleChanges().
+	 * 
+	 * @param n Number of vehicles on the segment.
+	 */
+	public void setNumberOfVehicles(int n) {
+		SegmentOccupancy o = getOccupancy();
+		int delta = n - o.getVehicles(slot) - o.getChanges(slot);
+		
+		if (delta != 0) {
+			o.changeVehicles(slot, delta);
+		}
+	}
+	
+	private SegmentOccupancy getOccupancy() {
+		
+		if (occupancy == null)
+			throw new IllegalStateException("Error: " + this + " is not registered to a street map.");
+		return occupancy;
+	}
+	
+	/**
+	 * Registers the segment to the occupancy of a street map.
+	 * 
+	 * @param occupancy Occupancy of the street map.
+	 * @param slot Slot of the segment.
+	 */
+	void setOccupancy(SegmentOccupancy occupancy, int slot) {
+		this.occupancy = occupancy;
+		this.slot = slot;
+	}
+	
+	/**
+	 * Returns the slot of the segment in the occupancy of the street map it
+	 * is registered to.
+	 * 
+	 * @return Slot of the segment or -1, if the segment is not registered.
+	 */
+	int getSlot() {
+		return slot;
+	}
+	
+	void setStreet(Street street, int streetIndex) {
+		this.street = street;
+		this.streetIndex = streetIndex;
+	}
+	
+	/**
+	 * Returns the street the segment belongs to.
+	 * 
+	 * @return Street of the segment or null, if the segment does not belong
+	 * to a street (e.g. segments of public transportation traces).
+	 */
+	public Street getStreet() {
+		return street;
+	}
+	
+	/**
+	 * Returns the index of the segment among the sub segments of its street.
+	 * 
+	 * @return Index of the segment in its street.
+	 */
+	public int getStreetIndex() {
+		return streetIndex;
 	}
 	
 	public StreetNode getStartingNode() {
@@ -125,6 +230,21 @@ public class StreetSegment extends Observable implements Comparable<StreetSegmen
 		return end.getPosition();
 	}
 	
+	/**
+	 * Returns the position at a given distance from the starting point along
+	 * the segment by linear interpolation between its end points.
+	 * 
+	 * @param distance Distance from the starting point in m.
+	 * @param pos Coordinate to store the position in.
+	 * @return Position at the given distance.
+	 */
+	public Coordinate getPosition(double distance, Coordinate pos) {
+		Coordinate p = start.getPosition();
+		pos.x = p.x + distance * dirX;
+		pos.y = p.y + distance * dirY;
+		return pos;
+	}
+	
 	/**
 	 * Returns the length of the segment.
 	 * 
@@ -144,12 +264,16 @@ public class StreetSegment extends Observable implements Comparable<StreetSegmen
 	}
 	
 	/**
-	 * Returns the currently possible driving speed on the segment.
+	 * Returns the currently possible driving speed on the segment as of the
+	 * last call of StreetMap.updateStreetSegments(). Segments which are not
+	 * registered to a street map return the speed of an empty segment.
 	 * 
 	 * @return Currently possible driving speed on the segment in m/s.
 	 */
 	public double getDrivingSpeed() {
-		return drivingSpeed;
+		
+		if (occupancy != null) return occupancy.getSpeed(slot);
+		return (maxSpeed - MIN_DRIVING_SPEED) * LinkPerformance.SIGMOID.getSpeedFactor(0) + MIN_DRIVING_SPEED;
 	}
 	
 	/**
@@ -181,19 +305,6 @@ public class StreetSegment extends Observable implements Comparable<StreetSegmen
 		return CYCLING_SPEED;
 	}
 	
-	public void updatePossibleSpeed(double carsPerMeter) {
-		
-		if (numberOfVehicles < 0)
-			throw new IllegalStateException("Negative number of vehicles on segment");
-		//System.out.println(carsPerMeter);
-		// v = (v_max - v_min) / (1 + exp(k * n * carsPerMeter)) + v_min
-		// k : constant 
-		// n : scaling of impact of single car
-		// drivingSpeed = (maxSpeed - MIN_DRIVING_SPEED) / (1 + Math.exp(7 * carsPerMeter - 3)) + MIN_DRIVING_SPEED;		
-		// drivingSpeed = (maxSpeed - MIN_DRIVING_SPEED) / (1 + Math.exp(5 * carsPerMeter - 4)) + MIN_DRIVING_SPEED;
-		drivingSpeed = (maxSpeed - MIN_DRIVING_SPEED) / (1 + Math.exp(9 * carsPerMeter - 7)) + MIN_DRIVING_SPEED;
-	}
-	
 	@Override
 	public int compareTo(StreetSegment o) {
 		
@@ -0,0 +1,35 @@
+package allow.simulator.world;
+
+/**
+ * Models of moving cars along street segments available to the simulation.
+ *
+ * @author Andreas Poxrucker (DFKI)
+ *
+ */
+public enum TrafficModel {
+
+	/**
+	 * Cars advance along their path in every step at the current driving
+	 * speed of the segment they are on (see StreetSegment.getDrivingSpeed()).
+	 */
+	STEP,
+
+	/**
+	 * Cars are moved through first-in-first-out queues of street segments
+	 * with limited storage and flow capacity only when they leave a segment
+	 * (see LinkQueueModel).
+	 */
+	QUEUE;
+
+	public static TrafficModel fromString(String modelString) {
+		String temp = modelString.toUpperCase().trim();
+
+		if (temp.equals("STEP")) {
+			return STEP;
+		} else if (temp.equals("QUEUE")) {
+			return QUEUE;
+		} else {
+			throw new IllegalArgumentException("Error: Unknown traffic model " + modelString + ".");
+		}
+	}
+}
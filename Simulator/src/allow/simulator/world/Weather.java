@@ -161,7 +161,24 @@ public class Weather {
 		this.time = time;
 		loadModel(path);
 	}
-	
+
+	/**
+	 * Constructor.
+	 * Creates a new instance of a weather model sharing the (immutable)
+	 * weather states of another instance, such that the model is loaded only
+	 * once for several simulations with the same starting year.
+	 *
+	 * @param model Weather model to share weather states with.
+	 * @param time Time of the simulation to simulate changes.
+	 */
+	public Weather(Weather model, Time time) {
+
+		if (model.time.getCurrentDateTime().getYear() != time.getCurrentDateTime().getYear())
+			throw new IllegalArgumentException("Error: Weather model was loaded for a different year.");
+		this.time = time;
+		this.model = model.model;
+	}
+
 	/**
 	 * Returns the current state of the weather.
 	 * 
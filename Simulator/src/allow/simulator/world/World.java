@@ -1,18 +1,19 @@
 package allow.simulator.world;
 
-import java.io.IOException;
-import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import allow.simulator.entity.Entity;
 import allow.simulator.entity.UrbanMobilitySystem;
+import allow.simulator.entity.relation.DistanceRelation;
 
 /**
- * Abstract class representing a simulated world.
+ * Abstract class representing a simulated world. Persons are kept in
+ * spatial hashes which are updated from position changes of persons
+ * collected by updateGrid(). Entities add themselves to a queue when their
+ * position changes, such that updateGrid() only visits moved entities.
  * 
  * @author Andreas Poxrucker (DFKI)
  *
@@ -20,7 +21,7 @@ import allow.simulator.entity.UrbanMobilitySystem;
 public abstract class World implements IWorld {
 	
 	// Entities of the simulated world grouped by entity type.
-	protected Map<Entity.Type, Map<Long, Entity>> entities;
+	protected EntityRegistry entities;
 		
 	// Street network.
 	protected StreetMap streetNetwork;
@@ -29,61 +30,92 @@ public abstract class World implements IWorld {
 	// coordinate space.
 	protected WorldTransformation transformation;
 	
+	// Size in meters of cells of the grid for neighbourhood queries, which
+	// equals the radius of distance relations, such that their queries visit
+	// 3 x 3 cells.
+	public static final double NEIGHBOURHOOD_CELL_SIZE = DistanceRelation.DISTANCE;
+	
+	// Grid of persons for neighbourhood queries.
+	private MetricGrid neighbourhood;
+	
+	// Spatial hashes of persons including the neighbourhood grid.
+	private List<SpatialHash> grids;
+	
+	// Entities whose position changed since the last call of updateGrid().
+	private Queue<Entity> moved;
+	
 	/**
 	 * Constructor.
-	 * Creates new World loading the street network encoded in mapUrl.
+	 * Creates new World on top of the given street network.
 	 *  
-	 * @param mapUrl File containing the street network.
-	 * @throws IOException 
+	 * @param streetNetwork Street network of the world.
 	 */
-	public World(Path worldConfig) throws IOException {
-		// Prepare entity mapping.
-		entities = new ConcurrentHashMap<Entity.Type, Map<Long, Entity>>();
+	public World(StreetMap streetNetwork) {
+		// Prepare entity registry.
+		entities = new EntityRegistry();
 		
-		// Load map from file.
-		streetNetwork = new StreetMap(worldConfig);
+		// Set street network.
+		this.streetNetwork = streetNetwork;
 		
 		// Create (unit) transformation.
 		transformation = new WorldTransformation();
+		
+		// Create grid for neighbourhood queries.
+		neighbourhood = new MetricGrid(streetNetwork.getDimensions(), NEIGHBOURHOOD_CELL_SIZE);
+		grids = new ArrayList<SpatialHash>(2);
+		grids.add(neighbourhood);
+		moved = new ConcurrentLinkedQueue<Entity>();
 	}
 	
 	/**
-	 * Adds a new Entity to the simulated world.
+	 * Adds a spatial hash which is kept up to date with the positions of
+	 * persons. Must be called before entities are added.
+	 * 
+	 * @param grid Spatial hash to add.
+	 */
+	protected void addGrid(SpatialHash grid) {
+		grids.add(grid);
+	}
+	
+	/**
+	 * Adds a new Entity to the simulated world. Must not be called
+	 * concurrently to entities being executed.
 	 * 
 	 * @param e Entity to add.
 	 */
 	@Override
 	public void addEntity(Entity e) {
-		// Get mapping of entity type.
-		Map<Long, Entity> entitiesOfType = entities.get(e.getType());
+		entities.add(e);
+		e.setMovedEntities(moved);
+		
+		// Position changes before the entity was added are propagated by
+		// the next update.
+		if (e.hasPositionChanged()) moved.add(e);
 		
-		if (entitiesOfType == null) {
-			entitiesOfType = new ConcurrentHashMap<Long, Entity>();
-			entities.put(e.getType(), entitiesOfType);
+		if (e.getType() == Entity.Type.PERSON) {
+			
+			for (SpatialHash grid : grids) grid.add(e);
 		}
-		if (entitiesOfType.get(e.getId()) != null) 
-			throw new IllegalStateException("Error: Simulator entity Id" + e.getId() + " already in use.");
-		entitiesOfType.put(e.getId(), e);
 	}
 	
 	/**
-	 * Removes an entity from the world given its Id.
+	 * Removes an entity from the world given its Id. Must not be called
+	 * concurrently to entities being executed.
 	 * 
 	 * @param entityId Id of the entity to remove.
 	 * @return Removed entity or null if no entity with given Id existed.
 	 */
 	@Override
 	public Entity removeEntity(long entityId) {
+		Entity e = entities.remove(entityId);
+		
+		if (e != null) e.setMovedEntities(null);
 		
-		for (Entity.Type temp : entities.keySet()) {
-			Entity e = entities.get(temp).get(entityId);
+		if ((e != null) && (e.getType() == Entity.Type.PERSON)) {
 			
-			if (e != null) {
-				entities.get(temp).remove(entityId);
-				return e;
-			}
+			for (SpatialHash grid : grids) grid.remove(e);
 		}
-		return null;
+		return e;
 	}
 	
 	/**
@@ -94,38 +126,66 @@ public abstract class World implements IWorld {
 	 */
 	@Override
 	public Entity getEntityById(long entityId) {
-		
-		for (Entity.Type temp : entities.keySet()) {
-			Entity e = entities.get(temp).get(entityId);
-			
-			if (e != null) {
-				return e;
-			}
-		}
-		return null;
+		return entities.get(entityId);
 	}
 	
 	/**
 	 * Returns all entities of the given type.
 	 * 
 	 * @param type Type of entities to return.
-	 * @return Collection of entities of given type.
+	 * @return Unmodifiable list of entities of given type.
 	 */
-	public Collection<Entity> getEntitiesOfType(Entity.Type type) {
-		Map<Long, Entity> ret = entities.get(type);
-		return (ret != null) ? ret.values() : new ArrayList<Entity>(0);
+	@Override
+	public List<Entity> getEntitiesOfType(Entity.Type type) {
+		return entities.getEntitiesOfType(type);
 	}
 	
 	/**
 	 * Returns a list of entities which are physically close to a given entity.
-	 * Closeness is defined by the distance parameter.
+	 * Closeness is defined by the distance parameter. Only moving persons as
+	 * of the last call of updateGrid() are considered (see MetricGrid).
 	 * 
 	 * @param entityId Id of the entity to return near entities.
-	 * @param distance Maximal distance within which entities are close.
+	 * @param distance Maximal distance in meters within which entities are close.
 	 * @return List of close entities.
 	 */
 	@Override
-	public abstract List<Entity> getNearEntities(Entity entity, double distance, List<Entity> buffer);
+	public List<Entity> getNearEntities(Entity entity, double distance, List<Entity> buffer) {
+		return neighbourhood.getNearEntities(entity, distance, buffer);
+	}
+	
+	/**
+	 * Propagates position changes of entities since the last call and moves
+	 * persons which changed grid cells to their new cells. Must not be called
+	 * concurrently to entities being executed.
+	 */
+	@Override
+	public void updateGrid() {
+		Entity e = null;
+		
+		while ((e = moved.poll()) != null) {
+			// Skip duplicates and entities removed since they moved.
+			if (!e.clearPositionChanged() || (entities.get(e.getId()) != e)) continue;
+			positionChanged(e);
+		}
+		
+		for (SpatialHash grid : grids) grid.commit();
+	}
+	
+	/**
+	 * Called by updateGrid() once for each entity whose position changed
+	 * since the last call. Subclasses may extend this method to propagate
+	 * positions e.g. to a visualization.
+	 * 
+	 * @param e Entity whose position changed.
+	 */
+	protected void positionChanged(Entity e) {
+		
+		if (e.getType() == Entity.Type.PERSON) {
+			
+			for (SpatialHash grid : grids) grid.positionChanged(e);
+		}
+	}
 
 	@Override
 	public StreetMap getStreetMap() {
@@ -139,11 +199,11 @@ public abstract class World implements IWorld {
 	
 	@Override
 	public UrbanMobilitySystem getUrbanMobilitySystem() {
-		Collection<Entity> planners = entities.get(Entity.Type.URBANMOBILITYSYSTEM).values();
+		List<Entity> planners = entities.getEntitiesOfType(Entity.Type.URBANMOBILITYSYSTEM);
 		
 		if (planners.isEmpty()) {
 			return null;
 		}
-		return (UrbanMobilitySystem) planners.iterator().next();
+		return (UrbanMobilitySystem) planners.get(0);
 	}
 }
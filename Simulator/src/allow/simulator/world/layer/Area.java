@@ -72,4 +72,13 @@ public abstract class Area {
 	public Coordinate getCenter() {
 		return shape.getCenter();
 	}
+	
+	/**
+	 * Returns the bounding rectangle of the area.
+	 * 
+	 * @return Bounding rectangle of the area (minX, maxX, minY, maxY).
+	 */
+	public double[] getEnvelope() {
+		return shape.getEnvelope();
+	}
 }
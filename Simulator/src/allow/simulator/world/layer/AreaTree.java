@@ -0,0 +1,165 @@
+package allow.simulator.world.layer;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import allow.simulator.util.Coordinate;
+
+/**
+ * Immutable R-tree over the bounding rectangles of a set of areas to find the
+ * areas containing a point. The tree is bulk-loaded using Sort-Tile-Recursive
+ * packing, i.e. areas are sorted into vertical slices by the x coordinate of
+ * their centers and by y within each slice, and consecutive entries are
+ * grouped into nodes level by level. For areas which do not overlap much, a
+ * query visits O(log n) nodes and tests only few polygons.
+ *
+ * @author Andreas Poxrucker (DFKI)
+ *
+ */
+final class AreaTree {
+	// Maximal number of entries per node of the tree.
+	private static final int NODE_CAPACITY = 8;
+
+	// Areas by index.
+	private final Area[] areas;
+
+	// Index of the area per leaf entry in packing order.
+	private final int[] leaves;
+
+	// Bounding rectangles (minX, maxX, minY, maxY) of the entries per level,
+	// where level 0 holds the leaf entries and the last level the root.
+	private final double[][] boxes;
+
+	/**
+	 * Constructor.
+	 * Creates a new tree over the given areas.
+	 *
+	 * @param areaList Areas to index.
+	 */
+	AreaTree(List<Area> areaList) {
+		areas = areaList.toArray(new Area[areaList.size()]);
+		final double[][] envelopes = new double[areas.length][];
+
+		for (int i = 0; i < areas.length; i++) {
+			envelopes[i] = areas[i].getEnvelope();
+		}
+
+		// Sort areas into slices by x and within slices by y.
+		Integer[] order = new Integer[areas.length];
+
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+
+			@Override
+			public int compare(Integer o1, Integer o2) {
+				return Double.compare(envelopes[o1][0] + envelopes[o1][1], envelopes[o2][0] + envelopes[o2][1]);
+			}
+		});
+		int pages = (order.length + NODE_CAPACITY - 1) / NODE_CAPACITY;
+		int sliceSize = (int) Math.ceil(Math.sqrt(pages)) * NODE_CAPACITY;
+
+		for (int i = 0; i < order.length; i += sliceSize) {
+			Arrays.sort(order, i, Math.min(i + sliceSize, order.length), new Comparator<Integer>() {
+
+				@Override
+				public int compare(Integer o1, Integer o2) {
+					return Double.compare(envelopes[o1][2] + envelopes[o1][3], envelopes[o2][2] + envelopes[o2][3]);
+				}
+			});
+		}
+		leaves = new int[order.length];
+		double[] level = new double[4 * order.length];
+
+		for (int i = 0; i < order.length; i++) {
+			leaves[i] = order[i];
+			System.arraycopy(envelopes[order[i]], 0, level, 4 * i, 4);
+		}
+
+		// Group entries into nodes until a single root remains.
+		int depth = 1;
+
+		for (int n = order.length; n > 1; n = (n + NODE_CAPACITY - 1) / NODE_CAPACITY) {
+			depth++;
+		}
+		boxes = new double[depth][];
+		boxes[0] = level;
+
+		for (int l = 1; l < depth; l++) {
+			int children = boxes[l - 1].length / 4;
+			int count = (children + NODE_CAPACITY - 1) / NODE_CAPACITY;
+			boxes[l] = new double[4 * count];
+
+			for (int i = 0; i < count; i++) {
+				double[] box = boxes[l];
+				box[4 * i] = Double.MAX_VALUE;
+				box[4 * i + 1] = -Double.MAX_VALUE;
+				box[4 * i + 2] = Double.MAX_VALUE;
+				box[4 * i + 3] = -Double.MAX_VALUE;
+
+				for (int c = i * NODE_CAPACITY; c < Math.min((i + 1) * NODE_CAPACITY, children); c++) {
+					double[] child = boxes[l - 1];
+					box[4 * i] = Math.min(box[4 * i], child[4 * c]);
+					box[4 * i + 1] = Math.max(box[4 * i + 1], child[4 * c + 1]);
+					box[4 * i + 2] = Math.min(box[4 * i + 2], child[4 * c + 2]);
+					box[4 * i + 3] = Math.max(box[4 * i + 3], child[4 * c + 3]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Adds the areas containing the given point to a list in the order in
+	 * which they were passed to the constructor.
+	 *
+	 * @param point Point to find areas which contain it.
+	 * @param result List to add areas containing the point to.
+	 */
+	void query(Coordinate point, List<Area> result) {
+		int[] found = new int[4];
+		int count = 0;
+		int top = boxes.length - 1;
+
+		// Stack of pending entries as pairs of level and index.
+		int[] stack = new int[2 * (top + 1) * NODE_CAPACITY];
+		int size = 0;
+
+		if (boxes[top].length > 0) {
+			stack[size++] = top;
+			stack[size++] = 0;
+		}
+
+		while (size > 0) {
+			int index = stack[--size];
+			int l = stack[--size];
+			double[] box = boxes[l];
+
+			if (point.x < box[4 * index] || point.x > box[4 * index + 1]
+					|| point.y < box[4 * index + 2] || point.y > box[4 * index + 3])
+				continue;
+
+			if (l == 0) {
+				int area = leaves[index];
+
+				if (areas[area].pointInArea(point)) {
+					if (count == found.length) found = Arrays.copyOf(found, 2 * count);
+					found[count++] = area;
+				}
+				continue;
+			}
+			int children = boxes[l - 1].length / 4;
+
+			for (int c = index * NODE_CAPACITY; c < Math.min((index + 1) * NODE_CAPACITY, children); c++) {
+				stack[size++] = l - 1;
+				stack[size++] = c;
+			}
+		}
+		Arrays.sort(found, 0, count);
+
+		for (int i = 0; i < count; i++) {
+			result.add(areas[found[i]]);
+		}
+	}
+}
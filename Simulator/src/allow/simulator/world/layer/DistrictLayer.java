@@ -2,13 +2,11 @@ package allow.simulator.world.layer;
 
 import java.util.ArrayList;
 import java.util.EnumMap;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import allow.simulator.util.Coordinate;
 import allow.simulator.world.StreetMap;
-import allow.simulator.world.StreetNode;
 
 /**
  * Represents a layer on top of a StreetMap, i.e. a partitioning of the points
@@ -25,6 +23,9 @@ public class DistrictLayer extends Layer {
 	// Mapping area types to areas.
 	private Map<DistrictType, List<Area>> areas;
 
+	// Default area spanning the whole underlying StreetMap.
+	private Area defaultArea;
+
 	// Mapping of area to nodes within that area.
 	// private Map<Area, List<StreetNode>> areaToNodesMapping;
 	// private Map<StreetNode, List<Area>> nodesToAreaMapping;
@@ -55,15 +56,8 @@ public class DistrictLayer extends Layer {
 		defaults.add(unknown);
 		areas = new EnumMap<DistrictType, List<Area>>(DistrictType.class);
 		areas.put(unknown.getType(), defaults);
-
-		// Create area to node mapping and initialize with default area.
-		areaToNodesMapping.put(unknown, new ArrayList<StreetNode>(base.getStreetNodes()));
-
-		for (StreetNode node : base.getStreetNodes()) {
-			List<Area> areas = new ArrayList<Area>(1);
-			areas.add(unknown);
-			nodesToAreaMapping.put(node, areas);
-		}
+		this.defaultArea = unknown;
+		registerArea(unknown);
 	}
 
 	public List<Area> getAreasOfType(DistrictType type) {
@@ -81,34 +75,16 @@ public class DistrictLayer extends Layer {
 			temp = new ArrayList<Area>();
 		temp.add(area);
 		areas.put(disArea.getType(), temp);
+		registerArea(area);
+	}
 
-		List<StreetNode> stillDefault = areaToNodesMapping.get(areas.get(DistrictType.UNKNOWN).get(0));
-		Map<Long, StreetNode> util = new HashMap<Long, StreetNode>(stillDefault.size());
-		for (StreetNode n : stillDefault) {
-			util.put(n.getId(), n);
-		}
-
-		// Create mapping of points to area and vice versa.
-		List<StreetNode> nodes = new ArrayList<StreetNode>();
-
-		for (StreetNode n : base.getStreetNodes()) {
-
-			if (area.pointInArea(n.getPosition())) {
-				// If point lies inside area add it to list of nodes.
-				nodes.add(n);
-
-				// Check if point is still within default area.
-				if (util.containsKey(n.getId())) {
-					util.remove(n.getId());
-					nodesToAreaMapping.get(n).clear();
-				}
-				nodesToAreaMapping.get(n).add(area);
-			}
-		}
-		areaToNodesMapping.put(area, nodes);
+	@Override
+	protected void selectAreas(List<Area> containing) {
+		// Nodes lying within any other area are not part of the default area.
+		// All other nodes are, even if they lie on its boundary.
+		containing.remove(defaultArea);
 
-		// Update still default nodes.
-		stillDefault.clear();
-		stillDefault.addAll(util.values());
+		if (containing.isEmpty())
+			containing.add(defaultArea);
 	}
 }
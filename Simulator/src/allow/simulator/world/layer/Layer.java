@@ -1,7 +1,6 @@
 package allow.simulator.world.layer;
 
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -47,11 +46,20 @@ public abstract class Layer {
 	// StreetMap the layer is overlaid.
 	protected StreetMap base;
 	
+	// Areas of the layer in the order they were added.
+	protected List<Area> areaList;
+	
 	// Mapping of areas of the layer to nodes within that area.
 	protected Map<Area, List<StreetNode>> areaToNodesMapping;
 	
-	// Mapping of nodes to areas it lies in.
-	protected Map<StreetNode, List<Area>> nodesToAreaMapping;
+	// Areas containing a node by node Id.
+	private List<List<Area>> nodesToAreaMapping;
+	
+	// Bounding-box tree over the areas of the layer.
+	private AreaTree tree;
+	
+	// True, if mappings and tree reflect all areas added so far.
+	private volatile boolean indexed;
 	
 	/**
 	 * Constructor.
@@ -64,18 +72,75 @@ public abstract class Layer {
 	protected Layer(Type type, StreetMap base) {
 		this.type = type;
 		this.base = base;
+		areaList = new ArrayList<Area>();
 		areaToNodesMapping = new HashMap<Area, List<StreetNode>>();
-		nodesToAreaMapping = new HashMap<StreetNode, List<Area>>();
+		nodesToAreaMapping = new ArrayList<List<Area>>();
 	}
 	
 	/**
-	 * Adds a new area to the layer and identifies points of the underlying
-	 * StreetMap if they lie within that area.
+	 * Adds a new area to the layer. Points of the underlying StreetMap lying
+	 * within that area are identified when the index is built (see
+	 * buildIndex()).
 	 * 
 	 * @param area Area to add.
 	 */
 	public abstract void addArea(Area area);
 	
+	/**
+	 * Registers an area with the index of the layer. Invalidates mappings
+	 * of nodes and areas until the index is rebuilt.
+	 * 
+	 * @param area Area to register.
+	 */
+	protected void registerArea(Area area) {
+		areaList.add(area);
+		indexed = false;
+	}
+	
+	/**
+	 * Builds the tree over the areas of the layer and assigns each node of
+	 * the underlying StreetMap to the areas containing it by querying the
+	 * tree once per node. Called lazily by queries after areas were added,
+	 * but should be called once after loading all areas.
+	 */
+	public synchronized void buildIndex() {
+		
+		if (indexed)
+			return;
+		AreaTree newTree = new AreaTree(areaList);
+		List<StreetNode> nodes = base.getStreetNodes();
+		Map<Area, List<StreetNode>> newAreaToNodes = new HashMap<Area, List<StreetNode>>();
+		List<List<Area>> newNodesToArea = new ArrayList<List<Area>>(nodes.size());
+		
+		for (Area a : areaList) {
+			newAreaToNodes.put(a, new ArrayList<StreetNode>());
+		}
+		
+		for (StreetNode n : nodes) {
+			List<Area> containing = new ArrayList<Area>(2);
+			newTree.query(n.getPosition(), containing);
+			selectAreas(containing);
+			
+			for (Area a : containing) {
+				newAreaToNodes.get(a).add(n);
+			}
+			newNodesToArea.add(containing);
+		}
+		tree = newTree;
+		areaToNodesMapping = newAreaToNodes;
+		nodesToAreaMapping = newNodesToArea;
+		indexed = true;
+	}
+	
+	/**
+	 * Selects the areas a node is assigned to from the areas containing it.
+	 * Assigns nodes to all areas containing them by default.
+	 * 
+	 * @param containing Areas containing a node in the order they were added
+	 *        to be modified in place.
+	 */
+	protected void selectAreas(List<Area> containing) { }
+	
 	/**
 	 * Returns a list of areas which contain the given point (areas may be overlapping).
 	 * 
@@ -83,7 +148,14 @@ public abstract class Layer {
 	 * @return List of areas which contain the given point.
 	 */
 	public List<Area> getAreasContainingPoint(StreetNode point) {
-		return nodesToAreaMapping.get(point);
+		
+		if (!indexed)
+			buildIndex();
+		long id = point.getId();
+		
+		if (id < 0 || id >= nodesToAreaMapping.size() || !point.equals(base.getStreetNodes().get((int) id)))
+			return null;
+		return nodesToAreaMapping.get((int) id);
 	}
 	
 	/**
@@ -93,17 +165,18 @@ public abstract class Layer {
 	 * @return List of areas which contain the given point.
 	 */
 	public List<Area> getAreasContainingPoint(Coordinate point) {
-		Collection<Area> areas = areaToNodesMapping.keySet();
-		List<Area> ret = new ArrayList<Area>();
 		
-		for (Area a : areas) {
-			if (a.pointInArea(point))
-				ret.add(a);
-		}
+		if (!indexed)
+			buildIndex();
+		List<Area> ret = new ArrayList<Area>();
+		tree.query(point, ret);
 		return ret;
 	}
 	
 	public List<StreetNode> getPointsInArea(Area area) {
+		
+		if (!indexed)
+			buildIndex();
 		return areaToNodesMapping.get(area);
 	}
 	
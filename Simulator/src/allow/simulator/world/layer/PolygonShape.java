@@ -7,7 +7,7 @@ import allow.simulator.util.Coordinate;
 /**
  * Represents a polygon area which is given by a set of points describing its
  * vertices.
- * 
+ *
  * @author Andreas Poxrucker (DFKI)
  *
  */
@@ -15,48 +15,58 @@ public class PolygonShape extends Shape {
 	// Polygon covering the area.
 	private List<Coordinate> boundary;
 	private Coordinate center;
-	private double constant[];
-	private double multiple[];
-		
+
+	// Vertices of the polygon.
+	private double xs[];
+	private double ys[];
+
+	// Inverse slope of the edge ending in each vertex (0 for horizontal edges).
+	private double slopes[];
+
+	// Bounding rectangle of the polygon (minX, maxX, minY, maxY).
+	private double envelope[];
+
 	/**
 	 * Constructor.
 	 * Creates a new instance of a polygon shape given the vertices that describe
 	 * it boundary.
-	 * 
+	 *
 	 * @param boundary Set of points/vertices representing the boundary of the
-	 *        polygon. 
+	 *        polygon.
 	 */
 	public PolygonShape(List<Coordinate> boundary) {
 		this.boundary = boundary;
 		center = new Coordinate();
-		
+
 		for (Coordinate b : boundary) {
 			center.x += b.x;
 			center.y += b.y;
 		}
 		center.x /= boundary.size();
 		center.y /= boundary.size();
-		
-		constant = new double[boundary.size()];
-		multiple = new double[boundary.size()];
+
+		xs = new double[boundary.size()];
+		ys = new double[boundary.size()];
+		slopes = new double[boundary.size()];
+		envelope = new double[] { Double.MAX_VALUE, -Double.MAX_VALUE, Double.MAX_VALUE, -Double.MAX_VALUE };
 		precalcValues();
 	}
 
 	@Override
 	public boolean contains(Coordinate point) {
-		int polySize = boundary.size();
-		int	i = 0; 
+
+		if (point.x < envelope[0] || point.x > envelope[1] || point.y < envelope[2] || point.y > envelope[3])
+			return false;
+		int polySize = xs.length;
 		int j = polySize - 1;
 		boolean oddNodes = false;
 
-		for (i = 0; i < polySize; i++) {
-			Coordinate p1 = boundary.get(i);
-			Coordinate p2 = boundary.get(j);
-			
-		    if ((p1.y < point.y && p2.y >= point.y || p2.y < point.y && p1.y >= point.y)) {
-		    	if (p1.x + (point.y - p1.y) / (p2.y - p1.y) * (p2.x-p1.x) < point.x) oddNodes=!oddNodes; 
+		for (int i = 0; i < polySize; i++) {
+
+		    if ((ys[i] < point.y && ys[j] >= point.y || ys[j] < point.y && ys[i] >= point.y)) {
+		    	if (xs[i] + (point.y - ys[i]) * slopes[i] < point.x) oddNodes = !oddNodes;
 		    }
-		    j=i; 
+		    j = i;
 		}
 		return oddNodes;
 	}
@@ -65,27 +75,26 @@ public class PolygonShape extends Shape {
 	public List<Coordinate> getBoundary() {
 		return boundary;
 	}
-	
+
 	private void precalcValues() {
 		int polySize = boundary.size();
-		int i = 0;
+
+		for (int i = 0; i < polySize; i++) {
+			Coordinate p = boundary.get(i);
+			xs[i] = p.x;
+			ys[i] = p.y;
+			envelope[0] = Math.min(envelope[0], p.x);
+			envelope[1] = Math.max(envelope[1], p.x);
+			envelope[2] = Math.min(envelope[2], p.y);
+			envelope[3] = Math.max(envelope[3], p.y);
+		}
 		int j = polySize - 1;
 
-		for(i = 0; i < polySize; i++) {
-			Coordinate p1 = boundary.get(i);
-			Coordinate p2 = boundary.get(j);
-			
-			if (p2.y == p1.y) {
-				constant[i] = p1.x;
-		      	multiple[i] = 0;
-		      	
-		    } else {
-		    	double dY = 1.0 / p2.y - p1.y;     
-		    	constant[i]= p1.x - ((p1.y * p2.x) + (p1.y * p1.x)) * dY;
-		    	multiple[i]= (p2.x - p1.x) * dY; 
-		    }
+		for (int i = 0; i < polySize; i++) {
+			// Horizontal edges are never crossed by the ray.
+			slopes[i] = (ys[j] == ys[i]) ? 0.0 : (xs[j] - xs[i]) / (ys[j] - ys[i]);
 		    j = i;
-		 }
+		}
 	}
 
 	@Override
@@ -93,4 +102,9 @@ public class PolygonShape extends Shape {
 		return center;
 	}
 
+	@Override
+	public double[] getEnvelope() {
+		return envelope;
+	}
+
 }
@@ -40,4 +40,11 @@ public abstract class Shape {
 	 */
 	public abstract Coordinate getCenter();
 	
+	/**
+	 * Returns the bounding rectangle of the shape.
+	 * 
+	 * @return Bounding rectangle of the shape (minX, maxX, minY, maxY).
+	 */
+	public abstract double[] getEnvelope();
+	
 }
@@ -42,4 +42,9 @@ public final class SinglePointShape extends Shape {
 		return point;
 	}
 
+	@Override
+	public double[] getEnvelope() {
+		return new double[] { point.x, point.x, point.y, point.y };
+	}
+
 }
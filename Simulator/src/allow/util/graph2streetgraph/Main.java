@@ -5,6 +5,7 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
+import java.nio.file.Paths;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -15,6 +16,7 @@ import org.opentripplanner.routing.graph.Graph;
 import org.opentripplanner.routing.graph.Graph.LoadLevel;
 import org.opentripplanner.routing.graph.Vertex;
 
+import allow.simulator.world.StreetNetwork;
 import allow.simulator.world.StreetNode;
 
 import com.vividsolutions.jts.geom.Coordinate;
@@ -116,6 +118,23 @@ public class Main {
 			wr.write(s.segs[s.segs.length - 1] + "\n");
 		}
 		wr.close();
+		
+		// Write the same network in binary format (see StreetNetwork).
+		StreetNetwork network = new StreetNetwork();
+		
+		for (StreetNode node : nodes.values()) {
+			network.addNode(node.getLabel(), node.getPosition());
+		}
+		
+		for (Segment s : segments.values()) {
+			int geometry[] = new int[s.segs.length];
+			
+			for (int i = 0; i < s.segs.length; i++) {
+				geometry[i] = network.getNode(s.segs[i]);
+			}
+			network.addStreet(network.getNode(s.fromLabel), network.getNode(s.tolabel), s.name, s.speed * StreetNetwork.MPH_TO_MPS, geometry);
+		}
+		network.write(Paths.get("matching_graph_walk.bin"));
 		/*Graph g = Graph.load(new File("/var/otp/graphs/Graph.obj"), LoadLevel.FULL);
 		Map<String, StreetNode> nodes = new HashMap<String, StreetNode>();
 		Map<Long, Segment> segments = new HashMap<Long, Segment>();
@@ -0,0 +1,39 @@
+package allow.util.world2network;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import allow.simulator.world.StreetNetwork;
+
+/**
+ * Converts a street network in text format (.world file) to the binary
+ * format which can be memory-mapped by the simulator (see StreetNetwork).
+ * 
+ * Usage: Main <input .world file> <output file>
+ * 
+ * @author Andreas Poxrucker (DFKI)
+ *
+ */
+public class Main {
+
+	public static void main(String args[]) throws IOException {
+		
+		if (args.length != 2) {
+			System.out.println("Usage: Main <input .world file> <output file>");
+			return;
+		}
+		Path input = Paths.get(args[0]);
+		Path output = Paths.get(args[1]);
+		
+		long t = System.currentTimeMillis();
+		StreetNetwork network = StreetNetwork.readText(input);
+		System.out.println("Read " + network.getNumberOfNodes() + " nodes and "
+				+ network.getNumberOfStreets() + " streets in " + (System.currentTimeMillis() - t) + " ms");
+		network.write(output);
+		
+		t = System.currentTimeMillis();
+		network = StreetNetwork.readBinary(output);
+		System.out.println("Wrote " + output + " (loads in " + (System.currentTimeMillis() - t) + " ms)");
+	}
+}